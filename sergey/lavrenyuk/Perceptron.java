@@ -6,6 +6,7 @@ import robocode.RoundEndedEvent;
 import robocode.StatusEvent;
 import sergey.lavrenyuk.event.PerceptronEvent;
 import sergey.lavrenyuk.event.PerceptronEvents;
+import sergey.lavrenyuk.event.TurnStarted;
 import sergey.lavrenyuk.io.Config;
 import sergey.lavrenyuk.io.Exceptions;
 import sergey.lavrenyuk.io.IO;
@@ -41,6 +42,9 @@ public class Perceptron extends AdvancedRobot implements PerceptronControl {
     // console logger
     private Log log;
 
+    // the same event is updated and dispatched on every turn, so that nothing is allocated per turn
+    private final TurnStarted turnStarted = TurnStarted.reusable();
+
     /**
      * This method is called once at the beginning of each round. It is an entry point of the robot's logic.
      * Here we have base robot class fully initialized and set up, not in the class constructor as we get used in the Java world.
@@ -101,7 +105,7 @@ public class Perceptron extends AdvancedRobot implements PerceptronControl {
         // do not do anything if the robot is not yet initialized in the run() method
         // or if it is disabled because of too many unrecoverable exceptions
         if (roundStarted && !disabled) {
-            dispatchToModules(PerceptronEvents.newTurnStartedEvent(statusEvent.getStatus(), getScannedRobotEvents()));
+            dispatchToModules(PerceptronEvents.updateTurnStartedEvent(turnStarted, statusEvent.getStatus(), getScannedRobotEvents()));
         }
     }
 
@@ -126,15 +130,14 @@ public class Perceptron extends AdvancedRobot implements PerceptronControl {
     }
 
     private void dispatchToModules(PerceptronEvent event) {
-        modules.forEach(
-                module -> {
-                    try {
-                        module.dispatch(event);
-                    } catch (Throwable t) {
-                        exceptions.add(t.getMessage());
-                        log.error(t.getMessage());
-                    }
-                }
-        );
+        // plain loop instead of forEach, since a capturing lambda is allocated on every call
+        for (int i = 0; i < modules.size(); i++) {
+            try {
+                modules.get(i).dispatch(event);
+            } catch (Throwable t) {
+                exceptions.add(t.getMessage());
+                log.error(t.getMessage());
+            }
+        }
     }
 }
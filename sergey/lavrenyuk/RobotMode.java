@@ -1,11 +1,13 @@
 package sergey.lavrenyuk;
 
 import sergey.lavrenyuk.io.Config;
+import sergey.lavrenyuk.io.FileHeader;
 import sergey.lavrenyuk.io.FileReader;
 import sergey.lavrenyuk.io.IO;
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.nn.IntGeneratorFromString;
+import sergey.lavrenyuk.nn.Seeds;
 import sergey.lavrenyuk.nn.WeightMatrixGenerator;
 import sergey.lavrenyuk.nn.WeightMatrix;
 import sergey.lavrenyuk.nn.scoring.RoundResultConsumer;
@@ -36,7 +38,7 @@ public class RobotMode {
             case RANDOM: {
                 Supplier<Integer> maxAbsWeightSupplier =
                         new IntGeneratorFromString(Config.getNeuralNetworkMatrixMaxAbsWeight());
-                WeightMatrixGenerator generator = new WeightMatrixGenerator();
+                WeightMatrixGenerator generator = new WeightMatrixGenerator(seed());
 
                 this.weightMatrixSupplier = () -> generator.generateRandom(maxAbsWeightSupplier.get());
                 this.roundResultConsumer = null;
@@ -47,7 +49,11 @@ public class RobotMode {
                         Config.getNeuralNetworkWeightMatrixFilePattern(),
                         Config.getNeuralNetworkScoredWeightMatrixFilePattern(),
                         Config.getScoringRoundsPerMatrix(),
-                        true);
+                        true,
+                        Config.getScoringPrefetchQueueSize(),
+                        Config.getScoringWriteBehindQueueSize(),
+                        Config.getNeuralNetworkItemsPerChecksumBlock(),
+                        FileHeader.Compression.fromString(Config.getNeuralNetworkCompression()));
 
                 this.weightMatrixSupplier = weightMatrixScorer;
                 this.roundResultConsumer = weightMatrixScorer;
@@ -66,7 +72,7 @@ public class RobotMode {
                         new FileReader<>(enemyFile, WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix);
                 List<WeightMatrix> weightMatrixList = readAll(weightMatrixReader);
 
-                this.weightMatrixSupplier = new RandomElementSupplier<>(weightMatrixList);
+                this.weightMatrixSupplier = new RandomElementSupplier<>(weightMatrixList, seed());
                 this.roundResultConsumer = null;
 
                 break;
@@ -84,6 +90,11 @@ public class RobotMode {
         return Optional.ofNullable(roundResultConsumer);
     }
 
+    private static long seed() {
+        long seed = Config.getNeuralNetworkSeed();
+        return (seed != 0) ? seed : Seeds.random();
+    }
+
     /**
      * Supplier that is initialized with a list of elements, each invocation of {@link #get()} returns a random element
      * of the list.
@@ -91,11 +102,20 @@ public class RobotMode {
      */
     public static class RandomElementSupplier<T> implements Supplier<T> {
 
-        private final Random random = new Random();
+        private final Random random;
         private final List<T> list;
 
         public RandomElementSupplier(List<T> list) {
+            this(list, new Random());
+        }
+
+        public RandomElementSupplier(List<T> list, long seed) {
+            this(list, new Random(seed));
+        }
+
+        private RandomElementSupplier(List<T> list, Random random) {
             this.list = list;
+            this.random = random;
         }
 
         @Override
@@ -0,0 +1,97 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.IntGeneratorFromString;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.training.utils.ParallelBreeder;
+import sergey.lavrenyuk.nn.training.utils.ReaderFromIterator;
+import sergey.lavrenyuk.nn.training.utils.TrainerUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a generation of the default size from 100 survivors, a partition of 100 matrices per file, on a single thread
+ * with {@link TrainerUtils#processSurvivorsToNextGeneration} and with {@link ParallelBreeder}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BreedingBenchmark {
+
+    private static final String FILE_PATTERN = "weight_matrix_part{}.dat";
+    private static final int MATRICES_PER_FILE = 100;
+    private static final int CROSSINGOVER_INDIVIDUALS = 0;
+    private static final int MUTATED_COPIES = 149;
+    private static final int MUTATION_PERCENTAGE = 5;
+    private static final int POPULATION = 15000;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File baseDirectory;
+    private List<WeightMatrix> survivors;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDirectory = Files.createTempDirectory("benchmark").toFile();
+        IO.initialize(System.out, baseDirectory, fileName -> new File(baseDirectory, fileName));
+
+        WeightMatrixGenerator generator = new WeightMatrixGenerator();
+        survivors = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            survivors.add(generator.generateRandom());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : baseDirectory.listFiles()) {
+            file.delete();
+        }
+        baseDirectory.delete();
+    }
+
+    @Benchmark
+    public void sequential() throws IOException {
+        TrainerUtils.processSurvivorsToNextGeneration(
+                new ReaderFromIterator<>(survivors.iterator()),
+                new PartitionedFileWriter<>(FILE_PATTERN, MATRICES_PER_FILE, Serializer::serializeWeightMatrix),
+                new IntGeneratorFromString("1"),
+                CROSSINGOVER_INDIVIDUALS,
+                MUTATED_COPIES,
+                MUTATION_PERCENTAGE,
+                POPULATION);
+    }
+
+    @Benchmark
+    public long parallel() throws IOException {
+        return new ParallelBreeder(FILE_PATTERN, MATRICES_PER_FILE, FileHeader.NONE,
+                Serializer::serializeWeightMatrix, CROSSINGOVER_INDIVIDUALS, MUTATED_COPIES, MUTATION_PERCENTAGE, POPULATION,
+                new IntGeneratorFromString("1"), threads, 1)
+                .breed(survivors, partition -> false);
+    }
+}
@@ -0,0 +1,141 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionedFileReader;
+import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.training.utils.WeightMatrixMutator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads a generation of weight matrices with each {@link FileHeader.Compression}, NONE is the raw format with
+ * checksums. One operation is a single matrix written or read, the compression ratio is printed once the files are written.
+ *
+ * The generation consists of the survivors followed by their mutated copies, as the trainer writes it, so neighbour
+ * matrices are copies of different survivors. With the "siblings" order the copies of the same survivor follow each other,
+ * which is the best case for XOR with the previous matrix.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final int SURVIVORS = 100;
+    private static final int MUTATED_COPIES = 149;
+    private static final int MUTATION_PERCENTAGE = 5;
+    private static final int MATRICES = SURVIVORS * (MUTATED_COPIES + 1);
+    private static final int MATRICES_PER_FILE = 1_000;
+    private static final int ITEMS_PER_BLOCK = 64;
+
+    private static final String WRITE_FILE_PATTERN = "write_gen{}.dat";
+    private static final String READ_FILE_PATTERN = "read_gen{}.dat";
+
+    @Param({"NONE", "DEFLATE", "XOR_DEFLATE"})
+    private FileHeader.Compression compression;
+
+    @Param({"generation", "siblings"})
+    private String order;
+
+    private File baseDirectory;
+    private FileHeader header;
+    private List<WeightMatrix> generation;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDirectory = Files.createTempDirectory("benchmark").toFile();
+        IO.initialize(System.out, baseDirectory, fileName -> new File(baseDirectory, fileName));
+
+        WeightMatrixGenerator generator = new WeightMatrixGenerator();
+        WeightMatrixMutator mutator = new WeightMatrixMutator(MUTATION_PERCENTAGE);
+        List<WeightMatrix> survivors = new ArrayList<>();
+        for (int i = 0; i < SURVIVORS; i++) {
+            survivors.add(generator.generateRandom());
+        }
+        generation = new ArrayList<>(survivors);
+        if (order.equals("generation")) {
+            for (int copy = 0; copy < MUTATED_COPIES; copy++) {
+                survivors.forEach(survivor -> generation.add(mutator.mutate(survivor)));
+            }
+        } else {
+            generation.clear();
+            for (WeightMatrix survivor : survivors) {
+                generation.add(survivor);
+                for (int copy = 0; copy < MUTATED_COPIES; copy++) {
+                    generation.add(mutator.mutate(survivor));
+                }
+            }
+        }
+
+        header = FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, ITEMS_PER_BLOCK, compression);
+        write(READ_FILE_PATTERN);
+
+        long bytes = 0;
+        for (File file : baseDirectory.listFiles()) {
+            bytes += file.length();
+        }
+        System.out.println(String.format("%n%s, %s order: %d bytes, compression ratio %.3f", compression, order, bytes,
+                (double) MATRICES * WeightMatrix.SIZE_IN_BYTES / bytes));
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : baseDirectory.listFiles()) {
+            file.delete();
+        }
+        baseDirectory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void write() throws IOException {
+        write(WRITE_FILE_PATTERN);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void read(Blackhole blackhole) throws IOException {
+        PartitionedFileReader<WeightMatrix> reader = new PartitionedFileReader<>(READ_FILE_PATTERN,
+                WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix);
+        WeightMatrix weightMatrix;
+        while ((weightMatrix = reader.read()) != null) {
+            blackhole.consume(weightMatrix);
+        }
+        reader.close();
+    }
+
+    private void write(String filePattern) throws IOException {
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>(filePattern, MATRICES_PER_FILE, header,
+                Serializer::serializeWeightMatrix);
+        for (WeightMatrix weightMatrix : generation) {
+            writer.write(weightMatrix);
+        }
+        writer.close();
+    }
+}
@@ -0,0 +1,60 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.nn.training.utils.MaxValuesStorage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of the {@link #sizeLimit} max values out of {@link #VALUES} random values, like survivors selection
+ * and {@code Trainer.printScoredPopulation} do.
+ * One operation is a single {@link MaxValuesStorage#put(Object)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaxValuesStorageBenchmark {
+
+    private static final int VALUES = 1_000_000;
+
+    @Param({"100", "10000"})
+    public int sizeLimit;
+
+    private Float[] values;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        values = new Float[VALUES];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public List<Float> put() {
+        MaxValuesStorage<Float> storage = new MaxValuesStorage<>(sizeLimit, Comparator.<Float>naturalOrder());
+        for (Float value : values) {
+            storage.put(value);
+        }
+        return storage.asList();
+    }
+}
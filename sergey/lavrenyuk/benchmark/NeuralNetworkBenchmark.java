@@ -0,0 +1,50 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkBenchmark {
+
+    private NeuralNetwork neuralNetwork;
+
+    private final float[] input = new float[WeightMatrix.INPUT_NEURONS];
+    private final float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+
+    @Setup
+    public void setUp() {
+        neuralNetwork = new NeuralNetwork(new WeightMatrixGenerator().generateRandom());
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (i % 2 == 0 ? 1 : -1) * 0.1f * i;
+        }
+    }
+
+    @Benchmark
+    public float[] process() {
+        return neuralNetwork.process(input);
+    }
+
+    @Benchmark
+    public float[] processWithOutputBuffer() {
+        neuralNetwork.process(input, output);
+        return output;
+    }
+}
@@ -0,0 +1,60 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.event.EnemyStatus;
+import sergey.lavrenyuk.event.PerceptronStatus;
+import sergey.lavrenyuk.event.RoundStarted;
+import sergey.lavrenyuk.event.TurnStarted;
+import sergey.lavrenyuk.module.NeuralNetworkModule;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.test.base.NoOpPerceptronControl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single robot turn, i.e. {@link NeuralNetworkModule#onTurnStarted(TurnStarted)} with and without a scanned
+ * enemy. Robot commands go to {@link NoOpPerceptronControl}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeuralNetworkModuleBenchmark {
+
+    private NeuralNetworkModule neuralNetworkModule;
+
+    private TurnStarted turnWithEnemy;
+    private TurnStarted turnWithoutEnemy;
+
+    @Setup
+    public void setUp() {
+        WeightMatrixGenerator generator = new WeightMatrixGenerator();
+        neuralNetworkModule = new NeuralNetworkModule(generator::generateRandom, 100, 36, 36, 800, 600);
+        neuralNetworkModule.onRoundStarted(new RoundStarted(new NoOpPerceptronControl()));
+
+        PerceptronStatus perceptronStatus = new PerceptronStatus(87.5, 120, 340, 1.2, 0.7, 2.5, 6, 0.4);
+        turnWithEnemy = new TurnStarted(perceptronStatus, new EnemyStatus(64, -4, 4.1, 0.3, 250));
+        turnWithoutEnemy = new TurnStarted(perceptronStatus, null);
+    }
+
+    @Benchmark
+    public void turnWithEnemy() {
+        neuralNetworkModule.onTurnStarted(turnWithEnemy);
+    }
+
+    @Benchmark
+    public void turnWithoutEnemy() {
+        neuralNetworkModule.onTurnStarted(turnWithoutEnemy);
+    }
+}
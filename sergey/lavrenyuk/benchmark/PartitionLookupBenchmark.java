@@ -0,0 +1,83 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionedFiles;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up partitions of a file pattern with and without the {@link PartitionManifest}. The directory also has files of
+ * another pattern, as the Robocode data directory has both weight matrix and scored weight matrix files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionLookupBenchmark {
+
+    private static final String SCANNED_FILE_PATTERN = "scanned_gen{}.dat";
+    private static final String MANIFEST_FILE_PATTERN = "manifest_gen{}.dat";
+
+    @Param({"150", "5000"})
+    public int partitions;
+
+    private File baseDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDirectory = Files.createTempDirectory("benchmark").toFile();
+        IO.initialize(System.out, baseDirectory, fileName -> new File(baseDirectory, fileName));
+
+        for (int i = 0; i < partitions; i++) {
+            IO.getFile(PartitionedFiles.resolvePlaceholder(SCANNED_FILE_PATTERN, i)).createNewFile();
+            IO.getFile(PartitionedFiles.resolvePlaceholder(MANIFEST_FILE_PATTERN, i)).createNewFile();
+        }
+        PartitionManifest.rebuild(MANIFEST_FILE_PATTERN, PartitionManifest.State.PENDING);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : baseDirectory.listFiles()) {
+            file.delete();
+        }
+        baseDirectory.delete();
+    }
+
+    @Benchmark
+    public int latestFileIndexScan() {
+        return PartitionedFiles.latestFileIndex(SCANNED_FILE_PATTERN);
+    }
+
+    @Benchmark
+    public int latestFileIndexManifest() {
+        return PartitionedFiles.latestFileIndex(MANIFEST_FILE_PATTERN);
+    }
+
+    @Benchmark
+    public Iterable<Integer> getFileIndexesScan() {
+        return PartitionedFiles.getFileIndexes(SCANNED_FILE_PATTERN);
+    }
+
+    @Benchmark
+    public Iterable<Integer> getFileIndexesManifest() {
+        return PartitionedFiles.getFileIndexes(MANIFEST_FILE_PATTERN);
+    }
+}
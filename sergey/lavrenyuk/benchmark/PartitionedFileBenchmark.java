@@ -0,0 +1,134 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.MappedPartitionedFileReader;
+import sergey.lavrenyuk.io.PartitionedFileReader;
+import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads a whole generation of weight matrices, split to files the same way the trainer does it.
+ * One operation is a single matrix written or read, so ops/s is directly the number of matrices per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionedFileBenchmark {
+
+    private static final int MATRICES = 15_000;
+    private static final int MATRICES_PER_FILE = 1_000;
+
+    private static final String WRITE_FILE_PATTERN = "write_gen{}.dat";
+    private static final String READ_FILE_PATTERN = "read_gen{}.dat";
+
+    private File baseDirectory;
+    private WeightMatrix weightMatrix;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDirectory = Files.createTempDirectory("benchmark").toFile();
+        IO.initialize(System.out, baseDirectory, fileName -> new File(baseDirectory, fileName));
+
+        weightMatrix = new WeightMatrixGenerator().generateRandom();
+        ScoredWeightMatrix scoredWeightMatrix = new ScoredWeightMatrix(new Score(0.5f, 0f), weightMatrix);
+        PartitionedFileWriter<ScoredWeightMatrix> writer = new PartitionedFileWriter<>(READ_FILE_PATTERN,
+                MATRICES_PER_FILE, Serializer::serializeScoredWeightMatrix);
+        for (int i = 0; i < MATRICES; i++) {
+            writer.write(scoredWeightMatrix);
+        }
+        writer.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : baseDirectory.listFiles()) {
+            file.delete();
+        }
+        baseDirectory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void write() throws IOException {
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>(WRITE_FILE_PATTERN,
+                MATRICES_PER_FILE, Serializer::serializeWeightMatrix);
+        for (int i = 0; i < MATRICES; i++) {
+            writer.write(weightMatrix);
+        }
+        writer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void read(Blackhole blackhole) throws IOException {
+        PartitionedFileReader<ScoredWeightMatrix> reader = new PartitionedFileReader<>(READ_FILE_PATTERN,
+                ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoredWeightMatrix);
+        ScoredWeightMatrix scoredWeightMatrix;
+        while ((scoredWeightMatrix = reader.read()) != null) {
+            blackhole.consume(scoredWeightMatrix);
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void readMapped(Blackhole blackhole) throws IOException {
+        MappedPartitionedFileReader<ScoredWeightMatrix> reader = new MappedPartitionedFileReader<>(READ_FILE_PATTERN,
+                ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoredWeightMatrix);
+        ScoredWeightMatrix scoredWeightMatrix;
+        while ((scoredWeightMatrix = reader.read()) != null) {
+            blackhole.consume(scoredWeightMatrix);
+        }
+        reader.close();
+    }
+
+    // only scores are decoded, e.g. to print the best scores of a generation
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void readScores(Blackhole blackhole) throws IOException {
+        PartitionedFileReader<Score> reader = new PartitionedFileReader<>(READ_FILE_PATTERN,
+                ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix);
+        Score score;
+        while ((score = reader.read()) != null) {
+            blackhole.consume(score);
+        }
+        reader.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATRICES)
+    public void readScoresMapped(Blackhole blackhole) throws IOException {
+        MappedPartitionedFileReader<Score> reader = new MappedPartitionedFileReader<>(READ_FILE_PATTERN,
+                ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix);
+        Score score;
+        while ((score = reader.read()) != null) {
+            blackhole.consume(score);
+        }
+        reader.close();
+    }
+}
@@ -0,0 +1,91 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.nn.BatchNeuralNetwork;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedNeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares float and {@link QuantizedWeightMatrix.Precision#INT8} evaluation of separate networks with the float batch.
+ * One operation is evaluation of all the {@link #matrices} against the same input, so ops/s of all the benchmarks are
+ * directly comparable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuantizedNeuralNetworkBenchmark {
+
+    @Param({"64", "1024", "15000"})
+    public int matrices;
+
+    private NeuralNetwork[] neuralNetworks;
+    private QuantizedNeuralNetwork[] quantizedNeuralNetworks;
+    private BatchNeuralNetwork batchNeuralNetwork;
+
+    private final float[] input = new float[WeightMatrix.INPUT_NEURONS];
+    private final float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+    private float[] batchOutput;
+
+    @Setup
+    public void setUp() {
+        WeightMatrixGenerator generator = new WeightMatrixGenerator();
+        List<WeightMatrix> weightMatrices = new ArrayList<>();
+        neuralNetworks = new NeuralNetwork[matrices];
+        quantizedNeuralNetworks = new QuantizedNeuralNetwork[matrices];
+        for (int i = 0; i < matrices; i++) {
+            WeightMatrix weightMatrix = generator.generateRandom();
+            weightMatrices.add(weightMatrix);
+            neuralNetworks[i] = new NeuralNetwork(weightMatrix);
+            quantizedNeuralNetworks[i] = new QuantizedNeuralNetwork(
+                    QuantizedWeightMatrix.quantize(weightMatrix, QuantizedWeightMatrix.Precision.INT8));
+        }
+        batchNeuralNetwork = new BatchNeuralNetwork(weightMatrices);
+        batchOutput = new float[WeightMatrix.OUTPUT_NEURONS * matrices];
+
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (i % 2 == 0 ? 1 : -1) * 0.1f * i;
+        }
+    }
+
+    @Benchmark
+    public float[] separateNeuralNetworks() {
+        for (NeuralNetwork neuralNetwork : neuralNetworks) {
+            neuralNetwork.process(input, output);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public float[] separateQuantizedNeuralNetworks() {
+        for (QuantizedNeuralNetwork neuralNetwork : quantizedNeuralNetworks) {
+            neuralNetwork.process(input, output);
+        }
+        return output;
+    }
+
+    @Benchmark
+    public float[] batchNeuralNetwork() {
+        batchNeuralNetwork.process(input, batchOutput);
+        return batchOutput;
+    }
+}
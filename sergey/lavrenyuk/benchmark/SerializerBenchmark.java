@@ -0,0 +1,80 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+    private WeightMatrix weightMatrix;
+    private ScoredWeightMatrix scoredWeightMatrix;
+    // serialized matrix in the native byte order, as read from a memory mapped file with the header
+    private ByteBuffer nativeOrderWeightMatrix;
+
+    @Setup
+    public void setUp() {
+        weightMatrix = new WeightMatrixGenerator().generateRandom();
+        scoredWeightMatrix = new ScoredWeightMatrix(new Score(0.73f, 12.5f), weightMatrix);
+        nativeOrderWeightMatrix = ByteBuffer.allocateDirect(WeightMatrix.SIZE_IN_BYTES).order(ByteOrder.nativeOrder());
+        nativeOrderWeightMatrix.put(Serializer.serializeWeightMatrix(weightMatrix, ByteOrder.nativeOrder()));
+    }
+
+    @Benchmark
+    public WeightMatrix weightMatrixRoundTrip() {
+        return Serializer.deserializeWeightMatrix(Serializer.serializeWeightMatrix(weightMatrix));
+    }
+
+    @Benchmark
+    public ScoredWeightMatrix scoredWeightMatrixRoundTrip() {
+        return Serializer.deserializeScoredWeightMatrix(Serializer.serializeScoredWeightMatrix(scoredWeightMatrix));
+    }
+
+    @Benchmark
+    public WeightMatrix weightMatrixRoundTripNativeOrder() {
+        return Serializer.deserializeWeightMatrix(
+                ByteBuffer.wrap(Serializer.serializeWeightMatrix(weightMatrix, ByteOrder.nativeOrder())).order(ByteOrder.nativeOrder()));
+    }
+
+    @Benchmark
+    public WeightMatrix weightMatrixFromNativeOrderDirectBuffer() {
+        nativeOrderWeightMatrix.clear();
+        return Serializer.deserializeWeightMatrix(nativeOrderWeightMatrix);
+    }
+
+    // float by float conversion, as the serializer did before the bulk transfer, to compare with
+    @Benchmark
+    public WeightMatrix weightMatrixRoundTripPerFloat() {
+        ByteBuffer out = ByteBuffer.wrap(new byte[WeightMatrix.SIZE_IN_BYTES]);
+        for (float weight : weightMatrix.getWeights()) {
+            out.putFloat(weight);
+        }
+        ByteBuffer in = ByteBuffer.wrap(out.array());
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = in.getFloat();
+        }
+        return new WeightMatrix(weights);
+    }
+}
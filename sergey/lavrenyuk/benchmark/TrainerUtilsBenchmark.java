@@ -0,0 +1,69 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import sergey.lavrenyuk.io.Writer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.training.utils.ReaderFromIterator;
+import sergey.lavrenyuk.nn.training.utils.TrainerUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Breeding of the next generation from survivors, with the default training parameters from config.properties.
+ * Files are replaced by in memory reader and writer, so only crossingover, mutation and random generation are measured.
+ * One operation is the whole generation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainerUtilsBenchmark {
+
+    private static final int SURVIVORS = 100;
+    private static final int CROSSINGOVER_INDIVIDUALS = 0;
+    private static final int MUTATED_COPIES = 149;
+    private static final int MUTATION_PERCENTAGE = 5;
+    private static final int POPULATION = 15_000;
+
+    private final List<WeightMatrix> survivors = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        WeightMatrixGenerator generator = new WeightMatrixGenerator();
+        for (int i = 0; i < SURVIVORS; i++) {
+            survivors.add(generator.generateRandom());
+        }
+    }
+
+    @Benchmark
+    public void processSurvivorsToNextGeneration(Blackhole blackhole) throws IOException {
+        Writer<WeightMatrix> nextGenerationWriter = new Writer<WeightMatrix>() {
+
+            @Override
+            public void write(WeightMatrix data) {
+                blackhole.consume(data);
+            }
+
+            @Override
+            public void close() { }
+        };
+        TrainerUtils.processSurvivorsToNextGeneration(new ReaderFromIterator<>(survivors.iterator()), nextGenerationWriter,
+                () -> 1, CROSSINGOVER_INDIVIDUALS, MUTATED_COPIES, MUTATION_PERCENTAGE, POPULATION);
+    }
+}
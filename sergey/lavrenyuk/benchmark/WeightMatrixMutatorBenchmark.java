@@ -0,0 +1,47 @@
+package sergey.lavrenyuk.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.training.utils.WeightMatrixMutator;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WeightMatrixMutatorBenchmark {
+
+    private WeightMatrixMutator mutator;
+    private WeightMatrixGenerator generator;
+    private WeightMatrix weightMatrix;
+
+    @Setup
+    public void setUp() {
+        mutator = new WeightMatrixMutator(10, 1);
+        generator = new WeightMatrixGenerator(1);
+        weightMatrix = generator.generateRandom();
+    }
+
+    @Benchmark
+    public WeightMatrix mutate() {
+        return mutator.mutate(weightMatrix);
+    }
+
+    @Benchmark
+    public WeightMatrix generateRandom() {
+        return generator.generateRandom();
+    }
+}
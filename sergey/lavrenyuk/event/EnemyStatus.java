@@ -1,14 +1,24 @@
 package sergey.lavrenyuk.event;
 
+/**
+ * Status of the scanned enemy. It is mutable, so the same instance can be updated each turn without allocating a new one,
+ * see {@link TurnStarted#reusable()}.
+ */
 public class EnemyStatus {
 
-    private final double energy;
-    private final double velocity;
-    private final double headingRadians;
-    private final double bearingRadians;
-    private final double distance;
+    private double energy;
+    private double velocity;
+    private double headingRadians;
+    private double bearingRadians;
+    private double distance;
+
+    public EnemyStatus() {}
 
     public EnemyStatus(double energy, double velocity, double headingRadians, double bearingRadians, double distance) {
+        update(energy, velocity, headingRadians, bearingRadians, distance);
+    }
+
+    public void update(double energy, double velocity, double headingRadians, double bearingRadians, double distance) {
         this.energy = energy;
         this.velocity = velocity;
         this.headingRadians = headingRadians;
@@ -15,7 +15,17 @@ public class PerceptronEvents {
     }
 
     public static TurnStarted newTurnStartedEvent(RobotStatus robotStatus, List<ScannedRobotEvent> scannedRobotEvents) {
-        return new TurnStarted(getPerceptronStatus(robotStatus), getEnemyStatus(scannedRobotEvents));
+        return updateTurnStartedEvent(TurnStarted.reusable(), robotStatus, scannedRobotEvents);
+    }
+
+    /**
+     * Updates the provided event in place, doesn't allocate anything.
+     */
+    public static TurnStarted updateTurnStartedEvent(TurnStarted event, RobotStatus robotStatus,
+                                                     List<ScannedRobotEvent> scannedRobotEvents) {
+        updatePerceptronStatus(event.getPerceptronStatus(), robotStatus);
+        event.setEnemyScanned(updateEnemyStatus(event.getEnemyStatusHolder(), scannedRobotEvents));
+        return event;
     }
 
     public static RoundEnded newRoundEndedEvent(int enemies, double perceptronEnergy) {
@@ -26,8 +36,8 @@ public class PerceptronEvents {
         return new BattleEnded();
     }
 
-    private static PerceptronStatus getPerceptronStatus(RobotStatus status) {
-        return new PerceptronStatus(
+    private static void updatePerceptronStatus(PerceptronStatus perceptronStatus, RobotStatus status) {
+        perceptronStatus.update(
                 status.getEnergy(),
                 status.getX(),
                 status.getY(),
@@ -39,17 +49,19 @@ public class PerceptronEvents {
         );
     }
 
-    private static EnemyStatus getEnemyStatus(List<ScannedRobotEvent> scannedRobotEvents) {
+    // returns false if no enemy was scanned
+    private static boolean updateEnemyStatus(EnemyStatus enemyStatus, List<ScannedRobotEvent> scannedRobotEvents) {
         if (scannedRobotEvents.isEmpty()) {
-            return null;
+            return false;
         }
         // expecting only 1 scanned robot, this robot was designed for 1 to 1 battles
         ScannedRobotEvent scannedRobotEvent = scannedRobotEvents.get(0);
-        return new EnemyStatus(
+        enemyStatus.update(
                 scannedRobotEvent.getEnergy(),
                 scannedRobotEvent.getVelocity(),
                 scannedRobotEvent.getHeadingRadians(),
                 scannedRobotEvent.getBearingRadians(),
                 scannedRobotEvent.getDistance());
+        return true;
     }
 }
@@ -1,18 +1,29 @@
 package sergey.lavrenyuk.event;
 
+/**
+ * Status of the Perceptron at the beginning of a turn. It is mutable, so the same instance can be updated each turn
+ * without allocating a new one, see {@link TurnStarted#reusable()}.
+ */
 public class PerceptronStatus {
 
-    private final double energy;
-    private final double x;
-    private final double y;
-    private final double bodyHeadingRadians;
-    private final double gunHeadingRadians;
-    private final double radarHeadingRadians;
-    private final double velocity;
-    private final double gunHeat;
+    private double energy;
+    private double x;
+    private double y;
+    private double bodyHeadingRadians;
+    private double gunHeadingRadians;
+    private double radarHeadingRadians;
+    private double velocity;
+    private double gunHeat;
+
+    public PerceptronStatus() {}
 
     public PerceptronStatus(double energy, double x, double y, double bodyHeadingRadians, double gunHeadingRadians,
                             double radarHeadingRadians, double velocity, double gunHeat) {
+        update(energy, x, y, bodyHeadingRadians, gunHeadingRadians, radarHeadingRadians, velocity, gunHeat);
+    }
+
+    public void update(double energy, double x, double y, double bodyHeadingRadians, double gunHeadingRadians,
+                       double radarHeadingRadians, double velocity, double gunHeat) {
         this.energy = energy;
         this.x = x;
         this.y = y;
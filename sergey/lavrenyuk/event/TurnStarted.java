@@ -2,14 +2,27 @@ package sergey.lavrenyuk.event;
 
 import java.util.Optional;
 
+/**
+ * Issued each turn. The event may be reused by the robot from turn to turn to not allocate any objects on the robot's thread,
+ * thus modules must not keep references to the event or its statuses after the event is dispatched.
+ */
 public class TurnStarted implements PerceptronEvent {
 
     private final PerceptronStatus perceptronStatus;
     private final EnemyStatus enemyStatus;
+    private boolean enemyScanned;
 
     public TurnStarted(PerceptronStatus perceptronStatus, EnemyStatus enemyStatus) {
         this.perceptronStatus = perceptronStatus;
-        this.enemyStatus = enemyStatus;
+        this.enemyStatus = (enemyStatus != null) ? enemyStatus : new EnemyStatus();
+        this.enemyScanned = (enemyStatus != null);
+    }
+
+    /**
+     * Creates an event to be updated in place each turn, see {@link PerceptronStatus#update} and {@link EnemyStatus#update}.
+     */
+    public static TurnStarted reusable() {
+        return new TurnStarted(new PerceptronStatus(), null);
     }
 
     public PerceptronStatus getPerceptronStatus() {
@@ -17,6 +30,24 @@ public class TurnStarted implements PerceptronEvent {
     }
 
     public Optional<EnemyStatus> getEnemyStatus() {
-        return Optional.ofNullable(enemyStatus);
+        return Optional.ofNullable(getEnemyStatusOrNull());
+    }
+
+    /**
+     * Same as {@link #getEnemyStatus()}, but doesn't allocate an {@link Optional}. Returns null if no enemy was scanned.
+     */
+    public EnemyStatus getEnemyStatusOrNull() {
+        return enemyScanned ? enemyStatus : null;
+    }
+
+    /**
+     * Returns the enemy status to be updated in place, regardless of the enemy was scanned or not.
+     */
+    public EnemyStatus getEnemyStatusHolder() {
+        return enemyStatus;
+    }
+
+    public void setEnemyScanned(boolean enemyScanned) {
+        this.enemyScanned = enemyScanned;
     }
 }
@@ -7,19 +7,34 @@ public class GeometryUtils {
 
     private GeometryUtils() {}
 
+    private static final double TWO_PI = 2 * Math.PI;
+
     public static Data2D calculateCoordinates(double startX, double startY, double angleRadians, double distance) {
         return new Data2D(
-                startX + Math.sin(angleRadians) * distance,
-                startY + Math.cos(angleRadians) * distance);
+                calculateX(startX, angleRadians, distance),
+                calculateY(startY, angleRadians, distance));
+    }
+
+    // scalar versions of the methods returning Data2D are used on the robot thread, where nothing should be allocated
+
+    public static double calculateX(double startX, double angleRadians, double distance) {
+        return startX + Math.sin(angleRadians) * distance;
+    }
+
+    public static double calculateY(double startY, double angleRadians, double distance) {
+        return startY + Math.cos(angleRadians) * distance;
     }
 
     public static Data2D toNormalizedCenterBasedCoordinates(double bottomLeftBasedX, double bottomLeftBasedY,
                                                             double width, double height) {
-        double halfWidth = width / 2;
-        double halfHeight = height / 2;
         return new Data2D(
-                (bottomLeftBasedX - halfWidth) / halfWidth,
-                (bottomLeftBasedY - halfHeight) / halfHeight);
+                toNormalizedCenterBasedCoordinate(bottomLeftBasedX, width),
+                toNormalizedCenterBasedCoordinate(bottomLeftBasedY, height));
+    }
+
+    public static double toNormalizedCenterBasedCoordinate(double bottomLeftBasedCoord, double axisLength) {
+        double halfAxisLength = axisLength / 2;
+        return (bottomLeftBasedCoord - halfAxisLength) / halfAxisLength;
     }
 
     public static double toBottomLeftBasedCoordinate(double normalizedCenterBasedCoord, double axisLength, double borderMargin) {
@@ -33,12 +48,37 @@ public class GeometryUtils {
     }
 
     public static Data2D toNormalizedMovement(double headingRadians, double velocity, double maxVelocity) {
-        // normal trigonometry is counterclockwise (the angle increases to the left)
-        // but Robocode trigonometry is clockwise, thus sin and cos functions and replaced with each other
-        double normalizedVelocity = velocity / maxVelocity;
         return new Data2D(
-                Math.sin(headingRadians) * normalizedVelocity,
-                Math.cos(headingRadians) * normalizedVelocity
+                toNormalizedMovementX(headingRadians, velocity, maxVelocity),
+                toNormalizedMovementY(headingRadians, velocity, maxVelocity)
         );
     }
+
+    public static double toNormalizedMovementX(double headingRadians, double velocity, double maxVelocity) {
+        // normal trigonometry is counterclockwise (the angle increases to the left)
+        // but Robocode trigonometry is clockwise, thus sin and cos functions and replaced with each other
+        return Math.sin(headingRadians) * (velocity / maxVelocity);
+    }
+
+    public static double toNormalizedMovementY(double headingRadians, double velocity, double maxVelocity) {
+        return Math.cos(headingRadians) * (velocity / maxVelocity);
+    }
+
+    /**
+     * Same as {@link robocode.util.Utils#normalRelativeAngle(double)}, normalizes an angle to the [-PI, PI) range.
+     */
+    public static double normalRelativeAngle(double angleRadians) {
+        double angle = angleRadians % TWO_PI;
+        return angle >= 0
+                ? (angle < Math.PI) ? angle : angle - TWO_PI
+                : (angle >= -Math.PI) ? angle : angle + TWO_PI;
+    }
+
+    /**
+     * Same as {@link robocode.util.Utils#normalAbsoluteAngle(double)}, normalizes an angle to the [0, 2PI) range.
+     */
+    public static double normalAbsoluteAngle(double angleRadians) {
+        double angle = angleRadians % TWO_PI;
+        return (angle >= 0) ? angle : angle + TWO_PI;
+    }
 }
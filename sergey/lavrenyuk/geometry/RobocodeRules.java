@@ -0,0 +1,109 @@
+package sergey.lavrenyuk.geometry;
+
+/**
+ * Copies of the {@link robocode.Rules} constants and formulas used by the robot's logic and by the battle simulator.
+ * Having them here keeps the logic independent of robocode.jar, so it can be run outside of Robocode, e.g. in benchmarks.
+ */
+public class RobocodeRules {
+
+    private RobocodeRules() {}
+
+    /**
+     * The maximum velocity of a robot, pixels per turn
+     */
+    public static final double MAX_VELOCITY = 8.0;
+
+    /**
+     * The maximum bullet power
+     */
+    public static final double MAX_BULLET_POWER = 3.0;
+
+    /**
+     * The turning rate of the gun measured in degrees, which is 20 degrees per turn
+     */
+    public static final double GUN_TURN_RATE = 20.0;
+
+    /**
+     * The turning rate of the gun measured in radians
+     */
+    public static final double GUN_TURN_RATE_RADIANS = Math.toRadians(GUN_TURN_RATE);
+
+    /**
+     * The acceleration of a robot, pixels per turn per turn
+     */
+    public static final double ACCELERATION = 1.0;
+
+    /**
+     * The deceleration of a robot, pixels per turn per turn
+     */
+    public static final double DECELERATION = 2.0;
+
+    /**
+     * The maximum turning rate of the robot's body measured in radians, which is 10 degrees per turn.
+     * The actual rate depends on the velocity, see {@link #getTurnRateRadians(double)}
+     */
+    public static final double MAX_TURN_RATE_RADIANS = Math.toRadians(10.0);
+
+    /**
+     * The turning rate of the radar measured in radians, which is 45 degrees per turn
+     */
+    public static final double RADAR_TURN_RATE_RADIANS = Math.toRadians(45.0);
+
+    /**
+     * The radius of the radar's scan beam, pixels
+     */
+    public static final double RADAR_SCAN_RADIUS = 1200.0;
+
+    /**
+     * The minimum bullet power, bullets with a lower power are not fired
+     */
+    public static final double MIN_BULLET_POWER = 0.1;
+
+    /**
+     * The amount of damage taken by both robots when they hit each other
+     */
+    public static final double ROBOT_HIT_DAMAGE = 0.6;
+
+    /**
+     * Width and height of a robot, pixels
+     */
+    public static final double ROBOT_SIZE = 36.0;
+
+    /**
+     * The energy each robot starts a round with
+     */
+    public static final double INITIAL_ENERGY = 100.0;
+
+    /**
+     * The gun heat each robot starts a round with
+     */
+    public static final double INITIAL_GUN_HEAT = 3.0;
+
+    public static double getTurnRateRadians(double velocity) {
+        return (0.4 + 0.6 * (1 - Math.abs(velocity) / MAX_VELOCITY)) * MAX_TURN_RATE_RADIANS;
+    }
+
+    public static double getWallHitDamage(double velocity) {
+        return Math.max(Math.abs(velocity) / 2 - 1, 0);
+    }
+
+    public static double getBulletSpeed(double bulletPower) {
+        return 20 - 3 * bulletPower;
+    }
+
+    public static double getBulletDamage(double bulletPower) {
+        double damage = 4 * bulletPower;
+        if (bulletPower > 1) {
+            damage += 2 * (bulletPower - 1);
+        }
+        return damage;
+    }
+
+    public static double getBulletHitBonus(double bulletPower) {
+        return 3 * bulletPower;
+    }
+
+    public static double getGunHeat(double bulletPower) {
+        return 1 + bulletPower / 5;
+    }
+}
@@ -0,0 +1,154 @@
+package sergey.lavrenyuk.io;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses checksum blocks, see {@link FileHeader.Compression}. A block is compressed as a whole,
+ * so blocks are read without reading the previous ones, items of a block are XOR-ed only with the items of the same block.
+ *
+ * Deflater and inflater hold native memory, which is released by {@link #end()}.
+ */
+class BlockCodec {
+
+    // float bytes rarely repeat as strings, so only the entropy coding of deflate is used,
+    // which is a few times faster and doesn't compress weight matrices any worse, see CompressionBenchmark
+    private static final int COMPRESSION_LEVEL = Deflater.BEST_SPEED;
+
+    private final FileHeader.Compression compression;
+    private final int itemSize;
+
+    private Deflater deflater;
+    private Inflater inflater;
+    private byte[] transformed = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int compressedLength = 0;
+
+    BlockCodec(FileHeader.Compression compression, int itemSize) {
+        if (compression == FileHeader.Compression.NONE) {
+            throw new IllegalArgumentException("Blocks without compression don't need a codec");
+        }
+        this.compression = compression;
+        this.itemSize = itemSize;
+    }
+
+    /**
+     * Compresses the block, the returned array is reused by the next call.
+     *
+     * @return compressed bytes, which occupy the beginning of the array, see {@link #compressedLength()}
+     */
+    byte[] compress(byte[] block, int length) {
+        if (deflater == null) {
+            deflater = new Deflater(COMPRESSION_LEVEL, true);
+            deflater.setStrategy(Deflater.HUFFMAN_ONLY);
+        }
+        byte[] input = block;
+        if (compression == FileHeader.Compression.XOR_DEFLATE) {
+            transformed = ensureCapacity(transformed, length);
+            xorWithPreviousItems(block, length, transformed);
+            input = transformed;
+        }
+
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        // deflate may expand incompressible data a little
+        compressed = ensureCapacity(compressed, length + length / 100 + 64);
+        compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        return compressed;
+    }
+
+    /**
+     * Length of the block compressed by the last {@link #compress(byte[], int)} call.
+     */
+    int compressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * Decompresses the block, which starts at the offset of the first array, to the beginning of the second array.
+     *
+     * @return false if the compressed bytes don't form a block of the given length
+     */
+    boolean decompress(byte[] compressedBlock, int offset, int compressedLength, byte[] block, int length) {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        byte[] output = block;
+        if (compression == FileHeader.Compression.XOR_DEFLATE) {
+            transformed = ensureCapacity(transformed, length);
+            output = transformed;
+        }
+
+        inflater.reset();
+        inflater.setInput(compressedBlock, offset, compressedLength);
+        int decompressedLength = 0;
+        try {
+            while (decompressedLength < length && !inflater.finished()) {
+                int bytes = inflater.inflate(output, decompressedLength, length - decompressedLength);
+                if (bytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    return false;
+                }
+                decompressedLength += bytes;
+            }
+        } catch (DataFormatException ex) {
+            return false;
+        }
+        if (decompressedLength != length || !inflater.finished()) {
+            return false;
+        }
+
+        if (compression == FileHeader.Compression.XOR_DEFLATE) {
+            restorePreviousItems(transformed, length, block);
+        }
+        return true;
+    }
+
+    FileHeader.Compression getCompression() {
+        return compression;
+    }
+
+    void end() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+
+    // XOR with the previous item and grouping of the bytes by their position in a 4 byte value
+    private void xorWithPreviousItems(byte[] block, int length, byte[] result) {
+        int resultIndex = 0;
+        for (int byteOfValue = 0; byteOfValue < Integer.BYTES; byteOfValue++) {
+            for (int i = byteOfValue; i < length; i += Integer.BYTES) {
+                result[resultIndex++] = (i < itemSize) ? block[i] : (byte) (block[i] ^ block[i - itemSize]);
+            }
+        }
+    }
+
+    private void restorePreviousItems(byte[] transformed, int length, byte[] block) {
+        int transformedIndex = 0;
+        for (int byteOfValue = 0; byteOfValue < Integer.BYTES; byteOfValue++) {
+            for (int i = byteOfValue; i < length; i += Integer.BYTES) {
+                block[i] = transformed[transformedIndex++];
+            }
+        }
+        // previous item is restored before the next one
+        for (int i = itemSize; i < length; i++) {
+            block[i] ^= block[i - itemSize];
+        }
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int length) {
+        return (array.length >= length) ? array : new byte[length];
+    }
+}
@@ -0,0 +1,95 @@
+package sergey.lavrenyuk.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Groups items into blocks of the same number of items, each block is followed by CRC32 of its bytes,
+ * see {@link FileLayout}. A block is written to the underlying stream once it's complete, the last incomplete block
+ * is written when the stream is closed, so {@link #flush()} doesn't write the items of the current block.
+ *
+ * Blocks of a compressed file are compressed once they're complete, so the stream never keeps more than a block in memory.
+ *
+ * Each {@link #write(byte[])} call must write exactly one item.
+ */
+public class ChecksummedOutputStream extends FilterOutputStream {
+
+    private final int itemSize;
+    private final byte[] block;
+    private final CRC32 crc = new CRC32();
+    // null if the blocks are not compressed
+    private final BlockCodec codec;
+
+    private int blockLength = 0;
+
+    public ChecksummedOutputStream(OutputStream out, int itemSize, int itemsPerBlock) {
+        this(out, itemSize, itemsPerBlock, FileHeader.Compression.NONE);
+    }
+
+    public ChecksummedOutputStream(OutputStream out, int itemSize, int itemsPerBlock, FileHeader.Compression compression) {
+        super(out);
+        this.itemSize = itemSize;
+        this.block = new byte[itemSize * itemsPerBlock];
+        this.codec = (compression == FileHeader.Compression.NONE) ? null : new BlockCodec(compression, itemSize);
+    }
+
+    @Override
+    public void write(int b) {
+        throw new UnsupportedOperationException("Only whole items can be written");
+    }
+
+    @Override
+    public void write(byte[] item, int offset, int length) throws IOException {
+        if (length != itemSize) {
+            throw new IllegalArgumentException(String.format("Expected %d bytes, but received %d", itemSize, length));
+        }
+        System.arraycopy(item, offset, block, blockLength, length);
+        blockLength += length;
+        if (blockLength == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (blockLength > 0) {
+                writeBlock();
+            }
+        } finally {
+            if (codec != null) {
+                codec.end();
+            }
+            super.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        crc.reset();
+        if (codec == null) {
+            crc.update(block, 0, blockLength);
+            out.write(block, 0, blockLength);
+        } else {
+            // compressed block starts with the number of items and the compressed length, both are checksummed as well
+            byte[] compressed = codec.compress(block, blockLength);
+            byte[] lengths = ByteBuffer.allocate(2 * Integer.BYTES)
+                    .putInt(blockLength / itemSize)
+                    .putInt(codec.compressedLength())
+                    .array();
+            crc.update(lengths);
+            crc.update(compressed, 0, codec.compressedLength());
+            out.write(lengths);
+            out.write(compressed, 0, codec.compressedLength());
+        }
+        out.write(toBytes((int) crc.getValue()));
+        blockLength = 0;
+    }
+
+    private static byte[] toBytes(int value) {
+        return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+}
@@ -23,14 +23,31 @@ public class Config {
 
     private static Properties PROPERTIES = loadProperties(CONFIG_PROPERTIES_FILE_NAME);
 
+    // e.g. values given on the command line, they take precedence over the file and are kept on refresh
+    private static final Properties OVERRIDES = new Properties();
+
     public static void refresh() {
         PROPERTIES = loadProperties(CONFIG_PROPERTIES_FILE_NAME);
     }
 
+    /**
+     * Replaces the value of an existing property until the end of the process.
+     */
+    public static void override(String key, String value) {
+        if (!PROPERTIES.containsKey(key)) {
+            throw new IllegalArgumentException(String.format("Property '%s' not found", key));
+        }
+        OVERRIDES.setProperty(key, value);
+    }
+
     public static String getRobotMode() {
         return getString("robot.mode");
     }
 
+    public static String getNeuralNetworkEnemy() {
+        return getString("neuralNetwork.enemy");
+    }
+
     public static String getNeuralNetworkEnemyFileName() {
         return getString("neuralNetwork.enemyFileName");
     }
@@ -47,10 +64,46 @@ public class Config {
         return getString("neuralNetwork.scoredWeightMatrixFilePattern");
     }
 
+    public static Long getNeuralNetworkSeed() {
+        return getLong("neuralNetwork.seed");
+    }
+
+    public static Integer getNeuralNetworkItemsPerChecksumBlock() {
+        return getInteger("neuralNetwork.itemsPerChecksumBlock");
+    }
+
+    public static String getNeuralNetworkCompression() {
+        return getString("neuralNetwork.compression");
+    }
+
     public static Integer getScoringRoundsPerMatrix() {
         return getInteger("scoring.roundsPerMatrix");
     }
 
+    public static Integer getScoringThreads() {
+        return getInteger("scoring.threads");
+    }
+
+    public static Integer getScoringPrefetchQueueSize() {
+        return getInteger("scoring.prefetchQueueSize");
+    }
+
+    public static Integer getScoringWriteBehindQueueSize() {
+        return getInteger("scoring.writeBehindQueueSize");
+    }
+
+    public static Double getScoringEarlyStoppingZScore() {
+        return getDouble("scoring.earlyStoppingZScore");
+    }
+
+    public static String getScoringCacheMode() {
+        return getString("scoring.cacheMode");
+    }
+
+    public static String getScoringCacheFile() {
+        return getString("scoring.cacheFile");
+    }
+
     public static Integer getTrainingMatricesPerOutputFile() {
         return getInteger("training.matricesPerOutputFile");
     }
@@ -83,6 +136,58 @@ public class Config {
         return getInteger("training.mutationPercentage");
     }
 
+    public static Boolean getTrainingNativeByteOrder() {
+        return getBoolean("training.nativeByteOrder");
+    }
+
+    public static Boolean getTrainingPartitionManifests() {
+        return getBoolean("training.partitionManifests");
+    }
+
+    public static Integer getTrainingBreedingThreads() {
+        return getInteger("training.breedingThreads");
+    }
+
+    public static Integer getTrainingPipelineGenerations() {
+        return getInteger("training.pipelineGenerations");
+    }
+
+    public static Double getTrainingPipelineTargetWinRate() {
+        return getDouble("training.pipelineTargetWinRate");
+    }
+
+    public static String getTrainingPipelineScoring() {
+        return getString("training.pipelineScoring");
+    }
+
+    public static Integer getTrainingPipelinePollSeconds() {
+        return getInteger("training.pipelinePollSeconds");
+    }
+
+    public static String getTrainingPipelineCheckpointFile() {
+        return getString("training.pipelineCheckpointFile");
+    }
+
+    public static String getTrainingPipelineReportFile() {
+        return getString("training.pipelineReportFile");
+    }
+
+    public static Integer getTrainingIslands() {
+        return getInteger("training.islands");
+    }
+
+    public static Integer getTrainingIsland() {
+        return getInteger("training.island");
+    }
+
+    public static Integer getTrainingIslandMigrationInterval() {
+        return getInteger("training.islandMigrationInterval");
+    }
+
+    public static Integer getTrainingIslandMigrants() {
+        return getInteger("training.islandMigrants");
+    }
+
     private static String getString(String key) {
         return getProperty(PROPERTIES, key, s -> s);
     }
@@ -91,8 +196,20 @@ public class Config {
         return getProperty(PROPERTIES, key, Integer::valueOf);
     }
 
+    private static long getLong(String key) {
+        return getProperty(PROPERTIES, key, Long::valueOf);
+    }
+
+    private static boolean getBoolean(String key) {
+        return getProperty(PROPERTIES, key, Boolean::valueOf);
+    }
+
+    private static double getDouble(String key) {
+        return getProperty(PROPERTIES, key, Double::valueOf);
+    }
+
     private static  <T> T getProperty(Properties properties, String key, Function<String, T> parseFunction) {
-        return Optional.ofNullable(properties.getProperty(key))
+        return Optional.ofNullable(OVERRIDES.getProperty(key, properties.getProperty(key)))
                 .map(parseFunction)
                 .orElseThrow(() -> new AssertionError(String.format("Property '%s' not found", key)));
     }
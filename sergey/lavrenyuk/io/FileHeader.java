@@ -0,0 +1,314 @@
+package sergey.lavrenyuk.io;
+
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Optional header of data files, which describes the items in the file. Files without the header are big-endian,
+ * that is the original format and all the existing files are in it.
+ *
+ * Header starts with a magic number, which is a NaN float value, so it can not be confused with the first item of a file
+ * without the header: every item starts either with a weight or with a win rate, which are never NaN. The magic number
+ * is followed by the format version, the compression and the byte order flag, the version is in the higher 16 bits,
+ * the compression in the next 8 bits. All the header values are big-endian ints.
+ *
+ * Version 1 header consists of the magic number and the byte order flag only. Version 2 header also has the weight
+ * matrix topology, the item size, the number of items in a checksum block (0 if the file has no checksums), the number of
+ * items in the file ({@link #UNKNOWN_ITEMS} if the file was not closed properly or the writer can't update the header)
+ * and CRC32 of the header itself. See {@link FileLayout} for the way checksummed and compressed items are stored,
+ * only checksummed files can be compressed.
+ *
+ * Items of a file with the header are written in its byte order and read back by byte buffer deserialization in the same
+ * order, e.g. by {@link Serializer}. {@link #toBigEndian(byte[])} converts raw bytes of items consisting of 4 byte values
+ * only, i.e. floats and ints, quantized weight matrices of a little-endian file can't be converted that way.
+ */
+public class FileHeader {
+
+    public static final int MAGIC = 0x7FC05043;
+    public static final int VERSION = 2;
+    public static final int SIZE_IN_BYTES = 8 * Integer.BYTES;
+    public static final int UNKNOWN_ITEMS = -1;
+
+    private static final int VERSION_1_SIZE_IN_BYTES = 2 * Integer.BYTES;
+    private static final int CHECKSUM_OFFSET = SIZE_IN_BYTES - Integer.BYTES;
+
+    private static final int BIG_ENDIAN_FLAG = 0;
+    private static final int LITTLE_ENDIAN_FLAG = 1;
+
+    /**
+     * Files without the header.
+     */
+    public static final FileHeader NONE = new FileHeader(ByteOrder.BIG_ENDIAN, 0, Compression.NONE, 0, 0, UNKNOWN_ITEMS);
+
+    private final ByteOrder byteOrder;
+    private final int version;
+    private final Compression compression;
+    private final int itemSize;
+    private final int itemsPerBlock;
+    private final int items;
+
+    private FileHeader(ByteOrder byteOrder, int version, Compression compression, int itemSize, int itemsPerBlock,
+                       int items) {
+        this.byteOrder = byteOrder;
+        this.version = version;
+        this.compression = compression;
+        this.itemSize = itemSize;
+        this.itemsPerBlock = itemsPerBlock;
+        this.items = items;
+    }
+
+    /**
+     * Header of a new file.
+     *
+     * @param itemsPerBlock number of items in a checksum block, 0 means the file has no checksums
+     */
+    public static FileHeader of(ByteOrder byteOrder, int itemSize, int itemsPerBlock) {
+        return of(byteOrder, itemSize, itemsPerBlock, Compression.NONE);
+    }
+
+    /**
+     * Header of a new file, which blocks are compressed.
+     *
+     * @param itemsPerBlock number of items in a checksum block, must be positive for a compressed file
+     */
+    public static FileHeader of(ByteOrder byteOrder, int itemSize, int itemsPerBlock, Compression compression) {
+        if (itemSize <= 0) {
+            throw new IllegalArgumentException(String.format("Item size must be positive, but was %d", itemSize));
+        }
+        if (itemsPerBlock < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Number of items per checksum block must not be negative, but was %d", itemsPerBlock));
+        }
+        if (compression != Compression.NONE && itemsPerBlock == 0) {
+            throw new IllegalArgumentException("Only files with checksum blocks can be compressed");
+        }
+        return new FileHeader(byteOrder, VERSION, compression, itemSize, itemsPerBlock, UNKNOWN_ITEMS);
+    }
+
+    /**
+     * Reads the header of an existing file, returns {@link #NONE} if the file doesn't have it.
+     */
+    public static FileHeader read(File file) throws IOException {
+        byte[] bytes = new byte[(int) Math.min(file.length(), SIZE_IN_BYTES)];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            in.readFully(bytes);
+        }
+        return read(ByteBuffer.wrap(bytes), file);
+    }
+
+    /**
+     * Reads the header from the beginning of a memory mapped file, doesn't change the buffer's position.
+     */
+    public static FileHeader read(ByteBuffer byteBuffer, File file) {
+        ByteBuffer bigEndian = byteBuffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        int length = Math.min(bigEndian.capacity(), SIZE_IN_BYTES);
+        if (length < VERSION_1_SIZE_IN_BYTES || bigEndian.getInt(0) != MAGIC) {
+            return NONE;
+        }
+
+        int flags = bigEndian.getInt(Integer.BYTES);
+        // version 1 files have only the byte order flag
+        int version = Math.max(1, flags >>> 16);
+        ByteOrder byteOrder = toByteOrder(flags & 0xFF, file);
+        if (version == 1) {
+            if ((flags & 0xFF00) != 0) {
+                throw new IllegalArgumentException(String.format("File %s has unsupported byte order flag %d",
+                        file.getAbsolutePath(), flags & 0xFFFF));
+            }
+            return new FileHeader(byteOrder, version, Compression.NONE, 0, 0, UNKNOWN_ITEMS);
+        }
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("File %s has unsupported format version %d",
+                    file.getAbsolutePath(), version));
+        }
+        if (length < SIZE_IN_BYTES || bigEndian.getInt(CHECKSUM_OFFSET) != checksum(bigEndian)) {
+            throw new IllegalArgumentException(String.format("File %s has a damaged header", file.getAbsolutePath()));
+        }
+
+        int inputNeurons = bigEndian.getInt(2 * Integer.BYTES);
+        int hiddenNeurons = bigEndian.getInt(3 * Integer.BYTES);
+        if (inputNeurons != WeightMatrix.INPUT_NEURONS || hiddenNeurons != WeightMatrix.HIDDEN_NEURONS) {
+            throw new IllegalArgumentException(String.format("File %s has weight matrices with %d input and %d hidden " +
+                    "neurons, but %d input and %d hidden neurons are expected", file.getAbsolutePath(), inputNeurons,
+                    hiddenNeurons, WeightMatrix.INPUT_NEURONS, WeightMatrix.HIDDEN_NEURONS));
+        }
+        return new FileHeader(byteOrder, version, toCompression((flags >>> 8) & 0xFF, file),
+                bigEndian.getInt(4 * Integer.BYTES), bigEndian.getInt(5 * Integer.BYTES), bigEndian.getInt(6 * Integer.BYTES));
+    }
+
+    private static Compression toCompression(int compressionFlag, File file) {
+        if (compressionFlag >= Compression.values().length) {
+            throw new IllegalArgumentException(String.format("File %s has unsupported compression %d",
+                    file.getAbsolutePath(), compressionFlag));
+        }
+        return Compression.values()[compressionFlag];
+    }
+
+    private static ByteOrder toByteOrder(int byteOrderFlag, File file) {
+        switch (byteOrderFlag) {
+            case BIG_ENDIAN_FLAG: return ByteOrder.BIG_ENDIAN;
+            case LITTLE_ENDIAN_FLAG: return ByteOrder.LITTLE_ENDIAN;
+            default: throw new IllegalArgumentException(String.format("File %s has unsupported byte order flag %d",
+                    file.getAbsolutePath(), byteOrderFlag));
+        }
+    }
+
+    public void write(OutputStream out) throws IOException {
+        if (version == 0) {
+            return;
+        }
+        out.write(toBytes(), 0, getSize());
+    }
+
+    /**
+     * Writes the header to a new file and returns the stream to write the items to, which adds the checksums
+     * and compresses the blocks if the header requires it.
+     */
+    public OutputStream start(OutputStream out) throws IOException {
+        write(out);
+        return isChecksummed()
+                ? new ChecksummedOutputStream(out, itemSize, itemsPerBlock, compression)
+                : out;
+    }
+
+    /**
+     * Replaces the header of a completely written file with the one that has the number of items.
+     */
+    public void updateItems(File file, int items) throws IOException {
+        if (version != VERSION) {
+            return;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.write(new FileHeader(byteOrder, version, compression, itemSize, itemsPerBlock, items).toBytes());
+        }
+    }
+
+    private byte[] toBytes() {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(SIZE_IN_BYTES);
+        byteBuffer.putInt(MAGIC);
+        int byteOrderFlag = (byteOrder == ByteOrder.BIG_ENDIAN) ? BIG_ENDIAN_FLAG : LITTLE_ENDIAN_FLAG;
+        byteBuffer.putInt((version == 1) ? byteOrderFlag : (version << 16) | (compression.ordinal() << 8) | byteOrderFlag);
+        byteBuffer.putInt(WeightMatrix.INPUT_NEURONS);
+        byteBuffer.putInt(WeightMatrix.HIDDEN_NEURONS);
+        byteBuffer.putInt(itemSize);
+        byteBuffer.putInt(itemsPerBlock);
+        byteBuffer.putInt(items);
+        byteBuffer.putInt(checksum(byteBuffer));
+        return byteBuffer.array();
+    }
+
+    // checksum of all the header values before the checksum itself
+    private static int checksum(ByteBuffer header) {
+        ByteBuffer values = header.duplicate();
+        values.position(0).limit(CHECKSUM_OFFSET);
+        CRC32 crc = new CRC32();
+        crc.update(values);
+        return (int) crc.getValue();
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    /**
+     * Format version, 0 for files without the header.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Size of the header itself, 0 for files without the header.
+     */
+    public int getSize() {
+        return (version == 0) ? 0 : (version == 1) ? VERSION_1_SIZE_IN_BYTES : SIZE_IN_BYTES;
+    }
+
+    /**
+     * Size of an item, 0 if it's not known, i.e. the file doesn't have version 2 header.
+     */
+    public int getItemSize() {
+        return itemSize;
+    }
+
+    public int getItemsPerBlock() {
+        return itemsPerBlock;
+    }
+
+    public boolean isChecksummed() {
+        return itemsPerBlock > 0;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public boolean isCompressed() {
+        return compression != Compression.NONE;
+    }
+
+    /**
+     * Number of items in the file, {@link #UNKNOWN_ITEMS} if it's not known.
+     */
+    public int getItems() {
+        return items;
+    }
+
+    /**
+     * Converts an item read from the file to the big-endian byte order in place, which is expected by the code working
+     * with raw bytes, e.g. {@link Serializer} methods accepting byte arrays.
+     */
+    public byte[] toBigEndian(byte[] item) {
+        return toBigEndian(item, byteOrder);
+    }
+
+    /**
+     * Converts an item of the specified byte order to the big-endian byte order in place, every 4 bytes are swapped.
+     */
+    public static byte[] toBigEndian(byte[] item, ByteOrder byteOrder) {
+        if (byteOrder == ByteOrder.LITTLE_ENDIAN) {
+            for (int i = 0; i + 3 < item.length; i += 4) {
+                byte b = item[i];
+                item[i] = item[i + 3];
+                item[i + 3] = b;
+                b = item[i + 1];
+                item[i + 1] = item[i + 2];
+                item[i + 2] = b;
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Compression of the checksum blocks, the values are stored to the header by their ordinal numbers, so new values
+     * can only be added to the end.
+     */
+    public enum Compression {
+        // blocks are stored as is
+        NONE,
+        // blocks are compressed with deflate
+        DEFLATE,
+        // each byte of a block is XOR-ed with the same byte of the previous item, so the bytes of similar items,
+        // e.g. mutated copies of the same matrix, become mostly zero, then the bytes are grouped by their position
+        // in a 4 byte value, so sign and exponent bytes of floats go together, and the result is compressed with deflate
+        XOR_DEFLATE;
+
+        public static Compression fromString(String compression) {
+            for (Compression value : values()) {
+                if (value.name().equalsIgnoreCase(compression.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported compression '%s'", compression));
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package sergey.lavrenyuk.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Positions of the items in a data file.
+ *
+ * Items of a file without checksums follow the header one after another. Items of a checksummed file are grouped into
+ * blocks of {@link FileHeader#getItemsPerBlock()} items, each block is followed by big-endian CRC32 of its bytes, the last
+ * block may have less items.
+ *
+ * A file closed properly has the number of items in its header, which is its size, and a block of such a file is verified
+ * when a reader reads it for the first time, see {@link #verify(int, ByteBuffer)}. Items of a damaged block are skipped
+ * by the readers, so less items than the size may be read. All the blocks of other files, i.e. of a file whose writer was
+ * killed or whose length doesn't match its header, are verified once the file is opened. Items of damaged blocks and bytes
+ * at the end of the file which don't form a block, e.g. left by a torn write, are skipped and reported, so the file is read
+ * as if it contained only the items of the valid blocks.
+ *
+ * Each block of a compressed file starts with big-endian number of its items and length of the compressed bytes, which
+ * follow them, the checksum covers all of them. Blocks have different lengths, so the blocks are read one by one to find
+ * their offsets, and items of a block are available only after the whole block is decompressed, see {@link BlockCodec}.
+ * Blocks of a file closed properly are found by their lengths, the compressed bytes are skipped until they are read.
+ *
+ * Not thread safe, verification results are kept by the layout, so each reader has its own layouts.
+ */
+class FileLayout {
+
+    private static final Log log = new Log(FileLayout.class);
+
+    private static final int COMPRESSED_BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final byte UNVERIFIED = 0;
+    private static final byte VALID = 1;
+    private static final byte DAMAGED = 2;
+
+    private final File file;
+    private final FileHeader header;
+    private final int itemSize;
+    private final long size;
+    // offsets of the blocks that can be read, null if the file has no checksums
+    private final long[] blockOffsets;
+    // lengths of the compressed bytes of the blocks that can be read, null if the file is not compressed
+    private final int[] compressedLengths;
+    // null if the file has no checksums
+    private final byte[] blockStates;
+
+    private FileLayout(File file, FileHeader header, int itemSize, long size, long[] blockOffsets, int[] compressedLengths,
+                       byte blockState) {
+        this.file = file;
+        this.header = header;
+        this.itemSize = itemSize;
+        this.size = size;
+        this.blockOffsets = blockOffsets;
+        this.compressedLengths = compressedLengths;
+        this.blockStates = (blockOffsets != null) ? new byte[blockOffsets.length] : null;
+        if (blockStates != null) {
+            Arrays.fill(blockStates, blockState);
+        }
+    }
+
+    static FileLayout of(File file, FileHeader header, int itemSize) throws IOException {
+        FileLayout layout = (header.getItems() != FileHeader.UNKNOWN_ITEMS) ? of(file, header, itemSize, false) : null;
+        return (layout != null) ? layout : of(file, header, itemSize, true);
+    }
+
+    static FileLayout of(ByteBuffer mappedFile, File file, FileHeader header, int itemSize) throws IOException {
+        FileLayout layout = (header.getItems() != FileHeader.UNKNOWN_ITEMS)
+                ? of(mappedFile, file, header, itemSize, false)
+                : null;
+        return (layout != null) ? layout : of(mappedFile, file, header, itemSize, true);
+    }
+
+    private static FileLayout of(File file, FileHeader header, int itemSize, boolean verifyBlocks) throws IOException {
+        if (!header.isChecksummed()) {
+            return of(file, file.length(), header, itemSize, null, verifyBlocks);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.skipBytes(header.getSize());
+            return of(file, file.length(), header, itemSize, new BlockSource() {
+
+                private byte[] bytes = new byte[0];
+
+                @Override
+                public int readInt() throws IOException {
+                    return in.readInt();
+                }
+
+                @Override
+                public void read(int length, CRC32 crc) throws IOException {
+                    if (bytes.length < length) {
+                        bytes = new byte[length];
+                    }
+                    in.readFully(bytes, 0, length);
+                    crc.update(bytes, 0, length);
+                }
+
+                @Override
+                public void skip(int length) throws IOException {
+                    in.skipBytes(length);
+                }
+            }, verifyBlocks);
+        }
+    }
+
+    private static FileLayout of(ByteBuffer mappedFile, File file, FileHeader header, int itemSize, boolean verifyBlocks)
+            throws IOException {
+        if (!header.isChecksummed()) {
+            return of(file, mappedFile.capacity(), header, itemSize, null, verifyBlocks);
+        }
+        // lengths and checksums are big-endian regardless of the file's byte order
+        ByteBuffer blocks = mappedFile.duplicate().order(ByteOrder.BIG_ENDIAN);
+        blocks.position(header.getSize());
+        return of(file, mappedFile.capacity(), header, itemSize, new BlockSource() {
+
+            @Override
+            public int readInt() {
+                return blocks.getInt();
+            }
+
+            @Override
+            public void read(int length, CRC32 crc) {
+                int end = blocks.position() + length;
+                blocks.limit(end);
+                crc.update(blocks);
+                blocks.limit(blocks.capacity());
+            }
+
+            @Override
+            public void skip(int length) {
+                blocks.position(blocks.position() + length);
+            }
+        }, verifyBlocks);
+    }
+
+    // returns null if the blocks are not verified and the file doesn't match its header
+    private static FileLayout of(File file, long fileLength, FileHeader header, int itemSize, BlockSource source,
+                                 boolean verifyBlocks) throws IOException {
+        if (header.getItemSize() != 0 && header.getItemSize() != itemSize) {
+            throw new IllegalArgumentException(String.format("File %s has %d byte items, but %d byte items are expected",
+                    file.getAbsolutePath(), header.getItemSize(), itemSize));
+        }
+        long dataLength = fileLength - header.getSize();
+
+        if (!header.isChecksummed()) {
+            if (dataLength % itemSize != 0) {
+                throw new IllegalArgumentException(String.format("File %s doesn't contain an integer number of input items",
+                        file.getAbsolutePath()));
+            }
+            FileLayout layout = new FileLayout(file, header, itemSize, dataLength / itemSize, null, null, VALID);
+            verifyItems(file, header, layout.size);
+            return layout;
+        }
+        if (header.isCompressed()) {
+            return ofCompressedBlocks(file, fileLength, header, itemSize, source, verifyBlocks);
+        }
+        return verifyBlocks
+                ? ofBlocks(file, dataLength, header, itemSize, source)
+                : ofUnverifiedBlocks(file, dataLength, header, itemSize);
+    }
+
+    // offsets of the blocks follow from the number of items, null if the file's length doesn't match it
+    private static FileLayout ofUnverifiedBlocks(File file, long dataLength, FileHeader header, int itemSize) {
+        int itemsPerBlock = header.getItemsPerBlock();
+        long blockSize = (long) itemsPerBlock * itemSize + Integer.BYTES;
+        long items = header.getItems();
+        int blocks = (int) ((items + itemsPerBlock - 1) / itemsPerBlock);
+        long lastBlockItems = items - (long) (blocks - 1) * itemsPerBlock;
+        long expectedDataLength = (blocks == 0) ? 0 : (blocks - 1) * blockSize + lastBlockItems * itemSize + Integer.BYTES;
+        if (dataLength != expectedDataLength) {
+            return null;
+        }
+
+        long[] blockOffsets = new long[blocks];
+        for (int block = 0; block < blocks; block++) {
+            blockOffsets[block] = header.getSize() + block * blockSize;
+        }
+        return new FileLayout(file, header, itemSize, items, blockOffsets, null, UNVERIFIED);
+    }
+
+    private static FileLayout ofBlocks(File file, long dataLength, FileHeader header, int itemSize, BlockSource source)
+            throws IOException {
+        int itemsPerBlock = header.getItemsPerBlock();
+        int blockSize = itemsPerBlock * itemSize + Integer.BYTES;
+        long fullBlocks = dataLength / blockSize;
+        long lastBlockSize = dataLength % blockSize;
+        // the last block may have less items, otherwise the file has an incomplete block at the end
+        boolean hasLastBlock = (lastBlockSize > Integer.BYTES) && ((lastBlockSize - Integer.BYTES) % itemSize == 0);
+        if (lastBlockSize > 0 && !hasLastBlock) {
+            warnAboutTail(file, lastBlockSize);
+        }
+        int blocks = (int) fullBlocks + (hasLastBlock ? 1 : 0);
+        verifyItems(file, header, fullBlocks * itemsPerBlock + (hasLastBlock ? (lastBlockSize - Integer.BYTES) / itemSize : 0));
+
+        long[] blockOffsets = new long[blocks];
+        int validBlocks = 0;
+        long size = 0;
+        CRC32 crc = new CRC32();
+        for (int block = 0; block < blocks; block++) {
+            int length = (block < fullBlocks) ? blockSize : (int) lastBlockSize;
+            crc.reset();
+            source.read(length - Integer.BYTES, crc);
+            if ((int) crc.getValue() == source.readInt()) {
+                blockOffsets[validBlocks++] = header.getSize() + block * (long) blockSize;
+                size += (length - Integer.BYTES) / itemSize;
+            } else {
+                warnAboutDamagedBlock(file, block, (length - Integer.BYTES) / itemSize);
+            }
+        }
+        return new FileLayout(file, header, itemSize, size, Arrays.copyOf(blockOffsets, validBlocks), null, VALID);
+    }
+
+    // unverified blocks are found by their lengths only, null if they don't match the header
+    private static FileLayout ofCompressedBlocks(File file, long fileLength, FileHeader header, int itemSize,
+                                                 BlockSource source, boolean verifyBlocks) throws IOException {
+        int itemsPerBlock = header.getItemsPerBlock();
+        long[] blockOffsets = new long[16];
+        int[] compressedLengths = new int[16];
+        int validBlocks = 0;
+        long size = 0;
+        long items = 0;
+        CRC32 crc = new CRC32();
+        byte[] blockHeader = new byte[COMPRESSED_BLOCK_HEADER_SIZE];
+
+        long offset = header.getSize();
+        boolean lastBlock = false;
+        for (int block = 0; !lastBlock && fileLength - offset >= COMPRESSED_BLOCK_HEADER_SIZE + Integer.BYTES; block++) {
+            int blockItems = source.readInt();
+            int compressedLength = source.readInt();
+            // damaged lengths don't allow to find the next block, so the rest of the file is skipped
+            if (blockItems <= 0 || blockItems > itemsPerBlock || compressedLength < 0
+                    || offset + COMPRESSED_BLOCK_HEADER_SIZE + compressedLength + Integer.BYTES > fileLength) {
+                break;
+            }
+            // only the last block may have less items
+            lastBlock = blockItems < itemsPerBlock;
+
+            boolean valid = true;
+            if (verifyBlocks) {
+                ByteBuffer.wrap(blockHeader).putInt(blockItems).putInt(compressedLength);
+                crc.reset();
+                crc.update(blockHeader);
+                source.read(compressedLength, crc);
+                valid = (int) crc.getValue() == source.readInt();
+            } else {
+                source.skip(compressedLength + Integer.BYTES);
+            }
+            if (valid) {
+                if (validBlocks == blockOffsets.length) {
+                    blockOffsets = Arrays.copyOf(blockOffsets, validBlocks * 2);
+                    compressedLengths = Arrays.copyOf(compressedLengths, validBlocks * 2);
+                }
+                blockOffsets[validBlocks] = offset;
+                compressedLengths[validBlocks] = compressedLength;
+                validBlocks++;
+                size += blockItems;
+            } else {
+                warnAboutDamagedBlock(file, block, blockItems);
+            }
+            items += blockItems;
+            offset += COMPRESSED_BLOCK_HEADER_SIZE + compressedLength + Integer.BYTES;
+        }
+        if (!verifyBlocks && (items != header.getItems() || offset != fileLength)) {
+            return null;
+        }
+        if (offset < fileLength) {
+            warnAboutTail(file, fileLength - offset);
+        }
+        verifyItems(file, header, items);
+        return new FileLayout(file, header, itemSize, size, Arrays.copyOf(blockOffsets, validBlocks),
+                Arrays.copyOf(compressedLengths, validBlocks), verifyBlocks ? VALID : UNVERIFIED);
+    }
+
+    private static void warnAboutTail(File file, long bytes) {
+        log.warn(String.format("File %s has %d bytes at the end, which don't form a block, they are skipped",
+                file.getAbsolutePath(), bytes));
+    }
+
+    private static void warnAboutDamagedBlock(File file, int block, long items) {
+        log.warn(String.format("File %s has damaged block %d, its %d items are skipped", file.getAbsolutePath(), block, items));
+    }
+
+    // number of items in the header is known only if the file was closed properly
+    private static void verifyItems(File file, FileHeader header, long items) {
+        if (header.getItems() != FileHeader.UNKNOWN_ITEMS && header.getItems() != items) {
+            log.warn(String.format("File %s is expected to have %d items, but has %d, it was probably truncated",
+                    file.getAbsolutePath(), header.getItems(), items));
+        }
+    }
+
+    FileHeader getHeader() {
+        return header;
+    }
+
+    int getItemSize() {
+        return itemSize;
+    }
+
+    // number of items that can be read, less items are read if damaged blocks are found while reading
+    long size() {
+        return size;
+    }
+
+    // true if the block was verified and it's not damaged
+    boolean isValid(int block) {
+        return blockStates[block] == VALID;
+    }
+
+    /**
+     * Verifies the block when it's read for the first time, returns false if the block is damaged, its items must be
+     * skipped then. The buffer has the block's bytes from its position to its limit, see {@link #blockLength(int)}.
+     */
+    boolean verify(int block, ByteBuffer blockBytes) {
+        if (blockStates[block] == UNVERIFIED) {
+            int checksumOffset = blockBytes.limit() - Integer.BYTES;
+            ByteBuffer data = blockBytes.duplicate();
+            data.limit(checksumOffset);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            // the checksum is big-endian regardless of the file's byte order
+            if ((int) crc.getValue() == blockBytes.duplicate().order(ByteOrder.BIG_ENDIAN).getInt(checksumOffset)) {
+                blockStates[block] = VALID;
+            } else {
+                blockStates[block] = DAMAGED;
+                warnAboutDamagedBlock(file, block, blockItems(block));
+            }
+        }
+        return blockStates[block] == VALID;
+    }
+
+    // offset of the item in the file, index must be in [0, size) range, the file must not be compressed
+    long offset(long index) {
+        if (blockOffsets == null) {
+            return header.getSize() + index * itemSize;
+        }
+        int itemsPerBlock = header.getItemsPerBlock();
+        return blockOffsets[(int) (index / itemsPerBlock)] + (index % itemsPerBlock) * itemSize;
+    }
+
+    // index of the block holding the item, index must be in [0, size) range, the file must have checksums
+    int block(long index) {
+        return (int) (index / header.getItemsPerBlock());
+    }
+
+    // index of the block's first item, the block may be the one after the last block
+    long blockStart(int block) {
+        return Math.min((long) block * header.getItemsPerBlock(), size);
+    }
+
+    int blockItems(int block) {
+        return (int) Math.min(header.getItemsPerBlock(), size - (long) block * header.getItemsPerBlock());
+    }
+
+    long blockOffset(int block) {
+        return blockOffsets[block];
+    }
+
+    // length of the whole block, including the lengths of a compressed block and the checksum
+    int blockLength(int block) {
+        return (compressedLengths != null)
+                ? COMPRESSED_BLOCK_HEADER_SIZE + compressedLengths[block] + Integer.BYTES
+                : blockItems(block) * itemSize + Integer.BYTES;
+    }
+
+    // offset of the compressed bytes from the block's offset
+    int compressedOffset() {
+        return COMPRESSED_BLOCK_HEADER_SIZE;
+    }
+
+    int compressedLength(int block) {
+        return compressedLengths[block];
+    }
+
+    // reads the blocks one by one from the first to the last
+    private interface BlockSource {
+
+        int readInt() throws IOException;
+
+        // reads the bytes and adds them to the checksum
+        void read(int length, CRC32 crc) throws IOException;
+
+        void skip(int length) throws IOException;
+    }
+}
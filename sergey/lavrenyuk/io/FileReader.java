@@ -5,47 +5,175 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 /**
- * {@link Reader} that reads items from a single file
+ * {@link Reader} that reads items from a single file. Items are skipped by moving forward in the file without reading
+ * the skipped bytes, moving backward changes the file channel's position, so skipped items are never read from the disk.
+ *
+ * Files with a {@link FileHeader} are supported, items are deserialized from a byte buffer in the file's byte order, so
+ * native byte order files are read without converting the items, e.g. by the byte buffer methods of {@link Serializer}.
+ * The buffer is reused for all the items, so deserialization must not keep a reference to it. Code working with raw
+ * big-endian bytes is adapted by {@link #bigEndianBytes(Function)}.
+ * Files with checksums are read one block at a time, a block is verified and decompressed, if the file is compressed,
+ * once the first of its items is read, so items are skipped by skipping the whole blocks. Items of damaged blocks are
+ * skipped, see {@link FileLayout}, so {@link #read()} may move past more than one item.
  *
  * @param <T> type of items to read
  */
-public class FileReader<T> implements Reader<T> {
+public class FileReader<T> implements RandomAccessReader<T> {
 
-    private final InputStream in;
+    private final File file;
+    private final FileInputStream fileIn;
     private final byte[] dataBuffer;
-    private final Function<byte[], T> deserialization;
+    // view of the data buffer in the file's byte order
+    private final ByteBuffer dataView;
+    private final Function<ByteBuffer, T> deserialization;
+    private final FileLayout layout;
+    // null if the file is not compressed
+    private final BlockCodec codec;
+    // bytes of the last read block as they are in the file, and its items, which are the same bytes if it's not compressed
+    private byte[] blockBytes = new byte[0];
+    private byte[] block;
+    private int loadedBlock = -1;
+
+    private InputStream in;
+    // offset of the next byte to be read from the stream
+    private long offset = 0;
+    private long position = 0;
+
+    public FileReader(File file, int itemSize, Function<ByteBuffer, T> deserialization) throws IOException {
+        this(file, FileLayout.of(file, FileHeader.read(file), itemSize), deserialization);
+    }
 
-    public FileReader(File file, int itemSize, Function<byte[], T> deserialization) throws IOException {
-        this.in = new BufferedInputStream(new FileInputStream(file));
-        this.dataBuffer = new byte[itemSize];
+    FileReader(File file, FileLayout layout, Function<ByteBuffer, T> deserialization) throws IOException {
+        this.file = file;
+        this.layout = layout;
+        this.fileIn = new FileInputStream(file);
+        this.in = new BufferedInputStream(fileIn);
+        this.dataBuffer = new byte[layout.getItemSize()];
+        FileHeader header = layout.getHeader();
+        this.dataView = ByteBuffer.wrap(dataBuffer).order(header.getByteOrder());
         this.deserialization = deserialization;
+        this.codec = header.isCompressed() ? new BlockCodec(header.getCompression(), layout.getItemSize()) : null;
+        this.block = header.isCompressed() ? new byte[header.getItemsPerBlock() * layout.getItemSize()] : null;
     }
 
     @Override
     public T read() throws IOException {
-        return (readBytesIntoBuffer() != -1)
-                ? deserialization.apply(dataBuffer)
-                : null;
+        while (position < layout.size()) {
+            if (!layout.getHeader().isChecksummed()) {
+                moveTo(layout.offset(position));
+                readFully(dataBuffer, dataBuffer.length);
+            } else {
+                int itemBlock = layout.block(position);
+                if (itemBlock != loadedBlock && !load(itemBlock)) {
+                    position = layout.blockStart(itemBlock + 1);
+                    continue;
+                }
+                int itemOffset = (int) (position - layout.blockStart(itemBlock)) * dataBuffer.length;
+                System.arraycopy(block, itemOffset, dataBuffer, 0, dataBuffer.length);
+            }
+            position++;
+            dataView.clear();
+            return deserialization.apply(dataView);
+        }
+        return null;
+    }
+
+    /**
+     * Adapts deserialization of raw big-endian bytes, e.g. of the items passed on as is, to the byte buffer read from
+     * the file. Items of little-endian files are converted in place, the array is reused for all the items.
+     * Items must consist of 4 byte values only, see {@link FileHeader#toBigEndian(byte[], java.nio.ByteOrder)}.
+     */
+    public static <T> Function<ByteBuffer, T> bigEndianBytes(Function<byte[], T> deserialization) {
+        return byteBuffer -> deserialization.apply(FileHeader.toBigEndian(byteBuffer.array(), byteBuffer.order()));
+    }
+
+    @Override
+    public long size() {
+        return layout.size();
+    }
+
+    @Override
+    public long position() {
+        return position;
     }
 
     @Override
-    public boolean skip() throws IOException {
-        return (readBytesIntoBuffer() != -1);
+    public void seek(long index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of [0, %d] range", index, size()));
+        }
+        // the stream is moved by the next read
+        position = index;
+    }
+
+    private void moveTo(long targetOffset) throws IOException {
+        if (targetOffset == offset) {
+            return;
+        }
+        if (targetOffset > offset) {
+            // skipping doesn't use the file channel, which is closed if the reading thread is interrupted
+            while (offset < targetOffset) {
+                long skipped = in.skip(targetOffset - offset);
+                if (skipped <= 0) {
+                    throw new IllegalStateException(String.format("File %s was truncated while being read",
+                            file.getAbsolutePath()));
+                }
+                offset += skipped;
+            }
+        } else {
+            fileIn.getChannel().position(targetOffset);
+            // data buffered for the previous position is dropped
+            in = new BufferedInputStream(fileIn);
+            offset = targetOffset;
+        }
     }
 
-    private int readBytesIntoBuffer() throws IOException {
-        int bytesRead = in.read(dataBuffer);
-        if ((bytesRead != -1) && (bytesRead != dataBuffer.length)) {
-            throw new IllegalArgumentException("File doesn't contain an integer number of input items");
+    // returns false if the block is damaged
+    private boolean load(int blockToLoad) throws IOException {
+        int blockLength = layout.blockLength(blockToLoad);
+        if (blockBytes.length < blockLength) {
+            blockBytes = new byte[blockLength];
         }
-        return bytesRead;
+        // the bytes of the loaded block are overwritten, even if the new block turns out to be damaged
+        loadedBlock = -1;
+        moveTo(layout.blockOffset(blockToLoad));
+        readFully(blockBytes, blockLength);
+        if (!layout.verify(blockToLoad, ByteBuffer.wrap(blockBytes, 0, blockLength))) {
+            return false;
+        }
+        if (codec == null) {
+            block = blockBytes;
+        } else if (!codec.decompress(blockBytes, layout.compressedOffset(), layout.compressedLength(blockToLoad), block,
+                layout.blockItems(blockToLoad) * dataBuffer.length)) {
+            // the checksum is valid, so the file was changed after it was verified
+            throw new IllegalStateException(String.format("File %s was changed while being read", file.getAbsolutePath()));
+        }
+        loadedBlock = blockToLoad;
+        return true;
+    }
+
+    private void readFully(byte[] buffer, int length) throws IOException {
+        int bytesRead = 0;
+        while (bytesRead < length) {
+            int bytes = in.read(buffer, bytesRead, length - bytesRead);
+            if (bytes == -1) {
+                throw new IllegalStateException(String.format("File %s was truncated while being read",
+                        file.getAbsolutePath()));
+            }
+            bytesRead += bytes;
+        }
+        offset += bytesRead;
     }
 
     @Override
     public void close() throws IOException {
+        if (codec != null) {
+            codec.end();
+        }
         in.close();
     }
 }
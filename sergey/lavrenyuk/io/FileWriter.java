@@ -8,32 +8,49 @@ import java.io.OutputStream;
 import java.util.function.Function;
 
 /**
- * {@link Writer} that writes items to a single file
+ * {@link Writer} that writes items to a single file. If a {@link FileHeader} is given, it is written at the beginning of
+ * the file and serialization must produce items in the header's byte order. Items are grouped into checksum blocks
+ * if the header requires them, the number of items is stored to the header once the writer is closed.
  *
  * @param <T> type of items to write
  */
 public class FileWriter<T> implements Writer<T> {
 
+    private final File file;
+    private final FileHeader header;
     private final OutputStream out;
     private final Function<T, byte[]> serialization;
 
+    private int itemsWritten = 0;
+
     public FileWriter(File file, Function<T, byte[]> serialization) throws IOException {
         this(file, serialization, false);
     }
 
     public FileWriter(File file, Function<T, byte[]> serialization, boolean append) throws IOException {
+        this.file = file;
+        this.header = FileHeader.NONE;
         this.out = new BufferedOutputStream(new FileOutputStream(file, append));
         this.serialization = serialization;
     }
 
+    public FileWriter(File file, FileHeader header, Function<T, byte[]> serialization) throws IOException {
+        this.file = file;
+        this.header = header;
+        this.out = header.start(new BufferedOutputStream(new FileOutputStream(file)));
+        this.serialization = serialization;
+    }
+
     @Override
     public void write(T data) throws IOException {
         out.write(serialization.apply(data));
+        itemsWritten++;
     }
 
     @Override
     public void close() throws IOException {
         out.flush();
         out.close();
+        header.updateItems(file, itemsWritten);
     }
 }
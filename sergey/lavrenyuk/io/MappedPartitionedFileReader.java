@@ -0,0 +1,219 @@
+package sergey.lavrenyuk.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Same as {@link PartitionedFileReader}, but each file is mapped to memory with {@link FileChannel#map} and items are
+ * deserialized straight from the mapped buffer, so the data is neither copied to an intermediate array, nor read through
+ * a stream. Since all the items have the same size, an item with any index can be read without reading the previous ones,
+ * see {@link #read(long)}.
+ *
+ * Deserialization receives a buffer positioned at the item's first byte with the limit set right after its last byte.
+ * The buffer is reused for all the items of a file, so deserialization must not keep a reference to it. The buffer has
+ * the byte order of the file, see {@link FileHeader}, so ByteBuffer based {@link Serializer} methods read files of
+ * any byte order, and files in the native byte order are read without any conversion. A checksum block is verified once
+ * the first of its items is read, items of damaged blocks are skipped by {@link #read()}, see {@link FileLayout}.
+ *
+ * Blocks of compressed files are decompressed to a heap buffer, which has the byte order of the file as well,
+ * so compressed items are copied once. The last decompressed block is kept, so reading the items of a block one by one
+ * decompresses it only once.
+ *
+ * Every file has to be smaller than 2GB, which is the limit of a single mapping. Mapped memory is released by the garbage
+ * collector once the reader is closed and not referenced anymore, there is no way to unmap a file explicitly.
+ *
+ * @param <T> type of items to read
+ */
+public class MappedPartitionedFileReader<T> implements RandomAccessReader<T> {
+
+    private final int itemSize;
+    private final Function<ByteBuffer, T> deserialization;
+
+    private final List<File> files;
+    private ByteBuffer[] buffers;
+    private final FileLayout[] layouts;
+    private final PartitionIndex partitionIndex;
+
+    private int currentFile = 0;
+    private long currentItem = 0;
+
+    // created once the first compressed file is read
+    private BlockCodec codec;
+    private byte[] compressedBlock = new byte[0];
+    private byte[] block = new byte[0];
+    private ByteBuffer blockBuffer;
+    private int decompressedFile = -1;
+    private int decompressedBlock = -1;
+
+    public MappedPartitionedFileReader(String filePattern, int itemSize, Function<ByteBuffer, T> deserialization) throws IOException {
+        this.itemSize = itemSize;
+        this.deserialization = deserialization;
+
+        this.files = new ArrayList<>();
+        List<ByteBuffer> mappedFiles = new ArrayList<>();
+        Iterator<File> fileIterator = PartitionedFiles.asIterator(filePattern);
+        while (fileIterator.hasNext()) {
+            File file = fileIterator.next();
+            files.add(file);
+            mappedFiles.add(map(file));
+        }
+        if (mappedFiles.isEmpty()) {
+            throw new IllegalArgumentException(String.format("No files found for pattern '%s'", filePattern));
+        }
+
+        this.buffers = mappedFiles.toArray(new ByteBuffer[0]);
+        this.layouts = new FileLayout[buffers.length];
+        long[] partitionSizes = new long[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            FileHeader header = FileHeader.read(buffers[i], files.get(i));
+            buffers[i].order(header.getByteOrder());
+            layouts[i] = FileLayout.of(buffers[i], files.get(i), header, itemSize);
+            partitionSizes[i] = layouts[i].size();
+        }
+        this.partitionIndex = new PartitionIndex(partitionSizes);
+    }
+
+    @Override
+    public long size() {
+        return partitionIndex.size();
+    }
+
+    @Override
+    public long position() {
+        return currentItem;
+    }
+
+    @Override
+    public void seek(long index) {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of [0, %d] range", index, size()));
+        }
+        currentItem = index;
+    }
+
+    @Override
+    public T read() throws IOException {
+        while (currentItem < size()) {
+            T item = read(currentItem);
+            if (item != null) {
+                currentItem++;
+                return item;
+            }
+            // items of the damaged block are skipped
+            FileLayout layout = layouts[currentFile];
+            long firstItem = partitionIndex.firstItem(currentFile);
+            currentItem = firstItem + layout.blockStart(layout.block(currentItem - firstItem) + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Reads an item by its index across all the files. Doesn't change the position of {@link #read()}.
+     * Returns null if the item is in a damaged checksum block.
+     */
+    public T read(long index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of [0, %d) range", index, size()));
+        }
+        currentFile = partitionIndex.partitionOf(index, currentFile);
+        FileLayout layout = layouts[currentFile];
+        long indexInFile = index - partitionIndex.firstItem(currentFile);
+        if (layout.getHeader().isCompressed()) {
+            return readCompressed(layout, indexInFile);
+        }
+        if (layout.getHeader().isChecksummed() && !verify(layout, layout.block(indexInFile))) {
+            return null;
+        }
+        ByteBuffer buffer = buffers[currentFile];
+        int offset = (int) layout.offset(indexInFile);
+        buffer.clear();
+        buffer.position(offset);
+        buffer.limit(offset + itemSize);
+        return deserialization.apply(buffer);
+    }
+
+    private T readCompressed(FileLayout layout, long indexInFile) {
+        int itemBlock = layout.block(indexInFile);
+        if (currentFile != decompressedFile || itemBlock != decompressedBlock) {
+            if (!verify(layout, itemBlock)) {
+                return null;
+            }
+            decompress(layout, itemBlock);
+        }
+        int offset = (int) (indexInFile - layout.blockStart(itemBlock)) * itemSize;
+        blockBuffer.clear();
+        blockBuffer.position(offset);
+        blockBuffer.limit(offset + itemSize);
+        return deserialization.apply(blockBuffer);
+    }
+
+    private void decompress(FileLayout layout, int blockToDecompress) {
+        FileHeader header = layout.getHeader();
+        // files may be compressed differently
+        if (codec == null || codec.getCompression() != header.getCompression()) {
+            if (codec != null) {
+                codec.end();
+            }
+            codec = new BlockCodec(header.getCompression(), itemSize);
+        }
+        int compressedLength = layout.compressedLength(blockToDecompress);
+        if (compressedBlock.length < compressedLength) {
+            compressedBlock = new byte[compressedLength];
+        }
+        ByteBuffer compressed = buffers[currentFile].duplicate();
+        compressed.position((int) layout.blockOffset(blockToDecompress) + layout.compressedOffset());
+        compressed.get(compressedBlock, 0, compressedLength);
+
+        int blockLength = layout.blockItems(blockToDecompress) * itemSize;
+        if (block.length < blockLength) {
+            block = new byte[header.getItemsPerBlock() * itemSize];
+        }
+        // the block was verified before it's decompressed
+        if (!codec.decompress(compressedBlock, 0, compressedLength, block, blockLength)) {
+            throw new IllegalStateException(String.format("File %s was changed while being read",
+                    files.get(currentFile).getAbsolutePath()));
+        }
+        blockBuffer = ByteBuffer.wrap(block).order(header.getByteOrder());
+        decompressedFile = currentFile;
+        decompressedBlock = blockToDecompress;
+    }
+
+    // verifies the block of the current file straight in the mapped memory, once it's read for the first time
+    private boolean verify(FileLayout layout, int block) {
+        if (layout.isValid(block)) {
+            return true;
+        }
+        ByteBuffer blockBytes = buffers[currentFile].duplicate();
+        int offset = (int) layout.blockOffset(block);
+        blockBytes.limit(offset + layout.blockLength(block));
+        blockBytes.position(offset);
+        return layout.verify(block, blockBytes);
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffers = null;
+        if (codec != null) {
+            codec.end();
+        }
+    }
+
+    private ByteBuffer map(File file) throws IOException {
+        if (file.length() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("File %s is too big to be mapped to memory",
+                    file.getAbsolutePath()));
+        }
+        // mapping stays valid after the channel is closed
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package sergey.lavrenyuk.io;
+
+import java.util.Arrays;
+
+/**
+ * Finds a partition that holds an item with the specified index across all the partitions, given the number of items in
+ * each partition.
+ */
+class PartitionIndex {
+
+    // index of the first item of each partition
+    private final long[] firstItems;
+    private final long size;
+
+    PartitionIndex(long[] partitionSizes) {
+        this.firstItems = new long[partitionSizes.length];
+        long items = 0;
+        for (int i = 0; i < partitionSizes.length; i++) {
+            firstItems[i] = items;
+            items += partitionSizes[i];
+        }
+        this.size = items;
+    }
+
+    long size() {
+        return size;
+    }
+
+    int partitions() {
+        return firstItems.length;
+    }
+
+    long firstItem(int partition) {
+        return firstItems[partition];
+    }
+
+    // index must be in [0, size) range
+    // partitions are mostly read sequentially, so the hint partition is checked before the binary search
+    int partitionOf(long index, int hint) {
+        if (index >= firstItems[hint] && (hint == firstItems.length - 1 || index < firstItems[hint + 1])) {
+            return hint;
+        }
+        int partition = Arrays.binarySearch(firstItems, index);
+        if (partition < 0) {
+            return -partition - 2;
+        }
+        // empty partitions share the first item index with the next partition, the last of them holds the item
+        while (partition < firstItems.length - 1 && firstItems[partition + 1] == index) {
+            partition++;
+        }
+        return partition;
+    }
+}
@@ -0,0 +1,377 @@
+package sergey.lavrenyuk.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optional list of the partitions of a {@link PartitionedFiles partitioned file}, with the number of records and the state
+ * of each partition. If a manifest exists, {@link PartitionedFiles} looks partitions up in it instead of listing the
+ * directory, otherwise the directory is scanned as before. Writers publish partitions to the manifest only if it exists,
+ * see {@link #rebuild(String, State)} to create one.
+ *
+ * Manifest of the file pattern "abc{}.dat" is "abc.dat.manifest". It's a text journal with a line "index records state"
+ * per change, the last line of a partition wins and a partition is removed with a "index removed" line. Each change is
+ * appended with a single write, so a process killed in the middle leaves at most an incomplete last line, which is
+ * ignored. Once the journal is much longer than the list of partitions, it's compacted to a temporary file, which then
+ * atomically replaces the manifest. Manifests are cached in memory and only re-read if the file's length or modification
+ * time have changed, so a lookup doesn't read the disk. The header of a compacted journal has a new random epoch, so
+ * a journal compacted by another process is read from the start, even if it's longer than the one read so far.
+ *
+ * Changes are synchronized within a process, but only one process may change the manifest at a time. Robocode doesn't
+ * allow to append to files or to move them, so the scoring robot deletes manifests instead of updating them.
+ */
+public class PartitionManifest {
+
+    public static final long UNKNOWN_RECORDS = -1;
+
+    private static final String FILE_SUFFIX = ".manifest";
+    private static final String HEADER = "# partition manifest, epoch %016x, each line is: index records state";
+    private static final String REMOVED = "removed";
+
+    // journal is compacted once it has that many lines more than there are partitions
+    private static final int MAX_STALE_LINES = 256;
+
+    // guards all the manifests, changes are rare, so a single lock is enough
+    private static final Object LOCK = new Object();
+    private static final Map<String, PartitionManifest> CACHE = new HashMap<>();
+
+    private final File file;
+    private final TreeMap<Integer, Partition> partitions = new TreeMap<>();
+    // the journal is read up to that length
+    private long length;
+    private long lastModified;
+    private int lines;
+    // the header of a compacted journal, changes with each compaction
+    private String firstLine;
+
+    private PartitionManifest(File file) {
+        this.file = file;
+    }
+
+    public enum State {
+        // written, but not processed yet, e.g. a new generation partition which is not scored
+        PENDING,
+        // holds scored matrices
+        SCORED,
+        // processed by the next stage, e.g. scored partition whose survivors are extracted, the file is about to be deleted
+        CONSUMED;
+
+        public static State fromString(String state) {
+            for (State value : values()) {
+                if (value.name().equalsIgnoreCase(state.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported partition state '%s'", state));
+        }
+    }
+
+    public static class Partition {
+
+        private final int index;
+        private final long records;
+        private final State state;
+
+        public Partition(int index, long records, State state) {
+            this.index = index;
+            this.records = records;
+            this.state = state;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Number of records in the partition, {@link #UNKNOWN_RECORDS} if the partition was found by a directory scan.
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Partition partition = (Partition) o;
+            return index == partition.index && records == partition.records && state == partition.state;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * index + Long.hashCode(records)) + state.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d %d %s", index, records, state);
+        }
+    }
+
+    /**
+     * Returns the up to date manifest of the specified file pattern, or null if there is no manifest or it's damaged.
+     */
+    public static PartitionManifest find(String filePattern) {
+        synchronized (LOCK) {
+            File file = manifestFile(filePattern);
+            String key = file.getAbsolutePath();
+            PartitionManifest manifest = CACHE.get(key);
+            // Robocode creates an empty file instead of a missing one, a manifest always has the header
+            if (file.length() == 0) {
+                CACHE.remove(key);
+                return null;
+            }
+            try {
+                if (manifest == null) {
+                    manifest = new PartitionManifest(file);
+                    manifest.readJournal();
+                    CACHE.put(key, manifest);
+                } else {
+                    manifest.refresh();
+                }
+                return manifest;
+            } catch (IOException | RuntimeException ex) {
+                // damaged manifest is not used, partitions are looked up in the directory
+                CACHE.remove(key);
+                return null;
+            }
+        }
+    }
+
+    public static boolean exists(String filePattern) {
+        return find(filePattern) != null;
+    }
+
+    /**
+     * Creates the manifest of the specified file pattern from the partitions found in the directory, all of them get the
+     * specified state and {@link #UNKNOWN_RECORDS}. An existing manifest is replaced.
+     */
+    public static PartitionManifest rebuild(String filePattern, State state) throws IOException {
+        synchronized (LOCK) {
+            File file = manifestFile(filePattern);
+            PartitionManifest manifest = new PartitionManifest(file);
+            for (Integer index : PartitionedFiles.scanFileIndexes(filePattern)) {
+                manifest.partitions.put(index, new Partition(index, UNKNOWN_RECORDS, state));
+            }
+            manifest.compact();
+            CACHE.put(file.getAbsolutePath(), manifest);
+            return manifest;
+        }
+    }
+
+    /**
+     * Deletes the manifest of the specified file pattern, so partitions are looked up in the directory.
+     */
+    public static void delete(String filePattern) {
+        synchronized (LOCK) {
+            File file = manifestFile(filePattern);
+            CACHE.remove(file.getAbsolutePath());
+            file.delete();
+        }
+    }
+
+    /**
+     * Adds the partition to the manifest of the specified file pattern, or replaces it. Does nothing if there is no manifest.
+     */
+    public static void publish(String filePattern, int index, long records, State state) throws IOException {
+        synchronized (LOCK) {
+            PartitionManifest manifest = find(filePattern);
+            if (manifest != null) {
+                manifest.append(String.format("%d %d %s", index, records, state));
+            }
+        }
+    }
+
+    /**
+     * Removes the partition from the manifest of the specified file pattern. Does nothing if there is no manifest.
+     */
+    public static void remove(String filePattern, int index) throws IOException {
+        synchronized (LOCK) {
+            PartitionManifest manifest = find(filePattern);
+            if (manifest != null && manifest.partitions.containsKey(index)) {
+                manifest.append(String.format("%d %s", index, REMOVED));
+            }
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the partition with the specified index, or null if there is no such partition.
+     */
+    public Partition getPartition(int index) {
+        synchronized (LOCK) {
+            return partitions.get(index);
+        }
+    }
+
+    /**
+     * All the partitions, sorted by index.
+     */
+    public List<Partition> getPartitions() {
+        synchronized (LOCK) {
+            return new ArrayList<>(partitions.values());
+        }
+    }
+
+    /**
+     * Indexes of the partitions which are not {@link State#CONSUMED}, sorted in ascending order.
+     */
+    public List<Integer> getIndexes() {
+        synchronized (LOCK) {
+            List<Integer> indexes = new ArrayList<>(partitions.size());
+            for (Partition partition : partitions.values()) {
+                if (partition.state != State.CONSUMED) {
+                    indexes.add(partition.index);
+                }
+            }
+            return indexes;
+        }
+    }
+
+    /**
+     * Returns the highest index of a partition which is not {@link State#CONSUMED}, or -1 if there is no such partition.
+     */
+    public int latestIndex() {
+        synchronized (LOCK) {
+            // consumed partitions are deleted right away, so there are almost never any of them to skip
+            for (Partition partition : partitions.descendingMap().values()) {
+                if (partition.state != State.CONSUMED) {
+                    return partition.index;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static File manifestFile(String filePattern) {
+        if (!filePattern.contains("{}")) {
+            throw new IllegalArgumentException("file pattern must contain {} placeholder");
+        }
+        return IO.getFile(filePattern.replace("{}", "") + FILE_SUFFIX);
+    }
+
+    private void refresh() throws IOException {
+        long currentLength = file.length();
+        long currentLastModified = file.lastModified();
+        if (currentLength == length && currentLastModified == lastModified) {
+            return;
+        }
+        if (currentLength < length || !readFirstLine().equals(firstLine)) {
+            // another process compacted the journal
+            partitions.clear();
+            length = 0;
+            lines = 0;
+        }
+        // otherwise another process appended to the journal
+        readJournal();
+    }
+
+    private String readFirstLine() throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            String line = in.readLine();
+            return (line != null) ? line : "";
+        }
+    }
+
+    // reads the journal from the current length, the incomplete last line is left for the next read
+    private void readJournal() throws IOException {
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) (in.length() - length)];
+            in.seek(length);
+            in.readFully(bytes);
+        }
+        int lineStart = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == '\n') {
+                String line = new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                if (length == 0 && lineStart == 0) {
+                    firstLine = line;
+                }
+                applyLine(line);
+                lineStart = i + 1;
+            }
+        }
+        length += lineStart;
+        lastModified = file.lastModified();
+    }
+
+    private void applyLine(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        String[] values = line.split(" ");
+        int index = Integer.parseInt(values[0]);
+        if (values.length == 2 && REMOVED.equals(values[1])) {
+            partitions.remove(index);
+        } else if (values.length == 3) {
+            partitions.put(index, new Partition(index, Long.parseLong(values[1]), State.fromString(values[2])));
+        } else {
+            throw new IllegalArgumentException(String.format("Malformed manifest line '%s'", line));
+        }
+        lines++;
+    }
+
+    private void append(String line) throws IOException {
+        applyLine(line);
+        if (lines > partitions.size() + MAX_STALE_LINES) {
+            compact();
+            return;
+        }
+        byte[] bytes = (line + '\n').getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        } catch (IOException ex) {
+            // the journal is read again next time, so the cached state doesn't differ from the file
+            CACHE.remove(file.getAbsolutePath());
+            throw ex;
+        }
+        length += bytes.length;
+        lastModified = file.lastModified();
+    }
+
+    // rewrites the journal with a line per partition
+    private void compact() throws IOException {
+        File tempFile = new File(file.getPath() + PartitionedFiles.TEMP_FILE_SUFFIX);
+        String header = String.format(HEADER, ThreadLocalRandom.current().nextLong());
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            out.write(header);
+            out.write('\n');
+            for (Partition partition : partitions.values()) {
+                out.write(partition.toString());
+                out.write('\n');
+            }
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            CACHE.remove(file.getAbsolutePath());
+            throw ex;
+        }
+        length = file.length();
+        lastModified = file.lastModified();
+        lines = partitions.size();
+        firstLine = header;
+    }
+}
@@ -1,11 +1,10 @@
 package sergey.lavrenyuk.io;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Iterator;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -13,65 +12,94 @@ import java.util.function.Function;
  * it closes it and starts reading the next file. E.g. file name pattern "abc{}.dat" will be resolved to file names "abc0.dat",
  * "abc1.dat", "abc2.dat" and so on.
  *
+ * Number of items in every file is known once the files are opened, so items are skipped by opening the file that holds
+ * the target item and moving to the item within the file, skipped items are never read from the disk.
+ *
+ * Each file is read with a {@link FileReader}, so files with a {@link FileHeader} are supported and items of damaged
+ * checksum blocks are skipped, {@link #read()} moves past them.
+ *
  * @param <T> type of items to read
  */
-public class PartitionedFileReader<T> implements Reader<T> {
+public class PartitionedFileReader<T> implements RandomAccessReader<T> {
 
-    private final Iterator<File> fileIterator;
-    private final Function<byte[], T> deserialization;
-    private final byte[] dataBuffer;
+    private final File[] files;
+    private final FileLayout[] layouts;
+    private final PartitionIndex partitionIndex;
+    private final Function<ByteBuffer, T> deserialization;
 
-    private InputStream in;
+    private int currentFile;
+    private FileReader<T> reader;
+    private long position = 0;
 
-    public PartitionedFileReader(String filePattern, int itemSize, Function<byte[], T> deserialization) throws IOException{
-        this.fileIterator = PartitionedFiles.asIterator(filePattern);
-        this.dataBuffer = new byte[itemSize];
-        this.deserialization = deserialization;
-        if (fileIterator.hasNext()) {
-            this.in = nextInputFileStream();
-        } else {
+    public PartitionedFileReader(String filePattern, int itemSize, Function<ByteBuffer, T> deserialization) throws IOException{
+        List<File> fileList = new ArrayList<>();
+        PartitionedFiles.asIterator(filePattern).forEachRemaining(fileList::add);
+        if (fileList.isEmpty()) {
             throw new IllegalArgumentException(String.format("No files found for pattern '%s'", filePattern));
         }
+
+        this.files = fileList.toArray(new File[0]);
+        this.layouts = new FileLayout[files.length];
+        long[] partitionSizes = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            layouts[i] = FileLayout.of(files[i], FileHeader.read(files[i]), itemSize);
+            partitionSizes[i] = layouts[i].size();
+        }
+        this.partitionIndex = new PartitionIndex(partitionSizes);
+        this.deserialization = deserialization;
+        openFile(0);
     }
 
     @Override
     public T read() throws IOException {
-        return (readBytesIntoBuffer() != -1)
-                ? deserialization.apply(dataBuffer)
-                : null;
+        T item;
+        // the rest of the file may be in damaged blocks, then there is nothing to read in it
+        while ((item = reader.read()) == null && currentFile < files.length - 1) {
+            openFile(currentFile + 1);
+        }
+        position = partitionIndex.firstItem(currentFile) + reader.position();
+        return item;
     }
 
     @Override
-    public boolean skip() throws IOException {
-        return (readBytesIntoBuffer() != -1);
+    public long size() {
+        return partitionIndex.size();
     }
 
-    private int readBytesIntoBuffer() throws IOException {
-        int bytesRead = in.read(dataBuffer);
-        if ((bytesRead != -1) && (bytesRead != dataBuffer.length)) {
-            throw new IllegalArgumentException("File doesn't contain an integer number of input items");
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void seek(long index) throws IOException {
+        if (index < 0 || index > size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d is out of [0, %d] range", index, size()));
+        }
+        if (index == position) {
+            return;
         }
-        if ((bytesRead == -1) && fileIterator.hasNext()) {
-            in = nextInputFileStream();
-            return readBytesIntoBuffer();
+        // eof is the end of the last file
+        int file = (index == size())
+                ? files.length - 1
+                : partitionIndex.partitionOf(index, currentFile);
+        if (file != currentFile) {
+            openFile(file);
         }
-        return bytesRead;
+        reader.seek(index - partitionIndex.firstItem(file));
+        position = index;
     }
 
     @Override
     public void close() throws IOException {
-        in.close();
+        reader.close();
     }
 
-    private InputStream nextInputFileStream() throws IOException {
-        if (in != null) {
-            in.close();
-        }
-        File file = fileIterator.next();
-        if (file.length() % dataBuffer.length != 0) {
-            throw new IllegalArgumentException(String.format("File %s doesn't contain an integer number of input items",
-                    file.getAbsolutePath()));
+    private void openFile(int file) throws IOException {
+        if (reader != null) {
+            reader.close();
         }
-        return new BufferedInputStream(new FileInputStream(file));
+        reader = new FileReader<>(files[file], layouts[file], deserialization);
+        currentFile = file;
     }
 }
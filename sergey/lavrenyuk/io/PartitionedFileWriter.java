@@ -1,58 +1,104 @@
 package sergey.lavrenyuk.io;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.function.Function;
-import java.util.function.Supplier;
 
 /**
  * {@link Writer} that writes items to a multiple files with the same name pattern, making sure there won't be more than
  * beforehand specified amount of items written to each file. E.g. file name pattern "abc{}.dat" will be resolved to file names
- * "abc0.dat", "abc1.dat", "abc2.dat" and so on.
+ * "abc0.dat", "abc1.dat", "abc2.dat" and so on. Each file is written with a {@link FileWriter}, so if a {@link FileHeader}
+ * is given, each file has its own header and serialization must produce items in the header's byte order.
+ *
+ * Each file is written under a temporary name, see {@link PartitionedFiles#TEMP_FILE_SUFFIX}, and it's atomically moved
+ * to its name only once it's complete. So readers never see a partially written file, even if the process is killed,
+ * and they may consume the partitions while the writer is still writing the next ones. Once moved, the file is published
+ * to the {@link PartitionManifest} as {@link PartitionManifest.State#PENDING}, if the file pattern has a manifest.
  *
  * @param <T> type of items to write
  */
 public class PartitionedFileWriter<T> implements Writer<T> {
 
-    private final Supplier<File> fileSupplier;
+    private final String filePattern;
     private final Function<T, byte[]> serialization;
     private final int itemsPerFile;
+    private final FileHeader header;
 
-    private OutputStream out;
+    private Writer<T> writer;
+    private int fileIndex = -1;
     private int itemsWritten;
+    private boolean closed;
 
     public PartitionedFileWriter(String filePattern, int itemsPerFile, Function<T, byte[]> serialization) throws IOException {
-        this.fileSupplier = PartitionedFiles.asSupplier(filePattern);
+        this(filePattern, itemsPerFile, FileHeader.NONE, serialization);
+    }
+
+    public PartitionedFileWriter(String filePattern,
+                                 int itemsPerFile,
+                                 FileHeader header,
+                                 Function<T, byte[]> serialization) throws IOException {
+        this(filePattern, itemsPerFile, header, serialization, 0);
+    }
+
+    /**
+     * @param firstFileIndex index of the first file, e.g. several writers may write disjoint ranges of files concurrently
+     */
+    public PartitionedFileWriter(String filePattern,
+                                 int itemsPerFile,
+                                 FileHeader header,
+                                 Function<T, byte[]> serialization,
+                                 int firstFileIndex) throws IOException {
+        if (!filePattern.contains("{}")) {
+            throw new IllegalArgumentException("file pattern must contain {} placeholder");
+        }
+        if (firstFileIndex < 0) {
+            throw new IllegalArgumentException(String.format("First file index must not be negative, but was %d", firstFileIndex));
+        }
+        this.filePattern = filePattern;
         this.itemsPerFile = itemsPerFile;
+        this.header = header;
         this.serialization = serialization;
-        this.out = nextOutputFileStream();
+        this.fileIndex = firstFileIndex - 1;
+        this.writer = nextFileWriter();
         this.itemsWritten = 0;
     }
 
     @Override
     public void write(T data) throws IOException {
         if (itemsWritten == itemsPerFile) {
-            out = nextOutputFileStream();
+            writer = nextFileWriter();
             itemsWritten = 0;
         }
-        out.write(serialization.apply(data));
+        writer.write(data);
         itemsWritten++;
     }
 
     @Override
     public void close() throws IOException {
-        out.flush();
-        out.close();
+        if (!closed) {
+            closeFile();
+            closed = true;
+        }
     }
 
-    private OutputStream nextOutputFileStream() throws IOException {
-        if (out != null) {
-            out.flush();
-            out.close();
+    private Writer<T> nextFileWriter() throws IOException {
+        if (writer != null) {
+            closeFile();
         }
-        return new BufferedOutputStream(new FileOutputStream(fileSupplier.get()));
+        fileIndex++;
+        return new FileWriter<>(tempFile(fileIndex), header, serialization);
+    }
+
+    private void closeFile() throws IOException {
+        writer.close();
+        File file = IO.getFile(PartitionedFiles.resolvePlaceholder(filePattern, fileIndex));
+        Files.move(tempFile(fileIndex).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PartitionManifest.publish(filePattern, fileIndex, itemsWritten, PartitionManifest.State.PENDING);
+    }
+
+    private File tempFile(int index) {
+        return IO.getFile(PartitionedFiles.resolvePlaceholder(filePattern, index) + PartitionedFiles.TEMP_FILE_SUFFIX);
     }
 }
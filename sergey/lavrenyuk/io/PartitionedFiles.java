@@ -1,6 +1,7 @@
 package sergey.lavrenyuk.io;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -21,6 +22,10 @@ import java.util.stream.Stream;
  *     <li>each file is not too big, which improves performance</li>
  *     <li>we can process small files one by one. in case if processing fails, we can start from the file that failed</li>
  * </ul>
+ *
+ * If the file pattern has a {@link PartitionManifest}, existing partitions are looked up in it, otherwise the directory is
+ * scanned. Manifest whose latest partition file is missing, e.g. because the files were deleted manually, is deleted and
+ * the directory is scanned instead.
  */
 public class PartitionedFiles {
 
@@ -28,6 +33,12 @@ public class PartitionedFiles {
 
     private static final String PLACEHOLDER = "{}";
 
+    /**
+     * Suffix of a partition file which is being written. Such files don't match the file pattern, so the partition is not
+     * visible until the complete file is atomically moved to the partition's name.
+     */
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+
     /**
      * Substitute {@link #PLACEHOLDER} in the file name pattern with the provided integer.
      */
@@ -39,6 +50,10 @@ public class PartitionedFiles {
      * Check if any file corresponding to the specified file pattern exists.
      */
     public static boolean exists(String filePattern) {
+        PartitionManifest manifest = findManifest(filePattern);
+        if (manifest != null) {
+            return manifest.latestIndex() > -1;
+        }
         return asStream(filePattern).findAny().isPresent();
     }
 
@@ -47,6 +62,11 @@ public class PartitionedFiles {
      */
     public static int latestFileIndex(String filePattern) {
 
+        PartitionManifest manifest = findManifest(filePattern);
+        if (manifest != null) {
+            return manifest.latestIndex();
+        }
+
         Pattern pattern = fileNamePattern(filePattern);
         int maxFileIndex = -1;
 
@@ -84,6 +104,14 @@ public class PartitionedFiles {
      * Get all indexes of existing files corresponding to the specified file pattern, sorted in ascending order.
      */
     public static Iterable<Integer> getFileIndexes(String filePattern) {
+        PartitionManifest manifest = findManifest(filePattern);
+        return (manifest != null)
+                ? manifest.getIndexes()
+                : scanFileIndexes(filePattern);
+    }
+
+    // directory scan, ignores the manifest
+    static List<Integer> scanFileIndexes(String filePattern) {
 
         Pattern pattern = fileNamePattern(filePattern);
         List<Integer> result = new ArrayList<>();
@@ -105,11 +133,36 @@ public class PartitionedFiles {
      * Note that the returned {@link Stream} corresponds to the files that exists on the file system.
      */
     public static Stream<File> asStream(String filePattern) {
+        PartitionManifest manifest = findManifest(filePattern);
+        if (manifest != null) {
+            return manifest.getIndexes().stream().map(index -> IO.getFile(resolvePlaceholder(filePattern, index)));
+        }
         Pattern pattern = fileNamePattern(filePattern);
         File[] files = directory(filePattern).listFiles((dir, name) -> pattern.matcher(name).matches());
         return Arrays.stream(files);
     }
 
+    /**
+     * Deletes all the files corresponding to the specified file pattern. If the file pattern has a manifest, the files are
+     * marked as {@link PartitionManifest.State#CONSUMED} before any of them is deleted, so if the process is killed in the
+     * middle, the rest of the files are not used anymore.
+     */
+    public static void deleteAll(String filePattern) throws IOException {
+        PartitionManifest manifest = findManifest(filePattern);
+        if (manifest == null) {
+            asStream(filePattern).forEach(File::delete);
+            return;
+        }
+        List<PartitionManifest.Partition> partitions = manifest.getPartitions();
+        for (PartitionManifest.Partition partition : partitions) {
+            PartitionManifest.publish(filePattern, partition.getIndex(), partition.getRecords(), PartitionManifest.State.CONSUMED);
+        }
+        for (PartitionManifest.Partition partition : partitions) {
+            IO.getFile(resolvePlaceholder(filePattern, partition.getIndex())).delete();
+            PartitionManifest.remove(filePattern, partition.getIndex());
+        }
+    }
+
     /**
      * Returns a {@link Supplier} of files corresponding to the specified file pattern.
      *
@@ -186,6 +239,24 @@ public class PartitionedFiles {
         }
     }
 
+    // returns null if there is no manifest, or its latest partition file doesn't exist anymore
+    private static PartitionManifest findManifest(String filePattern) {
+        PartitionManifest manifest = PartitionManifest.find(filePattern);
+        if (manifest == null) {
+            return null;
+        }
+        int latestIndex = manifest.latestIndex();
+        if (latestIndex > -1) {
+            File latestFile = IO.getFile(resolvePlaceholder(filePattern, latestIndex));
+            // Robocode creates an empty file instead of a missing one
+            if (!latestFile.exists() || (latestFile.length() == 0 && manifest.getPartition(latestIndex).getRecords() > 0)) {
+                PartitionManifest.delete(filePattern);
+                return null;
+            }
+        }
+        return manifest;
+    }
+
     private static Pattern fileNamePattern(String filePathPattern) {
         if (!filePathPattern.contains(PLACEHOLDER)) {
             throw new IllegalArgumentException(String.format("file pattern must contain %s placeholder", PLACEHOLDER));
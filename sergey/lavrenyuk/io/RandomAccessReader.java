@@ -0,0 +1,38 @@
+package sergey.lavrenyuk.io;
+
+import java.io.IOException;
+
+/**
+ * {@link Reader} of fixed size items, which can move to any item without reading the previous ones
+ *
+ * @param <T> type of items to read
+ */
+public interface RandomAccessReader<T> extends Reader<T> {
+
+    // total number of items
+    long size();
+
+    // index of the item to be read next
+    // equals to size() if eof reached
+    long position();
+
+    // moves to the item with the specified index
+    // index equal to size() moves to eof
+    void seek(long index) throws IOException;
+
+    @Override
+    default boolean skip() throws IOException {
+        return skip(1);
+    }
+
+    @Override
+    default boolean skip(int n) throws IOException {
+        if (n < 0) {
+            throw new IllegalArgumentException("number of items to skip must be grater or equal to zero");
+        }
+        // same as for sequential skipping, false means eof was reached before all the items were skipped
+        long index = position() + n;
+        seek(Math.min(index, size()));
+        return index <= size();
+    }
+}
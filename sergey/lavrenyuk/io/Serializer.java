@@ -2,22 +2,36 @@ package sergey.lavrenyuk.io;
 
 import sergey.lavrenyuk.nn.scoring.Score;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Serializer for converting {@link Score}, {@link WeightMatrix} and {@link ScoredWeightMatrix} to and from array of bytes.
+ *
+ * Byte arrays are big-endian unless the byte order is specified explicitly, byte buffers are read in their own byte order.
+ * Weights are transferred all at once through a {@link java.nio.FloatBuffer} view, which is a plain memory copy
+ * when the byte order is the native one.
+ *
+ * {@link QuantizedWeightMatrix} is serialized the same way: float16 weights and int8 row scales follow the byte order,
+ * int8 weights are single bytes. Its size depends on the precision, see
+ * {@link QuantizedWeightMatrix.Precision#getSizeInBytes()}.
  */
 public class Serializer {
 
     private Serializer() {}
 
     public static byte[] serializeScoredWeightMatrix(ScoredWeightMatrix scoredWeightMatrix) {
+        return serializeScoredWeightMatrix(scoredWeightMatrix, ByteOrder.BIG_ENDIAN);
+    }
+
+    public static byte[] serializeScoredWeightMatrix(ScoredWeightMatrix scoredWeightMatrix, ByteOrder byteOrder) {
         Score score = scoredWeightMatrix.getScore();
         WeightMatrix weightMatrix = scoredWeightMatrix.getWeightMatrix();
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[ScoredWeightMatrix.SIZE_IN_BYTES]);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[ScoredWeightMatrix.SIZE_IN_BYTES]).order(byteOrder);
 
         byteBuffer.putFloat(score.getWinRate());
         byteBuffer.putFloat(score.getAverageEnergyDiff());
@@ -28,72 +42,116 @@ public class Serializer {
     }
 
     public static byte[] serializeWeightMatrix(WeightMatrix weightMatrix) {
-        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[WeightMatrix.SIZE_IN_BYTES]);
+        return serializeWeightMatrix(weightMatrix, ByteOrder.BIG_ENDIAN);
+    }
+
+    public static byte[] serializeWeightMatrix(WeightMatrix weightMatrix, ByteOrder byteOrder) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[WeightMatrix.SIZE_IN_BYTES]).order(byteOrder);
         serializeWeightMatrix(weightMatrix, byteBuffer);
         return byteBuffer.array();
     }
 
+    // float buffer view has the byte order of the byte buffer and starts at its position
     private static void serializeWeightMatrix(WeightMatrix weightMatrix, ByteBuffer byteBuffer) {
-        for (float[] weights : weightMatrix.getInputToHiddenWeights()) {
-            for (float weight : weights) {
-                byteBuffer.putFloat(weight);
-            }
-        }
-        for (float[] weights : weightMatrix.getHiddenToOutputWeights()) {
-            for (float weight : weights) {
-                byteBuffer.putFloat(weight);
-            }
+        byteBuffer.asFloatBuffer().put(weightMatrix.getWeights());
+        byteBuffer.position(byteBuffer.position() + WeightMatrix.SIZE_IN_BYTES);
+    }
+
+    public static byte[] serializeQuantizedWeightMatrix(QuantizedWeightMatrix weightMatrix) {
+        return serializeQuantizedWeightMatrix(weightMatrix, ByteOrder.BIG_ENDIAN);
+    }
+
+    public static byte[] serializeQuantizedWeightMatrix(QuantizedWeightMatrix weightMatrix, ByteOrder byteOrder) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[weightMatrix.getPrecision().getSizeInBytes()]).order(byteOrder);
+        if (weightMatrix.getPrecision() == QuantizedWeightMatrix.Precision.FLOAT16) {
+            byteBuffer.asShortBuffer().put(weightMatrix.getFloat16Weights());
+        } else {
+            // scales go first, so they are aligned, the rest of the bytes after the weights is padding
+            byteBuffer.asFloatBuffer().put(weightMatrix.getRowScales());
+            byteBuffer.position(QuantizedWeightMatrix.ROWS * Float.BYTES);
+            byteBuffer.put(weightMatrix.getInt8Weights());
         }
+        return byteBuffer.array();
     }
 
     public static ScoredWeightMatrix deserializeScoredWeightMatrix(byte[] bytes) {
-        verifyBytesLength(bytes.length, ScoredWeightMatrix.SIZE_IN_BYTES);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        Score score = new Score(byteBuffer.getFloat(), byteBuffer.getFloat());
-        WeightMatrix weightMatrix = deserializeWeightMatrix(byteBuffer);
-        return new ScoredWeightMatrix(score, weightMatrix);
+        return deserializeScoredWeightMatrix(ByteBuffer.wrap(bytes));
     }
 
     public static WeightMatrix deserializeWeightMatrix(byte[] bytes) {
-        verifyBytesLength(bytes.length, WeightMatrix.SIZE_IN_BYTES);
         return deserializeWeightMatrix(ByteBuffer.wrap(bytes));
     }
 
     public static Score deserializeScoreFromScoredWeightMatrix(byte[] bytes) {
-        verifyBytesLength(bytes.length, ScoredWeightMatrix.SIZE_IN_BYTES);
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        return new Score(byteBuffer.getFloat(), byteBuffer.getFloat());
+        return deserializeScoreFromScoredWeightMatrix(ByteBuffer.wrap(bytes));
     }
 
     public static WeightMatrix deserializeWeightMatrixFromScoredWeightMatrix(byte[] bytes) {
-        verifyBytesLength(bytes.length, ScoredWeightMatrix.SIZE_IN_BYTES);
-        return deserializeWeightMatrix(ByteBuffer.wrap(bytes, Score.SIZE_IN_BYTES, WeightMatrix.SIZE_IN_BYTES));
+        return deserializeWeightMatrixFromScoredWeightMatrix(ByteBuffer.wrap(bytes));
     }
 
-    private static void verifyBytesLength(int actualSize, int expectedSize) {
-        if (actualSize != expectedSize) {
-            throw new IllegalArgumentException(String.format("Incorrect number of bytes. Got %d, expected %d.",
-                    actualSize, expectedSize));
-        }
+    public static QuantizedWeightMatrix deserializeQuantizedWeightMatrix(byte[] bytes, QuantizedWeightMatrix.Precision precision) {
+        return deserializeQuantizedWeightMatrix(ByteBuffer.wrap(bytes), precision);
     }
 
-    private static WeightMatrix deserializeWeightMatrix(ByteBuffer byteBuffer) {
-        // +1 because of the shift neuron
-        float[][] inputToHiddenWeights = new float[WeightMatrix.HIDDEN_NEURONS][WeightMatrix.INPUT_NEURONS + 1];
-        float[][] hiddenToOutputWeights = new float[WeightMatrix.OUTPUT_NEURONS][WeightMatrix.HIDDEN_NEURONS + 1];
+    // methods below read a single item from the byte buffer's position to its limit, e.g. from a memory mapped file,
+    // without copying it to an intermediate array. byte buffer's position is moved forward
 
-        for (int i = 0; i < WeightMatrix.HIDDEN_NEURONS; i++) {
-            for (int j = 0; j < WeightMatrix.INPUT_NEURONS + 1; j++) {
-                inputToHiddenWeights[i][j] = byteBuffer.getFloat();
-            }
+    public static ScoredWeightMatrix deserializeScoredWeightMatrix(ByteBuffer byteBuffer) {
+        verifyBytesLength(byteBuffer.remaining(), ScoredWeightMatrix.SIZE_IN_BYTES);
+        Score score = new Score(byteBuffer.getFloat(), byteBuffer.getFloat());
+        WeightMatrix weightMatrix = readWeightMatrix(byteBuffer);
+        return new ScoredWeightMatrix(score, weightMatrix);
+    }
+
+    public static WeightMatrix deserializeWeightMatrix(ByteBuffer byteBuffer) {
+        verifyBytesLength(byteBuffer.remaining(), WeightMatrix.SIZE_IN_BYTES);
+        return readWeightMatrix(byteBuffer);
+    }
+
+    public static Score deserializeScoreFromScoredWeightMatrix(ByteBuffer byteBuffer) {
+        verifyBytesLength(byteBuffer.remaining(), ScoredWeightMatrix.SIZE_IN_BYTES);
+        return new Score(byteBuffer.getFloat(), byteBuffer.getFloat());
+    }
+
+    public static WeightMatrix deserializeWeightMatrixFromScoredWeightMatrix(ByteBuffer byteBuffer) {
+        verifyBytesLength(byteBuffer.remaining(), ScoredWeightMatrix.SIZE_IN_BYTES);
+        byteBuffer.position(byteBuffer.position() + Score.SIZE_IN_BYTES);
+        return readWeightMatrix(byteBuffer);
+    }
+
+    public static QuantizedWeightMatrix deserializeQuantizedWeightMatrix(ByteBuffer byteBuffer,
+                                                                         QuantizedWeightMatrix.Precision precision) {
+        verifyBytesLength(byteBuffer.remaining(), precision.getSizeInBytes());
+        int start = byteBuffer.position();
+        QuantizedWeightMatrix weightMatrix;
+        if (precision == QuantizedWeightMatrix.Precision.FLOAT16) {
+            short[] weights = new short[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+            byteBuffer.asShortBuffer().get(weights);
+            weightMatrix = new QuantizedWeightMatrix(weights);
+        } else {
+            float[] rowScales = new float[QuantizedWeightMatrix.ROWS];
+            byteBuffer.asFloatBuffer().get(rowScales);
+            byte[] weights = new byte[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+            byteBuffer.position(start + rowScales.length * Float.BYTES);
+            byteBuffer.get(weights);
+            weightMatrix = new QuantizedWeightMatrix(weights, rowScales);
         }
+        byteBuffer.position(start + precision.getSizeInBytes());
+        return weightMatrix;
+    }
 
-        for (int i = 0; i < WeightMatrix.OUTPUT_NEURONS; i++) {
-            for (int j = 0; j < WeightMatrix.HIDDEN_NEURONS + 1; j++) {
-                hiddenToOutputWeights[i][j] = byteBuffer.getFloat();
-            }
+    private static void verifyBytesLength(int actualSize, int expectedSize) {
+        if (actualSize != expectedSize) {
+            throw new IllegalArgumentException(String.format("Incorrect number of bytes. Got %d, expected %d.",
+                    actualSize, expectedSize));
         }
+    }
 
-        return new WeightMatrix(inputToHiddenWeights, hiddenToOutputWeights);
+    private static WeightMatrix readWeightMatrix(ByteBuffer byteBuffer) {
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        byteBuffer.asFloatBuffer().get(weights);
+        byteBuffer.position(byteBuffer.position() + WeightMatrix.SIZE_IN_BYTES);
+        return new WeightMatrix(weights);
     }
 }
@@ -1,26 +1,30 @@
 package sergey.lavrenyuk.module;
 
-import robocode.Rules;
-import robocode.util.Utils;
 import sergey.lavrenyuk.event.EnemyStatus;
 import sergey.lavrenyuk.event.PerceptronEvent;
 import sergey.lavrenyuk.event.PerceptronStatus;
 import sergey.lavrenyuk.event.RoundStarted;
 import sergey.lavrenyuk.event.TurnStarted;
-import sergey.lavrenyuk.geometry.Data2D;
+import sergey.lavrenyuk.geometry.RobocodeRules;
+import sergey.lavrenyuk.nn.Network;
 import sergey.lavrenyuk.nn.NeuralNetwork;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
+import java.util.function.Function;
 import java.util.function.Supplier;
 
-import static sergey.lavrenyuk.geometry.GeometryUtils.calculateCoordinates;
+import static sergey.lavrenyuk.geometry.GeometryUtils.calculateX;
+import static sergey.lavrenyuk.geometry.GeometryUtils.calculateY;
+import static sergey.lavrenyuk.geometry.GeometryUtils.normalRelativeAngle;
 import static sergey.lavrenyuk.geometry.GeometryUtils.toBottomLeftBasedCoordinate;
-import static sergey.lavrenyuk.geometry.GeometryUtils.toNormalizedCenterBasedCoordinates;
-import static sergey.lavrenyuk.geometry.GeometryUtils.toNormalizedMovement;
+import static sergey.lavrenyuk.geometry.GeometryUtils.toNormalizedCenterBasedCoordinate;
+import static sergey.lavrenyuk.geometry.GeometryUtils.toNormalizedMovementX;
+import static sergey.lavrenyuk.geometry.GeometryUtils.toNormalizedMovementY;
 
 public class NeuralNetworkModule implements PerceptronModule {
 
     private final Supplier<WeightMatrix> weightMatrixSupplier;
+    private final Function<WeightMatrix, Network> networkFactory;
 
     private final double robotMaxEnergy;
     private final double robotWidth;
@@ -32,7 +36,11 @@ public class NeuralNetworkModule implements PerceptronModule {
     private volatile PerceptronControl robotControl;
 
     // heart and brains of the robot
-    private volatile NeuralNetwork neuralNetwork;
+    private volatile Network neuralNetwork;
+
+    // reused each turn, so that nothing is allocated per turn
+    private final float[] neuralNetworkInput = new float[WeightMatrix.INPUT_NEURONS];
+    private final float[] neuralNetworkOutput = new float[WeightMatrix.OUTPUT_NEURONS];
 
     // should be updated by only one thread, but can not be tested, thus volatile
     // this values are normalized, i.e:
@@ -40,12 +48,25 @@ public class NeuralNetworkModule implements PerceptronModule {
     // - normalizedEnemyPosition and normalizedEnemyMovement are scaled to have values from -1 to 1
     // for additional info see prepareNeuralNetworkInput() method
     private volatile double normalizedEnemyEnergy;
-    private volatile Data2D normalizedEnemyPosition;
-    private volatile Data2D normalizedEnemyMovement;
+    private volatile double normalizedEnemyPositionX;
+    private volatile double normalizedEnemyPositionY;
+    private volatile double normalizedEnemyMovementX;
+    private volatile double normalizedEnemyMovementY;
 
     public NeuralNetworkModule(Supplier<WeightMatrix> weightMatrixSupplier, double robotMaxEnergy,
                                double robotWidth, double robotHeight, double battleFieldWidth, double battleFieldHeight) {
+        this(weightMatrixSupplier, NeuralNetwork::new, robotMaxEnergy, robotWidth, robotHeight, battleFieldWidth,
+                battleFieldHeight);
+    }
+
+    /**
+     * @param networkFactory creates the network of each round's matrix, e.g. a quantized one
+     */
+    public NeuralNetworkModule(Supplier<WeightMatrix> weightMatrixSupplier, Function<WeightMatrix, Network> networkFactory,
+                               double robotMaxEnergy, double robotWidth, double robotHeight, double battleFieldWidth,
+                               double battleFieldHeight) {
         this.weightMatrixSupplier = weightMatrixSupplier;
+        this.networkFactory = networkFactory;
         this.robotMaxEnergy = robotMaxEnergy;
         this.robotWidth = robotWidth;
         this.robotHeight = robotHeight;
@@ -64,59 +85,59 @@ public class NeuralNetworkModule implements PerceptronModule {
 
     public void onRoundStarted(RoundStarted event) {
         robotControl = event.getRobotControl();
-        neuralNetwork = new NeuralNetwork(weightMatrixSupplier.get());
+        neuralNetwork = networkFactory.apply(weightMatrixSupplier.get());
 
         robotControl.setAdjustGunForRobotTurn(true);
         robotControl.setAdjustRadarForGunTurn(true);
 
         normalizedEnemyEnergy = 1; // full health
-        normalizedEnemyPosition = new Data2D(0, 0); // center of the battlefield
-        normalizedEnemyMovement = new Data2D(0, 0); // no movement
+        normalizedEnemyPositionX = 0; // center of the battlefield
+        normalizedEnemyPositionY = 0;
+        normalizedEnemyMovementX = 0; // no movement
+        normalizedEnemyMovementY = 0;
     }
 
     public void onTurnStarted(TurnStarted event) {
         PerceptronStatus perceptronStatus = event.getPerceptronStatus();
         // enemyStatus == null means no enemy was scanned this turn
-        EnemyStatus enemyStatus = event.getEnemyStatus().orElse(null);
+        EnemyStatus enemyStatus = event.getEnemyStatusOrNull();
 
-        float[] input = prepareNeuralNetworkInput(perceptronStatus, enemyStatus);
-        float[] output = neuralNetwork.process(input);
-        issueInstructions(perceptronStatus, enemyStatus, output);
+        prepareNeuralNetworkInput(perceptronStatus, enemyStatus, neuralNetworkInput);
+        neuralNetwork.process(neuralNetworkInput, neuralNetworkOutput);
+        issueInstructions(perceptronStatus, enemyStatus, neuralNetworkOutput);
     }
 
-    private float[] prepareNeuralNetworkInput(PerceptronStatus perceptronStatus, EnemyStatus enemyStatus) {
-
-        // all values are normalized before passing to the neural network
-        double myNormalizedEnergy = perceptronStatus.getEnergy() / robotMaxEnergy;
-        Data2D myNormalizedPosition = toNormalizedCenterBasedCoordinates(perceptronStatus.getX(), perceptronStatus.getY(),
-                battleFieldWidth, battleFieldHeight);
-        Data2D myNormalizedMovement =
-                toNormalizedMovement(perceptronStatus.getBodyHeadingRadians(), perceptronStatus.getVelocity(), Rules.MAX_VELOCITY);
+    private void prepareNeuralNetworkInput(PerceptronStatus perceptronStatus, EnemyStatus enemyStatus, float[] result) {
 
         // enemyStatus == null means no enemy was scanned
         // previous values will be used if no enemy was scanned
         if (enemyStatus != null) {
-            Data2D enemyCoordinates = calculateCoordinates(perceptronStatus.getX(), perceptronStatus.getY(),
-                    perceptronStatus.getBodyHeadingRadians() + enemyStatus.getBearingRadians(), enemyStatus.getDistance());
+            double enemyAngleRadians = perceptronStatus.getBodyHeadingRadians() + enemyStatus.getBearingRadians();
+            double enemyX = calculateX(perceptronStatus.getX(), enemyAngleRadians, enemyStatus.getDistance());
+            double enemyY = calculateY(perceptronStatus.getY(), enemyAngleRadians, enemyStatus.getDistance());
 
             this.normalizedEnemyEnergy = enemyStatus.getEnergy() / robotMaxEnergy;
-            this.normalizedEnemyPosition = toNormalizedCenterBasedCoordinates(enemyCoordinates.getX(), enemyCoordinates.getY(),
-                    battleFieldWidth, battleFieldHeight);
-            this.normalizedEnemyMovement = toNormalizedMovement(enemyStatus.getHeadingRadians(), enemyStatus.getVelocity(), Rules.MAX_VELOCITY);
+            this.normalizedEnemyPositionX = toNormalizedCenterBasedCoordinate(enemyX, battleFieldWidth);
+            this.normalizedEnemyPositionY = toNormalizedCenterBasedCoordinate(enemyY, battleFieldHeight);
+            this.normalizedEnemyMovementX =
+                    toNormalizedMovementX(enemyStatus.getHeadingRadians(), enemyStatus.getVelocity(), RobocodeRules.MAX_VELOCITY);
+            this.normalizedEnemyMovementY =
+                    toNormalizedMovementY(enemyStatus.getHeadingRadians(), enemyStatus.getVelocity(), RobocodeRules.MAX_VELOCITY);
         }
 
-        float[] result = new float[WeightMatrix.INPUT_NEURONS];
-        result[0] = (float) myNormalizedEnergy;
-        result[1] = (float) myNormalizedPosition.getX();
-        result[2] = (float) myNormalizedPosition.getY();
-        result[3] = (float) myNormalizedMovement.getX();
-        result[4] = (float) myNormalizedMovement.getY();
+        // all values are normalized before passing to the neural network
+        result[0] = (float) (perceptronStatus.getEnergy() / robotMaxEnergy);
+        result[1] = (float) toNormalizedCenterBasedCoordinate(perceptronStatus.getX(), battleFieldWidth);
+        result[2] = (float) toNormalizedCenterBasedCoordinate(perceptronStatus.getY(), battleFieldHeight);
+        result[3] = (float) toNormalizedMovementX(
+                perceptronStatus.getBodyHeadingRadians(), perceptronStatus.getVelocity(), RobocodeRules.MAX_VELOCITY);
+        result[4] = (float) toNormalizedMovementY(
+                perceptronStatus.getBodyHeadingRadians(), perceptronStatus.getVelocity(), RobocodeRules.MAX_VELOCITY);
         result[5] = (float) this.normalizedEnemyEnergy;
-        result[6] = (float) this.normalizedEnemyPosition.getX();
-        result[7] = (float) this.normalizedEnemyPosition.getY();
-        result[8] = (float) this.normalizedEnemyMovement.getX();
-        result[9] = (float) this.normalizedEnemyMovement.getY();
-        return result;
+        result[6] = (float) this.normalizedEnemyPositionX;
+        result[7] = (float) this.normalizedEnemyPositionY;
+        result[8] = (float) this.normalizedEnemyMovementX;
+        result[9] = (float) this.normalizedEnemyMovementY;
     }
 
     private void issueInstructions(PerceptronStatus perceptronStatus, EnemyStatus enemyStatus, float[] neuralNetworkOutput) {
@@ -126,11 +147,11 @@ public class NeuralNetworkModule implements PerceptronModule {
         double gotoY = toBottomLeftBasedCoordinate(neuralNetworkOutput[1], battleFieldHeight, robotHeight);
 
         // 3rd element is treated as a bullet power, negative values means do not fire
-        double bulletPower = neuralNetworkOutput[2] * Rules.MAX_BULLET_POWER;
+        double bulletPower = neuralNetworkOutput[2] * RobocodeRules.MAX_BULLET_POWER;
         // 4th element is treated as the gun correction relative to direct targeting on the enemy
         // this makes sense since it takes some time for a bullet to reach the enemy
-        // correction range is taken from a constant Rules.GUN_TURN_RATE_RADIANS and is [-20, 20] degrees
-        double gunCorrectionRadians = neuralNetworkOutput[3] *  Rules.GUN_TURN_RATE_RADIANS;
+        // correction range is taken from a constant RobocodeRules.GUN_TURN_RATE_RADIANS and is [-20, 20] degrees
+        double gunCorrectionRadians = neuralNetworkOutput[3] *  RobocodeRules.GUN_TURN_RATE_RADIANS;
 
         issueRadarInstructions(perceptronStatus, enemyStatus);
         issueGunInstructions(perceptronStatus, enemyStatus, bulletPower, gunCorrectionRadians);
@@ -146,7 +167,7 @@ public class NeuralNetworkModule implements PerceptronModule {
         }
 
         // multiply by 2, so enemy will be in the middle of radar arc
-        double radarBearingRadians = Utils.normalRelativeAngle(
+        double radarBearingRadians = normalRelativeAngle(
                 perceptronStatus.getBodyHeadingRadians() - perceptronStatus.getRadarHeadingRadians() + enemyStatus.getBearingRadians());
         robotControl.setTurnRadarRightRadians(2.0 * radarBearingRadians);
     }
@@ -156,10 +177,10 @@ public class NeuralNetworkModule implements PerceptronModule {
         if (enemyStatus == null) {
             return;
         }
-        double gunBearingRadians = Utils.normalRelativeAngle(perceptronStatus.getBodyHeadingRadians()
+        double gunBearingRadians = normalRelativeAngle(perceptronStatus.getBodyHeadingRadians()
                 - perceptronStatus.getGunHeadingRadians() + enemyStatus.getBearingRadians() + gunCorrectionRadians);
         robotControl.setTurnGunRightRadians(gunBearingRadians);
-        if (bulletPower > 0.0 && gunBearingRadians < Rules.GUN_TURN_RATE_RADIANS) {
+        if (bulletPower > 0.0 && gunBearingRadians < RobocodeRules.GUN_TURN_RATE_RADIANS) {
             robotControl.setFire(bulletPower);
         }
     }
@@ -167,7 +188,7 @@ public class NeuralNetworkModule implements PerceptronModule {
     private void issueBodyInstructions(PerceptronStatus perceptronStatus, double gotoX, double gotoY) {
         double xDiff = gotoX - perceptronStatus.getX();
         double yDiff = gotoY - perceptronStatus.getY();
-        double angle = Utils.normalRelativeAngle(Math.atan2(xDiff, yDiff) - perceptronStatus.getBodyHeadingRadians());
+        double angle = normalRelativeAngle(Math.atan2(xDiff, yDiff) - perceptronStatus.getBodyHeadingRadians());
 
         // trigonometry that makes robot turn less in case it may go back instead of ahead
         robotControl.setTurnRightRadians(Math.atan(Math.tan(angle)));
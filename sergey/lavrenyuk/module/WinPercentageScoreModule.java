@@ -1,6 +1,7 @@
 package sergey.lavrenyuk.module;
 
 import sergey.lavrenyuk.event.BattleEnded;
+import sergey.lavrenyuk.event.EnemyStatus;
 import sergey.lavrenyuk.event.PerceptronEvent;
 import sergey.lavrenyuk.event.RoundEnded;
 import sergey.lavrenyuk.event.RoundStarted;
@@ -58,8 +59,9 @@ public class WinPercentageScoreModule implements PerceptronModule {
     public void onTurnStarted(TurnStarted event) {
         perceptronEnergy = event.getPerceptronStatus().getEnergy();
         // enemyStatus == null means no enemy was scanned this turn
-        if (event.getEnemyStatus().isPresent()) {
-            enemyEnergy = event.getEnemyStatus().get().getEnergy();
+        EnemyStatus enemyStatus = event.getEnemyStatusOrNull();
+        if (enemyStatus != null) {
+            enemyEnergy = enemyStatus.getEnergy();
         }
     }
 
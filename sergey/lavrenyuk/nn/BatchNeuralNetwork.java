@@ -0,0 +1,145 @@
+package sergey.lavrenyuk.nn;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static sergey.lavrenyuk.nn.NeuralNetwork.NEURON_MAX_VALUE;
+import static sergey.lavrenyuk.nn.NeuralNetwork.NEURON_MIN_VALUE;
+import static sergey.lavrenyuk.nn.NeuralNetwork.SHIFT_NEURON_VALUE;
+
+/**
+ * Evaluates many {@link WeightMatrix} instances against the same input in one pass. Gives exactly the same results as
+ * a separate {@link NeuralNetwork} per matrix.
+ *
+ * Weights are packed as a structure of arrays: all matrices' values of the same weight go one after another, i.e.
+ * weight {@code w} of matrix {@code m} is stored at {@code w * size + m}. That way every innermost loop runs over
+ * matrices with a unit stride and without dependencies between iterations, so C2 can auto-vectorize it.
+ *
+ * Output of {@link #process(float[], float[])} uses the same layout: output neuron {@code o} of matrix {@code m}
+ * is stored at {@code o * size + m}, see {@link #outputIndex(int, int)}.
+ */
+public class BatchNeuralNetwork {
+
+    private static final int INPUT_NEURONS = WeightMatrix.INPUT_NEURONS;
+    private static final int HIDDEN_NEURONS = WeightMatrix.HIDDEN_NEURONS;
+    private static final int OUTPUT_NEURONS = WeightMatrix.OUTPUT_NEURONS;
+
+    // number of matrices evaluated at once, so that their hidden (14 x 256 x 4 bytes = 14 KB) and output values
+    // stay in L1 cache while all the weight rows are streamed over them
+    private static final int BLOCK_SIZE = 256;
+
+    private final int size;
+    private final float[] weights;
+
+    // buffer for the hidden layer values of all matrices, reused between process() calls
+    private final float[] hiddenNeurons;
+
+    public BatchNeuralNetwork(List<WeightMatrix> weightMatrices) {
+        if (weightMatrices.isEmpty()) {
+            throw new IllegalArgumentException("At least one weight matrix expected");
+        }
+        this.size = weightMatrices.size();
+        this.weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER * size];
+        this.hiddenNeurons = new float[HIDDEN_NEURONS * size];
+
+        for (int m = 0; m < size; m++) {
+            float[] matrixWeights = weightMatrices.get(m).getWeights();
+            for (int w = 0; w < matrixWeights.length; w++) {
+                weights[w * size + m] = matrixWeights[w];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Index in the {@link #process(float[], float[])} output array of the specified matrix output neuron.
+     */
+    public int outputIndex(int matrixIndex, int outputNeuron) {
+        return outputNeuron * size + matrixIndex;
+    }
+
+    public float[] process(float[] input) {
+        float[] output = new float[OUTPUT_NEURONS * size];
+        process(input, output);
+        return output;
+    }
+
+    /**
+     * Writes outputs of all the matrices to the provided array, which must have {@link WeightMatrix#OUTPUT_NEURONS}
+     * * {@link #size()} elements. Allocates nothing and is not thread safe.
+     */
+    public void process(float[] input, float[] output) {
+
+        if (input.length != INPUT_NEURONS) {
+            throw new IllegalArgumentException(String.format(
+                    "%d input neurons expected, but found %d", INPUT_NEURONS, input.length));
+        }
+        if (output.length != OUTPUT_NEURONS * size) {
+            throw new IllegalArgumentException(String.format(
+                    "%d output values expected, but found %d", OUTPUT_NEURONS * size, output.length));
+        }
+
+        for (int from = 0; from < size; from += BLOCK_SIZE) {
+            processBlock(input, output, from, Math.min(from + BLOCK_SIZE, size));
+        }
+    }
+
+    // evaluates matrices [from, to), their hidden and output rows fit into L1 cache together
+    private void processBlock(float[] input, float[] output, int from, int to) {
+
+        for (int i = 0; i < HIDDEN_NEURONS; i++) {
+            int neuronOffset = i * size;
+            Arrays.fill(hiddenNeurons, neuronOffset + from, neuronOffset + to, 0.0f);
+            for (int j = 0; j < INPUT_NEURONS; j++) {
+                float inputValue = normalize(input[j]);
+                addMultiplied(hiddenNeurons, neuronOffset, inputValue,
+                        weights, WeightMatrix.inputToHiddenWeightIndex(i, j) * size, from, to);
+            }
+            addMultiplied(hiddenNeurons, neuronOffset, SHIFT_NEURON_VALUE,
+                    weights, WeightMatrix.inputToHiddenWeightIndex(i, INPUT_NEURONS) * size, from, to);
+            normalize(hiddenNeurons, neuronOffset, from, to);
+        }
+
+        for (int i = 0; i < OUTPUT_NEURONS; i++) {
+            int neuronOffset = i * size;
+            Arrays.fill(output, neuronOffset + from, neuronOffset + to, 0.0f);
+            for (int j = 0; j < HIDDEN_NEURONS; j++) {
+                addMultiplied(output, neuronOffset, hiddenNeurons, j * size,
+                        weights, WeightMatrix.hiddenToOutputWeightIndex(i, j) * size, from, to);
+            }
+            addMultiplied(output, neuronOffset, SHIFT_NEURON_VALUE,
+                    weights, WeightMatrix.hiddenToOutputWeightIndex(i, HIDDEN_NEURONS) * size, from, to);
+            normalize(output, neuronOffset, from, to);
+        }
+    }
+
+    // sums[sumsOffset + m] += value * weights[weightsOffset + m] for m in [from, to)
+    private static void addMultiplied(float[] sums, int sumsOffset, float value, float[] weights, int weightsOffset,
+                                      int from, int to) {
+        for (int m = from; m < to; m++) {
+            sums[sumsOffset + m] += value * weights[weightsOffset + m];
+        }
+    }
+
+    // sums[sumsOffset + m] += values[valuesOffset + m] * weights[weightsOffset + m] for m in [from, to)
+    private static void addMultiplied(float[] sums, int sumsOffset, float[] values, int valuesOffset,
+                                      float[] weights, int weightsOffset, int from, int to) {
+        for (int m = from; m < to; m++) {
+            sums[sumsOffset + m] += values[valuesOffset + m] * weights[weightsOffset + m];
+        }
+    }
+
+    // Math.min and Math.max are used instead of branches, they are vectorized by C2
+    private static void normalize(float[] neuronValues, int offset, int from, int to) {
+        for (int m = from; m < to; m++) {
+            neuronValues[offset + m] = Math.max(NEURON_MIN_VALUE, Math.min(NEURON_MAX_VALUE, neuronValues[offset + m]));
+        }
+    }
+
+    private static float normalize(float neuronValue) {
+        return Math.max(NEURON_MIN_VALUE, Math.min(NEURON_MAX_VALUE, neuronValue));
+    }
+}
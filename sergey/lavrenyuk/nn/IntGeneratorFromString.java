@@ -28,4 +28,12 @@ public class IntGeneratorFromString implements Supplier<Integer> {
     public Integer get() {
         return intArray[index.getAndUpdate(i -> ++i < intArray.length ? i : 0)];
     }
+
+    /**
+     * Returns the value the specified {@link #get()} invocation of a new generator would return, e.g. 3 for the 4th
+     * invocation of "1, 1, 2, 3". Doesn't change the generator, so values don't depend on the order of calls.
+     */
+    public int get(long invocation) {
+        return intArray[(int) (invocation % intArray.length)];
+    }
 }
@@ -0,0 +1,13 @@
+package sergey.lavrenyuk.nn;
+
+/**
+ * Inference of a single weight matrix, e.g. {@link NeuralNetwork} with float weights or {@link QuantizedNeuralNetwork}
+ * with int8 weights. Instances are not thread safe.
+ */
+public interface Network {
+
+    /**
+     * Writes {@link WeightMatrix#OUTPUT_NEURONS} output values to the provided array, allocates nothing.
+     */
+    void process(float[] input, float[] output);
+}
@@ -1,8 +1,6 @@
 package sergey.lavrenyuk.nn;
 
-import java.util.Arrays;
-
-public class NeuralNetwork {
+public class NeuralNetwork implements Network {
 
     public static final float NEURON_MIN_VALUE = -1.0f;
     public static final float NEURON_MAX_VALUE = 1.0f;
@@ -12,65 +10,111 @@ public class NeuralNetwork {
     private final int hiddenNeuronsNumber;
     private final int outputNeuronsNumber;
 
-    private final float[][] inputToHiddenWeights;
-    private final float[][] hiddenToOutputWeights;
+    // the same layout as in WeightMatrix: input to hidden weights row by row, then hidden to output weights row by row,
+    // each row ends with the shift neuron weight
+    private final float[] weights;
+    private final int hiddenToOutputOffset;
+
+    // buffers for the clamped input and the hidden layer values, reused between process() calls
+    // so the inference allocates nothing
+    private final float[] inputNeurons;
+    private final float[] hiddenNeurons;
 
     public NeuralNetwork(WeightMatrix weightMatrix) {
-        this(WeightMatrix.INPUT_NEURONS, WeightMatrix.HIDDEN_NEURONS, WeightMatrix.OUTPUT_NEURONS,
-                weightMatrix.getInputToHiddenWeights(), weightMatrix.getHiddenToOutputWeights());
+        this(WeightMatrix.INPUT_NEURONS, WeightMatrix.HIDDEN_NEURONS, WeightMatrix.OUTPUT_NEURONS, weightMatrix.getWeights());
     }
 
     public NeuralNetwork(int inputNeuronsNumber, int hiddenNeuronsNumber, int outputNeuronsNumber,
                          float[][] inputToHiddenWeights, float[][] hiddenToOutputWeights) {
+        this(inputNeuronsNumber, hiddenNeuronsNumber, outputNeuronsNumber,
+                flatten(inputToHiddenWeights, hiddenToOutputWeights));
+    }
+
+    public NeuralNetwork(int inputNeuronsNumber, int hiddenNeuronsNumber, int outputNeuronsNumber, float[] weights) {
+        // +1 because of the shift neurons
+        int expectedWeights = hiddenNeuronsNumber * (inputNeuronsNumber + 1) + outputNeuronsNumber * (hiddenNeuronsNumber + 1);
+        if (weights.length != expectedWeights) {
+            throw new IllegalArgumentException(String.format("%d weights expected, but found %d",
+                    expectedWeights, weights.length));
+        }
         this.inputNeuronsNumber = inputNeuronsNumber;
         this.hiddenNeuronsNumber = hiddenNeuronsNumber;
         this.outputNeuronsNumber = outputNeuronsNumber;
-        this.inputToHiddenWeights = inputToHiddenWeights;
-        this.hiddenToOutputWeights = hiddenToOutputWeights;
+        this.weights = weights;
+        this.hiddenToOutputOffset = hiddenNeuronsNumber * (inputNeuronsNumber + 1);
+        this.inputNeurons = new float[inputNeuronsNumber];
+        this.hiddenNeurons = new float[hiddenNeuronsNumber];
     }
 
     public float[] process(float[] input) {
+        float[] output = new float[outputNeuronsNumber];
+        process(input, output);
+        return output;
+    }
+
+    /**
+     * Same as {@link #process(float[])}, but writes the result to the provided {@code output} array instead of allocating
+     * a new one. Clamped input and hidden layer values are stored in buffers owned by this instance, thus the method allocates nothing
+     * and is not thread safe. Shift neurons are not stored anywhere, their weights are simply added to the sums.
+     */
+    @Override
+    public void process(float[] input, float[] output) {
 
         if (input.length != inputNeuronsNumber) {
             throw new IllegalArgumentException(String.format(
                     "%d input neurons expected, but found %d", inputNeuronsNumber, input.length));
         }
+        if (output.length != outputNeuronsNumber) {
+            throw new IllegalArgumentException(String.format(
+                    "%d output neurons expected, but found %d", outputNeuronsNumber, output.length));
+        }
 
-        float[] inputNeurons = normalize(Arrays.copyOf(input, input.length + 1));
-        inputNeurons[inputNeurons.length - 1] = SHIFT_NEURON_VALUE;
+        for (int j = 0; j < inputNeuronsNumber; j++) {
+            inputNeurons[j] = normalize(input[j]);
+        }
 
-        float[] hiddenNeurons = new float[hiddenNeuronsNumber + 1];
+        int offset = 0;
         for (int i = 0; i < hiddenNeuronsNumber; i++) {
-            hiddenNeurons[i] = normalize(multiply(inputNeurons, inputToHiddenWeights[i]));
+            float sum = 0.0f;
+            for (int j = 0; j < inputNeuronsNumber; j++) {
+                sum += inputNeurons[j] * weights[offset + j];
+            }
+            sum += SHIFT_NEURON_VALUE * weights[offset + inputNeuronsNumber];
+            hiddenNeurons[i] = normalize(sum);
+            offset += inputNeuronsNumber + 1;
         }
-        hiddenNeurons[hiddenNeurons.length - 1] = SHIFT_NEURON_VALUE;
 
-        float[] outputNeurons = new float[outputNeuronsNumber];
+        offset = hiddenToOutputOffset;
         for (int i = 0; i < outputNeuronsNumber; i++) {
-            outputNeurons[i] = normalize(multiply(hiddenNeurons, hiddenToOutputWeights[i]));
+            float sum = 0.0f;
+            for (int j = 0; j < hiddenNeuronsNumber; j++) {
+                sum += hiddenNeurons[j] * weights[offset + j];
+            }
+            sum += SHIFT_NEURON_VALUE * weights[offset + hiddenNeuronsNumber];
+            output[i] = normalize(sum);
+            offset += hiddenNeuronsNumber + 1;
         }
-
-        return outputNeurons;
     }
 
-    private static float multiply(float[] left, float[] right) {
-        if (left.length != right.length) {
-            throw new IllegalArgumentException(String.format("Trying to multiply vectors of different size: %d and %d",
-                    left.length, right.length));
+    private static float[] flatten(float[][] inputToHiddenWeights, float[][] hiddenToOutputWeights) {
+        int size = 0;
+        for (float[] row : inputToHiddenWeights) {
+            size += row.length;
         }
-
-        float result = 0.0f;
-        for (int i = 0; i < left.length; i++) {
-            result += left[i] * right[i];
+        for (float[] row : hiddenToOutputWeights) {
+            size += row.length;
         }
-        return result;
-    }
-
-    private static float[] normalize(float[] neuronValues) {
-        for (int i = 0; i < neuronValues.length; i++) {
-            neuronValues[i] = normalize(neuronValues[i]);
+        float[] result = new float[size];
+        int offset = 0;
+        for (float[] row : inputToHiddenWeights) {
+            System.arraycopy(row, 0, result, offset, row.length);
+            offset += row.length;
         }
-        return neuronValues;
+        for (float[] row : hiddenToOutputWeights) {
+            System.arraycopy(row, 0, result, offset, row.length);
+            offset += row.length;
+        }
+        return result;
     }
 
     private static float normalize(float neuronValue) {
@@ -0,0 +1,103 @@
+package sergey.lavrenyuk.nn;
+
+import static sergey.lavrenyuk.nn.NeuralNetwork.NEURON_MAX_VALUE;
+import static sergey.lavrenyuk.nn.NeuralNetwork.NEURON_MIN_VALUE;
+import static sergey.lavrenyuk.nn.QuantizedWeightMatrix.INT8_MAX_VALUE;
+
+/**
+ * {@link Network} of a {@link QuantizedWeightMatrix.Precision#INT8} matrix, which uses integer arithmetic.
+ *
+ * Neuron values are limited to [-1, 1], so they are quantized to integers from -127 to 127 with the same scale 1/127.
+ * Each neuron's sum is an integer dot product of the quantized values and the int8 weights of the neuron's row, it's
+ * converted to float once, multiplied by the row scale and limited to [-1, 1]. Hidden neuron values are quantized again
+ * for the output layer.
+ *
+ * Use {@link #create(QuantizedWeightMatrix)} to get a network of any precision.
+ */
+public class QuantizedNeuralNetwork implements Network {
+
+    private static final int INPUT_NEURONS = WeightMatrix.INPUT_NEURONS;
+    private static final int HIDDEN_NEURONS = WeightMatrix.HIDDEN_NEURONS;
+    private static final int OUTPUT_NEURONS = WeightMatrix.OUTPUT_NEURONS;
+
+    // adding and subtracting 1.5 * 2^23 rounds a float of magnitude below 2^22 to the nearest integer, ties to even
+    private static final float ROUNDING_SHIFT = 0x1.8p23f;
+
+    private final byte[] weights;
+    // converts a row's integer sum to the neuron value, i.e. the row scale multiplied by the neuron values scale
+    private final float[] sumScales;
+
+    // quantized neuron values reused between process() calls, the last value is the shift neuron
+    private final int[] inputNeurons = new int[INPUT_NEURONS + 1];
+    private final int[] hiddenNeurons = new int[HIDDEN_NEURONS + 1];
+
+    public QuantizedNeuralNetwork(QuantizedWeightMatrix weightMatrix) {
+        this.weights = weightMatrix.getInt8Weights();
+        float[] rowScales = weightMatrix.getRowScales();
+        this.sumScales = new float[QuantizedWeightMatrix.ROWS];
+        for (int row = 0; row < sumScales.length; row++) {
+            sumScales[row] = rowScales[row] / INT8_MAX_VALUE;
+        }
+        // shift neuron value is NeuralNetwork.SHIFT_NEURON_VALUE = 1
+        inputNeurons[INPUT_NEURONS] = INT8_MAX_VALUE;
+        hiddenNeurons[HIDDEN_NEURONS] = INT8_MAX_VALUE;
+    }
+
+    /**
+     * Network for a matrix of any precision: {@link QuantizedWeightMatrix.Precision#FLOAT16} weights are converted
+     * to floats, since there is no half precision arithmetic, so the network differs from the original one by the weights
+     * rounding only.
+     */
+    public static Network create(QuantizedWeightMatrix weightMatrix) {
+        return (weightMatrix.getPrecision() == QuantizedWeightMatrix.Precision.INT8)
+                ? new QuantizedNeuralNetwork(weightMatrix)
+                : new NeuralNetwork(weightMatrix.dequantize());
+    }
+
+    @Override
+    public void process(float[] input, float[] output) {
+
+        if (input.length != INPUT_NEURONS) {
+            throw new IllegalArgumentException(String.format(
+                    "%d input neurons expected, but found %d", INPUT_NEURONS, input.length));
+        }
+        if (output.length != OUTPUT_NEURONS) {
+            throw new IllegalArgumentException(String.format(
+                    "%d output neurons expected, but found %d", OUTPUT_NEURONS, output.length));
+        }
+
+        for (int i = 0; i < INPUT_NEURONS; i++) {
+            inputNeurons[i] = quantize(normalize(input[i]));
+        }
+
+        int offset = WeightMatrix.INPUT_TO_HIDDEN_OFFSET;
+        for (int i = 0; i < HIDDEN_NEURONS; i++) {
+            hiddenNeurons[i] = quantize(normalize(dotProduct(inputNeurons, offset) * sumScales[i]));
+            offset += INPUT_NEURONS + 1;
+        }
+
+        offset = WeightMatrix.HIDDEN_TO_OUTPUT_OFFSET;
+        for (int i = 0; i < OUTPUT_NEURONS; i++) {
+            output[i] = normalize(dotProduct(hiddenNeurons, offset) * sumScales[HIDDEN_NEURONS + i]);
+            offset += HIDDEN_NEURONS + 1;
+        }
+    }
+
+    // neurons include the shift neuron, so the row's shift weight is added as well
+    private int dotProduct(int[] neurons, int offset) {
+        int sum = 0;
+        for (int j = 0; j < neurons.length; j++) {
+            sum += neurons[j] * weights[offset + j];
+        }
+        return sum;
+    }
+
+    // normalized neuron value to an integer from -127 to 127
+    private static int quantize(float neuronValue) {
+        return (int) ((neuronValue * INT8_MAX_VALUE + ROUNDING_SHIFT) - ROUNDING_SHIFT);
+    }
+
+    private static float normalize(float neuronValue) {
+        return Math.max(NEURON_MIN_VALUE, Math.min(NEURON_MAX_VALUE, neuronValue));
+    }
+}
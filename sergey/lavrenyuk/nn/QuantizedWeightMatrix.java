@@ -0,0 +1,264 @@
+package sergey.lavrenyuk.nn;
+
+import java.util.Arrays;
+
+/**
+ * {@link WeightMatrix} with reduced precision weights, which takes 2-3 times less memory.
+ *
+ * Weights have the same layout as in {@link WeightMatrix}. Each input to hidden and hidden to output row, i.e. the weights
+ * of a single hidden or output neuron including its shift neuron weight, is a separate quantization row. Input to hidden
+ * rows go first, see {@link #ROWS}.
+ *
+ * {@link Precision#FLOAT16} weights are IEEE 754 half precision floats, they keep 3 significant decimal digits for any
+ * weight up to 65504. {@link Precision#INT8} weights are integers from -127 to 127 multiplied by the scale of their row,
+ * the largest weight of a row is stored exactly, others keep 1/254 of the row's range, so such matrices are evaluated
+ * with integer arithmetic by {@link QuantizedNeuralNetwork}.
+ */
+public class QuantizedWeightMatrix {
+
+    public static final int ROWS = WeightMatrix.HIDDEN_NEURONS + WeightMatrix.OUTPUT_NEURONS;
+    public static final int INT8_MAX_VALUE = 127;
+
+    private final Precision precision;
+    // null unless the precision is FLOAT16
+    private final short[] float16Weights;
+    // both are null unless the precision is INT8
+    private final byte[] int8Weights;
+    private final float[] rowScales;
+
+    /**
+     * Creates a {@link Precision#FLOAT16} matrix backed by the provided array, the array is not copied.
+     */
+    public QuantizedWeightMatrix(short[] float16Weights) {
+        verifyLength("weights", float16Weights.length, WeightMatrix.TOTAL_WEIGHTS_NUMBER);
+        this.precision = Precision.FLOAT16;
+        this.float16Weights = float16Weights;
+        this.int8Weights = null;
+        this.rowScales = null;
+    }
+
+    /**
+     * Creates a {@link Precision#INT8} matrix backed by the provided arrays, the arrays are not copied.
+     */
+    public QuantizedWeightMatrix(byte[] int8Weights, float[] rowScales) {
+        verifyLength("weights", int8Weights.length, WeightMatrix.TOTAL_WEIGHTS_NUMBER);
+        verifyLength("row scales", rowScales.length, ROWS);
+        this.precision = Precision.INT8;
+        this.float16Weights = null;
+        this.int8Weights = int8Weights;
+        this.rowScales = rowScales;
+    }
+
+    public static QuantizedWeightMatrix quantize(WeightMatrix weightMatrix, Precision precision) {
+        float[] weights = weightMatrix.getWeights();
+        if (precision == Precision.FLOAT16) {
+            short[] float16Weights = new short[weights.length];
+            for (int i = 0; i < weights.length; i++) {
+                float16Weights[i] = toFloat16(weights[i]);
+            }
+            return new QuantizedWeightMatrix(float16Weights);
+        }
+
+        byte[] int8Weights = new byte[weights.length];
+        float[] rowScales = new float[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            int from = rowOffset(row);
+            int to = from + rowLength(row);
+            float maxAbsWeight = 0;
+            for (int i = from; i < to; i++) {
+                maxAbsWeight = Math.max(maxAbsWeight, Math.abs(weights[i]));
+            }
+            // a row of zeros has zero scale, its weights are zeros anyway
+            float scale = maxAbsWeight / INT8_MAX_VALUE;
+            rowScales[row] = scale;
+            for (int i = from; i < to; i++) {
+                int8Weights[i] = (scale == 0) ? 0 : (byte) Math.max(-INT8_MAX_VALUE,
+                        Math.min(INT8_MAX_VALUE, Math.round(weights[i] / scale)));
+            }
+        }
+        return new QuantizedWeightMatrix(int8Weights, rowScales);
+    }
+
+    /**
+     * Matrix with float weights, which have the values of the quantized ones.
+     */
+    public WeightMatrix dequantize() {
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        if (precision == Precision.FLOAT16) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = fromFloat16(float16Weights[i]);
+            }
+        } else {
+            for (int row = 0; row < ROWS; row++) {
+                int from = rowOffset(row);
+                for (int i = from; i < from + rowLength(row); i++) {
+                    weights[i] = int8Weights[i] * rowScales[row];
+                }
+            }
+        }
+        return new WeightMatrix(weights);
+    }
+
+    /**
+     * Index in the weights array of the first weight of the row.
+     */
+    public static int rowOffset(int row) {
+        return (row < WeightMatrix.HIDDEN_NEURONS)
+                ? WeightMatrix.inputToHiddenWeightIndex(row, 0)
+                : WeightMatrix.hiddenToOutputWeightIndex(row - WeightMatrix.HIDDEN_NEURONS, 0);
+    }
+
+    /**
+     * Number of weights in the row including the shift neuron weight.
+     */
+    public static int rowLength(int row) {
+        return (row < WeightMatrix.HIDDEN_NEURONS) ? WeightMatrix.INPUT_NEURONS + 1 : WeightMatrix.HIDDEN_NEURONS + 1;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Returns the backing array, not a copy. It must not be modified.
+     */
+    public short[] getFloat16Weights() {
+        verifyPrecision(Precision.FLOAT16);
+        return float16Weights;
+    }
+
+    /**
+     * Returns the backing array, not a copy. It must not be modified.
+     */
+    public byte[] getInt8Weights() {
+        verifyPrecision(Precision.INT8);
+        return int8Weights;
+    }
+
+    /**
+     * Returns the backing array, not a copy. It must not be modified. Weight value is the int8 weight multiplied
+     * by the scale of its row.
+     */
+    public float[] getRowScales() {
+        verifyPrecision(Precision.INT8);
+        return rowScales;
+    }
+
+    /**
+     * Converts a float to the nearest half precision float, ties are rounded to even. Values too large for half
+     * precision become infinite.
+     */
+    public static short toFloat16(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int floatExponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (floatExponent == 0xFF) { // infinity or NaN
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0));
+        }
+        int exponent = floatExponent - 127 + 15;
+        if (exponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (exponent <= 0) {
+            // subnormal half, which has no implicit leading bit
+            if (exponent < -10) {
+                return (short) sign;
+            }
+            return (short) (sign | roundToEven(mantissa | 0x800000, 14 - exponent));
+        }
+        // rounding may carry to the exponent, which gives the right result, up to infinity
+        return (short) (sign | ((exponent << 10) + roundToEven(mantissa, 13)));
+    }
+
+    public static float fromFloat16(short value) {
+        int bits = value & 0xFFFF;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            float subnormal = mantissa * 0x1p-24f;
+            return (sign == 0) ? subnormal : -subnormal;
+        }
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+
+    // value >> shift rounded to the nearest integer, ties to even
+    private static int roundToEven(int value, int shift) {
+        int result = value >>> shift;
+        int remainder = value & ((1 << shift) - 1);
+        int half = 1 << (shift - 1);
+        if (remainder > half || (remainder == half && (result & 1) != 0)) {
+            result++;
+        }
+        return result;
+    }
+
+    private static void verifyLength(String name, int actual, int expected) {
+        if (actual != expected) {
+            throw new IllegalArgumentException(String.format("%d %s expected, but found %d", expected, name, actual));
+        }
+    }
+
+    private void verifyPrecision(Precision expected) {
+        if (precision != expected) {
+            throw new IllegalStateException(String.format("%s matrix doesn't have %s weights", precision, expected));
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || this.getClass() != obj.getClass()) {
+            return false;
+        }
+
+        QuantizedWeightMatrix that = (QuantizedWeightMatrix) obj;
+        return this.precision == that.precision
+                && Arrays.equals(this.float16Weights, that.float16Weights)
+                && Arrays.equals(this.int8Weights, that.int8Weights)
+                && Arrays.equals(this.rowScales, that.rowScales);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * precision.hashCode() + Arrays.hashCode(float16Weights)) + Arrays.hashCode(int8Weights))
+                + Arrays.hashCode(rowScales);
+    }
+
+    public enum Precision {
+        // 2 bytes per weight
+        FLOAT16(WeightMatrix.TOTAL_WEIGHTS_NUMBER * Short.BYTES),
+        // a byte per weight and a float scale per row, padded to 4 bytes, so files with a header accept it
+        INT8((ROWS * Float.BYTES + WeightMatrix.TOTAL_WEIGHTS_NUMBER + 3) / 4 * 4);
+
+        private final int sizeInBytes;
+
+        Precision(int sizeInBytes) {
+            this.sizeInBytes = sizeInBytes;
+        }
+
+        /**
+         * Size of a serialized matrix, see {@link sergey.lavrenyuk.io.Serializer}.
+         */
+        public int getSizeInBytes() {
+            return sizeInBytes;
+        }
+
+        public static Precision fromString(String precision) {
+            for (Precision value : values()) {
+                if (value.name().equalsIgnoreCase(precision.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported precision '%s'", precision));
+        }
+    }
+}
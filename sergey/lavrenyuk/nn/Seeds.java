@@ -0,0 +1,44 @@
+package sergey.lavrenyuk.nn;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives independent seeds from a run seed, e.g. a seed of a generation, then of a partition of that generation,
+ * then of a matrix of that partition. A derived seed depends on the path only, not on the order seeds are derived in,
+ * so the same run seed gives the same random streams to each matrix whichever thread creates it.
+ *
+ * Each step mixes the parent seed with the index the same way {@link SplittableRandom} mixes its state,
+ * with the SplitMix64 finalizer.
+ */
+public class Seeds {
+
+    private Seeds() {}
+
+    // odd constant of SplittableRandom, makes seeds of adjacent indexes far from each other before they are mixed
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Returns the seed of the specified path, e.g. derive(seed, 3, 5) is the seed of the 5th substream of the 3rd
+     * substream of the seed. An empty path returns the seed itself.
+     */
+    public static long derive(long seed, long... path) {
+        long result = seed;
+        for (long index : path) {
+            result = mix64(result + GOLDEN_GAMMA * (index + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a new seed, which is different for each call and each process.
+     */
+    public static long random() {
+        return new SplittableRandom().nextLong();
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
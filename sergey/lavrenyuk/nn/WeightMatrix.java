@@ -1,8 +1,16 @@
 package sergey.lavrenyuk.nn;
 
 import java.util.Arrays;
-import java.util.Objects;
 
+/**
+ * Weights of the {@link NeuralNetwork}. All weights are stored in a single contiguous array: first go input to hidden
+ * neuron weights, row by row (one row per hidden neuron), then hidden to output neuron weights, row by row (one row per
+ * output neuron). Each row ends with the shift neuron weight.
+ *
+ * Two dimensional arrays returned by {@link #getInputToHiddenWeights()} and {@link #getHiddenToOutputWeights()} are
+ * copies, they are kept for compatibility. Code on a hot path should use {@link #getWeights()} with the offsets and
+ * index methods of this class.
+ */
 public class WeightMatrix {
 
     public static final int INPUT_NEURONS = 10;
@@ -10,17 +18,33 @@ public class WeightMatrix {
     public static final int OUTPUT_NEURONS = 4;
 
     // +1 because of the shift neuron
-    public static final int TOTAL_WEIGHTS_NUMBER = HIDDEN_NEURONS * (INPUT_NEURONS + 1)
-            + OUTPUT_NEURONS * (HIDDEN_NEURONS + 1);
+    public static final int INPUT_TO_HIDDEN_WEIGHTS_NUMBER = HIDDEN_NEURONS * (INPUT_NEURONS + 1);
+    public static final int HIDDEN_TO_OUTPUT_WEIGHTS_NUMBER = OUTPUT_NEURONS * (HIDDEN_NEURONS + 1);
+
+    public static final int TOTAL_WEIGHTS_NUMBER = INPUT_TO_HIDDEN_WEIGHTS_NUMBER + HIDDEN_TO_OUTPUT_WEIGHTS_NUMBER;
+
+    public static final int INPUT_TO_HIDDEN_OFFSET = 0;
+    public static final int HIDDEN_TO_OUTPUT_OFFSET = INPUT_TO_HIDDEN_OFFSET + INPUT_TO_HIDDEN_WEIGHTS_NUMBER;
 
     public static final int SIZE_IN_BYTES = TOTAL_WEIGHTS_NUMBER * Float.BYTES;
 
-    private final float[][] inputToHiddenWeights;
-    private final float[][] hiddenToOutputWeights;
+    private final float[] weights;
+
+    /**
+     * Creates a matrix backed by the provided array, the array is not copied.
+     */
+    public WeightMatrix(float[] weights) {
+        if (weights.length != TOTAL_WEIGHTS_NUMBER) {
+            throw new IllegalArgumentException(String.format("%d weights expected, but found %d",
+                    TOTAL_WEIGHTS_NUMBER, weights.length));
+        }
+        this.weights = weights;
+    }
 
+    /**
+     * Creates a matrix from two dimensional arrays, their values are copied.
+     */
     public WeightMatrix(float[][] inputToHiddenWeights, float[][] hiddenToOutputWeights) {
-        this.inputToHiddenWeights = inputToHiddenWeights;
-        this.hiddenToOutputWeights = hiddenToOutputWeights;
 
         for (float[] weights : inputToHiddenWeights) {
             if (weights.length != INPUT_NEURONS + 1) { // +1 because of the shift neuron
@@ -47,14 +71,63 @@ public class WeightMatrix {
             throw new IllegalArgumentException(String.format("%d output neurons expected, but found %d",
                     OUTPUT_NEURONS, hiddenToOutputWeights.length));
         }
+
+        this.weights = new float[TOTAL_WEIGHTS_NUMBER];
+        for (int i = 0; i < HIDDEN_NEURONS; i++) {
+            System.arraycopy(inputToHiddenWeights[i], 0, weights, inputToHiddenWeightIndex(i, 0), INPUT_NEURONS + 1);
+        }
+        for (int i = 0; i < OUTPUT_NEURONS; i++) {
+            System.arraycopy(hiddenToOutputWeights[i], 0, weights, hiddenToOutputWeightIndex(i, 0), HIDDEN_NEURONS + 1);
+        }
+    }
+
+    /**
+     * Index in {@link #getWeights()} of the weight between the specified hidden and input neurons.
+     * Input neuron index {@link #INPUT_NEURONS} denotes the shift neuron.
+     */
+    public static int inputToHiddenWeightIndex(int hiddenNeuron, int inputNeuron) {
+        return INPUT_TO_HIDDEN_OFFSET + hiddenNeuron * (INPUT_NEURONS + 1) + inputNeuron;
+    }
+
+    /**
+     * Index in {@link #getWeights()} of the weight between the specified output and hidden neurons.
+     * Hidden neuron index {@link #HIDDEN_NEURONS} denotes the shift neuron.
+     */
+    public static int hiddenToOutputWeightIndex(int outputNeuron, int hiddenNeuron) {
+        return HIDDEN_TO_OUTPUT_OFFSET + outputNeuron * (HIDDEN_NEURONS + 1) + hiddenNeuron;
+    }
+
+    /**
+     * Returns the backing array, not a copy. It must not be modified.
+     */
+    public float[] getWeights() {
+        return weights;
+    }
+
+    public float getInputToHiddenWeight(int hiddenNeuron, int inputNeuron) {
+        return weights[inputToHiddenWeightIndex(hiddenNeuron, inputNeuron)];
+    }
+
+    public float getHiddenToOutputWeight(int outputNeuron, int hiddenNeuron) {
+        return weights[hiddenToOutputWeightIndex(outputNeuron, hiddenNeuron)];
     }
 
     public float[][] getInputToHiddenWeights() {
-        return inputToHiddenWeights;
+        float[][] result = new float[HIDDEN_NEURONS][];
+        for (int i = 0; i < HIDDEN_NEURONS; i++) {
+            int from = inputToHiddenWeightIndex(i, 0);
+            result[i] = Arrays.copyOfRange(weights, from, from + INPUT_NEURONS + 1);
+        }
+        return result;
     }
 
     public float[][] getHiddenToOutputWeights() {
-        return hiddenToOutputWeights;
+        float[][] result = new float[OUTPUT_NEURONS][];
+        for (int i = 0; i < OUTPUT_NEURONS; i++) {
+            int from = hiddenToOutputWeightIndex(i, 0);
+            result[i] = Arrays.copyOfRange(weights, from, from + HIDDEN_NEURONS + 1);
+        }
+        return result;
     }
 
     @Override
@@ -67,12 +140,11 @@ public class WeightMatrix {
         }
 
         WeightMatrix that = (WeightMatrix) obj;
-        return Arrays.deepEquals(this.inputToHiddenWeights, that.inputToHiddenWeights)
-                && Arrays.deepEquals(this.hiddenToOutputWeights, that.hiddenToOutputWeights);
+        return Arrays.equals(this.weights, that.weights);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(inputToHiddenWeights, hiddenToOutputWeights);
+        return Arrays.hashCode(weights);
     }
 }
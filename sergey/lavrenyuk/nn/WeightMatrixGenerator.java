@@ -1,14 +1,33 @@
 package sergey.lavrenyuk.nn;
 
-import java.util.Random;
-import java.util.function.Supplier;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
+/**
+ * Creates weight matrices with weights uniformly distributed from -maxAbsWeight to maxAbsWeight. The generator has its
+ * own {@link SplittableRandom}, so it's not thread safe, each thread needs its own generator, e.g. one created with
+ * {@link SplittableRandom#split()}. Generators with the same seed create the same matrices.
+ */
 public class WeightMatrixGenerator {
 
-    private final Random RANDOM = new Random();
+    private final SplittableRandom random;
+
+    public WeightMatrixGenerator() {
+        this(new SplittableRandom());
+    }
+
+    public WeightMatrixGenerator(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    public WeightMatrixGenerator(SplittableRandom random) {
+        this.random = random;
+    }
 
     public WeightMatrix generateFixed(float weight) {
-        return create(() -> weight);
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        Arrays.fill(weights, weight);
+        return new WeightMatrix(weights);
     }
 
     public WeightMatrix generateRandom() {
@@ -16,23 +35,32 @@ public class WeightMatrixGenerator {
     }
 
     public WeightMatrix generateRandom(float maxAbsWeight) {
-        return create(() -> (RANDOM.nextBoolean() ? 1 : -1) * RANDOM.nextFloat() * maxAbsWeight);
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        fillRandom(weights, maxAbsWeight);
+        return new WeightMatrix(weights);
     }
 
-    private WeightMatrix create(Supplier<Float> weightSupplier) {
-        return new WeightMatrix(
-                // +1 for the shift neuron
-                create(WeightMatrix.HIDDEN_NEURONS, WeightMatrix.INPUT_NEURONS + 1, weightSupplier),
-                create(WeightMatrix.OUTPUT_NEURONS, WeightMatrix.HIDDEN_NEURONS + 1, weightSupplier));
+    /**
+     * Fills the array with random weights, each random long gives two of them.
+     */
+    public void fillRandom(float[] weights, float maxAbsWeight) {
+        float scale = maxAbsWeight * 0x1.0p-23f;
+        int i = 0;
+        for (; i + 1 < weights.length; i += 2) {
+            long bits = random.nextLong();
+            weights[i] = signedBits(bits >>> 40) * scale;
+            weights[i + 1] = signedBits(bits >>> 8) * scale;
+        }
+        if (i < weights.length) {
+            weights[i] = signedBits(random.nextLong() >>> 40) * scale;
+        }
     }
 
-    private float[][] create(int m, int n, Supplier<Float> weightSupplier) {
-        float[][] result = new float[m][n];
-        for (int i = 0; i < m; i++) {
-            for (int j = 0; j < n; j++) {
-                result[i][j] = weightSupplier.get();
-            }
-        }
-        return result;
+    /**
+     * Uniformly distributed value from -2^23 to 2^23 - 1, made of the lowest 24 bits. It's exactly representable
+     * as a float, so a random float from -1 to 1 is this value multiplied by 2^-23.
+     */
+    public static int signedBits(long bits) {
+        return ((int) bits & 0xFFFFFF) - 0x800000;
     }
 }
@@ -0,0 +1,81 @@
+package sergey.lavrenyuk.nn.scoring;
+
+/**
+ * Decides if a matrix can stop being scored before all the rounds are played, since it can not reach the cutoff win rate,
+ * e.g. the win rate of the worst survivor of the previous generation.
+ *
+ * The decision is based on the upper bound of the Wilson score interval for the win rate: scoring is stopped once
+ * the upper bound falls below the cutoff. The z-score defines the confidence, e.g. 2.576 gives 99% two-sided interval,
+ * thus each check wrongly stops a matrix which reaches the cutoff in less than 0.5% of cases. The check is repeated after
+ * each round, so the overall chance is somewhat higher.
+ *
+ * E.g. with 99% confidence a matrix without wins is stopped after 16 rounds if the cutoff is 0.3 and after 3 rounds if
+ * the cutoff is 0.7.
+ */
+public class EarlyStopping {
+
+    private static final EarlyStopping DISABLED = new EarlyStopping(0, 0);
+
+    private final float cutoffWinRate;
+    private final double zScore;
+
+    public EarlyStopping(float cutoffWinRate, double zScore) {
+        if (cutoffWinRate < 0 || cutoffWinRate > 1) {
+            throw new IllegalArgumentException(String.format("Cutoff win rate must be in [0, 1] range, but was %f", cutoffWinRate));
+        }
+        if (zScore < 0) {
+            throw new IllegalArgumentException(String.format("Z-score must not be negative, but was %f", zScore));
+        }
+        this.cutoffWinRate = cutoffWinRate;
+        this.zScore = zScore;
+    }
+
+    /**
+     * Creates early stopping with the cutoff derived from the worst survivor of the previous generation, scored in
+     * {@code roundsPerMatrix} rounds. Survivors are the best out of many noisy scores, so their win rates are overestimated,
+     * e.g. all the survivors of late generations may have 1.0 win rate. Thus the cutoff is the lower bound of the survivor's
+     * win rate interval, rather than the win rate itself.
+     */
+    public static EarlyStopping fromWorstSurvivor(float survivorWinRate, int roundsPerMatrix, double zScore) {
+        int survivorWins = Math.round(survivorWinRate * roundsPerMatrix);
+        return new EarlyStopping((float) winRateLowerBound(survivorWins, roundsPerMatrix, zScore), zScore);
+    }
+
+    /**
+     * Early stopping that never stops, since no win rate is lower than 0.
+     */
+    public static EarlyStopping disabled() {
+        return DISABLED;
+    }
+
+    public float getCutoffWinRate() {
+        return cutoffWinRate;
+    }
+
+    public boolean canStop(int wins, int rounds) {
+        return (rounds > 0) && (winRateUpperBound(wins, rounds, zScore) < cutoffWinRate);
+    }
+
+    /**
+     * Upper bound of the Wilson score interval, see https://en.wikipedia.org/wiki/Binomial_proportion_confidence_interval
+     */
+    public static double winRateUpperBound(int wins, int rounds, double zScore) {
+        return wilsonBound(wins, rounds, zScore);
+    }
+
+    /**
+     * Lower bound of the Wilson score interval.
+     */
+    public static double winRateLowerBound(int wins, int rounds, double zScore) {
+        return wilsonBound(wins, rounds, -zScore);
+    }
+
+    private static double wilsonBound(int wins, int rounds, double zScore) {
+        double winRate = (double) wins / rounds;
+        double z2 = zScore * zScore;
+        double denominator = 1 + z2 / rounds;
+        double center = winRate + z2 / (2 * rounds);
+        double margin = zScore * Math.sqrt(winRate * (1 - winRate) / rounds + z2 / (4.0 * rounds * rounds));
+        return (center + margin) / denominator;
+    }
+}
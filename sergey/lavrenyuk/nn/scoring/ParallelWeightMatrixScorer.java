@@ -0,0 +1,184 @@
+package sergey.lavrenyuk.nn.scoring;
+
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.FileWriter;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionedFiles;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.simulator.BattleSimulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Scores partitioned weight matrix files in simulated battles, using a pool of worker threads. Each partition is scored
+ * by a single worker with its own {@link BattleSimulator} and {@link WeightMatrixScorer}, so workers share nothing but
+ * the {@link ScoreCache}. A simulator is created for a partition by its index, so e.g. its random seed may be derived from
+ * the index, and the scores don't depend on the number of threads and the order partitions are scored in.
+ *
+ * Partition with index N is scored into the output partition with the same index, so the output files can be read with
+ * {@link sergey.lavrenyuk.io.PartitionedFileReader} exactly as the files written by Robocode. Output is written to a
+ * temporary file, which is renamed once the partition is scored, and only then the input partition is removed.
+ * Thus an interrupted run leaves only completely scored output files and can be resumed by scoring the input files left.
+ */
+public class ParallelWeightMatrixScorer {
+
+    // how long to wait for an input partition to be published, if all the published ones are being scored
+    private static final long INPUT_POLL_MILLIS = 20;
+
+    private final String inputFilePattern;
+    private final String outputFilePattern;
+    private final int roundsPerMatrix;
+    private final int threads;
+    private final IntFunction<BattleSimulator> battleSimulatorFactory;
+    private final EarlyStopping earlyStopping;
+    private final ScoreCache scoreCache;
+
+    private final AtomicLong roundsPlayed = new AtomicLong();
+
+    /**
+     * @param threads number of worker threads, 0 means the number of available processors
+     * @param battleSimulatorFactory is called once per partition with its index, it must create a new simulator each time
+     */
+    public ParallelWeightMatrixScorer(String inputFilePattern,
+                                      String outputFilePattern,
+                                      int roundsPerMatrix,
+                                      int threads,
+                                      IntFunction<BattleSimulator> battleSimulatorFactory) {
+        this(inputFilePattern, outputFilePattern, roundsPerMatrix, threads, battleSimulatorFactory, EarlyStopping.disabled(),
+                ScoreCache.disabled());
+    }
+
+    public ParallelWeightMatrixScorer(String inputFilePattern,
+                                      String outputFilePattern,
+                                      int roundsPerMatrix,
+                                      int threads,
+                                      IntFunction<BattleSimulator> battleSimulatorFactory,
+                                      EarlyStopping earlyStopping,
+                                      ScoreCache scoreCache) {
+        if (threads < 0) {
+            throw new IllegalArgumentException(String.format("Number of threads must not be negative, but was %d", threads));
+        }
+        this.inputFilePattern = inputFilePattern;
+        this.outputFilePattern = outputFilePattern;
+        this.roundsPerMatrix = roundsPerMatrix;
+        this.threads = (threads == 0) ? Runtime.getRuntime().availableProcessors() : threads;
+        this.battleSimulatorFactory = battleSimulatorFactory;
+        this.earlyStopping = earlyStopping;
+        this.scoreCache = scoreCache;
+    }
+
+    /**
+     * Total number of rounds played by all the {@link #score()} calls, may be less than matrices * roundsPerMatrix
+     * because of the early stopping.
+     */
+    public long getRoundsPlayed() {
+        return roundsPlayed.get();
+    }
+
+    /**
+     * Scores all the existing input partitions and returns the number of matrices scored.
+     */
+    public long score() {
+        return score(() -> true);
+    }
+
+    /**
+     * Scores input partitions as they are published, e.g. by a concurrent {@link sergey.lavrenyuk.io.PartitionedFileWriter},
+     * until the input is complete and all its partitions are scored. Returns the number of matrices scored.
+     *
+     * @param inputComplete returns true once no more input partitions will be published
+     */
+    public long score(BooleanSupplier inputComplete) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Set<Integer> submitted = new HashSet<>();
+            List<Future<Integer>> partitions = new ArrayList<>();
+            while (true) {
+                // checked before the lookup, so partitions published before the input is complete are not missed
+                boolean complete = inputComplete.getAsBoolean();
+                boolean found = false;
+                for (Integer index : PartitionedFiles.getFileIndexes(inputFilePattern)) {
+                    // an input partition is deleted once it's scored, but it may be listed while it's being scored
+                    if (submitted.add(index)) {
+                        partitions.add(executor.submit(() -> scorePartition(index)));
+                        found = true;
+                    }
+                }
+                if (complete) {
+                    break;
+                }
+                if (!found) {
+                    for (Future<Integer> partition : partitions) {
+                        if (partition.isDone()) {
+                            partition.get(); // fails fast if scoring failed, instead of waiting for the input
+                        }
+                    }
+                    Thread.sleep(INPUT_POLL_MILLIS);
+                }
+            }
+
+            long matricesScored = 0;
+            for (Future<Integer> partition : partitions) {
+                matricesScored += partition.get();
+            }
+            return matricesScored;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int scorePartition(int index) throws IOException {
+        File inputFile = IO.getFile(PartitionedFiles.resolvePlaceholder(inputFilePattern, index));
+        File outputFile = IO.getFile(PartitionedFiles.resolvePlaceholder(outputFilePattern, index));
+        File tempFile = IO.getFile(PartitionedFiles.resolvePlaceholder(outputFilePattern, index) + PartitionedFiles.TEMP_FILE_SUFFIX);
+
+        // the scorer deserializes raw big-endian bytes
+        FileReader<byte[]> reader = new FileReader<>(inputFile, WeightMatrix.SIZE_IN_BYTES,
+                FileReader.bigEndianBytes(Function.identity()));
+
+        // scorer is closed by the score module at the end of the battle
+        WeightMatrixScorer scorer = new WeightMatrixScorer(
+                reader,
+                new FileWriter<>(tempFile, Function.identity()),
+                roundsPerMatrix,
+                earlyStopping,
+                scoreCache);
+        BattleSimulator battleSimulator = battleSimulatorFactory.apply(index);
+        battleSimulator.runBattle(battleSimulator.createPerceptronModules(scorer, scorer), scorer::hasNextRound);
+        roundsPlayed.addAndGet(scorer.getRoundsPlayed());
+        // items of damaged checksum blocks are not scored
+        int matrices = scorer.getMatricesScored();
+        // cached scores of the partition are persisted before the partition is marked as scored
+        scoreCache.flush();
+
+        Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        PartitionManifest.publish(outputFilePattern, index, matrices, PartitionManifest.State.SCORED);
+        Files.delete(inputFile.toPath());
+        PartitionManifest.remove(inputFilePattern, index);
+        return matrices;
+    }
+}
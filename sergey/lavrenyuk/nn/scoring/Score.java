@@ -1,7 +1,5 @@
 package sergey.lavrenyuk.nn.scoring;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Objects;
 
 public class Score implements Comparable<Score> {
@@ -10,16 +8,34 @@ public class Score implements Comparable<Score> {
 
     private final float winRate;
     private final float averageEnergyDiff;
+    // number of rounds the score is based on, it is not serialized, thus 0 if the score was read from a file
+    private final int rounds;
 
     public Score(float winRate, float averageEnergyDiff) {
+        this(winRate, averageEnergyDiff, 0);
+    }
+
+    public Score(float winRate, float averageEnergyDiff, int rounds) {
         this.winRate = winRate;
         this.averageEnergyDiff = averageEnergyDiff;
+        this.rounds = rounds;
     }
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Creates a builder with already accumulated round results, e.g. to add more rounds to a previously calculated score.
+     */
+    public static Builder builder(int wins, int rounds, float totalEnergyDiff) {
+        Builder builder = new Builder();
+        builder.wins = wins;
+        builder.rounds = rounds;
+        builder.totalEnergyDiff = totalEnergyDiff;
+        return builder;
+    }
+
     public float getWinRate() {
         return winRate;
     }
@@ -28,6 +44,11 @@ public class Score implements Comparable<Score> {
         return averageEnergyDiff;
     }
 
+    public int getRounds() {
+        return rounds;
+    }
+
+    // rounds are not taken into account, since scores are compared by their values
     @Override
     public int compareTo(Score that) {
         int winRatesComparison = Double.compare(this.winRate, that.winRate);
@@ -57,6 +78,7 @@ public class Score implements Comparable<Score> {
         return "Score{" +
                 "winRate=" + winRate +
                 ", averageEnergyDiff=" + averageEnergyDiff +
+                ", rounds=" + rounds +
                 '}';
     }
 
@@ -82,7 +104,8 @@ public class Score implements Comparable<Score> {
     public static class Builder {
 
         private int wins = 0;
-        private List<Float> energyDiffs = new ArrayList<>();
+        private int rounds = 0;
+        private float totalEnergyDiff = 0.0f;
 
         public Builder addRoundResult(RoundResult roundResult) {
             return addRoundResult(roundResult.isWin(), roundResult.getEnergyDiff());
@@ -92,17 +115,25 @@ public class Score implements Comparable<Score> {
             if (win) {
                 wins++;
             }
-            energyDiffs.add(energyDiff);
+            rounds++;
+            totalEnergyDiff += energyDiff;
             return this;
         }
 
+        public int getWins() {
+            return wins;
+        }
+
+        public int getRounds() {
+            return rounds;
+        }
+
+        public float getTotalEnergyDiff() {
+            return totalEnergyDiff;
+        }
+
         public Score build() {
-            int rounds = energyDiffs.size();
-            float totalEnergyDiff = 0.0f;
-            for (double energyDiff : energyDiffs) {
-                totalEnergyDiff += energyDiff;
-            }
-            return new Score((float) wins / rounds, totalEnergyDiff / rounds);
+            return new Score((float) wins / rounds, totalEnergyDiff / rounds, rounds);
         }
     }
 }
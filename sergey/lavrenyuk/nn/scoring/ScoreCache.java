@@ -0,0 +1,257 @@
+package sergey.lavrenyuk.nn.scoring;
+
+import sergey.lavrenyuk.io.Log;
+import sergey.lavrenyuk.io.PartitionedFiles;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Persistent store of round results accumulated by weight matrices, so that a matrix which was already scored,
+ * e.g. a survivor copied to the next generation as is, doesn't have to be scored from scratch.
+ *
+ * Matrices are identified by SHA-256 hash of their serialized weights. The file has no header, it's a sequence of
+ * big-endian records: 32 bytes hash, int wins, int rounds and float total energy diff. Records are appended as matrices
+ * are scored, the latest record of a matrix wins. Duplicates are removed when the file is loaded. A partial record at
+ * the end, left by a process killed while flushing, is cut off when the file is loaded, so the cache keeps working after
+ * the process is resumed.
+ *
+ * Only survivors are copied to the next generation as is, the other matrices of a generation are never scored again.
+ * So once the survivors are extracted, {@link #retain(File, Collection)} keeps only their records, and the file is
+ * bounded by a generation and its parents' survivors.
+ *
+ * Scores are read from a snapshot of the file taken when it's loaded, the scores put afterwards are only stored to
+ * the file. So a generation scored with a cache loaded before it gets the same scores whatever the order its matrices
+ * are scored in, e.g. by several threads. A matrix put several times keeps the score with the most rounds, then with
+ * the most wins and the highest energy diff, which doesn't depend on the order either.
+ *
+ * Thread safe, the same cache may be shared by several scorers.
+ */
+public class ScoreCache implements Closeable {
+
+    private static final int HASH_SIZE_IN_BYTES = 32;
+    public static final int RECORD_SIZE_IN_BYTES = HASH_SIZE_IN_BYTES + 2 * Integer.BYTES + Float.BYTES;
+
+    private static final Log log = new Log(ScoreCache.class);
+
+    private static final ScoreCache DISABLED = new ScoreCache(Mode.OFF, new HashMap<>(), null);
+
+    private final Mode mode;
+    private final Map<ByteBuffer, Score.Builder> snapshot;
+    private final Map<ByteBuffer, Score.Builder> stored = new HashMap<>();
+    private final OutputStream out;
+
+    private int size;
+
+    private ScoreCache(Mode mode, Map<ByteBuffer, Score.Builder> snapshot, OutputStream out) {
+        this.mode = mode;
+        this.snapshot = snapshot;
+        this.out = out;
+        this.size = snapshot.size();
+    }
+
+    /**
+     * Cache that never contains any score and doesn't store anything.
+     */
+    public static ScoreCache disabled() {
+        return DISABLED;
+    }
+
+    public static ScoreCache load(File file, Mode mode) throws IOException {
+        if (mode == Mode.OFF) {
+            return DISABLED;
+        }
+
+        Map<ByteBuffer, Score.Builder> scores = new HashMap<>();
+        if (file.exists()) {
+            long records = readRecords(file, scores, hash -> true);
+            if (records > scores.size()) {
+                compact(file, scores);
+            }
+        }
+        return new ScoreCache(mode, scores, new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /**
+     * Removes the records of all the matrices except the given ones, e.g. the survivors of a generation.
+     * Must not be called while the file is loaded.
+     */
+    public static void retain(File file, Collection<WeightMatrix> weightMatrices) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        Set<ByteBuffer> hashes = new HashSet<>();
+        for (WeightMatrix weightMatrix : weightMatrices) {
+            hashes.add(hash(weightMatrix));
+        }
+        Map<ByteBuffer, Score.Builder> scores = new HashMap<>();
+        long records = readRecords(file, scores, hashes::contains);
+        if (records > scores.size()) {
+            compact(file, scores);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns a copy of the round results accumulated by the matrix when the cache was loaded, null if the matrix
+     * wasn't scored by then.
+     */
+    public synchronized Score.Builder get(WeightMatrix weightMatrix) {
+        Score.Builder score = snapshot.get(hash(weightMatrix));
+        return (score != null)
+                ? Score.builder(score.getWins(), score.getRounds(), score.getTotalEnergyDiff())
+                : null;
+    }
+
+    public synchronized void put(WeightMatrix weightMatrix, Score.Builder score) throws IOException {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        ByteBuffer hash = hash(weightMatrix);
+        Score.Builder copy = Score.builder(score.getWins(), score.getRounds(), score.getTotalEnergyDiff());
+        Score.Builder storedScore = stored.get(hash);
+        if (storedScore != null && compare(copy, storedScore) <= 0) {
+            return;
+        }
+        if (storedScore == null && !snapshot.containsKey(hash)) {
+            size++;
+        }
+        stored.put(hash, copy);
+        out.write(serialize(hash, copy));
+    }
+
+    /**
+     * Number of matrices in the file, including the ones put since the cache was loaded.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.flush();
+            out.close();
+        }
+    }
+
+    private static ByteBuffer hash(WeightMatrix weightMatrix) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(messageDigest.digest(Serializer.serializeWeightMatrix(weightMatrix)));
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static int compare(Score.Builder score1, Score.Builder score2) {
+        if (score1.getRounds() != score2.getRounds()) {
+            return Integer.compare(score1.getRounds(), score2.getRounds());
+        }
+        if (score1.getWins() != score2.getWins()) {
+            return Integer.compare(score1.getWins(), score2.getWins());
+        }
+        return Float.compare(score1.getTotalEnergyDiff(), score2.getTotalEnergyDiff());
+    }
+
+    private static byte[] serialize(ByteBuffer hash, Score.Builder score) {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(new byte[RECORD_SIZE_IN_BYTES]);
+        byteBuffer.put(hash.array());
+        byteBuffer.putInt(score.getWins());
+        byteBuffer.putInt(score.getRounds());
+        byteBuffer.putFloat(score.getTotalEnergyDiff());
+        return byteBuffer.array();
+    }
+
+    // reads the records of the matrices accepted by the filter to the map, returns the number of records in the file
+    private static long readRecords(File file, Map<ByteBuffer, Score.Builder> scores, Predicate<ByteBuffer> filter)
+            throws IOException {
+        truncatePartialRecord(file);
+        long records = file.length() / RECORD_SIZE_IN_BYTES;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            for (long i = 0; i < records; i++) {
+                byte[] hash = new byte[HASH_SIZE_IN_BYTES];
+                in.readFully(hash);
+                Score.Builder score = Score.builder(in.readInt(), in.readInt(), in.readFloat());
+                ByteBuffer key = ByteBuffer.wrap(hash);
+                if (filter.test(key)) {
+                    scores.put(key, score);
+                }
+            }
+        }
+        return records;
+    }
+
+    private static void truncatePartialRecord(File file) throws IOException {
+        long length = file.length();
+        long completeRecordsLength = length / RECORD_SIZE_IN_BYTES * RECORD_SIZE_IN_BYTES;
+        if (completeRecordsLength < length) {
+            log.warn(String.format("File %s has a partial record of %d bytes at the end, it's cut off",
+                    file.getAbsolutePath(), length - completeRecordsLength));
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(completeRecordsLength);
+            }
+        }
+    }
+
+    // rewrites the file with the given scores only, a temporary file is used to not lose the cache if the process is interrupted
+    private static void compact(File file, Map<ByteBuffer, Score.Builder> scores) throws IOException {
+        File tempFile = new File(file.getPath() + PartitionedFiles.TEMP_FILE_SUFFIX);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            for (Map.Entry<ByteBuffer, Score.Builder> entry : scores.entrySet()) {
+                out.write(serialize(entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public enum Mode {
+        // matrices are always scored from scratch
+        OFF,
+        // matrices found in the cache are not scored again, their cached score is used
+        REUSE,
+        // matrices found in the cache are scored again, new round results are added to the cached ones
+        ACCUMULATE;
+
+        public static Mode fromString(String mode) {
+            for (Mode value : values()) {
+                if (value.name().equalsIgnoreCase(mode.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported score cache mode '%s'", mode));
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package sergey.lavrenyuk.nn.scoring;
 
+import sergey.lavrenyuk.io.FileHeader;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
 import java.io.IOException;
+import java.nio.ByteOrder;
 import java.util.function.Supplier;
 
 // TODO document this class doesn't support multiple threads in parallel, but it supports different thread sequential access,
@@ -16,19 +18,29 @@ public class WeightMatrixScorer implements Supplier<WeightMatrix>, RoundResultCo
     private final Reader<byte[]> dataReader;
     private final Writer<byte[]> dataWriter;
     private final int roundsPerMatrix;
+    private final EarlyStopping earlyStopping;
+    private final ScoreCache scoreCache;
 
     private volatile WeightMatrix currentMatrix;
     private volatile Score.Builder currentMatrixScore;
     private volatile int roundsWithCurrentMatrix;
+    private volatile int matricesScored;
+    private volatile long roundsPlayed;
 
     public static WeightMatrixScorer create(String inputFilePattern,
                                             String outputFilePattern,
                                             int roundsPerMatrix,
-                                            boolean robocodeEnvironment) {
+                                            boolean robocodeEnvironment,
+                                            int prefetchQueueSize,
+                                            int writeBehindQueueSize,
+                                            int itemsPerChecksumBlock,
+                                            FileHeader.Compression compression) {
         WeightMatrixScorerRawDataIO rawDataIO;
         try {
              rawDataIO = new WeightMatrixScorerRawDataIO(inputFilePattern, outputFilePattern, WeightMatrix.SIZE_IN_BYTES,
-                     ScoredWeightMatrix.SIZE_IN_BYTES, robocodeEnvironment);
+                     ScoredWeightMatrix.SIZE_IN_BYTES, robocodeEnvironment, prefetchQueueSize, writeBehindQueueSize,
+                     FileHeader.of(ByteOrder.BIG_ENDIAN, ScoredWeightMatrix.SIZE_IN_BYTES, itemsPerChecksumBlock,
+                             compression));
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -36,11 +48,35 @@ public class WeightMatrixScorer implements Supplier<WeightMatrix>, RoundResultCo
     }
 
     public WeightMatrixScorer(Reader<byte[]> dataReader, Writer<byte[]> dataWriter, int roundsPerMatrix) {
+        this(dataReader, dataWriter, roundsPerMatrix, EarlyStopping.disabled());
+    }
+
+    /**
+     * With early stopping a matrix may be scored in less than {@code roundsPerMatrix} rounds, so the total number of rounds
+     * is not known beforehand, use {@link #getMatricesScored()} to find out when all the matrices are scored.
+     */
+    public WeightMatrixScorer(Reader<byte[]> dataReader,
+                              Writer<byte[]> dataWriter,
+                              int roundsPerMatrix,
+                              EarlyStopping earlyStopping) {
+        this(dataReader, dataWriter, roundsPerMatrix, earlyStopping, ScoreCache.disabled());
+    }
+
+    /**
+     * Matrices found in the {@code scoreCache} are either not scored at all or start with the cached round results,
+     * depending on the cache mode. In both cases round results are stored to the cache once a matrix is scored.
+     */
+    public WeightMatrixScorer(Reader<byte[]> dataReader,
+                              Writer<byte[]> dataWriter,
+                              int roundsPerMatrix,
+                              EarlyStopping earlyStopping,
+                              ScoreCache scoreCache) {
         this.dataReader = dataReader;
         this.dataWriter = dataWriter;
         this.roundsPerMatrix = roundsPerMatrix;
-        this.currentMatrix = read();
-        this.currentMatrixScore = Score.builder();
+        this.earlyStopping = earlyStopping;
+        this.scoreCache = scoreCache;
+        this.currentMatrix = nextMatrix();
         this.roundsWithCurrentMatrix = 0;
     }
 
@@ -51,7 +87,7 @@ public class WeightMatrixScorer implements Supplier<WeightMatrix>, RoundResultCo
             return currentMatrix;
         }
         roundsWithCurrentMatrix = 1;
-        currentMatrix = read();
+        currentMatrix = nextMatrix();
         return currentMatrix;
     }
 
@@ -59,19 +95,44 @@ public class WeightMatrixScorer implements Supplier<WeightMatrix>, RoundResultCo
     public synchronized void accept(Score.RoundResult roundResult) {
 
         currentMatrixScore.addRoundResult(roundResult);
+        roundsPlayed++;
+
+        if (roundsWithCurrentMatrix < roundsPerMatrix
+                && earlyStopping.canStop(currentMatrixScore.getWins(), currentMatrixScore.getRounds())) {
+            // the next get() call switches to the next matrix
+            roundsWithCurrentMatrix = roundsPerMatrix;
+        }
 
         if (roundsPerMatrix == roundsWithCurrentMatrix) {
-            ScoredWeightMatrix scoredWeightMatrix = new ScoredWeightMatrix(currentMatrixScore.build(), currentMatrix);
             try {
-                dataWriter.write(Serializer.serializeScoredWeightMatrix(scoredWeightMatrix));
+                scoreCache.put(currentMatrix, currentMatrixScore);
             } catch (IOException ex) {
                 throw new RuntimeException(ex);
-            } finally {
-                currentMatrixScore = Score.builder();
             }
+            write(new ScoredWeightMatrix(currentMatrixScore.build(), currentMatrix));
         }
     }
 
+    /**
+     * Returns true if there is a matrix to play the next round with. Input may have less matrices than expected,
+     * e.g. if a file has damaged checksum blocks, so the next matrix is read beforehand, once the current one is scored.
+     */
+    public synchronized boolean hasNextRound() {
+        if (roundsWithCurrentMatrix == roundsPerMatrix) {
+            currentMatrix = nextMatrix();
+            roundsWithCurrentMatrix = 0;
+        }
+        return currentMatrix != null;
+    }
+
+    public int getMatricesScored() {
+        return matricesScored;
+    }
+
+    public long getRoundsPlayed() {
+        return roundsPlayed;
+    }
+
     @Override
     public synchronized void close() {
         try {
@@ -82,10 +143,38 @@ public class WeightMatrixScorer implements Supplier<WeightMatrix>, RoundResultCo
         }
     }
 
+    // reads the next matrix to score, writing cached scores of the matrices which don't need to be scored
+    private WeightMatrix nextMatrix() {
+        currentMatrixScore = Score.builder();
+        WeightMatrix matrix;
+        while ((matrix = read()) != null) {
+            Score.Builder cachedScore = scoreCache.get(matrix);
+            if (cachedScore == null) {
+                break;
+            }
+            if (scoreCache.getMode() == ScoreCache.Mode.ACCUMULATE) {
+                currentMatrixScore = cachedScore;
+                break;
+            }
+            write(new ScoredWeightMatrix(cachedScore.build(), matrix));
+        }
+        return matrix;
+    }
+
+    private void write(ScoredWeightMatrix scoredWeightMatrix) {
+        try {
+            dataWriter.write(Serializer.serializeScoredWeightMatrix(scoredWeightMatrix));
+            matricesScored++;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     private WeightMatrix read() {
         try {
             byte[] data = dataReader.read();
-            return data.length != 0
+            // readers return either an empty array or null once all the data is read
+            return (data != null) && (data.length != 0)
                     ? Serializer.deserializeWeightMatrix(data)
                     : null;
         } catch (IOException ex) {
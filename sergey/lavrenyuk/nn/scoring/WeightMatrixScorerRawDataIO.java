@@ -1,54 +1,138 @@
 package sergey.lavrenyuk.nn.scoring;
 
 import robocode.RobocodeFileOutputStream;
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.PartitionManifest;
 import sergey.lavrenyuk.io.PartitionedFiles;
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
 // TODO document this class doesn't support multiple threads in parallel, but it supports different thread sequential access,
 // which may happen in the Robocode environment, observed when round ended because of too many skipped turns, which, in turn, presumably is caused by garbage collection
 // in that case battle thread performs some manipulation over the robot code instead of the robot's thread
+//
+// with a positive write behind queue size, writes are only queued by the caller and all the output file I/O, i.e. writing,
+// switching to the next output file, flushing and deleting the scored input file, is done by a dedicated writer thread,
+// so it doesn't take the robot's turn time. close() waits until everything queued is written, so the files are left
+// exactly as with synchronous writes. Robocode may interrupt robot's threads, e.g. at the end of a round,
+// in that case the writer thread stops and a new one is started on the next write or close
+//
+// similarly, with a positive prefetch queue size the input files are read ahead by a dedicated reader thread,
+// so read() only takes the next item from the queue. input file switching is done in the same order as when reading
+// synchronously, since the reader thread queues a marker for each opened input file
+//
+// input files are read with FileReader, so they may have a FileHeader, input items are always returned in the big-endian
+// byte order and items of damaged checksum blocks are skipped. output files have the header given to the constructor,
+// the number of items is never stored to it, since Robocode doesn't allow to modify a file that was written
 public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[]> {
 
+    // tells the writer thread to stop once all the previously queued writes are done
+    private static final WriteTask STOP = new WriteTask(null, false, null);
+
+    // how often read() checks the reader thread is still running, while waiting for the input
+    private static final long PREFETCH_POLL_MILLIS = 10;
+
     private final boolean robocodeEnvironment;
     private final int inputItemSize;
     private final int outputItemSize;
+    private final FileHeader outputFileHeader;
 
     private final Iterator<File> inputFilesIterator;
     private final Supplier<File> outputFilesSupplier;
+    private final InputFiles inputFiles = new InputFiles();
 
     private volatile boolean closed = false;
     private volatile int reads = 0;
     private volatile int writes = 0;
 
-    private volatile InputStream currentInputFileStream;
     private volatile OutputStream currentOutputFileStream;
 
     private volatile boolean openNextOutputFileOnWrite;
     private volatile File previousInputFile;
     private volatile File currentInputFile;
+    private volatile long itemsReadFromCurrentInputFile;
+    private volatile long itemsInCurrentInputFile;
+
+    // null if reads are synchronous
+    private final BlockingQueue<InputItem> prefetchQueue;
+    private volatile Thread readerThread;
+    // item read by the reader thread, but not yet queued because the thread was interrupted
+    private volatile InputItem pendingInputItem;
+    // either all the input is queued or reading failed
+    private volatile boolean prefetchFinished = false;
+    // the last item taken from the queue, either the end of the input or a failure
+    private volatile InputItem lastInputItem;
+
+    // null if writes are synchronous
+    private final BlockingQueue<WriteTask> writeQueue;
+    private volatile Thread writerThread;
+    // the first failure of the writer thread, reported to the caller on the next write or close
+    private volatile IOException writeFailure;
 
     public WeightMatrixScorerRawDataIO(String inputFilePattern,
                                        String outputFilePattern,
                                        int inputItemSize,
                                        int outputItemSize,
                                        boolean robocodeEnvironment) throws IOException {
+        this(inputFilePattern, outputFilePattern, inputItemSize, outputItemSize, robocodeEnvironment, 0, 0);
+    }
+
+    public WeightMatrixScorerRawDataIO(String inputFilePattern,
+                                       String outputFilePattern,
+                                       int inputItemSize,
+                                       int outputItemSize,
+                                       boolean robocodeEnvironment,
+                                       int prefetchQueueSize,
+                                       int writeBehindQueueSize) throws IOException {
+        this(inputFilePattern, outputFilePattern, inputItemSize, outputItemSize, robocodeEnvironment, prefetchQueueSize,
+                writeBehindQueueSize, FileHeader.NONE);
+    }
+
+    /**
+     * @param prefetchQueueSize how many input items the reader thread reads ahead, 0 means reads are synchronous
+     * @param writeBehindQueueSize how many writes may wait for the writer thread, 0 means writes are synchronous
+     * @param outputFileHeader header of each output file
+     */
+    public WeightMatrixScorerRawDataIO(String inputFilePattern,
+                                       String outputFilePattern,
+                                       int inputItemSize,
+                                       int outputItemSize,
+                                       boolean robocodeEnvironment,
+                                       int prefetchQueueSize,
+                                       int writeBehindQueueSize,
+                                       FileHeader outputFileHeader) throws IOException {
 
+        if (prefetchQueueSize < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Prefetch queue size must not be negative, but was %d", prefetchQueueSize));
+        }
+        if (writeBehindQueueSize < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Write behind queue size must not be negative, but was %d", writeBehindQueueSize));
+        }
+        this.prefetchQueue = (prefetchQueueSize > 0) ? new ArrayBlockingQueue<>(prefetchQueueSize) : null;
+        this.writeQueue = (writeBehindQueueSize > 0) ? new ArrayBlockingQueue<>(writeBehindQueueSize) : null;
         this.robocodeEnvironment = robocodeEnvironment;
         this.inputItemSize = inputItemSize;
         this.outputItemSize = outputItemSize;
+        this.outputFileHeader = outputFileHeader;
 
+        // Robocode doesn't allow to update the manifests, stale manifests would hide the files changed by the scoring
+        PartitionManifest.delete(inputFilePattern);
+        PartitionManifest.delete(outputFilePattern);
         Iterable<Integer> fileIndexes = PartitionedFiles.getFileIndexes(inputFilePattern);
         this.inputFilesIterator = PartitionedFiles.asIterator(inputFilePattern, fileIndexes.iterator());
         this.outputFilesSupplier = PartitionedFiles.asSupplier(outputFilePattern, fileIndexes.iterator());
@@ -56,7 +140,10 @@ public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[
             throw new IllegalArgumentException(String.format("No input files found for pattern '%s'", inputFilePattern));
         }
 
-        this.currentInputFileStream = nextInputFile();
+        // the first input file is opened right away, so a broken file is reported before the scoring starts
+        InputItem firstInputFile = inputFiles.next();
+        this.currentInputFile = firstInputFile.file;
+        this.itemsInCurrentInputFile = firstInputFile.items;
         this.currentOutputFileStream = nextOutputFile();
     }
 
@@ -67,27 +154,24 @@ public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[
             throw new IllegalStateException(String.format("Read attempt failed - only sequential read / write methods calls " +
                     "are allowed. Reads = %d, Writes = %d", reads, writes));
         }
-        reads++;
-
-        byte[] result = new byte[inputItemSize];
-        int bytesRead = currentInputFileStream.read(result);
 
-        if (bytesRead == -1) {
-            reads--;
-            if (inputFilesIterator.hasNext()) {
-                currentInputFileStream = nextInputFile();
-                openNextOutputFileOnWrite = true;
-                return read();
-            }
-            return new byte[0];
+        InputItem item;
+        while ((item = nextInputItem()).file != null) {
+            previousInputFile = currentInputFile;
+            currentInputFile = item.file;
+            itemsInCurrentInputFile = item.items;
+            itemsReadFromCurrentInputFile = 0;
+            openNextOutputFileOnWrite = true;
         }
-
-        if (bytesRead != inputItemSize) {
-            throw new IllegalArgumentException(String.format("File %s doesn't contain an integer number of input items",
-                    currentInputFile.getAbsolutePath()));
+        if (item == InputItem.END) {
+            // the whole file is read, even if items of damaged checksum blocks were skipped
+            itemsInCurrentInputFile = itemsReadFromCurrentInputFile;
+            return new byte[0];
         }
 
-        return result;
+        reads++;
+        itemsReadFromCurrentInputFile++;
+        return item.data;
     }
 
     @Override
@@ -103,24 +187,37 @@ public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[
             throw new IllegalStateException(String.format("Expected %d bytes, but received %d", outputItemSize, data.length));
         }
 
-        if (openNextOutputFileOnWrite) {
-            openNextOutputFileOnWrite = false;
-            currentOutputFileStream = nextOutputFile();
-            previousInputFile.delete();
+        WriteTask task = new WriteTask(data, openNextOutputFileOnWrite, openNextOutputFileOnWrite ? previousInputFile : null);
+        openNextOutputFileOnWrite = false;
+
+        if (writeQueue == null) {
+            doWrite(task);
+        } else {
+            throwWriteFailure();
+            ensureWriterThreadStarted();
+            enqueue(task);
         }
-        currentOutputFileStream.write(data);
     }
 
     @Override
     public synchronized void close() throws IOException {
         if (!closed) {
+            if (writeQueue != null) {
+                drainWriteQueue();
+                throwWriteFailure();
+            }
+
+            if (prefetchQueue != null) {
+                stopReaderThread();
+            }
+
             currentOutputFileStream.flush();
             currentOutputFileStream.close();
 
-            boolean endOfInputFileReached = (currentInputFileStream.read() == -1);
+            boolean endOfInputFileReached = (itemsReadFromCurrentInputFile == itemsInCurrentInputFile);
             boolean allItemsWritten = (reads == writes);
 
-            currentInputFileStream.close();
+            inputFiles.close();
             if (endOfInputFileReached && allItemsWritten) {
                 currentInputFile.delete();
             }
@@ -129,20 +226,151 @@ public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[
         }
     }
 
-    private InputStream nextInputFile() throws IOException {
-        if (currentInputFileStream != null) {
-            currentInputFileStream.close();
+    // called either by the caller's thread or by the writer thread, never by both
+    private void doWrite(WriteTask task) throws IOException {
+        if (task.nextOutputFile) {
+            currentOutputFileStream = nextOutputFile();
+            task.scoredInputFile.delete();
         }
+        currentOutputFileStream.write(task.data);
+    }
 
-        File file = inputFilesIterator.next();
-        previousInputFile = currentInputFile;
-        currentInputFile = file;
+    private void ensureWriterThreadStarted() {
+        if (writerThread == null || !writerThread.isAlive()) {
+            writerThread = new Thread(this::processWriteQueue, "WeightMatrixScorer writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+    }
 
-        if (file.length() % inputItemSize != 0) {
-            throw new IllegalArgumentException(
-                    String.format("File %s doesn't contain an integer number of input items", file.getAbsolutePath()));
+    private void processWriteQueue() {
+        try {
+            WriteTask task;
+            while ((task = writeQueue.take()) != STOP) {
+                // after a failure the rest of the queue is still taken, so neither a caller blocked on a full queue
+                // nor close() waits forever, but nothing else is written
+                if (writeFailure == null) {
+                    try {
+                        doWrite(task);
+                    } catch (IOException ex) {
+                        writeFailure = ex;
+                    } catch (RuntimeException ex) {
+                        writeFailure = new IOException(ex);
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            // interrupted by Robocode, pending writes are processed by a new thread
+        }
+    }
+
+    private void drainWriteQueue() throws IOException {
+        // the writer thread may be interrupted before it reaches the stop task, then a new thread continues from there
+        do {
+            ensureWriterThreadStarted();
+            if (!writeQueue.contains(STOP)) {
+                enqueue(STOP);
+            }
+            try {
+                writerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for queued writes");
+            }
+        } while (!writeQueue.isEmpty());
+    }
+
+    private void enqueue(WriteTask task) throws IOException {
+        try {
+            writeQueue.put(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing a write");
+        }
+    }
+
+    private void throwWriteFailure() throws IOException {
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+    }
+
+    private InputItem nextInputItem() throws IOException {
+        if (prefetchQueue == null) {
+            return inputFiles.next();
+        }
+        if (lastInputItem == null) {
+            InputItem item;
+            try {
+                ensureReaderThreadStarted();
+                while ((item = prefetchQueue.poll(PREFETCH_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    // the reader thread may have been interrupted
+                    ensureReaderThreadStarted();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the input");
+            }
+            if (item != InputItem.END && item.failure == null) {
+                return item;
+            }
+            lastInputItem = item;
+        }
+        // the end of the input and failures are returned on every subsequent call
+        if (lastInputItem.failure instanceof IOException) {
+            throw (IOException) lastInputItem.failure;
+        }
+        if (lastInputItem.failure != null) {
+            throw (RuntimeException) lastInputItem.failure;
+        }
+        return lastInputItem;
+    }
+
+    private void ensureReaderThreadStarted() {
+        if (!prefetchFinished && (readerThread == null || !readerThread.isAlive())) {
+            readerThread = new Thread(this::prefetchInput, "WeightMatrixScorer reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+    }
+
+    private void prefetchInput() {
+        try {
+            while (true) {
+                if (pendingInputItem == null) {
+                    pendingInputItem = readInputItem();
+                }
+                prefetchQueue.put(pendingInputItem);
+                boolean lastItem = (pendingInputItem == InputItem.END) || (pendingInputItem.failure != null);
+                pendingInputItem = null;
+                if (lastItem) {
+                    prefetchFinished = true;
+                    return;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // interrupted either by Robocode, then a new thread continues from the pending item, or by close()
+        }
+    }
+
+    private InputItem readInputItem() {
+        try {
+            return inputFiles.next();
+        } catch (IOException | RuntimeException ex) {
+            return InputItem.failure(ex);
+        }
+    }
+
+    private void stopReaderThread() throws IOException {
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while stopping the reader thread");
+            }
         }
-        return new BufferedInputStream(new FileInputStream(file));
     }
 
     private OutputStream nextOutputFile() throws IOException {
@@ -154,6 +382,88 @@ public class WeightMatrixScorerRawDataIO implements Reader<byte[]>, Writer<byte[
         OutputStream outputStream = robocodeEnvironment
                 ? new RobocodeFileOutputStream(file)
                 : new FileOutputStream(file);
-        return new BufferedOutputStream(outputStream);
+        return outputFileHeader.start(new BufferedOutputStream(outputStream));
+    }
+
+    private static class WriteTask {
+
+        private final byte[] data;
+        // the first write of the next input file goes to the next output file
+        private final boolean nextOutputFile;
+        // input file is removed once its output file is complete
+        private final File scoredInputFile;
+
+        WriteTask(byte[] data, boolean nextOutputFile, File scoredInputFile) {
+            this.data = data;
+            this.nextOutputFile = nextOutputFile;
+            this.scoredInputFile = scoredInputFile;
+        }
+    }
+
+    // reads input files one by one, used either by the caller's thread or by the reader thread, never by both
+    private class InputFiles {
+
+        private FileReader<byte[]> reader;
+
+        // returns a marker item for each opened file, followed by the file's data items
+        InputItem next() throws IOException {
+            if (reader == null) {
+                return nextFile();
+            }
+
+            byte[] data = reader.read();
+            if (data == null) {
+                return inputFilesIterator.hasNext()
+                        ? nextFile()
+                        : InputItem.END;
+            }
+            return InputItem.data(data);
+        }
+
+        void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+            }
+        }
+
+        private InputItem nextFile() throws IOException {
+            close();
+
+            File file = inputFilesIterator.next();
+            // the reader reuses its buffer, while items may wait in the prefetch queue,
+            // the items are passed on as raw bytes, so they are converted to the big-endian byte order
+            reader = new FileReader<>(file, inputItemSize, FileReader.bigEndianBytes(byte[]::clone));
+            return InputItem.fileStarted(file, reader.size());
+        }
+    }
+
+    private static class InputItem {
+
+        private static final InputItem END = new InputItem(null, null, 0, null);
+
+        // only one of data, file and failure is set, items is the number of items in the file
+        private final byte[] data;
+        private final File file;
+        private final long items;
+        private final Exception failure;
+
+        private InputItem(byte[] data, File file, long items, Exception failure) {
+            this.data = data;
+            this.file = file;
+            this.items = items;
+            this.failure = failure;
+        }
+
+        static InputItem data(byte[] data) {
+            return new InputItem(data, null, 0, null);
+        }
+
+        static InputItem fileStarted(File file, long items) {
+            return new InputItem(null, file, items, null);
+        }
+
+        static InputItem failure(Exception failure) {
+            return new InputItem(null, null, 0, failure);
+        }
     }
 }
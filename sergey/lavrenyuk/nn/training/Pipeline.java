@@ -0,0 +1,404 @@
+package sergey.lavrenyuk.nn.training;
+
+import sergey.lavrenyuk.io.Config;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.Log;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionedFiles;
+import sergey.lavrenyuk.io.Reader;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.Seeds;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+import sergey.lavrenyuk.nn.training.utils.AverageEvaluator;
+import sergey.lavrenyuk.nn.training.utils.TrainerUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless training pipeline, which loops over the stages of a generation without any input: score the new generation,
+ * extract survivors, create the next generation from them. It stops once {@link #PIPELINE_GENERATIONS} generations are
+ * complete or survivors reach {@link #PIPELINE_TARGET_WIN_RATE}. A {@link PipelineCheckpoint} is saved after each stage,
+ * so a killed pipeline is resumed on the next launch. Without a checkpoint, the pipeline starts from the partitions it finds.
+ *
+ * With {@link #ISLANDS} greater than 1, the pipeline runs island {@link #ISLAND} of the island model, each island
+ * is a separate process with its own files, and the best survivors of the previous island migrate to it every
+ * {@link #ISLAND_MIGRATION_INTERVAL} generations, see {@link #immigrate(List)}. The files, population and threads
+ * of the {@link Trainer} properties are changed for the island.
+ *
+ * The stages are done with the same {@link Trainer} methods as the menu commands.
+ */
+public class Pipeline extends Trainer {
+
+    private final Log log = new Log(Pipeline.class);
+
+    private int PIPELINE_GENERATIONS;
+    private double PIPELINE_TARGET_WIN_RATE;
+    private PipelineScoring PIPELINE_SCORING;
+    private int PIPELINE_POLL_SECONDS;
+    private String PIPELINE_CHECKPOINT_FILE;
+    private String PIPELINE_REPORT_FILE;
+    private int ISLANDS;
+    private int ISLAND;
+    private int ISLAND_MIGRATION_INTERVAL;
+    private int ISLAND_MIGRANTS;
+
+    @Override
+    public void run() throws IOException {
+        refreshConfig();
+
+        File checkpointFile = IO.getFile(PIPELINE_CHECKPOINT_FILE);
+        PipelineCheckpoint checkpoint = PipelineCheckpoint.load(checkpointFile);
+        if (checkpoint == null) {
+            checkpoint = new PipelineCheckpoint(checkpointFile, PipelineCheckpoint.Stage.first(
+                    PartitionedFiles.exists(NEW_GENERATION_FILE_PATTERN),
+                    PartitionedFiles.exists(SCORED_GENERATION_FILE_PATTERN),
+                    PartitionedFiles.exists(SURVIVORS_FILE_PATTERN)));
+            checkpoint.save();
+            Files.write(IO.getFile(PIPELINE_REPORT_FILE).toPath(),
+                    "generation,seconds,survivorsAverageWinRate,bestWinRate\n".getBytes(StandardCharsets.US_ASCII));
+            log.println("Pipeline started from %s stage", checkpoint.getStage());
+        } else {
+            log.println("Pipeline resumed from %s stage of generation %d", checkpoint.getStage(),
+                    checkpoint.getGenerations() + 1);
+        }
+        log.println("Generations = %d, target win rate = %.2f%%, scoring = %s, seed = %d", PIPELINE_GENERATIONS,
+                PIPELINE_TARGET_WIN_RATE * 100, PIPELINE_SCORING, SEED);
+        if (ISLANDS > 1) {
+            log.println("Island %d of %d, population = %d, survivors = %d, %d migrants every %d generations", ISLAND, ISLANDS,
+                    POPULATION, SURVIVORS, ISLAND_MIGRANTS, ISLAND_MIGRATION_INTERVAL);
+        }
+
+        // survivors extracted by this process are bred without reading them back
+        List<WeightMatrix> survivors = null;
+        while (true) {
+            // properties may be changed while the pipeline is running, the same way as between menu commands
+            refreshConfig();
+
+            PipelineCheckpoint.Stage stage = checkpoint.getStage();
+            if (stage == PipelineCheckpoint.Stage.CREATE_NEXT_GENERATION && isPipelineFinished(checkpoint)) {
+                break;
+            }
+
+            // the time an island waits for immigrants is a part of the stage
+            long startTime = System.currentTimeMillis();
+            List<WeightMatrix> parents = Collections.emptyList();
+            if (stage == PipelineCheckpoint.Stage.CREATE_NEXT_GENERATION) {
+                parents = (survivors != null) ? survivors : readSurvivors(PartitionedFiles.latestFileName(SURVIVORS_FILE_PATTERN));
+                survivors = null;
+                if (ISLANDS > 1 && nextGeneration() % ISLAND_MIGRATION_INTERVAL == 0) {
+                    parents = immigrate(parents);
+                }
+            }
+            if ((stage == PipelineCheckpoint.Stage.CREATE_INITIAL_GENERATION
+                    || stage == PipelineCheckpoint.Stage.CREATE_NEXT_GENERATION)
+                    && PIPELINE_SCORING == PipelineScoring.SIMULATED) {
+                breedAndScore(parents, checkpoint, startTime);
+                continue;
+            }
+
+            switch (stage) {
+                case CREATE_INITIAL_GENERATION:
+                case CREATE_NEXT_GENERATION: {
+                    breed(parents, nextGeneration(), this::isPartitionBred);
+                    break;
+                } case SCORE: {
+                    if (PIPELINE_SCORING == PipelineScoring.ROBOCODE) {
+                        waitForRobocodeScoring();
+                    } else {
+                        simulateScoring(createEarlyStopping(), () -> true);
+                    }
+                    break;
+                } case EXTRACT_SURVIVORS: {
+                    survivors = extractSurvivors(checkpoint);
+                    break;
+                } case REMOVE_SCORED_GENERATION: {
+                    PartitionedFiles.deleteAll(SCORED_GENERATION_FILE_PATTERN);
+                    break;
+                }
+            }
+            completeStage(checkpoint, System.currentTimeMillis() - startTime);
+        }
+
+        log.println("Pipeline finished, %d generations, wall time per stage:", checkpoint.getGenerations());
+        for (PipelineCheckpoint.Stage stage : PipelineCheckpoint.Stage.values()) {
+            log.println("%s\t%.1f seconds", stage, checkpoint.getStageMillis(stage) / 1000.0);
+        }
+        checkpoint.delete();
+    }
+
+    // scored partitions are kept until the survivors are checkpointed, so they are not extracted twice. the survivors file
+    // is chosen before the extraction, a killed process may have published it without completing the stage.
+    // returns null if the survivors were extracted before the process was killed, they are read back for breeding
+    private List<WeightMatrix> extractSurvivors(PipelineCheckpoint checkpoint) throws IOException {
+        File winRatioFile = IO.getFile(WIN_RATIO_FILE);
+        if (checkpoint.getSurvivorsIndex() == PipelineCheckpoint.NO_SURVIVORS_INDEX) {
+            checkpoint.startExtraction(PartitionedFiles.latestFileIndex(SURVIVORS_FILE_PATTERN) + 1, winRatioFile.length());
+        }
+        int survivorsFileIndex = checkpoint.getSurvivorsIndex();
+        File survivorsFile = IO.getFile(PartitionedFiles.resolvePlaceholder(SURVIVORS_FILE_PATTERN, survivorsFileIndex));
+        if (survivorsFile.exists()) {
+            // the process may have been killed before the survivors were published to the manifest
+            publishSurvivors(survivorsFile, survivorsFileIndex);
+            log.println("Survivors were extracted to %s before the pipeline was stopped", survivorsFile.getName());
+            return null;
+        }
+
+        // win ratios of an interrupted extraction are written again
+        if (winRatioFile.length() > checkpoint.getWinRatioLength()) {
+            try (FileChannel channel = FileChannel.open(winRatioFile.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(checkpoint.getWinRatioLength());
+            }
+        }
+        List<WeightMatrix> survivors = new ArrayList<>();
+        for (ScoredWeightMatrix survivor : processCurrentGenerationToSurvivors(survivorsFileIndex, false)) {
+            survivors.add(survivor.getWeightMatrix());
+        }
+        return survivors;
+    }
+
+    private void completeStage(PipelineCheckpoint checkpoint, long stageMillis) throws IOException {
+        PipelineCheckpoint.Stage stage = checkpoint.getStage();
+        log.println("Generation %d: %s took %.1f seconds", checkpoint.getGenerations() + 1, stage, stageMillis / 1000.0);
+        checkpoint.complete(stageMillis);
+        if (stage == PipelineCheckpoint.Stage.REMOVE_SCORED_GENERATION) {
+            reportGeneration(checkpoint);
+        }
+    }
+
+    // survivors win rate against the wall time the pipeline has run, which is the sum of its stages time
+    private void reportGeneration(PipelineCheckpoint checkpoint) throws IOException {
+        long millis = 0;
+        for (PipelineCheckpoint.Stage stage : PipelineCheckpoint.Stage.values()) {
+            millis += checkpoint.getStageMillis(stage);
+        }
+        String survivorsFileName = PartitionedFiles.latestFileName(SURVIVORS_FILE_PATTERN);
+        float averageWinRate = survivorsAverageWinRate(survivorsFileName);
+        // survivors are written from the best one
+        float bestWinRate = readSurvivorsScores(survivorsFileName).get(0).getWinRate();
+
+        log.println("Generation %d: survivors win percentage = %.2f%%, the best one = %.2f%%, %.1f seconds since " +
+                "the pipeline started", checkpoint.getGenerations(), averageWinRate * 100, bestWinRate * 100, millis / 1000.0);
+        Files.write(IO.getFile(PIPELINE_REPORT_FILE).toPath(),
+                String.format(Locale.ROOT, "%d,%.1f,%.4f,%.4f\n", nextGeneration() - 1, millis / 1000.0, averageWinRate,
+                        bestWinRate).getBytes(StandardCharsets.US_ASCII),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // the best survivors of the previous island in the ring replace the worst survivors of this island. islands don't wait
+    // for each other, except for the migration, when an island needs the survivors of the same generation of the previous
+    // one. the previous island may be finished, e.g. it reached the target win rate, then there is no migration
+    private List<WeightMatrix> immigrate(List<WeightMatrix> survivors) throws IOException {
+        int previousIsland = (ISLAND + ISLANDS - 1) % ISLANDS;
+        String immigrantsFileName = PartitionedFiles.resolvePlaceholder(
+                TrainerUtils.islandFileName(Config.getTrainingSurvivorsFilePattern(), previousIsland), nextGeneration() - 1);
+        File previousIslandCheckpoint =
+                IO.getFile(TrainerUtils.islandFileName(Config.getTrainingPipelineCheckpointFile(), previousIsland));
+
+        long startTime = System.currentTimeMillis();
+        // survivors files are published with an atomic move, an existing file is complete
+        while (!IO.getFile(immigrantsFileName).exists()) {
+            if (!previousIslandCheckpoint.exists()) {
+                log.println("Island %d is not running, no survivors migrated to island %d", previousIsland, ISLAND);
+                return survivors;
+            }
+            sleepPollInterval();
+        }
+        log.println("%d survivors migrated from island %d, waited %d seconds", ISLAND_MIGRANTS, previousIsland,
+                (System.currentTimeMillis() - startTime) / 1000);
+        return TrainerUtils.immigrate(survivors, readSurvivors(immigrantsFileName), ISLAND_MIGRANTS);
+    }
+
+    private void sleepPollInterval() {
+        try {
+            Thread.sleep(PIPELINE_POLL_SECONDS * 1000L);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // scoring starts on each partition as soon as it's bred. if the pipeline is killed, the generation is bred again,
+    // except for the partitions which are already bred, so both stages are checkpointed once scoring is complete.
+    // scoring time is the time it took after breeding was complete
+    private void breedAndScore(List<WeightMatrix> parents, PipelineCheckpoint checkpoint, long startTime) throws IOException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Long> breeding = executor.submit(() -> {
+                breed(parents, nextGeneration(), this::isPartitionBred);
+                return System.currentTimeMillis();
+            });
+            simulateScoring(createEarlyStopping(), breeding::isDone);
+
+            long breedingEndTime = breeding.get();
+            completeStage(checkpoint, breedingEndTime - startTime);
+            completeStage(checkpoint, System.currentTimeMillis() - breedingEndTime);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // partition is bred if it's not scored yet or if it's already scored
+    private boolean isPartitionBred(int partition) {
+        return IO.getFile(PartitionedFiles.resolvePlaceholder(NEW_GENERATION_FILE_PATTERN, partition)).exists()
+                || IO.getFile(PartitionedFiles.resolvePlaceholder(SCORED_GENERATION_FILE_PATTERN, partition)).exists();
+    }
+
+    private boolean isPipelineFinished(PipelineCheckpoint checkpoint) throws IOException {
+        if (checkpoint.getGenerations() >= PIPELINE_GENERATIONS) {
+            log.println("%d generations are complete", checkpoint.getGenerations());
+            return true;
+        }
+        if (PIPELINE_TARGET_WIN_RATE > 0) {
+            float winRate = survivorsAverageWinRate(PartitionedFiles.latestFileName(SURVIVORS_FILE_PATTERN));
+            if (winRate >= PIPELINE_TARGET_WIN_RATE) {
+                log.println("Survivors win percentage %.2f%% reached the target", winRate * 100);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Robocode scores the new generation files and deletes them, so scoring is complete once none of them are left
+    private void waitForRobocodeScoring() throws IOException {
+        // Robocode deletes the manifests, the directory is listed until it's done
+        PartitionManifest.delete(NEW_GENERATION_FILE_PATTERN);
+        PartitionManifest.delete(SCORED_GENERATION_FILE_PATTERN);
+        log.println("Waiting for Robocode to score files with pattern '%s', launch 'project.sh scoring'",
+                NEW_GENERATION_FILE_PATTERN);
+        while (PartitionedFiles.exists(NEW_GENERATION_FILE_PATTERN) || !PartitionedFiles.exists(SCORED_GENERATION_FILE_PATTERN)) {
+            sleepPollInterval();
+        }
+        updatePartitionManifests();
+    }
+
+    private float survivorsAverageWinRate(String survivorsFileName) throws IOException {
+        AverageEvaluator averageEvaluator = new AverageEvaluator();
+        for (Score score : readSurvivorsScores(survivorsFileName)) {
+            averageEvaluator.put(score.getWinRate());
+        }
+        return averageEvaluator.getAverage();
+    }
+
+    private List<Score> readSurvivorsScores(String survivorsFileName) throws IOException {
+        List<Score> scores = new ArrayList<>();
+        try (Reader<Score> reader = new FileReader<>(IO.getFile(survivorsFileName), ScoredWeightMatrix.SIZE_IN_BYTES,
+                Serializer::deserializeScoreFromScoredWeightMatrix)) {
+            Score score;
+            while ((score = reader.read()) != null) {
+                scores.add(score);
+            }
+        }
+        return scores;
+    }
+
+    @Override
+    void readConfigProperties() {
+        super.readConfigProperties();
+        PIPELINE_GENERATIONS = Config.getTrainingPipelineGenerations();
+        PIPELINE_TARGET_WIN_RATE = Config.getTrainingPipelineTargetWinRate();
+        PIPELINE_SCORING = PipelineScoring.fromString(Config.getTrainingPipelineScoring());
+        PIPELINE_POLL_SECONDS = Config.getTrainingPipelinePollSeconds();
+        PIPELINE_CHECKPOINT_FILE = Config.getTrainingPipelineCheckpointFile();
+        PIPELINE_REPORT_FILE = Config.getTrainingPipelineReportFile();
+        ISLANDS = Config.getTrainingIslands();
+        ISLAND = Config.getTrainingIsland();
+        ISLAND_MIGRATION_INTERVAL = Config.getTrainingIslandMigrationInterval();
+        ISLAND_MIGRANTS = Config.getTrainingIslandMigrants();
+
+        if (ISLANDS < 1) {
+            throw new IllegalArgumentException("islands must be greater or equal to 1");
+        }
+        if (ISLAND < 0 || ISLAND >= ISLANDS) {
+            throw new IllegalArgumentException(String.format("island must be from 0 to %d, but was %d", ISLANDS - 1, ISLAND));
+        }
+        // an island is a population of its own, the other properties are verified for the island
+        if (ISLANDS > 1) {
+            POPULATION /= ISLANDS;
+            SURVIVORS /= ISLANDS;
+            SCORING_THREADS = islandThreads(SCORING_THREADS);
+            BREEDING_THREADS = islandThreads(BREEDING_THREADS);
+            NEW_GENERATION_FILE_PATTERN = TrainerUtils.islandFileName(NEW_GENERATION_FILE_PATTERN, ISLAND);
+            SCORED_GENERATION_FILE_PATTERN = TrainerUtils.islandFileName(SCORED_GENERATION_FILE_PATTERN, ISLAND);
+            SURVIVORS_FILE_PATTERN = TrainerUtils.islandFileName(SURVIVORS_FILE_PATTERN, ISLAND);
+            WIN_RATIO_FILE = TrainerUtils.islandFileName(WIN_RATIO_FILE, ISLAND);
+            SCORE_CACHE_FILE = TrainerUtils.islandFileName(SCORE_CACHE_FILE, ISLAND);
+            PIPELINE_CHECKPOINT_FILE = TrainerUtils.islandFileName(PIPELINE_CHECKPOINT_FILE, ISLAND);
+            PIPELINE_REPORT_FILE = TrainerUtils.islandFileName(PIPELINE_REPORT_FILE, ISLAND);
+            SEED = Seeds.derive(SEED, ISLAND);
+        }
+    }
+
+    @Override
+    void verifyConfigProperties() {
+        super.verifyConfigProperties();
+        if (PIPELINE_GENERATIONS < 1) {
+            throw new IllegalArgumentException("pipeline generations must be greater or equal to 1");
+        }
+        if (PIPELINE_TARGET_WIN_RATE < 0 || PIPELINE_TARGET_WIN_RATE > 1) {
+            throw new IllegalArgumentException("pipeline target win rate must be greater or equal to 0 and less or equal to 1");
+        }
+        if (PIPELINE_POLL_SECONDS < 1) {
+            throw new IllegalArgumentException("pipeline poll seconds must be greater or equal to 1");
+        }
+        if (SURVIVORS < 1) {
+            throw new IllegalArgumentException("survivors number must be greater or equal to islands number");
+        }
+        if (ISLANDS > 1 && PIPELINE_SCORING != PipelineScoring.SIMULATED) {
+            throw new IllegalArgumentException("islands are scored in simulated battles only");
+        }
+        if (ISLAND_MIGRATION_INTERVAL < 1) {
+            throw new IllegalArgumentException("island migration interval must be greater or equal to 1");
+        }
+        if (ISLAND_MIGRANTS < 0 || ISLAND_MIGRANTS > SURVIVORS) {
+            throw new IllegalArgumentException("island migrants must be greater or equal to 0 and less or equal to " +
+                    "survivors number of an island");
+        }
+    }
+
+    // 0 means the available processors, which are shared by the islands
+    private int islandThreads(int threads) {
+        return (threads != 0) ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / ISLANDS);
+    }
+
+    private enum PipelineScoring {
+
+        SIMULATED,
+        ROBOCODE;
+
+        public static PipelineScoring fromString(String scoring) {
+            for (PipelineScoring value : values()) {
+                if (value.name().equalsIgnoreCase(scoring.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported pipeline scoring '%s'", scoring));
+        }
+    }
+}
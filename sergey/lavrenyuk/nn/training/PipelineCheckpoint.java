@@ -0,0 +1,222 @@
+package sergey.lavrenyuk.nn.training;
+
+import sergey.lavrenyuk.io.PartitionedFiles;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * State of the headless training pipeline, which loops over {@link Stage stages} of a generation. The checkpoint is saved
+ * once a stage is complete, so a killed pipeline resumes from the stage it was in. A stage must be safe to repeat
+ * after it was interrupted, e.g. scoring continues with the partitions which are not scored yet.
+ *
+ * The checkpoint is a properties file with the next stage, the number of completed generations and the total wall time
+ * spent in each stage. It's written to a temporary file, which then atomically replaces the checkpoint.
+ *
+ * Survivors extraction publishes the survivors file before the stage is complete, so the index of the survivors file and
+ * the length of the win ratio file are saved once the extraction starts, see {@link #startExtraction(int, long)}.
+ * A resumed extraction finds out whether the survivors were published, instead of extracting them to the next file.
+ */
+public class PipelineCheckpoint {
+
+    private static final String STAGE = "stage";
+    private static final String GENERATIONS = "generations";
+    private static final String MILLIS_SUFFIX = ".millis";
+    private static final String SURVIVORS_INDEX = "survivorsIndex";
+    private static final String WIN_RATIO_LENGTH = "winRatioLength";
+
+    public static final int NO_SURVIVORS_INDEX = -1;
+
+    private final File file;
+    private final Map<Stage, Long> stageMillis = new EnumMap<>(Stage.class);
+    private Stage stage;
+    private int generations;
+    private int survivorsIndex = NO_SURVIVORS_INDEX;
+    private long winRatioLength;
+
+    public enum Stage {
+        // random matrices are written to the new generation partitions
+        CREATE_INITIAL_GENERATION,
+        // new generation partitions are scored to the scored generation partitions
+        SCORE,
+        // the best scored matrices are written to the next survivors file
+        EXTRACT_SURVIVORS,
+        // scored generation partitions are deleted, survivors of the generation are complete at this point
+        REMOVE_SCORED_GENERATION,
+        // survivors are bred to the new generation partitions
+        CREATE_NEXT_GENERATION;
+
+        public Stage next() {
+            return this == CREATE_NEXT_GENERATION ? SCORE : values()[ordinal() + 1];
+        }
+
+        /**
+         * Stage to start from if there is no checkpoint, the first stage whose input partitions exist.
+         */
+        public static Stage first(boolean newGenerationExists, boolean scoredGenerationExists, boolean survivorsExist) {
+            if (newGenerationExists) {
+                // scored partitions may exist as well, if scoring was interrupted
+                return SCORE;
+            } else if (scoredGenerationExists) {
+                return EXTRACT_SURVIVORS;
+            } else if (survivorsExist) {
+                return CREATE_NEXT_GENERATION;
+            } else {
+                return CREATE_INITIAL_GENERATION;
+            }
+        }
+
+        public static Stage fromString(String stage) {
+            for (Stage value : values()) {
+                if (value.name().equalsIgnoreCase(stage.trim())) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(String.format("Unsupported pipeline stage '%s'", stage));
+        }
+    }
+
+    public PipelineCheckpoint(File file, Stage stage) {
+        this.file = file;
+        this.stage = stage;
+    }
+
+    /**
+     * Returns the checkpoint saved to the specified file, or null if there is no checkpoint.
+     */
+    public static PipelineCheckpoint load(File file) throws IOException {
+        if (file.length() == 0) { // Robocode automatically creates an empty file if it was not found
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        PipelineCheckpoint checkpoint = new PipelineCheckpoint(file, Stage.fromString(getProperty(properties, STAGE)));
+        checkpoint.generations = Integer.parseInt(getProperty(properties, GENERATIONS));
+        String survivorsIndex = properties.getProperty(SURVIVORS_INDEX);
+        if (survivorsIndex != null) {
+            checkpoint.survivorsIndex = Integer.parseInt(survivorsIndex);
+            checkpoint.winRatioLength = Long.parseLong(getProperty(properties, WIN_RATIO_LENGTH));
+        }
+        for (Stage stage : Stage.values()) {
+            String millis = properties.getProperty(stage.name() + MILLIS_SUFFIX);
+            if (millis != null) {
+                checkpoint.stageMillis.put(stage, Long.parseLong(millis));
+            }
+        }
+        return checkpoint;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * The stage to run next.
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * Number of generations whose survivors were extracted since the pipeline started.
+     */
+    public int getGenerations() {
+        return generations;
+    }
+
+    /**
+     * Total wall time spent in the stage since the pipeline started.
+     */
+    public long getStageMillis(Stage stage) {
+        return stageMillis.getOrDefault(stage, 0L);
+    }
+
+    /**
+     * Index of the survivors file the current extraction writes to, {@link #NO_SURVIVORS_INDEX} if the extraction
+     * has not started.
+     */
+    public int getSurvivorsIndex() {
+        return survivorsIndex;
+    }
+
+    /**
+     * Length of the win ratio file before the current extraction, so win ratios of an interrupted extraction can be dropped.
+     */
+    public long getWinRatioLength() {
+        return winRatioLength;
+    }
+
+    /**
+     * Saves the survivors file index and the win ratio file length of the extraction which is about to start,
+     * they are kept until the stage is complete.
+     */
+    public void startExtraction(int survivorsIndex, long winRatioLength) throws IOException {
+        if (stage != Stage.EXTRACT_SURVIVORS) {
+            throw new IllegalStateException(String.format("Survivors can't be extracted at %s stage", stage));
+        }
+        this.survivorsIndex = survivorsIndex;
+        this.winRatioLength = winRatioLength;
+        save();
+    }
+
+    /**
+     * Records the wall time of the current stage and saves the checkpoint with the next stage.
+     */
+    public void complete(long millis) throws IOException {
+        stageMillis.merge(stage, millis, Long::sum);
+        if (stage == Stage.EXTRACT_SURVIVORS) {
+            survivorsIndex = NO_SURVIVORS_INDEX;
+            winRatioLength = 0;
+        }
+        if (stage == Stage.REMOVE_SCORED_GENERATION) {
+            generations++;
+        }
+        stage = stage.next();
+        save();
+    }
+
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(STAGE, stage.name());
+        properties.setProperty(GENERATIONS, Integer.toString(generations));
+        if (survivorsIndex != NO_SURVIVORS_INDEX) {
+            properties.setProperty(SURVIVORS_INDEX, Integer.toString(survivorsIndex));
+            properties.setProperty(WIN_RATIO_LENGTH, Long.toString(winRatioLength));
+        }
+        for (Map.Entry<Stage, Long> entry : stageMillis.entrySet()) {
+            properties.setProperty(entry.getKey().name() + MILLIS_SUFFIX, Long.toString(entry.getValue()));
+        }
+
+        File tempFile = new File(file.getPath() + PartitionedFiles.TEMP_FILE_SUFFIX);
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            properties.store(out, "training pipeline checkpoint");
+        }
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes the checkpoint once the pipeline is finished, so the next pipeline starts from the partitions it finds.
+     */
+    public void delete() {
+        file.delete();
+    }
+
+    private static String getProperty(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException(String.format("Property '%s' not found in checkpoint", key));
+        }
+        return value;
+    }
+}
@@ -2,37 +2,57 @@ package sergey.lavrenyuk.nn.training;
 
 import sergey.lavrenyuk.Perceptron;
 import sergey.lavrenyuk.io.Config;
+import sergey.lavrenyuk.io.FileHeader;
 import sergey.lavrenyuk.io.IO;
 import sergey.lavrenyuk.io.Log;
+import sergey.lavrenyuk.io.MappedPartitionedFileReader;
+import sergey.lavrenyuk.io.PartitionManifest;
 import sergey.lavrenyuk.io.PartitionedFiles;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
 import sergey.lavrenyuk.nn.IntGeneratorFromString;
-import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedNeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
+import sergey.lavrenyuk.nn.Seeds;
 import sergey.lavrenyuk.nn.WeightMatrix;
 import sergey.lavrenyuk.nn.scoring.Score;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
 import sergey.lavrenyuk.io.FileReader;
 import sergey.lavrenyuk.io.FileWriter;
-import sergey.lavrenyuk.io.PartitionedFileReader;
-import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.nn.scoring.EarlyStopping;
+import sergey.lavrenyuk.nn.scoring.ParallelWeightMatrixScorer;
+import sergey.lavrenyuk.nn.scoring.ScoreCache;
+import sergey.lavrenyuk.nn.training.utils.ParallelBreeder;
 import sergey.lavrenyuk.nn.training.utils.TrainerUtils;
+import sergey.lavrenyuk.simulator.BattleSimulator;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
 import java.util.function.Supplier;
 
-import static sergey.lavrenyuk.io.PartitionedFiles.asStream;
-import static sergey.lavrenyuk.io.PartitionedFiles.nextFileName;
-
 public class Trainer {
 
     private static final int SCORED_WEIGHT_MATRICES_TO_SHOW = 10000;
+    private static final String PIPELINE_OPTION = "--pipeline";
+    // substreams of a generation seed
+    private static final long BREEDING_SEED_STREAM = 0;
+    private static final long SCORING_SEED_STREAM = 1;
 
     static { // initialize IO with our robot base directory
         String robotClassName = Perceptron.class.getSimpleName();
@@ -43,23 +63,68 @@ public class Trainer {
     }
 
     private final Log log = new Log(Trainer.class);
+    // used if the seed is not configured, the same one for all the commands of the process
+    private final long launchSeed = Seeds.random();
+
+    // config properties, the pipeline changes some of them for its island
+    String MATRIX_MAX_ABS_WEIGHT_STRING;
+    String SCORED_GENERATION_FILE_PATTERN;
+    String NEW_GENERATION_FILE_PATTERN;
+    String SURVIVORS_FILE_PATTERN;
+    String WIN_RATIO_FILE;
+    String ENEMY_FILE_NAME;
+    String ENEMY;
+    int MATRICES_PER_OUTPUT_FILE;
+    int POPULATION;
+    int SURVIVORS;
+    int CROSSINGOVER_INDIVIDUALS;
+    int MUTATED_COPIES;
+    int MUTATION_PERCENTAGE;
+    int ROUNDS_PER_MATRIX;
+    int SCORING_THREADS;
+    double EARLY_STOPPING_Z_SCORE;
+    ScoreCache.Mode SCORE_CACHE_MODE;
+    String SCORE_CACHE_FILE;
+    ByteOrder OUTPUT_BYTE_ORDER;
+    int ITEMS_PER_CHECKSUM_BLOCK;
+    FileHeader.Compression COMPRESSION;
+    boolean PARTITION_MANIFESTS;
+    int BREEDING_THREADS;
+    long SEED;
 
-    private String MATRIX_MAX_ABS_WEIGHT_STRING;
-    private String SCORED_GENERATION_FILE_PATTERN;
-    private String NEW_GENERATION_FILE_PATTERN;
-    private String SURVIVORS_FILE_PATTERN;
-    private String WIN_RATIO_FILE;
-    private String ENEMY_FILE_NAME;
-    private int MATRICES_PER_OUTPUT_FILE;
-    private int POPULATION;
-    private int SURVIVORS;
-    private int CROSSINGOVER_INDIVIDUALS;
-    private int MUTATED_COPIES;
-    private int MUTATION_PERCENTAGE;
-    private int ROUNDS_PER_MATRIX;
-
+    /**
+     * Without arguments the trainer shows the menu, with {@value #PIPELINE_OPTION} it runs the headless {@link Pipeline}.
+     * Any property can be given as "--key value", e.g. "--training.population 1000", the pipeline properties have short
+     * names as well, see {@link #propertyKey(String)}.
+     */
     public static void main(String[] args) throws IOException {
-        new Trainer().run();
+        boolean pipeline = false;
+        for (int i = 0; i < args.length; i++) {
+            if (PIPELINE_OPTION.equals(args[i])) {
+                pipeline = true;
+            } else if (args[i].startsWith("--") && i + 1 < args.length) {
+                Config.override(propertyKey(args[i].substring(2)), args[++i]);
+            } else {
+                throw new IllegalArgumentException(String.format("Unknown option '%s'", args[i]));
+            }
+        }
+
+        if (pipeline) {
+            new Pipeline().run();
+        } else {
+            new Trainer().run();
+        }
+    }
+
+    private static String propertyKey(String option) {
+        switch (option) {
+            case "generations": return "training.pipelineGenerations";
+            case "target-win-rate": return "training.pipelineTargetWinRate";
+            case "scoring": return "training.pipelineScoring";
+            case "islands": return "training.islands";
+            case "island": return "training.island";
+            default: return option;
+        }
     }
 
     public void run() throws IOException {
@@ -73,6 +138,9 @@ public class Trainer {
             log.println("%s\tcreate initial generation", Command.CREATE_INITIAL_GENERATION);
             log.println("%s\t\tcreate next generation from survivors", Command.CREATE_NEXT_GENERATION);
             log.println("%s\tcreate a file for fighting mode based on survivors", Command.PREPARE_SURVIVORS_FOR_FIGHTING);
+            log.println("%s\t\tscore the next generation in simulated battles, without Robocode", Command.SIMULATE_SCORING);
+            log.println("%s\tstore survivors with float16 and int8 weights, score them and print the win rate drift",
+                    Command.VALIDATE_QUANTIZATION);
 
             log.println("%s\t\tprint next generation information", Command.NEXT_GENERATION_INFO);
             log.println("%s\tprint next generation verbose information", Command.NEXT_GENERATION_INFO_VERBOSE);
@@ -86,8 +154,7 @@ public class Trainer {
 
             Command command = Command.fromString(scanner.nextLine());
 
-            Config.refresh();
-            readConfigProperties();
+            refreshConfig();
 
             switch (command) {
                 case QUIT: {
@@ -103,7 +170,7 @@ public class Trainer {
                     log.println("\nConfirm and continue? Y/N");
 
                     if ("Y".equalsIgnoreCase(scanner.nextLine())) {
-                        processCurrentGenerationToSurvivors();
+                        processCurrentGenerationToSurvivors(true);
                     }
                     break;
                 } case CREATE_INITIAL_GENERATION: {
@@ -117,7 +184,7 @@ public class Trainer {
                     log.println("\nConfirm and continue? Y/N");
 
                     if ("Y".equalsIgnoreCase(scanner.nextLine())) {
-                        createInitialGeneration();
+                        breed(Collections.emptyList(), nextGeneration(), partition -> false);
                     }
                     break;
                 } case CREATE_NEXT_GENERATION: {
@@ -146,7 +213,7 @@ public class Trainer {
 
                     log.println("\nConfirm and continue? Y/N");
                     if ("Y".equalsIgnoreCase(scanner.nextLine())) {
-                        processSurvivorsToNextGeneration(fileName);
+                        breed(readSurvivors(fileName), index + 1, partition -> false);
                     }
                     break;
                 } case PREPARE_SURVIVORS_FOR_FIGHTING: {
@@ -178,6 +245,44 @@ public class Trainer {
 
                     prepareSurvivorsForFighting(enemyFile, IO.getFile(survivorsFileName), topSurvivorsForFighting);
                     break;
+                } case SIMULATE_SCORING: {
+                    if (!PartitionedFiles.exists(NEW_GENERATION_FILE_PATTERN)) {
+                        log.println("There was no input files with pattern '%s' found.", NEW_GENERATION_FILE_PATTERN);
+                        continue;
+                    }
+
+                    EarlyStopping earlyStopping = createEarlyStopping();
+                    log.println("Rounds per matrix = %d, enemy = %s, threads = %d, early stopping cutoff win rate = %.3f, " +
+                            "score cache mode = %s", ROUNDS_PER_MATRIX, ENEMY, SCORING_THREADS,
+                            earlyStopping.getCutoffWinRate(), SCORE_CACHE_MODE);
+                    log.println("\nConfirm and continue? Y/N");
+
+                    if ("Y".equalsIgnoreCase(scanner.nextLine())) {
+                        simulateScoring(earlyStopping, () -> true);
+                    }
+                    break;
+                } case VALIDATE_QUANTIZATION: {
+                    if (!PartitionedFiles.exists(SURVIVORS_FILE_PATTERN)) {
+                        log.println("Survivors file with pattern '%s' not found.", SURVIVORS_FILE_PATTERN);
+                        continue;
+                    }
+
+                    log.println("\nFound survivors file indexes: %s", PartitionedFiles.getFileIndexes(SURVIVORS_FILE_PATTERN));
+                    log.print("Input index (leave blank to use the latest): ");
+                    String input = scanner.nextLine();
+
+                    int index = input.trim().isEmpty()
+                            ? PartitionedFiles.latestFileIndex(SURVIVORS_FILE_PATTERN)
+                            : Integer.parseInt(input);
+                    String fileName = PartitionedFiles.resolvePlaceholder(SURVIVORS_FILE_PATTERN, index);
+                    log.println("%s will be used, rounds per matrix and precision = %d, enemy = %s", fileName,
+                            ROUNDS_PER_MATRIX, ENEMY);
+
+                    log.println("\nConfirm and continue? Y/N");
+                    if ("Y".equalsIgnoreCase(scanner.nextLine())) {
+                        validateQuantization(fileName);
+                    }
+                    break;
                 } case NEXT_GENERATION_INFO: {
                     printPopulationInfoShort();
                     break;
@@ -215,12 +320,21 @@ public class Trainer {
         }
     }
 
-    private void readConfigProperties() {
+    // properties may be changed between the commands
+    void refreshConfig() throws IOException {
+        Config.refresh();
+        readConfigProperties();
+        verifyConfigProperties();
+        updatePartitionManifests();
+    }
+
+    void readConfigProperties() {
         SCORED_GENERATION_FILE_PATTERN = Config.getNeuralNetworkScoredWeightMatrixFilePattern();
         NEW_GENERATION_FILE_PATTERN = Config.getNeuralNetworkWeightMatrixFilePattern();
         SURVIVORS_FILE_PATTERN = Config.getTrainingSurvivorsFilePattern();
         WIN_RATIO_FILE = Config.getTrainingWinRatioFile();
         ENEMY_FILE_NAME = Config.getNeuralNetworkEnemyFileName();
+        ENEMY = Config.getNeuralNetworkEnemy();
         MATRICES_PER_OUTPUT_FILE = Config.getTrainingMatricesPerOutputFile();
         POPULATION = Config.getTrainingPopulation();
         SURVIVORS = Config.getTrainingSurvivors();
@@ -229,8 +343,20 @@ public class Trainer {
         MUTATION_PERCENTAGE = Config.getTrainingMutationPercentage();
         MATRIX_MAX_ABS_WEIGHT_STRING = Config.getNeuralNetworkMatrixMaxAbsWeight();
         ROUNDS_PER_MATRIX = Config.getScoringRoundsPerMatrix();
+        SCORING_THREADS = Config.getScoringThreads();
+        EARLY_STOPPING_Z_SCORE = Config.getScoringEarlyStoppingZScore();
+        SCORE_CACHE_MODE = ScoreCache.Mode.fromString(Config.getScoringCacheMode());
+        SCORE_CACHE_FILE = Config.getScoringCacheFile();
+        OUTPUT_BYTE_ORDER = Config.getTrainingNativeByteOrder() ? ByteOrder.nativeOrder() : ByteOrder.BIG_ENDIAN;
+        ITEMS_PER_CHECKSUM_BLOCK = Config.getNeuralNetworkItemsPerChecksumBlock();
+        COMPRESSION = FileHeader.Compression.fromString(Config.getNeuralNetworkCompression());
+        PARTITION_MANIFESTS = Config.getTrainingPartitionManifests();
+        BREEDING_THREADS = Config.getTrainingBreedingThreads();
+        long seed = Config.getNeuralNetworkSeed();
+        SEED = (seed != 0) ? seed : launchSeed;
+    }
 
-        // verify config parameters
+    void verifyConfigProperties() {
         if (POPULATION < 1) {
             throw new IllegalArgumentException("population must be greater or equal to 1");
         }
@@ -250,77 +376,247 @@ public class Trainer {
         if (ROUNDS_PER_MATRIX < 1) {
             throw new IllegalArgumentException("at least one round per matrix is expected");
         }
+        if (COMPRESSION != FileHeader.Compression.NONE && ITEMS_PER_CHECKSUM_BLOCK < 1) {
+            throw new IllegalArgumentException("compressed files consist of checksum blocks, " +
+                    "so at least one item per checksum block is expected");
+        }
     }
 
-    private void createInitialGeneration() throws IOException {
+    // Robocode scoring deletes the manifests, since it can't update them, so they are rebuilt from the directory
+    void updatePartitionManifests() throws IOException {
+        updatePartitionManifest(NEW_GENERATION_FILE_PATTERN, PartitionManifest.State.PENDING);
+        updatePartitionManifest(SCORED_GENERATION_FILE_PATTERN, PartitionManifest.State.SCORED);
+        updatePartitionManifest(SURVIVORS_FILE_PATTERN, PartitionManifest.State.SCORED);
+    }
 
-        WeightMatrixGenerator weightMatrixGenerator = new WeightMatrixGenerator();
+    private void updatePartitionManifest(String filePattern, PartitionManifest.State state) throws IOException {
+        if (!PARTITION_MANIFESTS) {
+            PartitionManifest.delete(filePattern);
+        } else if (!PartitionManifest.exists(filePattern)) {
+            PartitionManifest.rebuild(filePattern, state);
+        }
+    }
 
-        Supplier<Integer> matrixMaxAbsWeightGenerator = new IntGeneratorFromString(MATRIX_MAX_ABS_WEIGHT_STRING);
+    // generation bred from the survivors of generation N is generation N + 1, the initial generation is generation 0.
+    // survivors of the generation being bred or scored are not extracted yet, so it's the next one after the latest survivors
+    int nextGeneration() {
+        return PartitionedFiles.latestFileIndex(SURVIVORS_FILE_PATTERN) + 1;
+    }
 
-        Writer<WeightMatrix> initialGenerationWriter = new PartitionedFileWriter<>(
+    // no parents means a generation of random matrices
+    void breed(List<WeightMatrix> parents, int generation, IntPredicate partitionDone) throws IOException {
+        long seed = Seeds.derive(SEED, generation, BREEDING_SEED_STREAM);
+        ParallelBreeder breeder = new ParallelBreeder(
                 NEW_GENERATION_FILE_PATTERN,
                 MATRICES_PER_OUTPUT_FILE,
-                Serializer::serializeWeightMatrix);
+                outputFileHeader(WeightMatrix.SIZE_IN_BYTES),
+                weightMatrix -> Serializer.serializeWeightMatrix(weightMatrix, OUTPUT_BYTE_ORDER),
+                CROSSINGOVER_INDIVIDUALS,
+                MUTATED_COPIES,
+                MUTATION_PERCENTAGE,
+                POPULATION,
+                new IntGeneratorFromString(MATRIX_MAX_ABS_WEIGHT_STRING),
+                BREEDING_THREADS,
+                seed);
+
+        long startTime = System.currentTimeMillis();
+        long matrices = breeder.breed(parents, partitionDone);
+        log.println("%d matrices of generation %d bred from %d parents with seed %d in %d seconds", matrices, generation,
+                parents.size(), SEED, (System.currentTimeMillis() - startTime) / 1000);
+    }
 
-        for (int i = 0; i < POPULATION; i++) {
-            initialGenerationWriter.write(weightMatrixGenerator.generateRandom(matrixMaxAbsWeightGenerator.get()));
+    List<WeightMatrix> readSurvivors(String survivorsFileName) throws IOException {
+        List<WeightMatrix> survivors = new ArrayList<>();
+        try (Reader<WeightMatrix> reader = new FileReader<>(IO.getFile(survivorsFileName), ScoredWeightMatrix.SIZE_IN_BYTES,
+                Serializer::deserializeWeightMatrixFromScoredWeightMatrix)) {
+            WeightMatrix survivor;
+            while ((survivor = reader.read()) != null) {
+                survivors.add(survivor);
+            }
         }
-        initialGenerationWriter.close();
+        return survivors;
     }
 
-    private void processCurrentGenerationToSurvivors() throws IOException {
+    private FileHeader outputFileHeader(int itemSize) {
+        return FileHeader.of(OUTPUT_BYTE_ORDER, itemSize, ITEMS_PER_CHECKSUM_BLOCK, COMPRESSION);
+    }
+
+    private List<ScoredWeightMatrix> processCurrentGenerationToSurvivors(boolean removeCurrentGeneration) throws IOException {
+        return processCurrentGenerationToSurvivors(PartitionedFiles.latestFileIndex(SURVIVORS_FILE_PATTERN) + 1,
+                removeCurrentGeneration);
+    }
 
-        Reader<ScoredWeightMatrix> currentGenerationReader = new PartitionedFileReader<>(
+    List<ScoredWeightMatrix> processCurrentGenerationToSurvivors(int survivorsFileIndex,
+                                                                         boolean removeCurrentGeneration) throws IOException {
+
+        Reader<ScoredWeightMatrix> currentGenerationReader = new MappedPartitionedFileReader<>(
                 SCORED_GENERATION_FILE_PATTERN,
                 ScoredWeightMatrix.SIZE_IN_BYTES,
                 Serializer::deserializeScoredWeightMatrix);
 
-        File survivorsFile = IO.getFile(nextFileName(SURVIVORS_FILE_PATTERN));
+        File survivorsFile = IO.getFile(PartitionedFiles.resolvePlaceholder(SURVIVORS_FILE_PATTERN, survivorsFileIndex));
+
+        // written under a temporary name, so an interrupted extraction doesn't leave an incomplete survivors file
+        File survivorsTempFile = new File(survivorsFile.getPath() + PartitionedFiles.TEMP_FILE_SUFFIX);
 
         Writer<ScoredWeightMatrix> survivorsWriter = new FileWriter<>(
-                survivorsFile,
-                Serializer::serializeScoredWeightMatrix);
+                survivorsTempFile,
+                outputFileHeader(ScoredWeightMatrix.SIZE_IN_BYTES),
+                survivor -> Serializer.serializeScoredWeightMatrix(survivor, OUTPUT_BYTE_ORDER));
 
         Writer<Float> winRatioWriter = new FileWriter<>(
                 IO.getFile(WIN_RATIO_FILE),
                 floatValue -> ByteBuffer.wrap(new byte[Float.BYTES]).putFloat(floatValue).array(),
                 true);
 
-        Runnable currentGenerationRemover = () -> asStream(SCORED_GENERATION_FILE_PATTERN).forEach(File::delete);
+        // survivors are published before the current generation is removed, so it's never lost
+        Runnable currentGenerationRemover = () -> {
+            try {
+                Files.move(survivorsTempFile.toPath(), survivorsFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                publishSurvivors(survivorsFile, survivorsFileIndex);
+                if (removeCurrentGeneration) {
+                    PartitionedFiles.deleteAll(SCORED_GENERATION_FILE_PATTERN);
+                }
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        };
 
-        TrainerUtils.processCurrentGenerationToSurvivors(
+        List<ScoredWeightMatrix> survivors = TrainerUtils.processCurrentGenerationToSurvivors(
                 currentGenerationReader,
                 survivorsWriter,
                 winRatioWriter,
                 currentGenerationRemover,
                 SURVIVORS);
+
+        // the rest of the scored matrices can't appear in the next generation as is, so their cached scores are dropped
+        if (SCORE_CACHE_MODE != ScoreCache.Mode.OFF) {
+            List<WeightMatrix> survivorMatrices = new ArrayList<>();
+            for (ScoredWeightMatrix survivor : survivors) {
+                survivorMatrices.add(survivor.getWeightMatrix());
+            }
+            ScoreCache.retain(IO.getFile(SCORE_CACHE_FILE), survivorMatrices);
+        }
+        return survivors;
     }
 
-    private void processSurvivorsToNextGeneration(String survivorsFileName) throws IOException {
+    void publishSurvivors(File survivorsFile, int survivorsFileIndex) throws IOException {
+        try (FileReader<ByteBuffer> survivorsReader = new FileReader<>(survivorsFile, ScoredWeightMatrix.SIZE_IN_BYTES,
+                Function.identity())) {
+            PartitionManifest.publish(SURVIVORS_FILE_PATTERN, survivorsFileIndex, survivorsReader.size(),
+                    PartitionManifest.State.SCORED);
+        }
+    }
 
-        File survivorsFile = IO.getFile(survivorsFileName);
+    // does the same as Robocode in scoring mode, input files are removed once they are scored,
+    // so an interrupted scoring can be continued
+    // each partition is scored in battles of its own seed, so the scores don't depend on the number of threads
+    void simulateScoring(EarlyStopping earlyStopping, BooleanSupplier inputComplete) throws IOException {
+        long seed = Seeds.derive(SEED, nextGeneration(), SCORING_SEED_STREAM);
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile(SCORE_CACHE_FILE), SCORE_CACHE_MODE)) {
+            ParallelWeightMatrixScorer scorer = new ParallelWeightMatrixScorer(
+                    NEW_GENERATION_FILE_PATTERN,
+                    SCORED_GENERATION_FILE_PATTERN,
+                    ROUNDS_PER_MATRIX,
+                    SCORING_THREADS,
+                    partition -> new BattleSimulator(BattleSimulator.createEnemyBehavior(ENEMY),
+                            new Random(Seeds.derive(seed, partition))),
+                    earlyStopping,
+                    scoreCache);
+
+            long startTime = System.currentTimeMillis();
+            long matrices = scorer.score(inputComplete);
+            log.println("%d matrices scored in %d seconds, %d rounds played out of %d, %d matrices in the score cache",
+                    matrices, (System.currentTimeMillis() - startTime) / 1000, scorer.getRoundsPlayed(),
+                    matrices * ROUNDS_PER_MATRIX, scoreCache.size());
+        }
+    }
 
-        Reader<WeightMatrix> survivorsReader = new FileReader<>(
-                survivorsFile,
-                ScoredWeightMatrix.SIZE_IN_BYTES,
-                Serializer::deserializeWeightMatrixFromScoredWeightMatrix);
+    // each survivor plays the same simulated battles with float, float16 and int8 weights,
+    // the drift is the difference between the quantized and the float win rates.
+    // quantized survivors are stored to files first and read back, so the drift includes the file format
+    private void validateQuantization(String survivorsFileName) throws IOException {
+        List<WeightMatrix> survivors = readSurvivors(survivorsFileName);
+        List<QuantizedWeightMatrix> float16Survivors =
+                storeQuantized(survivors, survivorsFileName, QuantizedWeightMatrix.Precision.FLOAT16);
+        List<QuantizedWeightMatrix> int8Survivors =
+                storeQuantized(survivors, survivorsFileName, QuantizedWeightMatrix.Precision.INT8);
+
+        float[] float16Drifts = new float[survivors.size()];
+        float[] int8Drifts = new float[survivors.size()];
+        log.println(" index\t| float32 win %%\t| float16 win %%\t| int8 win %%");
+        for (int i = 0; i < survivors.size(); i++) {
+            WeightMatrix survivor = survivors.get(i);
+            QuantizedWeightMatrix float16Survivor = float16Survivors.get(i);
+            QuantizedWeightMatrix int8Survivor = int8Survivors.get(i);
+            float winRate = TrainerUtils.simulateWinRate(survivor, NeuralNetwork::new, ENEMY, ROUNDS_PER_MATRIX, i);
+            float float16WinRate = TrainerUtils.simulateWinRate(survivor,
+                    wm -> QuantizedNeuralNetwork.create(float16Survivor), ENEMY, ROUNDS_PER_MATRIX, i);
+            float int8WinRate = TrainerUtils.simulateWinRate(survivor,
+                    wm -> QuantizedNeuralNetwork.create(int8Survivor), ENEMY, ROUNDS_PER_MATRIX, i);
+            float16Drifts[i] = float16WinRate - winRate;
+            int8Drifts[i] = int8WinRate - winRate;
+            log.println(" %d\t| %.2f%%\t\t| %.2f%%\t\t| %.2f%%", i, winRate * 100, float16WinRate * 100, int8WinRate * 100);
+        }
 
-        Writer<WeightMatrix> nextGenerationWriter = new PartitionedFileWriter<>(
-                NEW_GENERATION_FILE_PATTERN,
-                MATRICES_PER_OUTPUT_FILE,
-                Serializer::serializeWeightMatrix);
+        printDrift(QuantizedWeightMatrix.Precision.FLOAT16, float16Drifts);
+        printDrift(QuantizedWeightMatrix.Precision.INT8, int8Drifts);
+    }
 
-        Supplier<Integer> matrixMaxAbsWeightGenerator = new IntGeneratorFromString(MATRIX_MAX_ABS_WEIGHT_STRING);
+    private List<QuantizedWeightMatrix> storeQuantized(List<WeightMatrix> survivors,
+                                                       String survivorsFileName,
+                                                       QuantizedWeightMatrix.Precision precision) throws IOException {
+        File file = IO.getFile(TrainerUtils.quantizedFileName(survivorsFileName, precision));
+        try (Writer<QuantizedWeightMatrix> writer = new FileWriter<>(file, outputFileHeader(precision.getSizeInBytes()),
+                weightMatrix -> Serializer.serializeQuantizedWeightMatrix(weightMatrix, OUTPUT_BYTE_ORDER))) {
+            for (WeightMatrix survivor : survivors) {
+                writer.write(QuantizedWeightMatrix.quantize(survivor, precision));
+            }
+        }
+        log.println("%d %s survivors stored to %s, %d bytes, %d bytes as float32 weights", survivors.size(), precision,
+                file.getName(), file.length(), (long) survivors.size() * WeightMatrix.SIZE_IN_BYTES);
+
+        List<QuantizedWeightMatrix> result = new ArrayList<>(survivors.size());
+        try (Reader<QuantizedWeightMatrix> reader = new FileReader<>(file, precision.getSizeInBytes(),
+                byteBuffer -> Serializer.deserializeQuantizedWeightMatrix(byteBuffer, precision))) {
+            QuantizedWeightMatrix weightMatrix;
+            while ((weightMatrix = reader.read()) != null) {
+                result.add(weightMatrix);
+            }
+        }
+        return result;
+    }
 
-        TrainerUtils.processSurvivorsToNextGeneration(
-                survivorsReader,
-                nextGenerationWriter,
-                matrixMaxAbsWeightGenerator,
-                CROSSINGOVER_INDIVIDUALS,
-                MUTATED_COPIES,
-                MUTATION_PERCENTAGE,
-                POPULATION);
+    private void printDrift(QuantizedWeightMatrix.Precision precision, float[] drifts) {
+        double drift = 0;
+        double absoluteDrift = 0;
+        double maxAbsoluteDrift = 0;
+        for (float value : drifts) {
+            drift += value;
+            absoluteDrift += Math.abs(value);
+            maxAbsoluteDrift = Math.max(maxAbsoluteDrift, Math.abs(value));
+        }
+        log.println("%s win rate drift: average %+.2f%%, average absolute %.2f%%, max absolute %.2f%%", precision,
+                drift / drifts.length * 100, absoluteDrift / drifts.length * 100, maxAbsoluteDrift * 100);
+    }
+
+    // matrices which can not beat the worst survivor of the previous generation are not scored till the end
+    EarlyStopping createEarlyStopping() throws IOException {
+        String survivorsFileName = PartitionedFiles.latestFileName(SURVIVORS_FILE_PATTERN);
+        if (EARLY_STOPPING_Z_SCORE == 0 || survivorsFileName == null) {
+            return EarlyStopping.disabled();
+        }
+
+        float worstSurvivorWinRate = 1;
+        try (Reader<Score> reader = new FileReader<>(IO.getFile(survivorsFileName), ScoredWeightMatrix.SIZE_IN_BYTES,
+                Serializer::deserializeScoreFromScoredWeightMatrix)) {
+            Score score;
+            while ((score = reader.read()) != null) {
+                worstSurvivorWinRate = Math.min(worstSurvivorWinRate, score.getWinRate());
+            }
+        }
+        return EarlyStopping.fromWorstSurvivor(worstSurvivorWinRate, ROUNDS_PER_MATRIX, EARLY_STOPPING_Z_SCORE);
     }
 
     private void prepareSurvivorsForFighting(File enemyFile, File survivorsFile, int topSurvivorsForFighting) throws IOException {
@@ -351,16 +647,12 @@ public class Trainer {
             log.println("Survivors file '%s' is empty", survivorsFile.getAbsolutePath());
             return;
         }
-        if (survivorsFile.length() % ScoredWeightMatrix.SIZE_IN_BYTES != 0) {
-            log.println("Survivors file doesn't contain an integer number of items");
-        }
+        FileReader<Score> reader = new FileReader<>(
+                survivorsFile, ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix);
 
-        log.println("Total number of survivors: %d", survivorsFile.length() / ScoredWeightMatrix.SIZE_IN_BYTES);
+        log.println("Total number of survivors: %d", reader.size());
         log.println(" index\t| win %%\t\t| average energy diff");
 
-        Reader<Score> reader = new FileReader<>(
-                survivorsFile, ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix);
-
         printScores(reader);
     }
 
@@ -372,7 +664,7 @@ public class Trainer {
 
         log.println(" index\t| win %%\t\t| average energy diff");
 
-        Reader<Score> reader = new PartitionedFileReader<>(SCORED_GENERATION_FILE_PATTERN,
+        Reader<Score> reader = new MappedPartitionedFileReader<>(SCORED_GENERATION_FILE_PATTERN,
                 ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix);
         reader = TrainerUtils.sortMaxValues(reader, SCORED_WEIGHT_MATRICES_TO_SHOW, Score::compareTo);
 
@@ -521,6 +813,8 @@ public class Trainer {
         CREATE_INITIAL_GENERATION,
         CREATE_NEXT_GENERATION,
         PREPARE_SURVIVORS_FOR_FIGHTING,
+        SIMULATE_SCORING,
+        VALIDATE_QUANTIZATION,
         NEXT_GENERATION_INFO,
         NEXT_GENERATION_INFO_VERBOSE,
         SURVIVORS_SCORE,
@@ -5,43 +5,110 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+/**
+ * Keeps up to {@code sizeLimit} max values out of all the values put.
+ *
+ * Values are stored in slots of a plain array, a newcomer takes the slot of the evicted value. A binary min-heap over
+ * the slots gives the value to evict in O(1) and makes each replacement O(log sizeLimit), so selecting K values out of N
+ * takes O(N log K) comparisons instead of O(N * K).
+ *
+ * Ties are resolved the same way as before the heap was introduced:
+ * <ul>
+ *     <li>a newcomer equal to the minimal stored value is rejected</li>
+ *     <li>if the value put last is one of the minimal values, it is evicted first, otherwise the one in the lowest slot</li>
+ *     <li>{@link #asList()} orders equal values by their slots</li>
+ * </ul>
+ */
 public class MaxValuesStorage<T> {
 
     private final Object[] array; // can not use generics here because it is an array
     private final Comparator<T> comparator;
 
+    // min-heap of slots, i.e. array indexes, ordered by values and then by slots
+    private final int[] heap;
+    // position in the heap of each slot
+    private final int[] heapPositions;
+
     private int size = 0;
-    private int minValueIndex = 0;
+    private int minValueSlot = 0;
 
     public MaxValuesStorage(int sizeLimit, Comparator<T> comparator) {
         this.array = new Object[sizeLimit];
         this.comparator = comparator;
+        this.heap = new int[sizeLimit];
+        this.heapPositions = new int[sizeLimit];
     }
 
     @SuppressWarnings("unchecked")
     public void put(T value) {
         if (size < array.length) {
             array[size] = value;
-            if (comparator.compare(value, (T) array[minValueIndex]) < 0) {
-                minValueIndex = size;
-            }
+            heap[size] = size;
+            heapPositions[size] = size;
+            siftUp(size);
             size++;
+            minValueSlot = heap[0];
             return;
         }
-        if (comparator.compare(value, (T) array[minValueIndex]) > 0) {
-            array[minValueIndex] = value;
-            for (int i = 0; i < array.length; i++) {
-                if (comparator.compare((T) array[i], (T) array[minValueIndex]) < 0) {
-                    minValueIndex = i;
-                }
-            }
+        if (size > 0 && comparator.compare(value, (T) array[minValueSlot]) > 0) {
+            int replacedSlot = minValueSlot;
+            array[replacedSlot] = value;
+            // the new value is greater than the replaced one, so it can only go down
+            siftDown(heapPositions[replacedSlot]);
+            minValueSlot = (compareSlotValues(replacedSlot, heap[0]) == 0) ? replacedSlot : heap[0];
         }
     }
 
     @SuppressWarnings("unchecked")
     public List<T> asList() {
         List<T> result = (List<T>) Arrays.asList(Arrays.copyOf(array, size));
-        result.sort(Collections.reverseOrder(comparator)); // max elements go first
+        result.sort(Collections.reverseOrder(comparator)); // max elements go first, stable sort keeps slots order
         return result;
     }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (compareSlots(slot, heap[parent]) >= 0) {
+                break;
+            }
+            moveSlot(heap[parent], position);
+            position = parent;
+        }
+        moveSlot(slot, position);
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && compareSlots(heap[right], heap[child]) < 0) {
+                child = right;
+            }
+            if (compareSlots(slot, heap[child]) <= 0) {
+                break;
+            }
+            moveSlot(heap[child], position);
+            position = child;
+        }
+        moveSlot(slot, position);
+    }
+
+    private void moveSlot(int slot, int position) {
+        heap[position] = slot;
+        heapPositions[slot] = position;
+    }
+
+    private int compareSlots(int first, int second) {
+        int result = compareSlotValues(first, second);
+        return (result != 0) ? result : Integer.compare(first, second);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compareSlotValues(int first, int second) {
+        return comparator.compare((T) array[first], (T) array[second]);
+    }
 }
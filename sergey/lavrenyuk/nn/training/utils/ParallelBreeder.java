@@ -0,0 +1,181 @@
+package sergey.lavrenyuk.nn.training.utils;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.io.Writer;
+import sergey.lavrenyuk.nn.IntGeneratorFromString;
+import sergey.lavrenyuk.nn.Seeds;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Creates the next generation from survivors in the same layout as {@link TrainerUtils#processSurvivorsToNextGeneration},
+ * but each output partition is bred and written by its own task of a {@link ForkJoinPool}, and the random values come
+ * from a stream of each matrix instead of a shared one, so the same survivors give different matrices than there.
+ * Individual N of the generation is known without creating the previous ones:
+ * <ul>
+ *     <li>descendants go first, i.e. survivors and then their crossingover children</li>
+ *     <li>then mutated copies of the descendants, copy after copy</li>
+ *     <li>then random matrices, until the population is complete</li>
+ * </ul>
+ * So partitions are independent and each one is published by its {@link PartitionedFileWriter} as soon as it's written,
+ * scoring may start on it before the whole generation is complete.
+ *
+ * Each matrix has its own random stream, {@link Seeds#derive derived} from the seed and its index, and the max abs weight
+ * of a random matrix depends on its index only. So the same seed and survivors give byte-identical files, whatever
+ * the number of threads is and whichever partitions are skipped, and the same matrices whatever the partition size is.
+ */
+public class ParallelBreeder {
+
+    private final String outputFilePattern;
+    private final int matricesPerFile;
+    private final FileHeader header;
+    private final Function<WeightMatrix, byte[]> serialization;
+    private final int crossingoverIndividuals;
+    private final int mutatedCopies;
+    private final int mutationPercentage;
+    private final int population;
+    private final IntGeneratorFromString matrixMaxAbsWeightGenerator;
+    private final int threads;
+    private final long seed;
+
+    /**
+     * @param matrixMaxAbsWeightGenerator N-th random matrix of the generation gets its N-th value
+     * @param threads number of worker threads, 0 means the number of available processors
+     * @param seed seed of the generation, matrix N gets a random stream of the N-th seed derived from it
+     */
+    public ParallelBreeder(String outputFilePattern,
+                           int matricesPerFile,
+                           FileHeader header,
+                           Function<WeightMatrix, byte[]> serialization,
+                           int crossingoverIndividuals,
+                           int mutatedCopies,
+                           int mutationPercentage,
+                           int population,
+                           IntGeneratorFromString matrixMaxAbsWeightGenerator,
+                           int threads,
+                           long seed) {
+        if (matricesPerFile < 1) {
+            throw new IllegalArgumentException(String.format("At least one matrix per file expected, but was %d", matricesPerFile));
+        }
+        if (mutatedCopies < 0) {
+            throw new IllegalArgumentException("Number of mutated copies must be greater or equal to zero");
+        }
+        if (threads < 0) {
+            throw new IllegalArgumentException(String.format("Number of threads must not be negative, but was %d", threads));
+        }
+        this.outputFilePattern = outputFilePattern;
+        this.matricesPerFile = matricesPerFile;
+        this.header = header;
+        this.serialization = serialization;
+        this.crossingoverIndividuals = crossingoverIndividuals;
+        this.mutatedCopies = mutatedCopies;
+        this.mutationPercentage = mutationPercentage;
+        this.population = population;
+        this.matrixMaxAbsWeightGenerator = matrixMaxAbsWeightGenerator;
+        this.threads = (threads == 0) ? Runtime.getRuntime().availableProcessors() : threads;
+        this.seed = seed;
+    }
+
+    public int getPartitions() {
+        return (population + matricesPerFile - 1) / matricesPerFile;
+    }
+
+    /**
+     * Writes the next generation of the survivors, ordered from the best one, and returns the number of matrices written.
+     * No survivors means a generation of random matrices.
+     *
+     * @param partitionDone partitions it accepts are not written, e.g. partitions written and scored before the process
+     *                      was killed, so the breeding can be resumed
+     */
+    public long breed(List<WeightMatrix> survivors, IntPredicate partitionDone) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<WeightMatrix> descendants = new ArrayList<>(survivors);
+            descendants.addAll(pool.submit(() -> crossingover(survivors)).get());
+
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int partition = 0; partition < getPartitions(); partition++) {
+                if (!partitionDone.test(partition)) {
+                    int index = partition;
+                    tasks.add(() -> breedPartition(index, descendants));
+                }
+            }
+
+            long matricesWritten = 0;
+            for (Future<Integer> task : pool.invokeAll(tasks)) {
+                matricesWritten += task.get();
+            }
+            return matricesWritten;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // the same children in the same order as TrainerUtils.crossingover, children of each crossingover individual in parallel
+    private List<WeightMatrix> crossingover(List<WeightMatrix> survivors) {
+        if (crossingoverIndividuals > survivors.size()) {
+            throw new IllegalArgumentException("crossingover individuals are chosen from survivals, " +
+                    "so number of crossingover individuals must be less or equal to survivors number");
+        }
+        return IntStream.range(0, crossingoverIndividuals)
+                .parallel()
+                .boxed()
+                .flatMap(i -> IntStream.range(i + 1, survivors.size()).boxed().flatMap(j -> Stream.of(
+                        TrainerUtils.crossingover(survivors.get(i), survivors.get(j)),
+                        TrainerUtils.crossingover(survivors.get(j), survivors.get(i)))))
+                .collect(Collectors.toList());
+    }
+
+    private int breedPartition(int partition, List<WeightMatrix> descendants) throws IOException {
+        int from = partition * matricesPerFile;
+        int to = Math.min(from + matricesPerFile, population);
+
+        try (Writer<WeightMatrix> writer =
+                     new PartitionedFileWriter<>(outputFilePattern, matricesPerFile, header, serialization, partition)) {
+            for (int individual = from; individual < to; individual++) {
+                writer.write(individual(individual, descendants));
+            }
+        }
+        return to - from;
+    }
+
+    private WeightMatrix individual(int individual, List<WeightMatrix> descendants) {
+        int size = descendants.size();
+        if (individual < size) {
+            return descendants.get(individual);
+        }
+        SplittableRandom random = new SplittableRandom(Seeds.derive(seed, individual));
+        long descendantsAndCopies = size * (1 + (long) mutatedCopies);
+        if (individual < descendantsAndCopies) {
+            return new WeightMatrixMutator(mutationPercentage, random).mutate(descendants.get((individual - size) % size));
+        }
+        return new WeightMatrixGenerator(random)
+                .generateRandom(matrixMaxAbsWeightGenerator.get(individual - descendantsAndCopies));
+    }
+}
@@ -2,9 +2,14 @@ package sergey.lavrenyuk.nn.training.utils;
 
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
+import sergey.lavrenyuk.nn.Network;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
 import sergey.lavrenyuk.nn.WeightMatrixGenerator;
 import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.RoundResultConsumer;
+import sergey.lavrenyuk.nn.scoring.Score;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+import sergey.lavrenyuk.simulator.BattleSimulator;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -12,6 +17,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 public class TrainerUtils {
@@ -28,6 +35,27 @@ public class TrainerUtils {
         return new ReaderFromIterator<>(storage.asList().iterator());
     }
 
+    // battles with the same seed are the same until the networks make different decisions, so networks of the same matrix,
+    // e.g. quantized ones, are compared with less noise than the rounds number implies
+    public static float simulateWinRate(WeightMatrix weightMatrix, Function<WeightMatrix, Network> networkFactory,
+                                        String enemy, int rounds, long seed) {
+        BattleSimulator battleSimulator = new BattleSimulator(BattleSimulator.createEnemyBehavior(enemy), new Random(seed));
+        Score.Builder score = Score.builder();
+        RoundResultConsumer roundResultConsumer = new RoundResultConsumer() {
+            @Override
+            public void accept(Score.RoundResult roundResult) {
+                score.addRoundResult(roundResult);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        battleSimulator.runBattle(
+                battleSimulator.createPerceptronModules(() -> weightMatrix, networkFactory, roundResultConsumer), rounds);
+        return score.build().getWinRate();
+    }
+
     @SafeVarargs
     public static <T> Iterable<T> concatLazily(Iterable<T>... iterables) {
         if (iterables == null || iterables.length == 0) {
@@ -95,7 +123,7 @@ public class TrainerUtils {
                     originalIterator = weightMatrices.iterator();
                     mutatedCopyIndex++;
                     // we checked that there is at least one element at the very beginning of this method
-                    return originalIterator.next();
+                    return mutator.mutate(originalIterator.next());
                 }
                 return null;
             }
@@ -114,18 +142,63 @@ public class TrainerUtils {
         List<WeightMatrix> result = new ArrayList<>();
         for (int i = 0; i < crossingoverIndividuals; i++) {
             for (int j = i + 1; j < weightMatrices.size(); j++) {
-                result.add(new WeightMatrix(
-                        weightMatrices.get(i).getInputToHiddenWeights(),
-                        weightMatrices.get(j).getHiddenToOutputWeights()));
-                result.add(new WeightMatrix(
-                        weightMatrices.get(j).getInputToHiddenWeights(),
-                        weightMatrices.get(i).getHiddenToOutputWeights()));
+                result.add(crossingover(weightMatrices.get(i), weightMatrices.get(j)));
+                result.add(crossingover(weightMatrices.get(j), weightMatrices.get(i)));
             }
         }
         return result;
     }
 
-    public static void processCurrentGenerationToSurvivors(Reader<ScoredWeightMatrix> currentGenerationReader,
+    // child gets input to hidden weights from the first parent and hidden to output weights from the second one
+    public static WeightMatrix crossingover(WeightMatrix inputToHiddenParent, WeightMatrix hiddenToOutputParent) {
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        System.arraycopy(inputToHiddenParent.getWeights(), WeightMatrix.INPUT_TO_HIDDEN_OFFSET,
+                weights, WeightMatrix.INPUT_TO_HIDDEN_OFFSET, WeightMatrix.INPUT_TO_HIDDEN_WEIGHTS_NUMBER);
+        System.arraycopy(hiddenToOutputParent.getWeights(), WeightMatrix.HIDDEN_TO_OUTPUT_OFFSET,
+                weights, WeightMatrix.HIDDEN_TO_OUTPUT_OFFSET, WeightMatrix.HIDDEN_TO_OUTPUT_WEIGHTS_NUMBER);
+        return new WeightMatrix(weights);
+    }
+
+    /**
+     * Migration of the island model: the best immigrants, i.e. the first ones, replace the worst survivors, i.e. the last
+     * ones. The other survivors keep their places, so the best of them are still the crossingover individuals.
+     */
+    public static <T> List<T> immigrate(List<T> survivors, List<T> immigrants, int migrants) {
+        if (migrants > survivors.size()) {
+            throw new IllegalArgumentException(String.format("%d migrants expected to be less or equal to %d survivors",
+                    migrants, survivors.size()));
+        }
+        int arrived = Math.min(migrants, immigrants.size());
+        List<T> result = new ArrayList<>(survivors.subList(0, survivors.size() - arrived));
+        result.addAll(immigrants.subList(0, arrived));
+        return result;
+    }
+
+    /**
+     * Returns the file name or pattern of the island, e.g. '../data/island2_survivors_gen{}.dat' for
+     * '../data/survivors_gen{}.dat', so islands have their own files in the same folders as a single population.
+     */
+    public static String islandFileName(String fileName, int island) {
+        int nameStart = fileName.lastIndexOf('/') + 1;
+        return fileName.substring(0, nameStart) + "island" + island + "_" + fileName.substring(nameStart);
+    }
+
+    /**
+     * Returns the name of the file with the matrices of the file stored in the precision, e.g.
+     * '../data/survivors_gen6_int8.dat' for '../data/survivors_gen6.dat'.
+     */
+    public static String quantizedFileName(String fileName, QuantizedWeightMatrix.Precision precision) {
+        int extensionStart = fileName.lastIndexOf('.');
+        if (extensionStart <= fileName.lastIndexOf('/') + 1) {
+            extensionStart = fileName.length();
+        }
+        return fileName.substring(0, extensionStart) + "_" + precision.name().toLowerCase() + fileName.substring(extensionStart);
+    }
+
+    /**
+     * Returns the survivors, the best one first, so the next generation can be created without reading them back.
+     */
+    public static List<ScoredWeightMatrix> processCurrentGenerationToSurvivors(Reader<ScoredWeightMatrix> currentGenerationReader,
                                                            Writer<ScoredWeightMatrix> survivorsWriter,
                                                            Writer<Float> winRatioWriter,
                                                            Runnable currentGenerationRemover,
@@ -156,6 +229,7 @@ public class TrainerUtils {
 
         currentGenerationReader.close();
         currentGenerationRemover.run();
+        return survivorsScoredWeightMatrices;
     }
 
     public static void processSurvivorsToNextGeneration(Reader<WeightMatrix> survivorsReader,
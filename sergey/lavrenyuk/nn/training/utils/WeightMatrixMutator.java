@@ -2,46 +2,59 @@ package sergey.lavrenyuk.nn.training.utils;
 
 import sergey.lavrenyuk.nn.WeightMatrix;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-public class WeightMatrixMutator {
+import static sergey.lavrenyuk.nn.WeightMatrixGenerator.signedBits;
 
-    private static final Random random = new Random();
+/**
+ * Multiplies each weight by a random value from (1 - percentage / 100) to (1 + percentage / 100). The mutator has its
+ * own {@link SplittableRandom}, so it's not thread safe, each thread needs its own mutator, e.g. one created with
+ * {@link SplittableRandom#split()}. Mutators with the same seed mutate the same matrices the same way.
+ */
+public class WeightMatrixMutator {
 
     private final float ratio;
+    private final SplittableRandom random;
 
     public WeightMatrixMutator(int percentage) {
+        this(percentage, new SplittableRandom());
+    }
+
+    public WeightMatrixMutator(int percentage, long seed) {
+        this(percentage, new SplittableRandom(seed));
+    }
+
+    public WeightMatrixMutator(int percentage, SplittableRandom random) {
         if (percentage < 0 || percentage > 100) {
             throw new IllegalArgumentException("percentage must be greater or equal to 0 and less or equal to 100");
         }
         this.ratio = ((float) percentage) / 100;
+        this.random = random;
     }
 
     public WeightMatrix mutate(WeightMatrix weightMatrix) {
-        return new WeightMatrix(
-                mutate(weightMatrix.getInputToHiddenWeights()),
-                mutate(weightMatrix.getHiddenToOutputWeights())
-        );
+        float[] result = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        mutate(weightMatrix.getWeights(), result);
+        return new WeightMatrix(result);
     }
 
-    private float[][] mutate(float[][] weights) {
-        float[][] result = new float[weights.length][];
-        for (int i = 0; i < weights.length; i++) {
-            result[i] = mutate(weights[i]);
+    /**
+     * Writes mutated weights to the result array, each random long gives two of them.
+     */
+    public void mutate(float[] weights, float[] result) {
+        if (weights.length != result.length) {
+            throw new IllegalArgumentException(String.format("%d result weights expected, but found %d",
+                    weights.length, result.length));
         }
-        return result;
-    }
-
-    private float[] mutate(float[] weights) {
-        float[] result = new float[weights.length];
-        for (int i = 0; i < weights.length; i++) {
-            result[i] = mutate(weights[i]);
+        float scale = ratio * 0x1.0p-23f;
+        int i = 0;
+        for (; i + 1 < weights.length; i += 2) {
+            long bits = random.nextLong();
+            result[i] = weights[i] * (1 + signedBits(bits >>> 40) * scale);
+            result[i + 1] = weights[i + 1] * (1 + signedBits(bits >>> 8) * scale);
+        }
+        if (i < weights.length) {
+            result[i] = weights[i] * (1 + signedBits(random.nextLong() >>> 40) * scale);
         }
-        return result;
-    }
-
-    private float mutate(float weight) {
-        float mutation = (2 * random.nextFloat() - 1) * ratio;
-        return weight * (1 + mutation);
     }
 }
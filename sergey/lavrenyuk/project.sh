@@ -1,6 +1,8 @@
 #!/bin/bash
 
 ROBOCODE_HOME=~/robocode
+# folder with jmh-core, jmh-generator-annprocess, jopt-simple and commons-math3 jars, required for benchmarks only
+JMH_HOME=~/jmh
 ENEMY_ROBOT=sample.VelociRobot
 
 print_usage() {
@@ -11,7 +13,10 @@ print_usage() {
     printf "    clean     deletes all compiled files\n"
     printf "    test      runs all tests under sergey/lavrenyuk/test directory\n"
     printf "    training  launches robot's neural network weight matrices training\n"
+    printf "    pipeline  runs training generations without the menu, e.g. 'project.sh pipeline --generations 10 --target-win-rate 0.9'\n"
+    printf "    islands   runs a pipeline per island in parallel processes, e.g. 'project.sh islands 4 --generations 10'\n"
     printf "    scoring   TODO\n"
+    printf "    benchmark runs JMH benchmarks under sergey/lavrenyuk/benchmark directory, requires only JDK and JMH jars\n"
 }
 
 clean() {
@@ -24,12 +29,45 @@ compile() {
     javac -source 1.8 -target 1.8 -classpath $ROBOCODE_HOME/libs/robocode.jar -sourcepath $ROBOCODE_HOME/robots/ -d $ROBOCODE_HOME/robots/  $ROBOCODE_HOME/robots/$1
 }
 
-# $1 = class to execute
+# benchmarks are compiled without Robocode, to a separate folder, since JMH generates its own classes and resources
+# gc profiler is always enabled, so each benchmark reports allocation rate along with ops/s
+benchmark() {
+    jmh_classpath=`find $JMH_HOME -name '*.jar' | tr '\n' ':'`
+    rm -rf $ROBOCODE_HOME/robots/out/benchmark/
+    mkdir -p $ROBOCODE_HOME/robots/out/benchmark/
+    javac -classpath $jmh_classpath -sourcepath $ROBOCODE_HOME/robots/ -d $ROBOCODE_HOME/robots/out/benchmark/ $ROBOCODE_HOME/robots/sergey/lavrenyuk/benchmark/*.java
+    java -classpath $ROBOCODE_HOME/robots/out/benchmark/:$jmh_classpath org.openjdk.jmh.Main -prof gc "$@"
+}
+
+# $1 = class to execute, the other arguments are passed to the class
 execute() {
-    java -classpath $ROBOCODE_HOME/libs/robocode.jar:$ROBOCODE_HOME/robots/ $1
+    java -classpath $ROBOCODE_HOME/libs/robocode.jar:$ROBOCODE_HOME/robots/ "$@"
 }
 
-if [ $# -eq 1 ]
+if [ $# -ge 1 ] && [ $1 == "benchmark" ]
+then
+    # all the other arguments are passed to JMH, e.g. 'project.sh benchmark BatchNeuralNetwork'
+    shift
+    benchmark "$@"
+elif [ $# -ge 1 ] && [ $1 == "pipeline" ]
+then
+    # all the other arguments are passed to the trainer, see config.properties for the pipeline options
+    shift
+    execute "sergey.lavrenyuk.nn.training.Trainer" --pipeline "$@"
+elif [ $# -ge 2 ] && [ $1 == "islands" ]
+then
+    # the second argument is the number of islands, the other ones are passed to each pipeline.
+    # output of island N goes to sergey/lavrenyuk/data/islandN.log
+    # islands are scored in simulated battles only, whatever training.pipelineScoring is
+    islands=$2
+    shift 2
+    for ((island = 0; island < islands; island++))
+    do
+        execute "sergey.lavrenyuk.nn.training.Trainer" --pipeline --scoring simulated --islands $islands --island $island "$@" \
+            > $ROBOCODE_HOME/robots/sergey/lavrenyuk/data/island$island.log 2>&1 &
+    done
+    wait
+elif [ $# -eq 1 ]
 then
     if [ $1 == "compile" ]
     then
@@ -0,0 +1,286 @@
+package sergey.lavrenyuk.simulator;
+
+import sergey.lavrenyuk.event.BattleEnded;
+import sergey.lavrenyuk.event.PerceptronEvent;
+import sergey.lavrenyuk.event.RoundEnded;
+import sergey.lavrenyuk.event.RoundStarted;
+import sergey.lavrenyuk.event.TurnStarted;
+import sergey.lavrenyuk.geometry.RobocodeRules;
+import sergey.lavrenyuk.module.NeuralNetworkModule;
+import sergey.lavrenyuk.module.PerceptronModule;
+import sergey.lavrenyuk.module.WinPercentageScoreModule;
+import sergey.lavrenyuk.nn.Network;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.RoundResultConsumer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static sergey.lavrenyuk.geometry.GeometryUtils.normalRelativeAngle;
+
+/**
+ * Headless 1 to 1 battle between the Perceptron and an {@link EnemyBehavior}, which follows the Robocode physics rules,
+ * see http://robowiki.net/wiki/Robocode/Game_Physics. It runs in the current thread without Robocode, thus is orders of
+ * magnitude faster and can be used to score weight matrices offline.
+ *
+ * Perceptron modules get exactly the same events as in Robocode: {@link RoundStarted} with the robot control,
+ * {@link TurnStarted} each turn, {@link RoundEnded} and {@link BattleEnded}. So the round results are reported by
+ * {@link WinPercentageScoreModule} to a {@link RoundResultConsumer}, e.g. {@link sergey.lavrenyuk.nn.scoring.WeightMatrixScorer}.
+ *
+ * Simplifications compared to Robocode: bullets do not collide with each other, robots are processed in the same order
+ * each turn and the round ends right after a robot dies.
+ *
+ * The simulator is calibrated for strong populations only: win rates of populations winning at least
+ * {@link #CALIBRATED_WIN_RATE} in Robocode are within a few percent of the Robocode ones. Weak and random matrices are
+ * overestimated by up to 0.40, many of their extra wins end with VelociRobot drained by its own fire and zapped for
+ * inactivity, so simulated scoring of the first generations doesn't select the same survivors as Robocode does.
+ *
+ * Not thread safe, but different instances can be used in parallel.
+ */
+public class BattleSimulator {
+
+    /**
+     * Robocode win rate of a population, starting from which simulated win rates match the Robocode ones.
+     */
+    public static final float CALIBRATED_WIN_RATE = 0.9f;
+
+    public static final double DEFAULT_BATTLE_FIELD_WIDTH = 800;
+    public static final double DEFAULT_BATTLE_FIELD_HEIGHT = 600;
+
+    private static final double GUN_COOLING_RATE = 0.1;
+    private static final int INACTIVITY_TIME = 450;
+    private static final double INACTIVITY_ZAP = 0.1;
+    // energy the robots have to lose to reset the inactivity counter
+    private static final double INACTIVITY_ENERGY_THRESHOLD = 10;
+
+    private final double battleFieldWidth;
+    private final double battleFieldHeight;
+    private final EnemyBehavior enemyBehavior;
+    private final Random random;
+
+    private final SimulatedRobot perceptron = new SimulatedRobot();
+    private final SimulatedRobot enemy = new SimulatedRobot();
+    private final List<Bullet> bullets = new ArrayList<>();
+    // updated and dispatched every turn, the same way the Perceptron robot does
+    private final TurnStarted turnStarted = TurnStarted.reusable();
+
+    private int inactiveTurns;
+    private double inactivityEnergy;
+
+    public BattleSimulator(EnemyBehavior enemyBehavior, Random random) {
+        this(DEFAULT_BATTLE_FIELD_WIDTH, DEFAULT_BATTLE_FIELD_HEIGHT, enemyBehavior, random);
+    }
+
+    public BattleSimulator(double battleFieldWidth, double battleFieldHeight, EnemyBehavior enemyBehavior, Random random) {
+        this.battleFieldWidth = battleFieldWidth;
+        this.battleFieldHeight = battleFieldHeight;
+        this.enemyBehavior = enemyBehavior;
+        this.random = random;
+    }
+
+    /**
+     * Creates the same modules as the Perceptron robot does in Robocode.
+     */
+    public List<PerceptronModule> createPerceptronModules(Supplier<WeightMatrix> weightMatrixSupplier,
+                                                          RoundResultConsumer roundResultConsumer) {
+        return createPerceptronModules(weightMatrixSupplier, NeuralNetwork::new, roundResultConsumer);
+    }
+
+    /**
+     * Same modules, but the matrices are evaluated by the networks of the factory, e.g. to compare quantized matrices
+     * with the original ones.
+     */
+    public List<PerceptronModule> createPerceptronModules(Supplier<WeightMatrix> weightMatrixSupplier,
+                                                          Function<WeightMatrix, Network> networkFactory,
+                                                          RoundResultConsumer roundResultConsumer) {
+        List<PerceptronModule> modules = new ArrayList<>();
+        modules.add(new NeuralNetworkModule(weightMatrixSupplier, networkFactory, RobocodeRules.INITIAL_ENERGY,
+                RobocodeRules.ROBOT_SIZE, RobocodeRules.ROBOT_SIZE, battleFieldWidth, battleFieldHeight));
+        modules.add(new WinPercentageScoreModule(roundResultConsumer, RobocodeRules.INITIAL_ENERGY));
+        return modules;
+    }
+
+    public static EnemyBehavior createEnemyBehavior(String enemy) {
+        if ("VelociRobot".equals(enemy)) {
+            return new VelociRobotBehavior();
+        }
+        throw new IllegalArgumentException(String.format("Enemy '%s' can not be simulated, only VelociRobot is supported", enemy));
+    }
+
+    public void runBattle(List<PerceptronModule> modules, int rounds) {
+        int[] roundsLeft = new int[] {rounds};
+        runBattle(modules, () -> roundsLeft[0]-- > 0);
+    }
+
+    /**
+     * Runs rounds while {@code nextRound} returns true, it is checked before each round.
+     */
+    public void runBattle(List<PerceptronModule> modules, BooleanSupplier nextRound) {
+        while (nextRound.getAsBoolean()) {
+            runRound(modules);
+        }
+        dispatch(modules, new BattleEnded());
+    }
+
+    /**
+     * Runs a single round and returns true if the Perceptron won.
+     */
+    public boolean runRound(List<PerceptronModule> modules) {
+        startRound();
+        dispatch(modules, new RoundStarted(perceptron));
+        enemyBehavior.onRoundStarted(enemy);
+
+        boolean perceptronScannedEnemy = false;
+        boolean enemyScannedPerceptron = false;
+        while (!perceptron.isDead() && !enemy.isDead()) {
+            dispatch(modules, newTurnStartedEvent(perceptronScannedEnemy));
+            if (enemy.isHitByBullet()) {
+                enemyBehavior.onHitByBullet(enemy);
+            }
+            if (enemy.isHitWall()) {
+                enemyBehavior.onHitWall(enemy);
+            }
+            enemyBehavior.onTurnStarted(enemy, enemyScannedPerceptron);
+
+            executeTurn();
+
+            perceptronScannedEnemy = perceptron.scanned(enemy);
+            enemyScannedPerceptron = enemy.scanned(perceptron);
+        }
+
+        // in Robocode the winner keeps getting turns for a while after the round is over
+        if (!perceptron.isDead()) {
+            dispatch(modules, newTurnStartedEvent(perceptronScannedEnemy));
+        }
+        boolean victory = enemy.isDead() && !perceptron.isDead() && perceptron.getEnergy() > 0;
+        dispatch(modules, new RoundEnded(victory));
+        return victory;
+    }
+
+    private void startRound() {
+        double x1 = randomCoordinate(battleFieldWidth);
+        double y1 = randomCoordinate(battleFieldHeight);
+        double x2;
+        double y2;
+        do {
+            x2 = randomCoordinate(battleFieldWidth);
+            y2 = randomCoordinate(battleFieldHeight);
+        } while (Math.abs(x1 - x2) < RobocodeRules.ROBOT_SIZE && Math.abs(y1 - y2) < RobocodeRules.ROBOT_SIZE);
+
+        perceptron.reset(x1, y1, randomHeading());
+        enemy.reset(x2, y2, randomHeading());
+        bullets.clear();
+        inactiveTurns = 0;
+        inactivityEnergy = 0;
+    }
+
+    private void executeTurn() {
+        perceptron.clearEvents();
+        enemy.clearEvents();
+
+        double energyBefore = perceptron.getEnergy() + enemy.getEnergy();
+
+        // like in Robocode, bullets are fired before all the bullets move, from the robot's position at the turn start
+        fire(perceptron);
+        fire(enemy);
+
+        Iterator<Bullet> bulletIterator = bullets.iterator();
+        while (bulletIterator.hasNext()) {
+            Bullet bullet = bulletIterator.next();
+            SimulatedRobot target = (bullet.getOwner() == perceptron) ? enemy : perceptron;
+            if (!bullet.move(target, battleFieldWidth, battleFieldHeight)) {
+                bulletIterator.remove();
+            }
+        }
+
+        executeRobotTurn(perceptron, enemy);
+        executeRobotTurn(enemy, perceptron);
+
+        // wall hits do not count as an activity, bullet hits, robot collisions and firing do
+        double energyLost = energyBefore - perceptron.getEnergy() - enemy.getEnergy();
+        if (energyLost > 0) {
+            inactivityEnergy += energyLost;
+            while (inactivityEnergy >= INACTIVITY_ENERGY_THRESHOLD) {
+                inactivityEnergy -= INACTIVITY_ENERGY_THRESHOLD;
+                inactiveTurns = 0;
+            }
+        }
+        if (++inactiveTurns > INACTIVITY_TIME) {
+            perceptron.takeDamage(INACTIVITY_ZAP);
+            enemy.takeDamage(INACTIVITY_ZAP);
+        }
+    }
+
+    private void fire(SimulatedRobot robot) {
+        if (robot.isDead()) {
+            return;
+        }
+        Bullet bullet = robot.fire();
+        if (bullet != null) {
+            bullets.add(bullet);
+        }
+        robot.coolGun(GUN_COOLING_RATE);
+    }
+
+    private void executeRobotTurn(SimulatedRobot robot, SimulatedRobot other) {
+        if (robot.isDead()) {
+            return;
+        }
+        double energyBeforeWallHit = robot.getEnergy();
+        robot.turn();
+        robot.move(battleFieldWidth, battleFieldHeight);
+        // wall damage doesn't reset the inactivity counter, so it is excluded from the energy lost this turn
+        if (robot.isHitWall()) {
+            inactivityEnergy -= (energyBeforeWallHit - robot.getEnergy());
+        }
+        if (!other.isDead() && robot.bounceOff(other)) {
+            robot.takeDamage(RobocodeRules.ROBOT_HIT_DAMAGE);
+            other.takeDamage(RobocodeRules.ROBOT_HIT_DAMAGE);
+        }
+    }
+
+    private TurnStarted newTurnStartedEvent(boolean perceptronScannedEnemy) {
+        turnStarted.getPerceptronStatus().update(
+                perceptron.getEnergy(),
+                perceptron.getX(),
+                perceptron.getY(),
+                perceptron.getBodyHeadingRadians(),
+                perceptron.getGunHeadingRadians(),
+                perceptron.getRadarHeadingRadians(),
+                perceptron.getVelocity(),
+                perceptron.getGunHeat());
+
+        if (perceptronScannedEnemy) {
+            double dx = enemy.getX() - perceptron.getX();
+            double dy = enemy.getY() - perceptron.getY();
+            turnStarted.getEnemyStatusHolder().update(
+                    enemy.getEnergy(),
+                    enemy.getVelocity(),
+                    enemy.getBodyHeadingRadians(),
+                    normalRelativeAngle(Math.atan2(dx, dy) - perceptron.getBodyHeadingRadians()),
+                    Math.hypot(dx, dy));
+        }
+        turnStarted.setEnemyScanned(perceptronScannedEnemy);
+        return turnStarted;
+    }
+
+    private static void dispatch(List<PerceptronModule> modules, PerceptronEvent event) {
+        for (PerceptronModule module : modules) {
+            module.dispatch(event);
+        }
+    }
+
+    private double randomCoordinate(double axisLength) {
+        return RobocodeRules.ROBOT_SIZE / 2 + random.nextDouble() * (axisLength - RobocodeRules.ROBOT_SIZE);
+    }
+
+    private double randomHeading() {
+        return random.nextDouble() * 2 * Math.PI;
+    }
+}
@@ -0,0 +1,49 @@
+package sergey.lavrenyuk.simulator;
+
+import sergey.lavrenyuk.geometry.RobocodeRules;
+
+class Bullet {
+
+    private final SimulatedRobot owner;
+    private final double headingRadians;
+    private final double power;
+    private final double speed;
+
+    private double x;
+    private double y;
+
+    Bullet(SimulatedRobot owner, double x, double y, double headingRadians, double power) {
+        this.owner = owner;
+        this.x = x;
+        this.y = y;
+        this.headingRadians = headingRadians;
+        this.power = power;
+        this.speed = RobocodeRules.getBulletSpeed(power);
+    }
+
+    /**
+     * Moves the bullet one turn further. Returns false if the bullet is gone, either because it hit the target, or because
+     * it left the battlefield.
+     */
+    boolean move(SimulatedRobot target, double battleFieldWidth, double battleFieldHeight) {
+        double previousX = x;
+        double previousY = y;
+        x += speed * Math.sin(headingRadians);
+        y += speed * Math.cos(headingRadians);
+
+        if (!target.isDead() && target.intersects(previousX, previousY, x, y)) {
+            target.takeBulletHit(RobocodeRules.getBulletDamage(power));
+            owner.gainEnergy(RobocodeRules.getBulletHitBonus(power));
+            return false;
+        }
+        return x >= 0 && x <= battleFieldWidth && y >= 0 && y <= battleFieldHeight;
+    }
+
+    SimulatedRobot getOwner() {
+        return owner;
+    }
+
+    double getPower() {
+        return power;
+    }
+}
@@ -0,0 +1,21 @@
+package sergey.lavrenyuk.simulator;
+
+/**
+ * Logic of the enemy robot in the {@link BattleSimulator}. It is a port of a Robocode robot, which reacts on the same events
+ * and issues the same commands through the {@link SimulatedRobot}.
+ */
+public interface EnemyBehavior {
+
+    void onRoundStarted(SimulatedRobot robot);
+
+    /**
+     * Called each turn after all the other events of the turn
+     *
+     * @param perceptronScanned true if the Perceptron was scanned by the radar during the previous turn
+     */
+    void onTurnStarted(SimulatedRobot robot, boolean perceptronScanned);
+
+    default void onHitByBullet(SimulatedRobot robot) { }
+
+    default void onHitWall(SimulatedRobot robot) { }
+}
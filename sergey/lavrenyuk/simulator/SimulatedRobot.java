@@ -0,0 +1,366 @@
+package sergey.lavrenyuk.simulator;
+
+import sergey.lavrenyuk.geometry.RobocodeRules;
+import sergey.lavrenyuk.module.PerceptronControl;
+
+import static sergey.lavrenyuk.geometry.GeometryUtils.normalAbsoluteAngle;
+import static sergey.lavrenyuk.geometry.GeometryUtils.normalRelativeAngle;
+
+/**
+ * Robot of the {@link BattleSimulator}. Keeps the robot's state and the commands issued during the current turn, which are
+ * executed by the simulator the same way as Robocode executes {@link robocode.AdvancedRobot} set* commands: turns and moves
+ * continue until the remaining amount is consumed or a new command overrides it.
+ *
+ * Robot's state is changed only by the simulator, robot behaviour can only issue commands.
+ */
+public class SimulatedRobot implements PerceptronControl {
+
+    private static final double HALF_SIZE = RobocodeRules.ROBOT_SIZE / 2;
+
+    // state
+    private double energy;
+    private double x;
+    private double y;
+    private double bodyHeadingRadians;
+    private double gunHeadingRadians;
+    private double radarHeadingRadians;
+    private double previousRadarHeadingRadians;
+    private double velocity;
+    private double gunHeat;
+    private boolean dead;
+    private boolean disabled;
+
+    // events of the last turn
+    private boolean hitByBullet;
+    private boolean hitWall;
+
+    // commands
+    private double distanceRemaining;
+    private double turnRemainingRadians;
+    private double gunTurnRemainingRadians;
+    private double radarTurnRemainingRadians;
+    private double maxVelocity;
+    private double firePower;
+    private boolean adjustGunForBodyTurn;
+    private boolean adjustRadarForBodyTurn;
+    private boolean adjustRadarForGunTurn;
+
+    void reset(double x, double y, double headingRadians) {
+        this.energy = RobocodeRules.INITIAL_ENERGY;
+        this.x = x;
+        this.y = y;
+        this.bodyHeadingRadians = headingRadians;
+        this.gunHeadingRadians = headingRadians;
+        this.radarHeadingRadians = headingRadians;
+        this.previousRadarHeadingRadians = headingRadians;
+        this.velocity = 0;
+        this.gunHeat = RobocodeRules.INITIAL_GUN_HEAT;
+        this.dead = false;
+        this.disabled = false;
+
+        this.hitByBullet = false;
+        this.hitWall = false;
+
+        this.distanceRemaining = 0;
+        this.turnRemainingRadians = 0;
+        this.gunTurnRemainingRadians = 0;
+        this.radarTurnRemainingRadians = 0;
+        this.maxVelocity = RobocodeRules.MAX_VELOCITY;
+        this.firePower = 0;
+        this.adjustGunForBodyTurn = false;
+        this.adjustRadarForBodyTurn = false;
+        this.adjustRadarForGunTurn = false;
+    }
+
+    // ================================================ commands ================================================
+
+    @Override
+    public void setAhead(double distance) {
+        distanceRemaining = Double.isNaN(distance) ? 0 : distance;
+    }
+
+    @Override
+    public void setFire(double power) {
+        firePower = Double.isNaN(power) ? 0 : power;
+    }
+
+    @Override
+    public void setTurnRightRadians(double radians) {
+        turnRemainingRadians = Double.isNaN(radians) ? 0 : radians;
+    }
+
+    @Override
+    public void setTurnGunRightRadians(double radians) {
+        gunTurnRemainingRadians = Double.isNaN(radians) ? 0 : radians;
+    }
+
+    @Override
+    public void setTurnRadarRightRadians(double radians) {
+        radarTurnRemainingRadians = Double.isNaN(radians) ? 0 : radians;
+    }
+
+    @Override
+    public void setAdjustGunForRobotTurn(boolean independent) {
+        adjustGunForBodyTurn = independent;
+    }
+
+    // same as in Robocode, radar becomes independent of the body turn as well
+    @Override
+    public void setAdjustRadarForGunTurn(boolean independent) {
+        adjustRadarForGunTurn = independent;
+        adjustRadarForBodyTurn = independent;
+    }
+
+    // there is no way to disable a robot in the simulator, it is used only to stop failing robots in Robocode
+    @Override
+    public void disable() { }
+
+    public void setMaxVelocity(double maxVelocity) {
+        this.maxVelocity = Math.min(Math.abs(maxVelocity), RobocodeRules.MAX_VELOCITY);
+    }
+
+    // ================================================ state ================================================
+
+    public double getEnergy() {
+        return energy;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getBodyHeadingRadians() {
+        return bodyHeadingRadians;
+    }
+
+    public double getGunHeadingRadians() {
+        return gunHeadingRadians;
+    }
+
+    public double getRadarHeadingRadians() {
+        return radarHeadingRadians;
+    }
+
+    public double getVelocity() {
+        return velocity;
+    }
+
+    public double getGunHeat() {
+        return gunHeat;
+    }
+
+    public boolean isDead() {
+        return dead;
+    }
+
+    boolean isHitByBullet() {
+        return hitByBullet;
+    }
+
+    boolean isHitWall() {
+        return hitWall;
+    }
+
+    // ================================================ turn execution ================================================
+
+    void clearEvents() {
+        hitByBullet = false;
+        hitWall = false;
+    }
+
+    /**
+     * Fires a bullet if the fire command was issued and the gun is cool. Returns null if no bullet was fired.
+     * Like in Robocode, bullet power is limited by the robot's energy and by the min and max bullet power.
+     */
+    Bullet fire() {
+        double requestedPower = firePower;
+        firePower = 0;
+        if (disabled || gunHeat > 0 || requestedPower <= 0) {
+            return null;
+        }
+        double power = Math.min(energy,
+                Math.min(Math.max(requestedPower, RobocodeRules.MIN_BULLET_POWER), RobocodeRules.MAX_BULLET_POWER));
+        gunHeat = RobocodeRules.getGunHeat(power);
+        energy -= power;
+        if (energy <= 0) {
+            energy = 0;
+            disabled = true;
+        }
+        return new Bullet(this, x, y, gunHeadingRadians, power);
+    }
+
+    void coolGun(double gunCoolingRate) {
+        gunHeat = Math.max(0, gunHeat - gunCoolingRate);
+    }
+
+    void turn() {
+        previousRadarHeadingRadians = radarHeadingRadians;
+        if (disabled) {
+            return;
+        }
+
+        double bodyTurn = limit(turnRemainingRadians, RobocodeRules.getTurnRateRadians(velocity));
+        turnRemainingRadians -= bodyTurn;
+        bodyHeadingRadians = normalAbsoluteAngle(bodyHeadingRadians + bodyTurn);
+
+        double gunTurn = limit(gunTurnRemainingRadians, RobocodeRules.GUN_TURN_RATE_RADIANS);
+        gunTurnRemainingRadians -= gunTurn;
+        gunHeadingRadians = normalAbsoluteAngle(gunHeadingRadians + gunTurn + (adjustGunForBodyTurn ? 0 : bodyTurn));
+
+        double radarTurn = limit(radarTurnRemainingRadians, RobocodeRules.RADAR_TURN_RATE_RADIANS);
+        radarTurnRemainingRadians -= radarTurn;
+        radarHeadingRadians = normalAbsoluteAngle(radarHeadingRadians + radarTurn
+                + (adjustRadarForGunTurn ? 0 : gunTurn)
+                + (adjustRadarForBodyTurn ? 0 : bodyTurn));
+    }
+
+    void move(double battleFieldWidth, double battleFieldHeight) {
+        if (disabled) {
+            velocity = 0;
+            return;
+        }
+
+        velocity = getNewVelocity(velocity, distanceRemaining);
+        x += velocity * Math.sin(bodyHeadingRadians);
+        y += velocity * Math.cos(bodyHeadingRadians);
+        if (distanceRemaining != 0 && !Double.isInfinite(distanceRemaining)) {
+            distanceRemaining -= velocity;
+        }
+
+        double fixedX = Math.max(HALF_SIZE, Math.min(battleFieldWidth - HALF_SIZE, x));
+        double fixedY = Math.max(HALF_SIZE, Math.min(battleFieldHeight - HALF_SIZE, y));
+        if (fixedX != x || fixedY != y) {
+            x = fixedX;
+            y = fixedY;
+            energy = Math.max(0, energy - RobocodeRules.getWallHitDamage(velocity));
+            disabled = (energy == 0);
+            velocity = 0;
+            distanceRemaining = 0;
+            hitWall = true;
+        }
+    }
+
+    /**
+     * Moves the robot back if it moved into the other robot, as Robocode does. Returns true if robots collided because of
+     * this robot, in that case both of them should take {@link RobocodeRules#ROBOT_HIT_DAMAGE}.
+     */
+    boolean bounceOff(SimulatedRobot other) {
+        if (Math.abs(x - other.x) >= RobocodeRules.ROBOT_SIZE || Math.abs(y - other.y) >= RobocodeRules.ROBOT_SIZE) {
+            return false;
+        }
+        double bearing = Math.atan2(other.x - x, other.y - y) - bodyHeadingRadians;
+        boolean movingForwardToOther = (velocity > 0) && (Math.cos(bearing) > 0);
+        boolean movingBackToOther = (velocity < 0) && (Math.cos(bearing) < 0);
+        if (!movingForwardToOther && !movingBackToOther) {
+            return false;
+        }
+        x -= velocity * Math.sin(bodyHeadingRadians);
+        y -= velocity * Math.cos(bodyHeadingRadians);
+        velocity = 0;
+        distanceRemaining = 0;
+        return true;
+    }
+
+    /**
+     * Checks if the segment from (x1, y1) to (x2, y2) crosses the robot's bounding box, using Liang-Barsky clipping.
+     */
+    boolean intersects(double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - (x - HALF_SIZE), (x + HALF_SIZE) - x1, y1 - (y - HALF_SIZE), (y + HALF_SIZE) - y1};
+        double enter = 0;
+        double exit = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return false;
+                }
+            } else {
+                double t = q[i] / p[i];
+                if (p[i] < 0) {
+                    enter = Math.max(enter, t);
+                } else {
+                    exit = Math.min(exit, t);
+                }
+            }
+        }
+        return enter <= exit;
+    }
+
+    /**
+     * Checks if the radar beam swept over the other robot during the last turn.
+     */
+    boolean scanned(SimulatedRobot other) {
+        double dx = other.x - x;
+        double dy = other.y - y;
+        double distance = Math.hypot(dx, dy);
+        if (distance - HALF_SIZE * Math.sqrt(2) > RobocodeRules.RADAR_SCAN_RADIUS) {
+            return false;
+        }
+        // angle at which the other robot bounding box is seen, halved
+        double halfAngularSize = (distance > HALF_SIZE * Math.sqrt(2)) ? Math.asin(HALF_SIZE * Math.sqrt(2) / distance) : Math.PI;
+
+        double sweep = normalRelativeAngle(radarHeadingRadians - previousRadarHeadingRadians);
+        double angleToOther = normalRelativeAngle(Math.atan2(dx, dy) - previousRadarHeadingRadians);
+        return (sweep >= 0)
+                ? angleToOther >= -halfAngularSize && angleToOther <= sweep + halfAngularSize
+                : angleToOther <= halfAngularSize && angleToOther >= sweep - halfAngularSize;
+    }
+
+    void takeBulletHit(double damage) {
+        hitByBullet = true;
+        takeDamage(damage);
+    }
+
+    void takeDamage(double damage) {
+        energy -= damage;
+        if (energy <= 0) {
+            energy = 0;
+            dead = true;
+        }
+    }
+
+    void gainEnergy(double amount) {
+        if (!dead) {
+            energy += amount;
+            disabled = false;
+        }
+    }
+
+    private static double limit(double value, double maxAbsValue) {
+        return Math.max(-maxAbsValue, Math.min(maxAbsValue, value));
+    }
+
+    // see robocode.peer.RobotPeer#getNewVelocity
+    private double getNewVelocity(double velocity, double distance) {
+        if (distance < 0) {
+            return -getNewVelocity(-velocity, -distance);
+        }
+        double goalVelocity = Double.isInfinite(distance)
+                ? maxVelocity
+                : Math.min(getMaxVelocity(distance), maxVelocity);
+        if (velocity >= 0) {
+            return Math.max(velocity - RobocodeRules.DECELERATION, Math.min(goalVelocity, velocity + RobocodeRules.ACCELERATION));
+        }
+        return Math.max(velocity - RobocodeRules.ACCELERATION, Math.min(goalVelocity, velocity + maxDeceleration(-velocity)));
+    }
+
+    // maximum velocity that still allows to stop exactly after the specified distance
+    private static double getMaxVelocity(double distance) {
+        double decelerationTime = Math.max(1, Math.ceil((Math.sqrt((4 * 2 / RobocodeRules.DECELERATION) * distance + 1) - 1) / 2));
+        double decelerationDistance = (decelerationTime / 2.0) * (decelerationTime - 1) * RobocodeRules.DECELERATION;
+        return ((decelerationTime - 1) * RobocodeRules.DECELERATION) + ((distance - decelerationDistance) / decelerationTime);
+    }
+
+    // moving backwards, the robot decelerates first and then accelerates forward within the same turn
+    private static double maxDeceleration(double speed) {
+        double decelerationTime = speed / RobocodeRules.DECELERATION;
+        double accelerationTime = 1 - decelerationTime;
+        return Math.min(1, decelerationTime) * RobocodeRules.DECELERATION + Math.max(0, accelerationTime) * RobocodeRules.ACCELERATION;
+    }
+}
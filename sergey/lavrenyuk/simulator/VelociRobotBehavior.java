@@ -0,0 +1,65 @@
+package sergey.lavrenyuk.simulator;
+
+/**
+ * Port of the Robocode sample robot sample.VelociRobot, which is a {@link robocode.RateControlRobot}:
+ * <ul>
+ *     <li>the gun rotates 15 degrees per turn, radar is attached to the gun</li>
+ *     <li>it moves forward with velocity 4 for 32 turns, and then backward with velocity 6 for 32 turns</li>
+ *     <li>fires a bullet with power 1 when the enemy is scanned, that takes the whole turn</li>
+ *     <li>starts turning 5 degrees per turn when hit by a bullet, reverses the movement when hits a wall</li>
+ * </ul>
+ */
+public class VelociRobotBehavior implements EnemyBehavior {
+
+    private static final double GUN_ROTATION_RATE_RADIANS = Math.toRadians(15);
+    private static final double TURN_RATE_ON_BULLET_HIT_RADIANS = Math.toRadians(5);
+    private static final double BULLET_POWER = 1;
+
+    private int turnCounter;
+    private double velocityRate;
+    private double turnRateRadians;
+
+    @Override
+    public void onRoundStarted(SimulatedRobot robot) {
+        turnCounter = 0;
+        velocityRate = 0;
+        turnRateRadians = 0;
+    }
+
+    @Override
+    public void onTurnStarted(SimulatedRobot robot, boolean perceptronScanned) {
+        // fire() is a blocking call in Robocode, the main loop doesn't proceed during that turn
+        if (perceptronScanned) {
+            robot.setFire(BULLET_POWER);
+        } else {
+            if (turnCounter % 64 == 0) {
+                turnRateRadians = 0;
+                velocityRate = 4;
+            }
+            if (turnCounter % 64 == 32) {
+                velocityRate = -6;
+            }
+            turnCounter++;
+        }
+        applyRates(robot);
+    }
+
+    @Override
+    public void onHitByBullet(SimulatedRobot robot) {
+        turnRateRadians = TURN_RATE_ON_BULLET_HIT_RADIANS;
+    }
+
+    @Override
+    public void onHitWall(SimulatedRobot robot) {
+        velocityRate = -velocityRate;
+    }
+
+    // the same as robocode.RateControlRobot#execute() does
+    private void applyRates(SimulatedRobot robot) {
+        robot.setMaxVelocity(velocityRate);
+        robot.setAhead(velocityRate > 0 ? Double.POSITIVE_INFINITY : velocityRate < 0 ? Double.NEGATIVE_INFINITY : 0);
+        robot.setTurnGunRightRadians(GUN_ROTATION_RATE_RADIANS);
+        robot.setTurnRadarRightRadians(0);
+        robot.setTurnRightRadians(turnRateRadians);
+    }
+}
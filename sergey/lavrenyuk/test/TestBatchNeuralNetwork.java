@@ -0,0 +1,67 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.BatchNeuralNetwork;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestBatchNeuralNetwork {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestBatchNeuralNetwork.class);
+    }
+
+    public void testSameResultsAsSeparateNetworks() {
+        final int matrices = 37; // not a multiple of any vector size on purpose
+        List<WeightMatrix> weightMatrices = new ArrayList<>();
+        for (int i = 0; i < matrices; i++) {
+            weightMatrices.add(randomMatrix());
+        }
+        BatchNeuralNetwork batchNeuralNetwork = new BatchNeuralNetwork(weightMatrices);
+        assertCondition(batchNeuralNetwork.size() == matrices);
+
+        Random random = new Random();
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+        float[] batchOutput = new float[WeightMatrix.OUTPUT_NEURONS * matrices];
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            for (int i = 0; i < input.length; i++) {
+                input[i] = 3 * random.nextFloat() - 1.5f; // some values are out of [-1, 1] range on purpose
+            }
+            batchNeuralNetwork.process(input, batchOutput);
+
+            for (int m = 0; m < matrices; m++) {
+                new NeuralNetwork(weightMatrices.get(m)).process(input, output);
+                for (int o = 0; o < WeightMatrix.OUTPUT_NEURONS; o++) {
+                    assertCondition(output[o] == batchOutput[batchNeuralNetwork.outputIndex(m, o)],
+                            String.format("matrix %d, output %d: %f != %f",
+                                    m, o, output[o], batchOutput[batchNeuralNetwork.outputIndex(m, o)]));
+                }
+            }
+        }
+    }
+
+    public void testNoMatrices() {
+        assertExceptionThrown(
+                () -> new BatchNeuralNetwork(Collections.emptyList()),
+                IllegalArgumentException.class,
+                "At least one weight matrix expected");
+    }
+
+    public void testInvalidOutputSize() {
+        BatchNeuralNetwork batchNeuralNetwork = new BatchNeuralNetwork(Collections.singletonList(randomMatrix()));
+        assertExceptionThrown(
+                () -> batchNeuralNetwork.process(new float[WeightMatrix.INPUT_NEURONS], new float[1]),
+                IllegalArgumentException.class,
+                "4 output values expected, but found 1");
+    }
+}
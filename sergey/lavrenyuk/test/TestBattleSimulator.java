@@ -0,0 +1,252 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.event.EnemyStatus;
+import sergey.lavrenyuk.event.PerceptronStatus;
+import sergey.lavrenyuk.event.RoundStarted;
+import sergey.lavrenyuk.event.TurnStarted;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.module.PerceptronControl;
+import sergey.lavrenyuk.module.PerceptronModule;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.scoring.RoundResultConsumer;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+import sergey.lavrenyuk.nn.training.utils.WeightMatrixMutator;
+import sergey.lavrenyuk.simulator.BattleSimulator;
+import sergey.lavrenyuk.simulator.EnemyBehavior;
+import sergey.lavrenyuk.simulator.SimulatedRobot;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+
+public class TestBattleSimulator {
+
+    private static final String ARCHIVE_FOLDER = "/sergey/lavrenyuk/data/archive/VelociRobot/";
+
+    public static void main(String[] args) {
+        Runner.runTests(TestBattleSimulator.class);
+    }
+
+    public void testUnsupportedEnemy() {
+        assertExceptionThrown(
+                () -> BattleSimulator.createEnemyBehavior("Walls"),
+                IllegalArgumentException.class,
+                "Enemy 'Walls' can not be simulated");
+    }
+
+    public void testSameSeedGivesSameResults() throws IOException {
+        List<ScoredWeightMatrix> survivors = readArchive("survivors_gen6.dat");
+        WeightMatrix weightMatrix = survivors.get(0).getWeightMatrix();
+
+        List<Boolean> expectedResults = runRounds(weightMatrix, new Random(1), 20);
+        List<Boolean> actualResults = runRounds(weightMatrix, new Random(1), 20);
+        assertCondition(expectedResults.equals(actualResults));
+    }
+
+    public void testRobotStaysWithinBattleField() {
+        final double width = 400;
+        final double height = 300;
+        final List<PerceptronStatus> statuses = new ArrayList<>();
+
+        // perceptron runs into the wall and then keeps pushing it, enemy does nothing
+        PerceptronModule module = event -> {
+            if (event instanceof RoundStarted) {
+                PerceptronControl robotControl = ((RoundStarted) event).getRobotControl();
+                robotControl.setAhead(Double.POSITIVE_INFINITY);
+            } else if (event instanceof TurnStarted) {
+                // statuses are updated in place every turn, so they have to be copied
+                PerceptronStatus status = ((TurnStarted) event).getPerceptronStatus();
+                statuses.add(new PerceptronStatus(status.getEnergy(), status.getX(), status.getY(),
+                        status.getBodyHeadingRadians(), status.getGunHeadingRadians(), status.getRadarHeadingRadians(),
+                        status.getVelocity(), status.getGunHeat()));
+            }
+        };
+        BattleSimulator battleSimulator = new BattleSimulator(width, height, new IdleBehavior(), new Random(1));
+        battleSimulator.runRound(Collections.singletonList(module));
+
+        boolean maxVelocityReached = false;
+        boolean stoppedByWall = false;
+        for (PerceptronStatus status : statuses) {
+            assertCondition(status.getX() >= 18 && status.getX() <= width - 18,
+                    String.format("x = %f is out of the battle field", status.getX()));
+            assertCondition(status.getY() >= 18 && status.getY() <= height - 18,
+                    String.format("y = %f is out of the battle field", status.getY()));
+            maxVelocityReached |= (status.getVelocity() == 8);
+            stoppedByWall |= (maxVelocityReached && status.getVelocity() == 0);
+        }
+        assertCondition(maxVelocityReached, "Max velocity was not reached");
+        assertCondition(stoppedByWall, "Robot was not stopped by the wall");
+        assertCondition(statuses.get(statuses.size() - 1).getEnergy() < 100, "No damage taken from the wall");
+    }
+
+    public void testEnemyIsScanned() {
+        final List<EnemyStatus> enemyStatuses = new ArrayList<>();
+
+        // radar spins all the time, so the enemy is scanned at least every 8 turns
+        PerceptronModule module = event -> {
+            if (event instanceof RoundStarted) {
+                ((RoundStarted) event).getRobotControl().setTurnRadarRightRadians(Double.POSITIVE_INFINITY);
+            } else if (event instanceof TurnStarted) {
+                ((TurnStarted) event).getEnemyStatus().ifPresent(status -> enemyStatuses.add(new EnemyStatus(
+                        status.getEnergy(), status.getVelocity(), status.getHeadingRadians(),
+                        status.getBearingRadians(), status.getDistance())));
+            }
+        };
+        BattleSimulator battleSimulator = new BattleSimulator(new IdleBehavior(), new Random(1));
+        battleSimulator.runRound(Collections.singletonList(module));
+
+        assertCondition(!enemyStatuses.isEmpty(), "Enemy was never scanned");
+        for (EnemyStatus enemyStatus : enemyStatuses) {
+            assertCondition(enemyStatus.getVelocity() == 0);
+            assertCondition(enemyStatus.getDistance() >= 36);
+        }
+    }
+
+    // survivors of the last generation were scored in Robocode, each of them is compared to its own recorded win rate.
+    // survivors of the earlier generations are recorded with a win rate of 1 and weaker matrices are overestimated by
+    // the simulator, see BattleSimulator, so they are not compared
+    public void testSurvivorsWinRatesMatchRobocode() throws IOException {
+        final int roundsPerMatrix = 500;
+        // standard error of a single matrix win rate is about 0.01 at 500 rounds, of the average is about 0.002
+        final float maxDeviation = 0.04f;
+        final float maxAverageDeviation = 0.015f;
+
+        List<ScoredWeightMatrix> survivors = readArchive("survivors_gen6.dat");
+        Random random = new Random(1);
+        float recordedAverage = 0;
+        float simulatedAverage = 0;
+        for (ScoredWeightMatrix survivor : survivors) {
+            List<Boolean> results = runRounds(survivor.getWeightMatrix(), random, roundsPerMatrix);
+            float simulatedWinRate = (float) Collections.frequency(results, true) / roundsPerMatrix;
+            float recordedWinRate = survivor.getScore().getWinRate();
+            assertCondition(Math.abs(simulatedWinRate - recordedWinRate) < maxDeviation,
+                    String.format("Simulated win rate %f, recorded %f", simulatedWinRate, recordedWinRate));
+            recordedAverage += recordedWinRate / survivors.size();
+            simulatedAverage += simulatedWinRate / survivors.size();
+        }
+
+        assertCondition(Math.abs(simulatedAverage - recordedAverage) < maxAverageDeviation,
+                String.format("Simulated average win rate %f, recorded %f", simulatedAverage, recordedAverage));
+    }
+
+    // each archived generation is recreated: generation 0 from random matrices, the next ones from mutated copies of the
+    // previous generation survivors, and its simulated average win rate is compared with the Robocode one of win_ratio.dat.
+    // the simulator is not calibrated for weak populations, see BattleSimulator, so only the generations which won
+    // at least BattleSimulator.CALIBRATED_WIN_RATE in Robocode are compared
+    public void testGenerationsWinRatesMatchRobocode() throws IOException {
+        final int matricesPerGeneration = 200;
+        final int roundsPerMatrix = 10;
+        // matrixMaxAbsWeight and mutationPercentage of config.properties the archive was trained with
+        final float[] matrixMaxAbsWeights = {1, 1, 1, 1, 1, 10, 100};
+        final int mutationPercentage = 5;
+        final float maxDeviation = 0.04f;
+
+        float[] populationWinRates = readPopulationWinRates();
+        int comparedGenerations = 0;
+        for (int generation = 0; generation < populationWinRates.length; generation++) {
+            if (populationWinRates[generation] < BattleSimulator.CALIBRATED_WIN_RATE) {
+                continue;
+            }
+            comparedGenerations++;
+
+            SplittableRandom splittableRandom = new SplittableRandom(1);
+            List<WeightMatrix> population = new ArrayList<>();
+            if (generation == 0) {
+                WeightMatrixGenerator generator = new WeightMatrixGenerator(splittableRandom);
+                for (int i = 0; i < matricesPerGeneration; i++) {
+                    population.add(generator.generateRandom(
+                            matrixMaxAbsWeights[splittableRandom.nextInt(matrixMaxAbsWeights.length)]));
+                }
+            } else {
+                List<ScoredWeightMatrix> survivors = readArchive(String.format("survivors_gen%d.dat", generation - 1));
+                WeightMatrixMutator mutator = new WeightMatrixMutator(mutationPercentage, splittableRandom);
+                for (int i = 0; i < matricesPerGeneration; i++) {
+                    population.add(mutator.mutate(survivors.get(i % survivors.size()).getWeightMatrix()));
+                }
+            }
+
+            Random random = new Random(1);
+            int wins = 0;
+            for (WeightMatrix weightMatrix : population) {
+                wins += Collections.frequency(runRounds(weightMatrix, random, roundsPerMatrix), true);
+            }
+            float simulatedWinRate = (float) wins / (matricesPerGeneration * roundsPerMatrix);
+            assertCondition(Math.abs(simulatedWinRate - populationWinRates[generation]) < maxDeviation,
+                    String.format("Generation %d: simulated average win rate %f, recorded %f",
+                            generation, simulatedWinRate, populationWinRates[generation]));
+        }
+        assertCondition(comparedGenerations > 0, "No archived generation is strong enough to be compared");
+    }
+
+    private static List<Boolean> runRounds(WeightMatrix weightMatrix, Random random, int rounds) {
+        final List<Boolean> results = new ArrayList<>();
+        RoundResultConsumer roundResultConsumer = new RoundResultConsumer() {
+            @Override
+            public void accept(Score.RoundResult roundResult) {
+                results.add(roundResult.isWin());
+            }
+
+            @Override
+            public void close() {}
+        };
+        BattleSimulator battleSimulator = new BattleSimulator(BattleSimulator.createEnemyBehavior("VelociRobot"), random);
+        battleSimulator.runBattle(battleSimulator.createPerceptronModules(() -> weightMatrix, roundResultConsumer), rounds);
+        assertCondition(results.size() == rounds, String.format("Expected %d results, got %d", rounds, results.size()));
+        return results;
+    }
+
+    static List<ScoredWeightMatrix> readArchive(String fileName) throws IOException {
+        List<ScoredWeightMatrix> result = new ArrayList<>();
+        try (DataInputStream in = openArchive(fileName)) {
+            byte[] bytes = new byte[ScoredWeightMatrix.SIZE_IN_BYTES];
+            while (in.available() > 0) {
+                in.readFully(bytes);
+                result.add(Serializer.deserializeScoredWeightMatrix(bytes));
+            }
+        }
+        return result;
+    }
+
+    // win_ratio.dat holds the population and the survivors average win rates of each generation
+    private static float[] readPopulationWinRates() throws IOException {
+        List<Float> winRates = new ArrayList<>();
+        try (DataInputStream in = openArchive("win_ratio.dat")) {
+            while (in.available() > 0) {
+                winRates.add(in.readFloat());
+                in.readFloat();
+            }
+        }
+        float[] result = new float[winRates.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = winRates.get(i);
+        }
+        return result;
+    }
+
+    private static DataInputStream openArchive(String fileName) throws IOException {
+        InputStream in = TestBattleSimulator.class.getResourceAsStream(ARCHIVE_FOLDER + fileName);
+        if (in == null) {
+            throw new IOException(String.format("Archive file '%s' not found", fileName));
+        }
+        return new DataInputStream(in);
+    }
+
+    private static class IdleBehavior implements EnemyBehavior {
+
+        @Override
+        public void onRoundStarted(SimulatedRobot robot) {}
+
+        @Override
+        public void onTurnStarted(SimulatedRobot robot, boolean perceptronScanned) {}
+    }
+}
@@ -0,0 +1,60 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.scoring.EarlyStopping;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithDelta;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+
+public class TestEarlyStopping {
+
+    private static final double Z_SCORE_99 = 2.576;
+
+    public static void main(String[] args) {
+        Runner.runTests(TestEarlyStopping.class);
+    }
+
+    public void testWilsonBounds() {
+        // 5 wins out of 10 rounds, 95% confidence
+        assertEqualsWithDelta(EarlyStopping.winRateLowerBound(5, 10, 1.96), 0.236590, 0.000001);
+        assertEqualsWithDelta(EarlyStopping.winRateUpperBound(5, 10, 1.96), 0.763410, 0.000001);
+
+        // bounds never leave [0, 1] range
+        assertEqualsWithDelta(EarlyStopping.winRateLowerBound(0, 10, Z_SCORE_99), 0);
+        assertEqualsWithDelta(EarlyStopping.winRateUpperBound(10, 10, Z_SCORE_99), 1);
+    }
+
+    public void testCanStop() {
+        EarlyStopping earlyStopping = new EarlyStopping(0.3f, Z_SCORE_99);
+        assertCondition(!earlyStopping.canStop(0, 0));
+        assertCondition(!earlyStopping.canStop(0, 15));
+        assertCondition(earlyStopping.canStop(0, 16));
+        assertCondition(!earlyStopping.canStop(5, 20));
+        assertCondition(earlyStopping.canStop(5, 50));
+    }
+
+    public void testDisabled() {
+        for (int rounds = 1; rounds <= 100; rounds++) {
+            assertCondition(!EarlyStopping.disabled().canStop(0, rounds));
+        }
+    }
+
+    public void testFromWorstSurvivor() {
+        // survivor with all the rounds won doesn't make the cutoff 1, otherwise any matrix would be stopped after a single round
+        EarlyStopping earlyStopping = EarlyStopping.fromWorstSurvivor(1f, 50, Z_SCORE_99);
+        assertEqualsWithDelta(earlyStopping.getCutoffWinRate(), 0.883, 0.001);
+        assertCondition(!earlyStopping.canStop(1, 1));
+        assertCondition(earlyStopping.canStop(3, 10));
+    }
+
+    public void testInvalidArguments() {
+        assertExceptionThrown(
+                () -> new EarlyStopping(1.5f, Z_SCORE_99),
+                IllegalArgumentException.class,
+                "Cutoff win rate must be in [0, 1] range, but was 1.5");
+        assertExceptionThrown(
+                () -> new EarlyStopping(0.5f, -1),
+                IllegalArgumentException.class,
+                "Z-score must not be negative, but was -1");
+    }
+}
@@ -0,0 +1,227 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.FileWriter;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestFileHeader {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestFileHeader.class);
+    }
+
+    public void testFileWithoutHeader() throws IOException {
+        createTestFile("abc.dat", concat(Serializer.serializeWeightMatrix(randomMatrix()),
+                Serializer.serializeWeightMatrix(randomMatrix())));
+
+        FileHeader header = FileHeader.read(IO.getFile("abc.dat"));
+        assertCondition(header == FileHeader.NONE);
+        assertCondition(header.getByteOrder() == ByteOrder.BIG_ENDIAN);
+        assertCondition(header.getSize() == 0);
+        assertCondition(size("abc.dat", WeightMatrix.SIZE_IN_BYTES) == 2);
+
+        // files shorter than the header
+        createTestFile("abc.dat", new byte[] {1, 2, 3});
+        assertCondition(FileHeader.read(IO.getFile("abc.dat")) == FileHeader.NONE);
+    }
+
+    public void testVersion1Header() throws IOException {
+        for (ByteOrder byteOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            WeightMatrix wm = randomMatrix();
+            createTestFile("abc.dat", concat(header(byteOrder), Serializer.serializeWeightMatrix(wm, byteOrder)));
+
+            FileHeader header = FileHeader.read(IO.getFile("abc.dat"));
+            assertCondition(header.getVersion() == 1);
+            assertCondition(header.getByteOrder() == byteOrder);
+            assertCondition(header.getSize() == 2 * Integer.BYTES);
+            assertCondition(size("abc.dat", WeightMatrix.SIZE_IN_BYTES) == 1);
+
+            ByteBuffer mapped = ByteBuffer.wrap(concat(header(byteOrder), new byte[4]));
+            assertCondition(FileHeader.read(mapped, IO.getFile("abc.dat")).getByteOrder() == byteOrder);
+            assertCondition(mapped.position() == 0);
+        }
+    }
+
+    public void testVersion2Header() throws IOException {
+        FileHeader newHeader = FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2);
+        assertCondition(newHeader.getItems() == FileHeader.UNKNOWN_ITEMS);
+        writeMatrices("abc.dat", newHeader, randomMatrix(), randomMatrix(), randomMatrix());
+
+        FileHeader header = FileHeader.read(IO.getFile("abc.dat"));
+        assertCondition(header.getVersion() == FileHeader.VERSION);
+        assertCondition(header.getByteOrder() == ByteOrder.LITTLE_ENDIAN);
+        assertCondition(header.getSize() == FileHeader.SIZE_IN_BYTES);
+        assertCondition(header.getItemSize() == WeightMatrix.SIZE_IN_BYTES);
+        assertCondition(header.getItemsPerBlock() == 2);
+        assertCondition(header.isChecksummed());
+        // the number of items is stored once the file is closed
+        assertCondition(header.getItems() == 3);
+        assertCondition(size("abc.dat", WeightMatrix.SIZE_IN_BYTES) == 3);
+    }
+
+    public void testCompressedFile() throws IOException {
+        WeightMatrix wm = randomMatrix();
+        writeMatrices("abc.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 4,
+                FileHeader.Compression.XOR_DEFLATE), wm, wm, wm, wm, wm);
+
+        FileHeader header = FileHeader.read(IO.getFile("abc.dat"));
+        assertCondition(header.getCompression() == FileHeader.Compression.XOR_DEFLATE);
+        assertCondition(header.isCompressed());
+        assertCondition(header.getItems() == 5);
+        assertCondition(size("abc.dat", WeightMatrix.SIZE_IN_BYTES) == 5);
+        // copies of the same matrix are XOR-ed to zeros
+        assertCondition(IO.getFile("abc.dat").length() < 3 * WeightMatrix.SIZE_IN_BYTES);
+
+        assertCondition(!FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 4).isCompressed());
+    }
+
+    public void testOnlyChecksummedFilesAreCompressed() {
+        assertExceptionThrown(
+                () -> FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0, FileHeader.Compression.DEFLATE),
+                IllegalArgumentException.class,
+                "Only files with checksum blocks can be compressed");
+    }
+
+    public void testCompressionFromString() {
+        assertCondition(FileHeader.Compression.fromString("none") == FileHeader.Compression.NONE);
+        assertCondition(FileHeader.Compression.fromString(" Xor_Deflate ") == FileHeader.Compression.XOR_DEFLATE);
+        assertExceptionThrown(
+                () -> FileHeader.Compression.fromString("zip"),
+                IllegalArgumentException.class,
+                "Unsupported compression 'zip'");
+    }
+
+    public void testUnsupportedByteOrderFlag() throws IOException {
+        createTestFile("abc.dat", ByteBuffer.allocate(2 * Integer.BYTES).putInt(FileHeader.MAGIC).putInt(7).array());
+        assertHeaderNotRead("abc.dat has unsupported byte order flag 7");
+    }
+
+    public void testUnsupportedVersion() throws IOException {
+        createTestFile("abc.dat", ByteBuffer.allocate(FileHeader.SIZE_IN_BYTES).putInt(FileHeader.MAGIC).putInt(3 << 16).array());
+        assertHeaderNotRead("abc.dat has unsupported format version 3");
+    }
+
+    public void testDamagedHeader() throws IOException {
+        writeMatrices("abc.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0), randomMatrix());
+        byte[] bytes = Files.readAllBytes(IO.getFile("abc.dat").toPath());
+        // item size
+        bytes[4 * Integer.BYTES + 2]++;
+        createTestFile("abc.dat", bytes);
+        assertHeaderNotRead("abc.dat has a damaged header");
+
+        // truncated header
+        createTestFile("abc.dat", Arrays.copyOf(bytes, FileHeader.SIZE_IN_BYTES - 1));
+        assertHeaderNotRead("abc.dat has a damaged header");
+    }
+
+    public void testOtherTopology() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FileHeader.SIZE_IN_BYTES);
+        header.putInt(FileHeader.MAGIC).putInt(FileHeader.VERSION << 16)
+                .putInt(WeightMatrix.INPUT_NEURONS + 1).putInt(WeightMatrix.HIDDEN_NEURONS)
+                .putInt(WeightMatrix.SIZE_IN_BYTES).putInt(0).putInt(FileHeader.UNKNOWN_ITEMS);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        header.putInt((int) crc.getValue());
+        createTestFile("abc.dat", header.array());
+
+        assertHeaderNotRead(String.format("abc.dat has weight matrices with %d input and %d hidden neurons, " +
+                "but %d input and %d hidden neurons are expected", WeightMatrix.INPUT_NEURONS + 1, WeightMatrix.HIDDEN_NEURONS,
+                WeightMatrix.INPUT_NEURONS, WeightMatrix.HIDDEN_NEURONS));
+    }
+
+    public void testUnsupportedCompression() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FileHeader.SIZE_IN_BYTES);
+        header.putInt(FileHeader.MAGIC).putInt((FileHeader.VERSION << 16) | (9 << 8))
+                .putInt(WeightMatrix.INPUT_NEURONS).putInt(WeightMatrix.HIDDEN_NEURONS)
+                .putInt(WeightMatrix.SIZE_IN_BYTES).putInt(2).putInt(FileHeader.UNKNOWN_ITEMS);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        header.putInt((int) crc.getValue());
+        createTestFile("abc.dat", header.array());
+
+        assertHeaderNotRead("abc.dat has unsupported compression 9");
+    }
+
+    public void testOtherItemSize() throws IOException {
+        writeMatrices("abc.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0), randomMatrix());
+        assertExceptionThrown(
+                () -> size("abc.dat", ScoredWeightMatrix.SIZE_IN_BYTES),
+                IllegalArgumentException.class,
+                String.format("abc.dat has %d byte items, but %d byte items are expected",
+                        WeightMatrix.SIZE_IN_BYTES, ScoredWeightMatrix.SIZE_IN_BYTES));
+    }
+
+    public void testMagicIsNotAValidWeight() {
+        assertCondition(Float.isNaN(Float.intBitsToFloat(FileHeader.MAGIC)));
+    }
+
+    public void testConversionToBigEndian() {
+        WeightMatrix wm = randomMatrix();
+        byte[] bigEndian = Serializer.serializeWeightMatrix(wm);
+        byte[] littleEndian = Serializer.serializeWeightMatrix(wm, ByteOrder.LITTLE_ENDIAN);
+        assertCondition(!Arrays.equals(bigEndian, littleEndian));
+
+        FileHeader littleEndianHeader = FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0);
+        FileHeader bigEndianHeader = FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0);
+        assertCondition(Arrays.equals(bigEndian, littleEndianHeader.toBigEndian(littleEndian)));
+        assertCondition(Arrays.equals(bigEndian, bigEndianHeader.toBigEndian(bigEndian.clone())));
+        assertCondition(Arrays.equals(bigEndian, FileHeader.NONE.toBigEndian(bigEndian.clone())));
+    }
+
+    // version 1 header, which has the byte order only
+    static byte[] header(ByteOrder byteOrder) {
+        return ByteBuffer.allocate(2 * Integer.BYTES)
+                .putInt(FileHeader.MAGIC)
+                .putInt(byteOrder == ByteOrder.BIG_ENDIAN ? 0 : 1)
+                .array();
+    }
+
+    static void writeMatrices(String fileName, FileHeader header, WeightMatrix... weightMatrices) throws IOException {
+        try (FileWriter<WeightMatrix> writer = new FileWriter<>(IO.getFile(fileName), header,
+                wm -> Serializer.serializeWeightMatrix(wm, header.getByteOrder()))) {
+            for (WeightMatrix weightMatrix : weightMatrices) {
+                writer.write(weightMatrix);
+            }
+        }
+    }
+
+    private static long size(String fileName, int itemSize) {
+        try (FileReader<ByteBuffer> reader = new FileReader<>(IO.getFile(fileName), itemSize, Function.identity())) {
+            return reader.size();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void assertHeaderNotRead(String message) {
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        FileHeader.read(IO.getFile("abc.dat"));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                },
+                IllegalArgumentException.class,
+                message);
+    }
+}
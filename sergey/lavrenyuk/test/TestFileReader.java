@@ -0,0 +1,241 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.FileWriter;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestFileReader {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestFileReader.class);
+    }
+
+    public void testSeek() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        createTestFile("abc.dat", concat(Serializer.serializeWeightMatrix(wm0), Serializer.serializeWeightMatrix(wm1),
+                Serializer.serializeWeightMatrix(wm2)));
+
+        try (FileReader<WeightMatrix> reader =
+                     new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 3);
+            assertCondition(wm0.equals(reader.read()));
+            assertCondition(reader.position() == 1);
+
+            reader.seek(2);
+            assertCondition(wm2.equals(reader.read()));
+            assertCondition(reader.read() == null);
+            assertCondition(reader.position() == 3);
+
+            reader.seek(0);
+            assertCondition(reader.skip(1));
+            assertCondition(wm1.equals(reader.read()));
+            // skipping up to the end is successful, skipping past it is not
+            assertCondition(reader.skip(1));
+            assertCondition(!reader.skip(1));
+            assertCondition(reader.read() == null);
+
+            assertExceptionThrown(
+                    () -> TestPartitionedFileReader.seek(reader, -1),
+                    IndexOutOfBoundsException.class,
+                    "Index -1 is out of [0, 3] range");
+        }
+    }
+
+    public void testFileWithHeader() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        createTestFile("abc.dat", concat(TestFileHeader.header(ByteOrder.LITTLE_ENDIAN),
+                Serializer.serializeWeightMatrix(wm0, ByteOrder.LITTLE_ENDIAN),
+                Serializer.serializeWeightMatrix(wm1, ByteOrder.LITTLE_ENDIAN)));
+
+        try (FileReader<WeightMatrix> reader =
+                     new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 2);
+            assertCondition(wm0.equals(reader.read()));
+            assertCondition(wm1.equals(reader.read()));
+            assertCondition(reader.read() == null);
+
+            reader.seek(1);
+            assertCondition(wm1.equals(reader.read()));
+        }
+
+        // items are read in the file's byte order, raw bytes are converted to big-endian
+        try (FileReader<byte[]> reader = new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES,
+                FileReader.bigEndianBytes(byte[]::clone))) {
+            assertCondition(Arrays.equals(Serializer.serializeWeightMatrix(wm0), reader.read()));
+        }
+        try (FileReader<ByteBuffer> reader = new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES,
+                byteBuffer -> byteBuffer)) {
+            assertCondition(reader.read().order() == ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    public void testQuantizedFile() throws IOException {
+        for (ByteOrder byteOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            for (QuantizedWeightMatrix.Precision precision : QuantizedWeightMatrix.Precision.values()) {
+                QuantizedWeightMatrix wm0 = QuantizedWeightMatrix.quantize(randomMatrix(), precision);
+                QuantizedWeightMatrix wm1 = QuantizedWeightMatrix.quantize(randomMatrix(), precision);
+                FileHeader header = FileHeader.of(byteOrder, precision.getSizeInBytes(), 64);
+                try (FileWriter<QuantizedWeightMatrix> writer = new FileWriter<>(IO.getFile("abc.dat"), header,
+                        weightMatrix -> Serializer.serializeQuantizedWeightMatrix(weightMatrix, byteOrder))) {
+                    writer.write(wm0);
+                    writer.write(wm1);
+                }
+
+                try (FileReader<QuantizedWeightMatrix> reader = new FileReader<>(IO.getFile("abc.dat"),
+                        precision.getSizeInBytes(),
+                        byteBuffer -> Serializer.deserializeQuantizedWeightMatrix(byteBuffer, precision))) {
+                    assertCondition(reader.size() == 2);
+                    assertCondition(wm0.equals(reader.read()));
+                    assertCondition(wm1.equals(reader.read()));
+                }
+            }
+        }
+    }
+
+    public void testDamagedBlocksAreSkipped() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+        // blocks of 2, 2 and 1 items
+        TestFileHeader.writeMatrices("abc.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2), wms);
+        damageItem("abc.dat", 3, 2);
+
+        // the file was closed properly, its size is the number of items in the header, blocks are verified once read
+        try (FileReader<WeightMatrix> reader =
+                     new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 5);
+            assertCondition(wms[0].equals(reader.read()));
+            assertCondition(wms[1].equals(reader.read()));
+            assertCondition(wms[4].equals(reader.read()));
+            assertCondition(reader.position() == 5);
+            assertCondition(reader.read() == null);
+
+            reader.seek(3);
+            assertCondition(wms[4].equals(reader.read()));
+            reader.seek(1);
+            assertCondition(wms[1].equals(reader.read()));
+        }
+
+        // the writer was killed, all the blocks are verified once the file is opened
+        FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2).updateItems(IO.getFile("abc.dat"),
+                FileHeader.UNKNOWN_ITEMS);
+        try (FileReader<WeightMatrix> reader =
+                     new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 3);
+            assertCondition(wms[0].equals(reader.read()));
+            assertCondition(wms[1].equals(reader.read()));
+            assertCondition(wms[4].equals(reader.read()));
+            assertCondition(reader.read() == null);
+
+            reader.seek(2);
+            assertCondition(wms[4].equals(reader.read()));
+        }
+    }
+
+    public void testTornWrite() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix()};
+        TestFileHeader.writeMatrices("abc.dat", FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2), wms);
+        byte[] bytes = Files.readAllBytes(IO.getFile("abc.dat").toPath());
+
+        // the last block is incomplete
+        createTestFile("abc.dat", Arrays.copyOf(bytes, bytes.length - 10));
+        assertItems("abc.dat", wms[0], wms[1]);
+
+        // the last block is lost completely, it's noticed since the header has the number of items
+        createTestFile("abc.dat", Arrays.copyOf(bytes, bytes.length - WeightMatrix.SIZE_IN_BYTES - Integer.BYTES));
+        assertItems("abc.dat", wms[0], wms[1]);
+
+        // nothing but the header
+        createTestFile("abc.dat", Arrays.copyOf(bytes, FileHeader.SIZE_IN_BYTES + 3));
+        assertItems("abc.dat");
+    }
+
+    public void testCompressedFile() throws IOException {
+        for (FileHeader.Compression compression : new FileHeader.Compression[] {
+                FileHeader.Compression.DEFLATE, FileHeader.Compression.XOR_DEFLATE}) {
+            WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+            // blocks of 2, 2 and 1 items
+            TestFileHeader.writeMatrices("abc.dat",
+                    FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2, compression), wms);
+            assertItems("abc.dat", wms);
+
+            try (FileReader<WeightMatrix> reader = new FileReader<>(IO.getFile("abc.dat"), WeightMatrix.SIZE_IN_BYTES,
+                    Serializer::deserializeWeightMatrix)) {
+                reader.seek(3);
+                assertCondition(wms[3].equals(reader.read()));
+                assertCondition(wms[4].equals(reader.read()));
+                reader.seek(1);
+                assertCondition(wms[1].equals(reader.read()));
+                assertCondition(wms[2].equals(reader.read()));
+                reader.seek(0);
+                assertCondition(wms[0].equals(reader.read()));
+            }
+        }
+    }
+
+    public void testDamagedCompressedBlocksAreSkipped() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+        TestFileHeader.writeMatrices("abc.dat",
+                FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2, FileHeader.Compression.XOR_DEFLATE), wms);
+        byte[] bytes = Files.readAllBytes(IO.getFile("abc.dat").toPath());
+
+        // a byte of the compressed data of the second block
+        int secondBlock = FileHeader.SIZE_IN_BYTES + 3 * Integer.BYTES
+                + ByteBuffer.wrap(bytes).getInt(FileHeader.SIZE_IN_BYTES + Integer.BYTES);
+        byte[] damaged = bytes.clone();
+        damaged[secondBlock + 2 * Integer.BYTES + 10]++;
+        createTestFile("abc.dat", damaged);
+        assertItems("abc.dat", 5, wms[0], wms[1], wms[4]);
+
+        // compressed length of the second block, the blocks after it can't be found
+        damaged = bytes.clone();
+        damaged[secondBlock + Integer.BYTES]++;
+        createTestFile("abc.dat", damaged);
+        assertItems("abc.dat", wms[0], wms[1]);
+
+        // torn write of the last block
+        createTestFile("abc.dat", Arrays.copyOf(bytes, bytes.length - 10));
+        assertItems("abc.dat", wms[0], wms[1], wms[2], wms[3]);
+    }
+
+    // changes a byte of the item, the item's block becomes damaged
+    static void damageItem(String fileName, int item, int itemsPerBlock) throws IOException {
+        byte[] bytes = Files.readAllBytes(IO.getFile(fileName).toPath());
+        int block = item / itemsPerBlock;
+        bytes[FileHeader.SIZE_IN_BYTES + block * (itemsPerBlock * WeightMatrix.SIZE_IN_BYTES + Integer.BYTES)
+                + (item % itemsPerBlock) * WeightMatrix.SIZE_IN_BYTES + 5]++;
+        createTestFile(fileName, bytes);
+    }
+
+    private static void assertItems(String fileName, WeightMatrix... weightMatrices) throws IOException {
+        assertItems(fileName, weightMatrices.length, weightMatrices);
+    }
+
+    private static void assertItems(String fileName, long size, WeightMatrix... weightMatrices) throws IOException {
+        try (FileReader<WeightMatrix> reader =
+                     new FileReader<>(IO.getFile(fileName), WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == size);
+            for (WeightMatrix weightMatrix : weightMatrices) {
+                assertCondition(weightMatrix.equals(reader.read()));
+            }
+            assertCondition(reader.read() == null);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.geometry.GeometryUtils;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithDelta;
+
+public class TestGeometryUtils {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestGeometryUtils.class);
+    }
+
+    public void testNormalRelativeAngle() {
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(0), 0);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(1), 1);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(-1), -1);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(Math.PI), -Math.PI);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(-Math.PI), -Math.PI);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(1.5 * Math.PI), -0.5 * Math.PI);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(-1.5 * Math.PI), 0.5 * Math.PI);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(4 * Math.PI + 1), 1);
+        assertEqualsWithDelta(GeometryUtils.normalRelativeAngle(-4 * Math.PI - 1), -1);
+    }
+
+    public void testNormalAbsoluteAngle() {
+        assertEqualsWithDelta(GeometryUtils.normalAbsoluteAngle(0), 0);
+        assertEqualsWithDelta(GeometryUtils.normalAbsoluteAngle(1), 1);
+        assertEqualsWithDelta(GeometryUtils.normalAbsoluteAngle(-1), 2 * Math.PI - 1);
+        assertEqualsWithDelta(GeometryUtils.normalAbsoluteAngle(2 * Math.PI), 0);
+        assertEqualsWithDelta(GeometryUtils.normalAbsoluteAngle(5 * Math.PI), Math.PI);
+    }
+}
@@ -34,4 +34,14 @@ public class TestIntGeneratorFromString {
         assertCondition(generator.get().equals(2));
         assertCondition(generator.get().equals(1));
     }
+
+    public void testIntByInvocation() {
+        IntGeneratorFromString generator = new IntGeneratorFromString("1, 1, 2");
+        assertCondition(generator.get(0) == 1);
+        assertCondition(generator.get(2) == 2);
+        assertCondition(generator.get(5) == 2);
+        assertCondition(generator.get(3_000_000_000L) == 1);
+        // invocation by index doesn't change the sequence
+        assertCondition(generator.get().equals(1));
+    }
 }
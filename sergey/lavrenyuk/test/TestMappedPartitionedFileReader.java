@@ -0,0 +1,178 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.MappedPartitionedFileReader;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestMappedPartitionedFileReader {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestMappedPartitionedFileReader.class);
+    }
+
+    public void testHappyPath() throws IOException {
+        WeightMatrix wm11 = randomMatrix();
+        WeightMatrix wm12 = randomMatrix();
+        WeightMatrix wm21 = randomMatrix();
+
+        createTestFile("abc0.dat", concat(Serializer.serializeWeightMatrix(wm11), Serializer.serializeWeightMatrix(wm12)));
+        createTestFile("abc1.dat", Serializer.serializeWeightMatrix(wm21));
+
+        try (MappedPartitionedFileReader<WeightMatrix> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 3);
+            assertCondition(wm11.equals(reader.read()));
+            assertCondition(wm12.equals(reader.read()));
+            assertCondition(wm21.equals(reader.read()));
+            assertCondition(reader.read() == null);
+        }
+    }
+
+    public void testRandomAccess() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        WeightMatrix wm3 = randomMatrix();
+
+        // empty files in between must not break the index
+        createTestFile("abc0.dat", concat(serialize(wm0), serialize(wm1)));
+        createTestFile("abc1.dat", new byte[0]);
+        createTestFile("abc2.dat", serialize(wm2));
+        createTestFile("abc3.dat", new byte[0]);
+        createTestFile("abc4.dat", serialize(wm3));
+
+        try (MappedPartitionedFileReader<WeightMatrix> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrixFromScoredWeightMatrix)) {
+            assertCondition(reader.size() == 4);
+            assertCondition(wm3.equals(reader.read(3)));
+            assertCondition(wm0.equals(reader.read(0)));
+            assertCondition(wm2.equals(reader.read(2)));
+            assertCondition(wm1.equals(reader.read(1)));
+
+            // random access doesn't affect sequential reading
+            assertCondition(wm0.equals(reader.read()));
+            assertCondition(reader.skip(2));
+            assertCondition(wm3.equals(reader.read()));
+            assertCondition(!reader.skip(1));
+
+            assertExceptionThrown(() -> reader.read(4), IndexOutOfBoundsException.class, "Index 4 is out of [0, 4) range");
+        }
+    }
+
+    public void testFilesWithDifferentByteOrders() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        WeightMatrix wm3 = randomMatrix();
+        createTestFile("abc0.dat", concat(TestFileHeader.header(ByteOrder.LITTLE_ENDIAN),
+                Serializer.serializeWeightMatrix(wm0, ByteOrder.LITTLE_ENDIAN),
+                Serializer.serializeWeightMatrix(wm1, ByteOrder.LITTLE_ENDIAN)));
+        createTestFile("abc1.dat", Serializer.serializeWeightMatrix(wm2));
+        createTestFile("abc2.dat", concat(TestFileHeader.header(ByteOrder.BIG_ENDIAN), Serializer.serializeWeightMatrix(wm3)));
+
+        try (MappedPartitionedFileReader<WeightMatrix> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 4);
+            assertCondition(wm3.equals(reader.read(3)));
+            assertCondition(wm1.equals(reader.read(1)));
+            assertCondition(wm2.equals(reader.read(2)));
+            assertCondition(wm0.equals(reader.read(0)));
+        }
+    }
+
+    public void testDamagedBlocksAreSkipped() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+        TestFileHeader.writeMatrices("abc0.dat", FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 1), wms);
+        TestFileReader.damageItem("abc0.dat", 1, 1);
+
+        try (MappedPartitionedFileReader<WeightMatrix> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            // the size is read from the header, a damaged block is found once it's read
+            assertCondition(reader.size() == 4);
+            assertCondition(wms[2].equals(reader.read(2)));
+            assertCondition(reader.read(1) == null);
+            assertCondition(wms[0].equals(reader.read()));
+            assertCondition(wms[2].equals(reader.read()));
+            assertCondition(wms[3].equals(reader.read()));
+            assertCondition(reader.read() == null);
+        }
+    }
+
+    public void testCompressedFiles() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+        TestFileHeader.writeMatrices("abc0.dat", FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2,
+                FileHeader.Compression.XOR_DEFLATE), wms[0], wms[1], wms[2]);
+        TestFileHeader.writeMatrices("abc1.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 1,
+                FileHeader.Compression.DEFLATE), wms[3], wms[4]);
+        TestFileHeader.writeMatrices("abc2.dat", FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 0), wms[5]);
+
+        try (MappedPartitionedFileReader<WeightMatrix> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 6);
+            for (WeightMatrix wm : wms) {
+                assertCondition(wm.equals(reader.read()));
+            }
+            assertCondition(reader.read() == null);
+
+            assertCondition(wms[4].equals(reader.read(4)));
+            assertCondition(wms[1].equals(reader.read(1)));
+            assertCondition(wms[5].equals(reader.read(5)));
+            assertCondition(wms[2].equals(reader.read(2)));
+            assertCondition(wms[0].equals(reader.read(0)));
+            assertCondition(wms[3].equals(reader.read(3)));
+        }
+    }
+
+    public void testSkipPastTheEnd() throws IOException {
+        createTestFile("abc0.dat", concat(serialize(randomMatrix()), serialize(randomMatrix())));
+
+        try (MappedPartitionedFileReader<Score> reader = new MappedPartitionedFileReader<>(
+                "abc{}.dat", ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoreFromScoredWeightMatrix)) {
+            assertCondition(reader.skip(2));
+            assertCondition(reader.read() == null);
+            reader.seek(1);
+            assertCondition(!reader.skip(5));
+            assertCondition(reader.position() == 2);
+        }
+    }
+
+    public void testBrokenFile() throws IOException {
+        createTestFile("abc0.dat", new byte[] {1, 2, 3});
+        assertExceptionThrown(
+                TestMappedPartitionedFileReader::createWeightMatrixReader,
+                IllegalArgumentException.class,
+                "doesn't contain an integer number of input items");
+    }
+
+    public void testNoFiles() {
+        assertExceptionThrown(
+                TestMappedPartitionedFileReader::createWeightMatrixReader,
+                IllegalArgumentException.class,
+                "No files found for pattern 'abc{}.dat'");
+    }
+
+    private static void createWeightMatrixReader() {
+        try {
+            new MappedPartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] serialize(WeightMatrix weightMatrix) {
+        return Serializer.serializeScoredWeightMatrix(new ScoredWeightMatrix(new Score(0.5f, 10f), weightMatrix));
+    }
+}
@@ -3,8 +3,11 @@ package sergey.lavrenyuk.test;
 import sergey.lavrenyuk.nn.training.utils.MaxValuesStorage;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 
@@ -44,4 +47,61 @@ public class TestMaxValuesStorage {
         expectedList.add(0);
         assertCondition(actualList.equals(expectedList));
     }
+
+    public void testTiesAreResolvedTheSameWayAsByLinearScan() {
+        // values are compared by the first element only, the second one is a unique id to distinguish equal values
+        Comparator<int[]> comparator = Comparator.comparingInt(value -> value[0]);
+        Random random = new Random(42);
+        for (int sizeLimit = 1; sizeLimit < 20; sizeLimit++) {
+            MaxValuesStorage<int[]> storage = new MaxValuesStorage<>(sizeLimit, comparator);
+            LinearScanMaxValuesStorage expectedStorage = new LinearScanMaxValuesStorage(sizeLimit, comparator);
+            for (int id = 0; id < 1000; id++) {
+                int[] value = new int[] {random.nextInt(id / 10 + 5), id};
+                storage.put(value);
+                expectedStorage.put(value);
+            }
+            assertCondition(storage.asList().equals(expectedStorage.asList()),
+                    String.format("Different values for size limit %d", sizeLimit));
+        }
+    }
+
+    // the original O(N * K) implementation, which defines how ties are resolved
+    private static class LinearScanMaxValuesStorage {
+
+        private final int[][] array;
+        private final Comparator<int[]> comparator;
+
+        private int size = 0;
+        private int minValueIndex = 0;
+
+        LinearScanMaxValuesStorage(int sizeLimit, Comparator<int[]> comparator) {
+            this.array = new int[sizeLimit][];
+            this.comparator = comparator;
+        }
+
+        void put(int[] value) {
+            if (size < array.length) {
+                array[size] = value;
+                if (comparator.compare(value, array[minValueIndex]) < 0) {
+                    minValueIndex = size;
+                }
+                size++;
+                return;
+            }
+            if (comparator.compare(value, array[minValueIndex]) > 0) {
+                array[minValueIndex] = value;
+                for (int i = 0; i < array.length; i++) {
+                    if (comparator.compare(array[i], array[minValueIndex]) < 0) {
+                        minValueIndex = i;
+                    }
+                }
+            }
+        }
+
+        List<int[]> asList() {
+            List<int[]> result = new ArrayList<>(Arrays.asList(Arrays.copyOf(array, size)));
+            result.sort(Collections.reverseOrder(comparator));
+            return result;
+        }
+    }
 }
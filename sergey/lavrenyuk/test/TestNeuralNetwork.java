@@ -5,6 +5,8 @@ import sergey.lavrenyuk.nn.WeightMatrix;
 
 import java.util.Arrays;
 
+import static sergey.lavrenyuk.test.base.TestUtils.allocatedBytes;
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithDelta;
 import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
@@ -55,4 +57,36 @@ public class TestNeuralNetwork {
         assertEqualsWithDelta(result[0], -0.08f);
         assertEqualsWithDelta(result[1], -0.56f);
     }
+
+    public void testProcessWithOutputBufferReturnsTheSameResult() {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(randomMatrix());
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = 1.5f - 0.3f * i; // a few values are out of [-1, 1] range on purpose
+        }
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+
+        neuralNetwork.process(input, output);
+
+        assertCondition(Arrays.equals(neuralNetwork.process(input), output));
+    }
+
+    public void testProcessWithOutputBufferDoesNotAllocate() {
+        final int calls = 100_000;
+        NeuralNetwork neuralNetwork = new NeuralNetwork(randomMatrix());
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        Arrays.fill(input, 0.5f);
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+
+        Runnable execution = () -> {
+            for (int i = 0; i < calls; i++) {
+                neuralNetwork.process(input, output);
+            }
+        };
+        allocatedBytes(execution); // warm up, so JIT compilation doesn't affect the measurement
+
+        long allocated = allocatedBytes(execution);
+        // a few bytes may be allocated by the measurement itself, but not a single array per call
+        assertCondition(allocated < calls, String.format("%d bytes allocated during %d calls", allocated, calls));
+    }
 }
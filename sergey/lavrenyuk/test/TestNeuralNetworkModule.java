@@ -7,9 +7,14 @@ import sergey.lavrenyuk.event.RoundStarted;
 import sergey.lavrenyuk.event.TurnStarted;
 import sergey.lavrenyuk.module.NeuralNetworkModule;
 import sergey.lavrenyuk.module.PerceptronModule;
+import sergey.lavrenyuk.module.WinPercentageScoreModule;
 import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+import sergey.lavrenyuk.nn.scoring.RoundResultConsumer;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.test.base.NoOpPerceptronControl;
 import sergey.lavrenyuk.test.base.PerceptronTestControl;
 
+import static sergey.lavrenyuk.test.base.TestUtils.allocatedBytes;
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 
 public class TestNeuralNetworkModule {
@@ -80,4 +85,38 @@ public class TestNeuralNetworkModule {
         assertCondition(control.getTurnGunRightCommands().size() == 3);
         assertCondition(control.getFireCommands().size() == 1);
     }
+
+    public void testNoAllocationsPerTurn() {
+        final int turns = 100_000;
+        PerceptronModule neuralNetworkModule = new NeuralNetworkModule(
+                () -> new WeightMatrixGenerator().generateFixed(1), 100, 36, 36, 800, 600);
+        // the score module receives every turn event too, round results are only reported at the end of a round
+        PerceptronModule scoreModule = new WinPercentageScoreModule(new RoundResultConsumer() {
+            @Override
+            public void accept(Score.RoundResult roundResult) {}
+
+            @Override
+            public void close() {}
+        }, 100);
+        // test control records every command, so a control that does nothing is used to measure the modules only
+        RoundStarted roundStarted = new RoundStarted(new NoOpPerceptronControl());
+        neuralNetworkModule.dispatch(roundStarted);
+        scoreModule.dispatch(roundStarted);
+
+        TurnStarted event = TurnStarted.reusable();
+        Runnable execution = () -> {
+            for (int i = 0; i < turns; i++) {
+                event.getPerceptronStatus().update(100, 400 + i % 100, 300, 0.1, 0.2, 0.3, 8, 0);
+                event.getEnemyStatusHolder().update(100, 8, 1, 0.5, 100 + i % 100);
+                event.setEnemyScanned(i % 2 == 0);
+                neuralNetworkModule.dispatch(event);
+                scoreModule.dispatch(event);
+            }
+        };
+        allocatedBytes(execution); // warm up, so JIT compilation doesn't affect the measurement
+
+        long allocated = allocatedBytes(execution);
+        // a few bytes may be allocated by the measurement itself, but not a single object per turn
+        assertCondition(allocated < turns, String.format("%d bytes allocated during %d turns", allocated, turns));
+    }
 }
@@ -0,0 +1,228 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.IntGeneratorFromString;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.training.utils.ParallelBreeder;
+import sergey.lavrenyuk.nn.training.utils.TrainerUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithMutationAndDelta;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestParallelBreeder {
+
+    private static final String FILE_PATTERN = "weight_matrix_test_part{}.dat";
+    private static final int MUTATION_PERCENTAGE = 10;
+
+    public static void main(String[] args) {
+        Runner.runTests(TestParallelBreeder.class);
+    }
+
+    public void testNextGeneration() throws IOException {
+        List<WeightMatrix> survivors = Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix());
+        // 3 survivors and 4 children are 7 descendants, 6 of 7 mutated copies fit to the population
+        ParallelBreeder breeder = createBreeder(4, 1, 1, 13, 3);
+        assertCondition(breeder.getPartitions() == 4);
+
+        long matrices = breeder.breed(survivors, partition -> false);
+        assertCondition(matrices == 13, String.format("Expected 13 matrices, but was %d", matrices));
+
+        List<WeightMatrix> generation = new ArrayList<>();
+        for (int partition = 0; partition < 4; partition++) {
+            List<WeightMatrix> partitionMatrices = readPartition(partition);
+            assertCondition(partitionMatrices.size() == (partition < 3 ? 4 : 1));
+            generation.addAll(partitionMatrices);
+        }
+
+        List<WeightMatrix> descendants = new ArrayList<>(survivors);
+        descendants.addAll(TrainerUtils.crossingover(survivors, 1));
+        assertCondition(generation.subList(0, 7).equals(descendants));
+        for (int i = 7; i < 13; i++) {
+            assertCondition(!generation.get(i).equals(descendants.get(i - 7)));
+            assertEqualsWithMutationAndDelta(descendants.get(i - 7), generation.get(i), MUTATION_PERCENTAGE);
+        }
+    }
+
+    public void testRandomMatricesAreAdded() throws IOException {
+        List<WeightMatrix> survivors = Collections.singletonList(randomMatrix());
+        createBreeder(2, 0, 2, 5, 2).breed(survivors, partition -> false);
+
+        List<WeightMatrix> generation = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            generation.addAll(readPartition(partition));
+        }
+        assertCondition(generation.size() == 5);
+        assertCondition(generation.get(0).equals(survivors.get(0)));
+        assertEqualsWithMutationAndDelta(survivors.get(0), generation.get(1), MUTATION_PERCENTAGE);
+        assertEqualsWithMutationAndDelta(survivors.get(0), generation.get(2), MUTATION_PERCENTAGE);
+        for (WeightMatrix random : generation.subList(3, 5)) {
+            for (float weight : random.getWeights()) {
+                assertCondition(Math.abs(weight) <= 2);
+            }
+        }
+    }
+
+    public void testInitialGeneration() throws IOException {
+        long matrices = createBreeder(3, 0, 0, 7, 0).breed(Collections.emptyList(), partition -> false);
+        assertCondition(matrices == 7);
+        assertCondition(readPartition(0).size() == 3);
+        assertCondition(readPartition(1).size() == 3);
+        assertCondition(readPartition(2).size() == 1);
+        assertCondition(!IO.getFile(fileName(3)).exists());
+    }
+
+    public void testDonePartitionsAreSkipped() throws IOException {
+        long matrices = createBreeder(3, 0, 0, 7, 2).breed(Collections.emptyList(), partition -> partition == 1);
+        assertCondition(matrices == 4);
+        assertCondition(IO.getFile(fileName(0)).exists());
+        assertCondition(!IO.getFile(fileName(1)).exists());
+        assertCondition(IO.getFile(fileName(2)).exists());
+    }
+
+    public void testPartitionsArePublishedToManifest() throws IOException {
+        PartitionManifest.rebuild(FILE_PATTERN, PartitionManifest.State.PENDING);
+        createBreeder(3, 0, 0, 7, 2).breed(Collections.emptyList(), partition -> false);
+
+        List<PartitionManifest.Partition> partitions = PartitionManifest.find(FILE_PATTERN).getPartitions();
+        assertCondition(partitions.equals(Arrays.asList(
+                new PartitionManifest.Partition(0, 3, PartitionManifest.State.PENDING),
+                new PartitionManifest.Partition(1, 3, PartitionManifest.State.PENDING),
+                new PartitionManifest.Partition(2, 1, PartitionManifest.State.PENDING))), partitions.toString());
+    }
+
+    public void testSameSeedSameGeneration() throws IOException {
+        List<WeightMatrix> survivors = Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix());
+        createBreeder(4, 1, 2, 30, 1, 42).breed(survivors, partition -> false);
+        List<byte[]> singleThreadFiles = readFiles(8);
+
+        createBreeder(4, 1, 2, 30, 3, 42).breed(survivors, partition -> false);
+        List<byte[]> files = readFiles(8);
+        for (int partition = 0; partition < 8; partition++) {
+            assertCondition(Arrays.equals(singleThreadFiles.get(partition), files.get(partition)),
+                    String.format("partition %d differs", partition));
+        }
+
+        // a resumed breeding writes the same partitions
+        Files.delete(IO.getFile(fileName(2)).toPath());
+        Files.delete(IO.getFile(fileName(7)).toPath());
+        createBreeder(4, 1, 2, 30, 2, 42).breed(survivors, partition -> partition != 2 && partition != 7);
+        files = readFiles(8);
+        for (int partition = 0; partition < 8; partition++) {
+            assertCondition(Arrays.equals(singleThreadFiles.get(partition), files.get(partition)),
+                    String.format("partition %d differs", partition));
+        }
+
+        createBreeder(4, 1, 2, 30, 1, 43).breed(survivors, partition -> false);
+        assertCondition(!Arrays.equals(singleThreadFiles.get(7), readFiles(8).get(7)));
+    }
+
+    public void testChecksumsDoNotDependOnThreads() throws IOException {
+        List<WeightMatrix> survivors = Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix());
+        createBreeder(10, 2, 20, 200, 1, 7).breed(survivors, partition -> false);
+        long singleThreadChecksum = checksum(20);
+
+        createBreeder(10, 2, 20, 200, 8, 7).breed(survivors, partition -> false);
+        long checksum = checksum(20);
+        assertCondition(checksum == singleThreadChecksum,
+                String.format("Checksum with 8 threads %d, but with 1 thread %d", checksum, singleThreadChecksum));
+    }
+
+    public void testSameMatricesWhateverThePartitionSize() throws IOException {
+        List<WeightMatrix> survivors = Arrays.asList(randomMatrix(), randomMatrix());
+        createBreeder(3, 1, 2, 11, 2, 7).breed(survivors, partition -> false);
+        List<WeightMatrix> generation = new ArrayList<>();
+        for (int partition = 0; partition < 4; partition++) {
+            generation.addAll(readPartition(partition));
+        }
+
+        createBreeder(11, 1, 2, 11, 2, 7).breed(survivors, partition -> false);
+        assertCondition(readPartition(0).equals(generation));
+    }
+
+    public void testTooManyCrossingoverIndividuals() {
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        createBreeder(3, 3, 0, 7, 2).breed(Arrays.asList(randomMatrix(), randomMatrix()), partition -> false);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                },
+                IllegalArgumentException.class,
+                "number of crossingover individuals must be less or equal to survivors number");
+    }
+
+    public void testInvalidParameters() {
+        assertExceptionThrown(
+                () -> createBreeder(0, 0, 0, 7, 2),
+                IllegalArgumentException.class,
+                "At least one matrix per file expected, but was 0");
+        assertExceptionThrown(
+                () -> createBreeder(3, 0, -1, 7, 2),
+                IllegalArgumentException.class,
+                "Number of mutated copies must be greater or equal to zero");
+        assertExceptionThrown(
+                () -> new ParallelBreeder(FILE_PATTERN, 3, FileHeader.NONE, Serializer::serializeWeightMatrix, 0, 0,
+                        MUTATION_PERCENTAGE, 7, new IntGeneratorFromString("1"), -1, 1),
+                IllegalArgumentException.class,
+                "Number of threads must not be negative, but was -1");
+    }
+
+    private static ParallelBreeder createBreeder(int matricesPerFile, int crossingoverIndividuals, int mutatedCopies,
+                                                 int population, int threads) {
+        return createBreeder(matricesPerFile, crossingoverIndividuals, mutatedCopies, population, threads, 1);
+    }
+
+    private static ParallelBreeder createBreeder(int matricesPerFile, int crossingoverIndividuals, int mutatedCopies,
+                                                 int population, int threads, long seed) {
+        return new ParallelBreeder(FILE_PATTERN, matricesPerFile, FileHeader.NONE, Serializer::serializeWeightMatrix,
+                crossingoverIndividuals, mutatedCopies, MUTATION_PERCENTAGE, population, new IntGeneratorFromString("1, 2"),
+                threads, seed);
+    }
+
+    private static List<byte[]> readFiles(int partitions) throws IOException {
+        List<byte[]> files = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            files.add(Files.readAllBytes(IO.getFile(fileName(partition)).toPath()));
+        }
+        return files;
+    }
+
+    private static long checksum(int partitions) throws IOException {
+        CRC32 crc = new CRC32();
+        for (byte[] file : readFiles(partitions)) {
+            crc.update(file);
+        }
+        return crc.getValue();
+    }
+
+    private static List<WeightMatrix> readPartition(int partition) throws IOException {
+        List<WeightMatrix> result = new ArrayList<>();
+        try (FileReader<WeightMatrix> reader = new FileReader<>(IO.getFile(fileName(partition)), WeightMatrix.SIZE_IN_BYTES,
+                Serializer::deserializeWeightMatrix)) {
+            WeightMatrix weightMatrix;
+            while ((weightMatrix = reader.read()) != null) {
+                result.add(weightMatrix);
+            }
+        }
+        return result;
+    }
+
+    private static String fileName(int partition) {
+        return FILE_PATTERN.replace("{}", Integer.toString(partition));
+    }
+}
@@ -0,0 +1,252 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionedFileWriter;
+import sergey.lavrenyuk.io.Serializer;
+import sergey.lavrenyuk.nn.Seeds;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.EarlyStopping;
+import sergey.lavrenyuk.nn.scoring.ParallelWeightMatrixScorer;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoreCache;
+import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
+import sergey.lavrenyuk.simulator.BattleSimulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.assertFileContents;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestParallelWeightMatrixScorer {
+
+    private static final String INPUT_FILE_PATTERN = "input_test_file_part{}.dat";
+    private static final String OUTPUT_FILE_PATTERN = "output_test_file_part{}.dat";
+    private static final int ROUNDS_PER_MATRIX = 2;
+
+    public static void main(String[] args) {
+        Runner.runTests(TestParallelWeightMatrixScorer.class);
+    }
+
+    public void testHappyPath() throws IOException {
+        List<List<WeightMatrix>> partitions = new ArrayList<>();
+        for (int partition = 0; partition < 5; partition++) {
+            List<WeightMatrix> matrices = new ArrayList<>();
+            for (int i = 0; i < partition + 1; i++) {
+                matrices.add(randomMatrix());
+            }
+            partitions.add(matrices);
+            createInputFile(partition, matrices);
+        }
+
+        long matricesScored = createScorer(3).score();
+        assertCondition(matricesScored == 15, String.format("Expected 15 matrices scored, but was %d", matricesScored));
+
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            assertCondition(!IO.getFile(inputFileName(partition)).exists());
+            assertCondition(!IO.getFile(outputFileName(partition) + ".tmp").exists());
+            assertCondition(readOutputFile(partition).equals(partitions.get(partition)),
+                    String.format("Unexpected matrices in partition %d", partition));
+        }
+    }
+
+    public void testScoringIsResumedFromRemainingPartitions() throws IOException {
+        // partition 0 was scored before the interruption, partition 1 was in progress
+        byte[] scoredPartition = new byte[] {1, 2, 3};
+        createTestFile(outputFileName(0), scoredPartition);
+        createTestFile(outputFileName(1) + ".tmp", new byte[] {4, 5});
+
+        List<WeightMatrix> matrices = new ArrayList<>();
+        matrices.add(randomMatrix());
+        matrices.add(randomMatrix());
+        createInputFile(1, matrices);
+
+        long matricesScored = createScorer(2).score();
+        assertCondition(matricesScored == 2, String.format("Expected 2 matrices scored, but was %d", matricesScored));
+
+        assertFileContents(outputFileName(0), scoredPartition);
+        assertCondition(readOutputFile(1).equals(matrices));
+        assertCondition(!IO.getFile(outputFileName(1) + ".tmp").exists());
+    }
+
+    public void testManifests() throws IOException {
+        for (int partition = 0; partition < 3; partition++) {
+            createInputFile(partition, Arrays.asList(randomMatrix(), randomMatrix()));
+        }
+        PartitionManifest.rebuild(INPUT_FILE_PATTERN, PartitionManifest.State.PENDING);
+        PartitionManifest.rebuild(OUTPUT_FILE_PATTERN, PartitionManifest.State.SCORED);
+
+        createScorer(2).score();
+
+        assertCondition(PartitionManifest.find(INPUT_FILE_PATTERN).getPartitions().isEmpty());
+        List<PartitionManifest.Partition> scoredPartitions = PartitionManifest.find(OUTPUT_FILE_PATTERN).getPartitions();
+        assertCondition(scoredPartitions.equals(Arrays.asList(
+                new PartitionManifest.Partition(0, 2, PartitionManifest.State.SCORED),
+                new PartitionManifest.Partition(1, 2, PartitionManifest.State.SCORED),
+                new PartitionManifest.Partition(2, 2, PartitionManifest.State.SCORED))), scoredPartitions.toString());
+    }
+
+    public void testPartitionsAreScoredAsTheyArePublished() throws IOException {
+        List<WeightMatrix> matrices = Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix());
+        AtomicBoolean inputComplete = new AtomicBoolean();
+        AtomicInteger partitionsScoredWhilePublishing = new AtomicInteger();
+
+        // the next partition is published only once the previous one is scored
+        Thread publisher = new Thread(() -> {
+            try {
+                for (int partition = 0; partition < matrices.size(); partition++) {
+                    try (PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>(INPUT_FILE_PATTERN, 1,
+                            FileHeader.NONE, Serializer::serializeWeightMatrix, partition)) {
+                        writer.write(matrices.get(partition));
+                    }
+                    long deadline = System.currentTimeMillis() + 10_000;
+                    while (!IO.getFile(outputFileName(partition)).exists() && System.currentTimeMillis() < deadline) {
+                        Thread.sleep(1);
+                    }
+                    if (IO.getFile(outputFileName(partition)).exists()) {
+                        partitionsScoredWhilePublishing.incrementAndGet();
+                    }
+                }
+            } catch (IOException | InterruptedException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                inputComplete.set(true);
+            }
+        });
+        publisher.start();
+
+        long matricesScored = createScorer(2).score(inputComplete::get);
+        assertCondition(matricesScored == 3, String.format("Expected 3 matrices scored, but was %d", matricesScored));
+        assertCondition(partitionsScoredWhilePublishing.get() == 3);
+        for (int partition = 0; partition < matrices.size(); partition++) {
+            assertCondition(readOutputFile(partition).equals(Collections.singletonList(matrices.get(partition))));
+        }
+    }
+
+    public void testBrokenInputFile() throws IOException {
+        createTestFile(inputFileName(0), new byte[] {1, 2, 3});
+        assertExceptionThrown(
+                () -> createScorer(1).score(),
+                IllegalArgumentException.class,
+                "doesn't contain an integer number of input items");
+        assertCondition(IO.getFile(inputFileName(0)).exists());
+        assertCondition(!IO.getFile(outputFileName(0)).exists());
+    }
+
+    public void testScoresDoNotDependOnThreads() throws IOException {
+        List<List<WeightMatrix>> partitions = new ArrayList<>();
+        for (int partition = 0; partition < 8; partition++) {
+            partitions.add(Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix()));
+            createInputFile(partition, partitions.get(partition));
+        }
+        createScorer(1).score();
+        List<byte[]> singleThreadOutput = new ArrayList<>();
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            singleThreadOutput.add(Files.readAllBytes(IO.getFile(outputFileName(partition)).toPath()));
+            createInputFile(partition, partitions.get(partition));
+        }
+
+        createScorer(8).score();
+        for (int partition = 0; partition < partitions.size(); partition++) {
+            assertCondition(Arrays.equals(singleThreadOutput.get(partition),
+                    Files.readAllBytes(IO.getFile(outputFileName(partition)).toPath())),
+                    String.format("partition %d differs", partition));
+        }
+    }
+
+    public void testScoresWithCacheDoNotDependOnThreads() throws IOException {
+        // the shared matrix is the last one of partition 0 and the first one of partition 1, and it's in the cache
+        WeightMatrix shared = randomMatrix();
+        List<List<WeightMatrix>> partitions = Arrays.asList(
+                Arrays.asList(randomMatrix(), randomMatrix(), randomMatrix(), shared),
+                Arrays.asList(shared, randomMatrix()));
+        File cacheFile = IO.getFile("score_cache.dat");
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(shared, Score.builder(1, 2, 10f));
+        }
+        byte[] cache = Files.readAllBytes(cacheFile.toPath());
+
+        List<byte[]> singleThreadOutput = new ArrayList<>();
+        for (int threads : new int[] {1, 2}) {
+            for (int partition = 0; partition < partitions.size(); partition++) {
+                createInputFile(partition, partitions.get(partition));
+            }
+            // the same files each time, as a replay with the same seed
+            createTestFile("score_cache.dat", cache);
+            try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+                createScorer(threads, scoreCache).score();
+            }
+
+            for (int partition = 0; partition < partitions.size(); partition++) {
+                byte[] output = Files.readAllBytes(IO.getFile(outputFileName(partition)).toPath());
+                if (threads == 1) {
+                    singleThreadOutput.add(output);
+                } else {
+                    assertCondition(Arrays.equals(singleThreadOutput.get(partition), output),
+                            String.format("partition %d differs", partition));
+                }
+            }
+        }
+    }
+
+    public void testNegativeThreads() {
+        assertExceptionThrown(
+                () -> createScorer(-1),
+                IllegalArgumentException.class,
+                "Number of threads must not be negative, but was -1");
+    }
+
+    private static ParallelWeightMatrixScorer createScorer(int threads) {
+        return createScorer(threads, ScoreCache.disabled());
+    }
+
+    private static ParallelWeightMatrixScorer createScorer(int threads, ScoreCache scoreCache) {
+        return new ParallelWeightMatrixScorer(INPUT_FILE_PATTERN, OUTPUT_FILE_PATTERN, ROUNDS_PER_MATRIX, threads,
+                partition -> new BattleSimulator(BattleSimulator.createEnemyBehavior("VelociRobot"),
+                        new Random(Seeds.derive(1, partition))),
+                EarlyStopping.disabled(), scoreCache);
+    }
+
+    private static void createInputFile(int partition, List<WeightMatrix> matrices) throws IOException {
+        byte[][] data = new byte[matrices.size()][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = Serializer.serializeWeightMatrix(matrices.get(i));
+        }
+        createTestFile(inputFileName(partition), concat(data));
+    }
+
+    private static List<WeightMatrix> readOutputFile(int partition) throws IOException {
+        List<WeightMatrix> result = new ArrayList<>();
+        try (FileReader<ScoredWeightMatrix> reader = new FileReader<>(IO.getFile(outputFileName(partition)),
+                ScoredWeightMatrix.SIZE_IN_BYTES, Serializer::deserializeScoredWeightMatrix)) {
+            ScoredWeightMatrix scoredWeightMatrix;
+            while ((scoredWeightMatrix = reader.read()) != null) {
+                result.add(scoredWeightMatrix.getWeightMatrix());
+            }
+        }
+        return result;
+    }
+
+    private static String inputFileName(int partition) {
+        return INPUT_FILE_PATTERN.replace("{}", Integer.toString(partition));
+    }
+
+    private static String outputFileName(int partition) {
+        return OUTPUT_FILE_PATTERN.replace("{}", Integer.toString(partition));
+    }
+}
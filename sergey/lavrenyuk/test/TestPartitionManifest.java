@@ -0,0 +1,177 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionManifest.Partition;
+import sergey.lavrenyuk.io.PartitionManifest.State;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+
+public class TestPartitionManifest {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestPartitionManifest.class);
+    }
+
+    public void testNoManifest() throws IOException {
+        assertCondition(PartitionManifest.find("abc{}.dat") == null);
+        assertCondition(!PartitionManifest.exists("abc{}.dat"));
+
+        // changes are ignored, the manifest is not created
+        PartitionManifest.publish("abc{}.dat", 0, 10, State.PENDING);
+        PartitionManifest.remove("abc{}.dat", 0);
+        assertCondition(!IO.getFile("abc.dat.manifest").exists());
+    }
+
+    public void testEmptyManifestFile() throws IOException {
+        // Robocode creates an empty file instead of a missing one
+        createTestFile("abc.dat.manifest");
+        assertCondition(!PartitionManifest.exists("abc{}.dat"));
+    }
+
+    public void testRebuild() throws IOException {
+        createTestFile("abc0.dat", new byte[1]);
+        createTestFile("abc2.dat", new byte[1]);
+        createTestFile("abcd.dat", new byte[1]);
+
+        PartitionManifest manifest = PartitionManifest.rebuild("abc{}.dat", State.SCORED);
+        assertCondition(manifest.getFile().equals(IO.getFile("abc.dat.manifest")));
+        assertCondition(manifest == PartitionManifest.find("abc{}.dat"));
+        assertCondition(manifest.getPartitions().equals(Arrays.asList(
+                new Partition(0, PartitionManifest.UNKNOWN_RECORDS, State.SCORED),
+                new Partition(2, PartitionManifest.UNKNOWN_RECORDS, State.SCORED))));
+        assertCondition(manifest.getIndexes().equals(Arrays.asList(0, 2)));
+        assertCondition(manifest.latestIndex() == 2);
+    }
+
+    public void testPublishAndRemove() throws IOException {
+        PartitionManifest manifest = PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        assertCondition(manifest.getPartitions().isEmpty());
+        assertCondition(manifest.latestIndex() == -1);
+
+        PartitionManifest.publish("abc{}.dat", 1, 100, State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 0, 100, State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 2, 50, State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 1, 98, State.SCORED);
+        PartitionManifest.remove("abc{}.dat", 0);
+        PartitionManifest.remove("abc{}.dat", 5);
+
+        assertCondition(manifest.getPartitions().equals(Arrays.asList(
+                new Partition(1, 98, State.SCORED),
+                new Partition(2, 50, State.PENDING))));
+        assertCondition(manifest.getPartition(2).getRecords() == 50);
+        assertCondition(manifest.getPartition(0) == null);
+    }
+
+    public void testConsumedPartitionsAreNotListed() throws IOException {
+        PartitionManifest manifest = PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 0, 100, State.SCORED);
+        PartitionManifest.publish("abc{}.dat", 1, 100, State.CONSUMED);
+
+        assertCondition(manifest.getIndexes().equals(Collections.singletonList(0)));
+        assertCondition(manifest.latestIndex() == 0);
+        assertCondition(manifest.getPartitions().size() == 2);
+
+        PartitionManifest.publish("abc{}.dat", 0, 100, State.CONSUMED);
+        assertCondition(manifest.getIndexes().isEmpty());
+        assertCondition(manifest.latestIndex() == -1);
+    }
+
+    public void testChangesOfAnotherProcess() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 0, 100, State.PENDING);
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Collections.singletonList(0)));
+
+        // appended lines are read, the incomplete last line is not
+        append("abc.dat.manifest", "1 100 PENDING\n2 100 PEN");
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Arrays.asList(0, 1)));
+        append("abc.dat.manifest", "DING\n");
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Arrays.asList(0, 1, 2)));
+
+        // the whole manifest is read again after compaction
+        createTestFile("abc.dat.manifest", "3 10 SCORED\n".getBytes(StandardCharsets.UTF_8));
+        assertCondition(PartitionManifest.find("abc{}.dat").getPartitions().equals(
+                Collections.singletonList(new Partition(3, 10, State.SCORED))));
+    }
+
+    public void testLongerCompactedManifestOfAnotherProcess() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 0, 100, State.PENDING);
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Collections.singletonList(0)));
+
+        // the compacted journal is longer, the length read so far ends in the middle of its line "12 100 PENDING"
+        long length = IO.getFile("abc.dat.manifest").length();
+        String line = "10 100 PENDING\n";
+        StringBuilder header = new StringBuilder("# partition manifest compacted by another process");
+        while (header.length() + 1 + 2 * line.length() + 1 < length) {
+            header.append(' ');
+        }
+        createTestFile("abc.dat.manifest", (header + "\n" + line + "11 100 PENDING\n12 100 PENDING\n")
+                .getBytes(StandardCharsets.UTF_8));
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Arrays.asList(10, 11, 12)));
+    }
+
+    public void testCompaction() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        for (int i = 0; i < 10_000; i++) {
+            PartitionManifest.publish("abc{}.dat", i % 10, i, State.PENDING);
+        }
+        long lines = Files.readAllLines(IO.getFile("abc.dat.manifest").toPath()).size();
+        assertCondition(lines < 300, String.format("%d lines", lines));
+    }
+
+    public void testCompactedManifestIsTheSame() throws IOException {
+        PartitionManifest manifest = PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        for (int i = 0; i < 1000; i++) {
+            PartitionManifest.publish("abc{}.dat", i % 7, i, (i % 2 == 0) ? State.PENDING : State.SCORED);
+        }
+        byte[] contents = Files.readAllBytes(IO.getFile("abc.dat.manifest").toPath());
+
+        // manifest is read from scratch as a manifest of another pattern
+        createTestFile("xyz.dat.manifest", contents);
+        assertCondition(manifest.getPartitions().equals(PartitionManifest.find("xyz{}.dat").getPartitions()));
+    }
+
+    public void testDamagedManifest() throws IOException {
+        createTestFile("abc.dat.manifest", "1 100 PENDING\nabc\n".getBytes(StandardCharsets.UTF_8));
+        assertCondition(PartitionManifest.find("abc{}.dat") == null);
+        createTestFile("abc.dat.manifest", "1 100 LOST\n".getBytes(StandardCharsets.UTF_8));
+        assertCondition(PartitionManifest.find("abc{}.dat") == null);
+        createTestFile("abc.dat.manifest", "1 100 SCORED\n".getBytes(StandardCharsets.UTF_8));
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Collections.singletonList(1)));
+    }
+
+    public void testDelete() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", State.PENDING);
+        assertCondition(PartitionManifest.exists("abc{}.dat"));
+        PartitionManifest.delete("abc{}.dat");
+        assertCondition(!PartitionManifest.exists("abc{}.dat"));
+        assertCondition(!IO.getFile("abc.dat.manifest").exists());
+    }
+
+    public void testFilePatternWithoutPlaceholder() {
+        assertExceptionThrown(() -> PartitionManifest.find("abc.dat"),
+                IllegalArgumentException.class, "file pattern must contain {} placeholder");
+    }
+
+    public void testStateFromString() {
+        assertCondition(State.fromString(" scored ") == State.SCORED);
+        assertExceptionThrown(() -> State.fromString("lost"),
+                IllegalArgumentException.class, "Unsupported partition state 'lost'");
+    }
+
+    private static void append(String fileName, String text) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(IO.getFile(fileName), true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,13 +1,19 @@
 package sergey.lavrenyuk.test;
 
+import sergey.lavrenyuk.io.FileHeader;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.io.PartitionedFileReader;
+import sergey.lavrenyuk.io.RandomAccessReader;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
 import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
 import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
@@ -36,4 +42,119 @@ public class TestPartitionedFileReader {
         assertCondition(wm21.equals(reader.read()));
         assertCondition(reader.read() == null);
     }
+
+    public void testFilesWithDifferentByteOrders() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        createTestFile("abc0.dat", concat(TestFileHeader.header(ByteOrder.LITTLE_ENDIAN),
+                Serializer.serializeWeightMatrix(wm0, ByteOrder.LITTLE_ENDIAN)));
+        createTestFile("abc1.dat", Serializer.serializeWeightMatrix(wm1));
+        createTestFile("abc2.dat", concat(TestFileHeader.header(ByteOrder.BIG_ENDIAN), Serializer.serializeWeightMatrix(wm2)));
+
+        try (PartitionedFileReader<WeightMatrix> reader =
+                     new PartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 3);
+            assertCondition(wm0.equals(reader.read()));
+            assertCondition(wm1.equals(reader.read()));
+            assertCondition(wm2.equals(reader.read()));
+            assertCondition(reader.read() == null);
+
+            reader.seek(0);
+            assertCondition(reader.skip(2));
+            assertCondition(wm2.equals(reader.read()));
+        }
+    }
+
+    public void testSeek() throws IOException {
+        WeightMatrix wm0 = randomMatrix();
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        WeightMatrix wm3 = randomMatrix();
+
+        // empty files in between must not break the index
+        createTestFile("abc0.dat", concat(Serializer.serializeWeightMatrix(wm0), Serializer.serializeWeightMatrix(wm1)));
+        createTestFile("abc1.dat", new byte[0]);
+        createTestFile("abc2.dat", Serializer.serializeWeightMatrix(wm2));
+        createTestFile("abc3.dat", new byte[0]);
+        createTestFile("abc4.dat", Serializer.serializeWeightMatrix(wm3));
+
+        try (PartitionedFileReader<WeightMatrix> reader =
+                     new PartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(reader.size() == 4);
+
+            reader.seek(3);
+            assertCondition(wm3.equals(reader.read()));
+            assertCondition(reader.position() == 4);
+            assertCondition(reader.read() == null);
+
+            reader.seek(1);
+            assertCondition(wm1.equals(reader.read()));
+            // next file is opened while reading sequentially
+            assertCondition(wm2.equals(reader.read()));
+
+            reader.seek(0);
+            assertCondition(reader.skip(2));
+            assertCondition(wm2.equals(reader.read()));
+            // skipping up to the end is successful, skipping past it is not
+            assertCondition(reader.skip(1));
+            assertCondition(!reader.skip(1));
+            assertCondition(reader.position() == 4);
+
+            reader.seek(4);
+            assertCondition(reader.read() == null);
+
+            assertExceptionThrown(() -> seek(reader, 5), IndexOutOfBoundsException.class, "Index 5 is out of [0, 4] range");
+        }
+    }
+
+    public void testDamagedBlocksAreSkipped() throws IOException {
+        WeightMatrix[] wms = {randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix(), randomMatrix()};
+        FileHeader header = FileHeader.of(ByteOrder.BIG_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 1);
+        TestFileHeader.writeMatrices("abc0.dat", header, wms[0], wms[1]);
+        TestFileHeader.writeMatrices("abc1.dat", header, wms[2]);
+        TestFileHeader.writeMatrices("abc2.dat", header, wms[3], wms[4]);
+        // the whole partition is damaged
+        TestFileReader.damageItem("abc1.dat", 0, 1);
+        TestFileReader.damageItem("abc2.dat", 0, 1);
+
+        try (PartitionedFileReader<WeightMatrix> reader =
+                     new PartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            // sizes are read from the headers, damaged blocks are found while reading
+            assertCondition(reader.size() == 5);
+            assertCondition(wms[0].equals(reader.read()));
+            assertCondition(wms[1].equals(reader.read()));
+            assertCondition(wms[4].equals(reader.read()));
+            assertCondition(reader.position() == 5);
+            assertCondition(reader.read() == null);
+
+            reader.seek(2);
+            assertCondition(wms[4].equals(reader.read()));
+            reader.seek(1);
+            assertCondition(wms[1].equals(reader.read()));
+        }
+    }
+
+    public void testBrokenFile() throws IOException {
+        createTestFile("abc0.dat", Serializer.serializeWeightMatrix(randomMatrix()));
+        createTestFile("abc1.dat", new byte[] {1, 2, 3});
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        new PartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                },
+                IllegalArgumentException.class,
+                "abc1.dat doesn't contain an integer number of input items");
+    }
+
+    static void seek(RandomAccessReader<?> reader, long index) {
+        try {
+            reader.seek(index);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 }
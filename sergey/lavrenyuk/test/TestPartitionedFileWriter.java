@@ -1,13 +1,23 @@
 package sergey.lavrenyuk.test;
 
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
+import sergey.lavrenyuk.io.PartitionedFiles;
+import sergey.lavrenyuk.io.PartitionedFileReader;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.io.PartitionedFileWriter;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
 import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Collections;
 
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertFileContents;
 import static sergey.lavrenyuk.test.base.TestUtils.concat;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
 import static sergey.lavrenyuk.test.base.TestUtils.createTestFiles;
 import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
@@ -38,4 +48,105 @@ public class TestPartitionedFileWriter {
         assertFileContents("abc1.dat", concat(Serializer.serializeWeightMatrix(wm21), Serializer.serializeWeightMatrix(wm22)));
         assertFileContents("abc2.dat", Serializer.serializeWeightMatrix(wm31));
     }
+
+    public void testHeader() throws IOException {
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>("abc{}.dat", 3,
+                FileHeader.of(ByteOrder.LITTLE_ENDIAN, WeightMatrix.SIZE_IN_BYTES, 2),
+                wm -> Serializer.serializeWeightMatrix(wm, ByteOrder.LITTLE_ENDIAN));
+
+        WeightMatrix wm11 = randomMatrix();
+        WeightMatrix wm12 = randomMatrix();
+        WeightMatrix wm13 = randomMatrix();
+        WeightMatrix wm21 = randomMatrix();
+        writer.write(wm11);
+        writer.write(wm12);
+        writer.write(wm13);
+        writer.write(wm21);
+        writer.close();
+
+        // each file has its own header with the number of its items, items are grouped into blocks with checksums
+        FileHeader header = FileHeader.read(IO.getFile("abc0.dat"));
+        assertCondition(header.getByteOrder() == ByteOrder.LITTLE_ENDIAN);
+        assertCondition(header.getItems() == 3);
+        assertCondition(FileHeader.read(IO.getFile("abc1.dat")).getItems() == 1);
+        assertCondition(IO.getFile("abc0.dat").length() == FileHeader.SIZE_IN_BYTES + 3 * WeightMatrix.SIZE_IN_BYTES + 2 * Integer.BYTES);
+        assertCondition(IO.getFile("abc1.dat").length() == FileHeader.SIZE_IN_BYTES + WeightMatrix.SIZE_IN_BYTES + Integer.BYTES);
+
+        try (PartitionedFileReader<WeightMatrix> reader =
+                     new PartitionedFileReader<>("abc{}.dat", WeightMatrix.SIZE_IN_BYTES, Serializer::deserializeWeightMatrix)) {
+            assertCondition(wm11.equals(reader.read()));
+            assertCondition(wm12.equals(reader.read()));
+            assertCondition(wm13.equals(reader.read()));
+            assertCondition(wm21.equals(reader.read()));
+            assertCondition(reader.read() == null);
+        }
+    }
+
+    public void testFilesArePublishedToManifest() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.PENDING);
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>("abc{}.dat", 2, Serializer::serializeWeightMatrix);
+        for (int i = 0; i < 5; i++) {
+            writer.write(randomMatrix());
+        }
+        // closed files are published right away
+        assertCondition(PartitionManifest.find("abc{}.dat").getIndexes().equals(Arrays.asList(0, 1)));
+        writer.close();
+
+        assertCondition(PartitionManifest.find("abc{}.dat").getPartitions().equals(Arrays.asList(
+                new PartitionManifest.Partition(0, 2, PartitionManifest.State.PENDING),
+                new PartitionManifest.Partition(1, 2, PartitionManifest.State.PENDING),
+                new PartitionManifest.Partition(2, 1, PartitionManifest.State.PENDING))));
+    }
+
+    public void testFilesAreNotVisibleUntilComplete() throws IOException {
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>("abc{}.dat", 2, Serializer::serializeWeightMatrix);
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        WeightMatrix wm3 = randomMatrix();
+
+        writer.write(wm1);
+        assertCondition(!PartitionedFiles.exists("abc{}.dat"));
+        assertCondition(IO.getFile("abc0.dat" + PartitionedFiles.TEMP_FILE_SUFFIX).exists());
+
+        writer.write(wm2);
+        writer.write(wm3);
+        assertCondition(PartitionedFiles.getFileIndexes("abc{}.dat").equals(Collections.singletonList(0)));
+        assertCondition(!IO.getFile("abc0.dat" + PartitionedFiles.TEMP_FILE_SUFFIX).exists());
+        assertFileContents("abc0.dat", concat(Serializer.serializeWeightMatrix(wm1), Serializer.serializeWeightMatrix(wm2)));
+
+        writer.close();
+        writer.close();
+        assertCondition(PartitionedFiles.getFileIndexes("abc{}.dat").equals(Arrays.asList(0, 1)));
+        assertCondition(!IO.getFile("abc1.dat" + PartitionedFiles.TEMP_FILE_SUFFIX).exists());
+        assertFileContents("abc1.dat", Serializer.serializeWeightMatrix(wm3));
+    }
+
+    public void testFileOfKilledWriterIsReplaced() throws IOException {
+        // the previous writer was killed in the middle of the file
+        createTestFile("abc0.dat" + PartitionedFiles.TEMP_FILE_SUFFIX, new byte[] {1, 2, 3});
+        assertCondition(!PartitionedFiles.exists("abc{}.dat"));
+
+        WeightMatrix wm = randomMatrix();
+        PartitionedFileWriter<WeightMatrix> writer = new PartitionedFileWriter<>("abc{}.dat", 2, Serializer::serializeWeightMatrix);
+        writer.write(wm);
+        writer.close();
+        assertFileContents("abc0.dat", Serializer.serializeWeightMatrix(wm));
+        assertCondition(!IO.getFile("abc0.dat" + PartitionedFiles.TEMP_FILE_SUFFIX).exists());
+    }
+
+    public void testFirstFileIndex() throws IOException {
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        WeightMatrix wm3 = randomMatrix();
+        PartitionedFileWriter<WeightMatrix> writer =
+                new PartitionedFileWriter<>("abc{}.dat", 2, FileHeader.NONE, Serializer::serializeWeightMatrix, 5);
+        writer.write(wm1);
+        writer.write(wm2);
+        writer.write(wm3);
+        writer.close();
+
+        assertCondition(!IO.getFile("abc0.dat").exists());
+        assertFileContents("abc5.dat", concat(Serializer.serializeWeightMatrix(wm1), Serializer.serializeWeightMatrix(wm2)));
+        assertFileContents("abc6.dat", Serializer.serializeWeightMatrix(wm3));
+    }
 }
@@ -1,12 +1,16 @@
 package sergey.lavrenyuk.test;
 
 import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
 import sergey.lavrenyuk.io.PartitionedFiles;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
@@ -144,4 +148,61 @@ public class TestPartitionedFiles {
         assertCondition(("../test_data/abc6.dat".equals(PartitionedFiles.nextFileName("../test_data/abc{}.dat"))));
         deepDelete(folder); // need to delete if manually since it is outside of standard test folder
     }
+
+    public void testLookupsUseManifest() throws IOException {
+        createTestFile("abc0.dat", new byte[1]);
+        createTestFile("abc2.dat", new byte[1]);
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.PENDING);
+        // files which are not in the manifest are not found
+        createTestFile("abc5.dat", new byte[1]);
+
+        assertCondition(PartitionedFiles.exists("abc{}.dat"));
+        assertCondition(PartitionedFiles.latestFileIndex("abc{}.dat") == 2);
+        assertCondition(PartitionedFiles.getFileIndexes("abc{}.dat").equals(Arrays.asList(0, 2)));
+        assertCondition(PartitionedFiles.asStream("abc{}.dat").map(File::getName).collect(Collectors.toList())
+                .equals(Arrays.asList("abc0.dat", "abc2.dat")));
+    }
+
+    public void testManifestWithoutPartitions() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.PENDING);
+        assertCondition(!PartitionedFiles.exists("abc{}.dat"));
+        assertCondition(PartitionedFiles.latestFileIndex("abc{}.dat") == -1);
+        assertCondition(!PartitionedFiles.getFileIndexes("abc{}.dat").iterator().hasNext());
+    }
+
+    public void testStaleManifestIsDeleted() throws IOException {
+        createTestFile("abc0.dat", new byte[1]);
+        createTestFile("abc1.dat", new byte[1]);
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.PENDING);
+        // e.g. deleted manually
+        IO.getFile("abc1.dat").delete();
+
+        assertCondition(PartitionedFiles.latestFileIndex("abc{}.dat") == 0);
+        assertCondition(!PartitionManifest.exists("abc{}.dat"));
+    }
+
+    public void testEmptyFileOfPartitionWithRecordsIsMissing() throws IOException {
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.PENDING);
+        PartitionManifest.publish("abc{}.dat", 0, 10, PartitionManifest.State.PENDING);
+        // Robocode creates an empty file instead of a missing one
+        createTestFile("abc0.dat");
+
+        assertCondition(PartitionedFiles.getFileIndexes("abc{}.dat").equals(Collections.singletonList(0)));
+        assertCondition(!PartitionManifest.exists("abc{}.dat"));
+    }
+
+    public void testDeleteAll() throws IOException {
+        createTestFile("abc0.dat", new byte[1]);
+        createTestFile("abc1.dat", new byte[1]);
+        PartitionedFiles.deleteAll("abc{}.dat");
+        assertCondition(!PartitionedFiles.exists("abc{}.dat"));
+
+        createTestFile("abc0.dat", new byte[1]);
+        createTestFile("abc1.dat", new byte[1]);
+        PartitionManifest.rebuild("abc{}.dat", PartitionManifest.State.SCORED);
+        PartitionedFiles.deleteAll("abc{}.dat");
+        assertCondition(!IO.getFile("abc0.dat").exists());
+        assertCondition(!IO.getFile("abc1.dat").exists());
+        assertCondition(PartitionManifest.find("abc{}.dat").getPartitions().isEmpty());
+    }
 }
@@ -0,0 +1,141 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.nn.training.PipelineCheckpoint;
+import sergey.lavrenyuk.nn.training.PipelineCheckpoint.Stage;
+
+import java.io.File;
+import java.io.IOException;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
+
+public class TestPipelineCheckpoint {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestPipelineCheckpoint.class);
+    }
+
+    public void testStagesLoop() {
+        assertCondition(Stage.CREATE_INITIAL_GENERATION.next() == Stage.SCORE);
+        assertCondition(Stage.SCORE.next() == Stage.EXTRACT_SURVIVORS);
+        assertCondition(Stage.EXTRACT_SURVIVORS.next() == Stage.REMOVE_SCORED_GENERATION);
+        assertCondition(Stage.REMOVE_SCORED_GENERATION.next() == Stage.CREATE_NEXT_GENERATION);
+        assertCondition(Stage.CREATE_NEXT_GENERATION.next() == Stage.SCORE);
+    }
+
+    public void testFirstStage() {
+        assertCondition(Stage.first(true, true, true) == Stage.SCORE);
+        assertCondition(Stage.first(true, false, false) == Stage.SCORE);
+        assertCondition(Stage.first(false, true, true) == Stage.EXTRACT_SURVIVORS);
+        assertCondition(Stage.first(false, false, true) == Stage.CREATE_NEXT_GENERATION);
+        assertCondition(Stage.first(false, false, false) == Stage.CREATE_INITIAL_GENERATION);
+    }
+
+    public void testNoCheckpoint() throws IOException {
+        assertCondition(PipelineCheckpoint.load(IO.getFile("checkpoint.properties")) == null);
+        // Robocode creates an empty file instead of a missing one
+        createTestFile("checkpoint.properties");
+        assertCondition(PipelineCheckpoint.load(IO.getFile("checkpoint.properties")) == null);
+    }
+
+    public void testResume() throws IOException {
+        File file = IO.getFile("checkpoint.properties");
+        PipelineCheckpoint checkpoint = new PipelineCheckpoint(file, Stage.CREATE_INITIAL_GENERATION);
+        checkpoint.complete(10);
+        checkpoint.complete(20);
+        checkpoint.complete(30);
+        assertCondition(checkpoint.getStage() == Stage.REMOVE_SCORED_GENERATION);
+        assertCondition(checkpoint.getGenerations() == 0);
+
+        // survivors of a generation are complete once the scored generation is removed
+        checkpoint.complete(40);
+        assertCondition(checkpoint.getGenerations() == 1);
+        checkpoint.complete(50);
+        checkpoint.complete(60);
+        assertCondition(checkpoint.getStage() == Stage.EXTRACT_SURVIVORS);
+
+        PipelineCheckpoint loaded = PipelineCheckpoint.load(file);
+        assertCondition(loaded.getFile().equals(file));
+        assertCondition(loaded.getStage() == Stage.EXTRACT_SURVIVORS);
+        assertCondition(loaded.getGenerations() == 1);
+        assertCondition(loaded.getStageMillis(Stage.CREATE_INITIAL_GENERATION) == 10);
+        assertCondition(loaded.getStageMillis(Stage.SCORE) == 20 + 60);
+        assertCondition(loaded.getStageMillis(Stage.EXTRACT_SURVIVORS) == 30);
+        assertCondition(loaded.getStageMillis(Stage.REMOVE_SCORED_GENERATION) == 40);
+        assertCondition(loaded.getStageMillis(Stage.CREATE_NEXT_GENERATION) == 50);
+        assertCondition(!IO.getFile("checkpoint.properties.tmp").exists());
+    }
+
+    public void testStageWithoutTime() throws IOException {
+        File file = IO.getFile("checkpoint.properties");
+        new PipelineCheckpoint(file, Stage.CREATE_NEXT_GENERATION).save();
+
+        PipelineCheckpoint loaded = PipelineCheckpoint.load(file);
+        assertCondition(loaded.getStage() == Stage.CREATE_NEXT_GENERATION);
+        assertCondition(loaded.getGenerations() == 0);
+        assertCondition(loaded.getStageMillis(Stage.SCORE) == 0);
+    }
+
+    public void testExtraction() throws IOException {
+        File file = IO.getFile("checkpoint.properties");
+        PipelineCheckpoint checkpoint = new PipelineCheckpoint(file, Stage.SCORE);
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        checkpoint.startExtraction(3, 16);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                },
+                IllegalStateException.class,
+                "Survivors can't be extracted at SCORE stage");
+
+        checkpoint.complete(10);
+        assertCondition(checkpoint.getSurvivorsIndex() == PipelineCheckpoint.NO_SURVIVORS_INDEX);
+        checkpoint.startExtraction(3, 16);
+
+        // the extraction is resumed with the same survivors file
+        PipelineCheckpoint loaded = PipelineCheckpoint.load(file);
+        assertCondition(loaded.getStage() == Stage.EXTRACT_SURVIVORS);
+        assertCondition(loaded.getSurvivorsIndex() == 3);
+        assertCondition(loaded.getWinRatioLength() == 16);
+
+        loaded.complete(20);
+        assertCondition(loaded.getSurvivorsIndex() == PipelineCheckpoint.NO_SURVIVORS_INDEX);
+        assertCondition(PipelineCheckpoint.load(file).getSurvivorsIndex() == PipelineCheckpoint.NO_SURVIVORS_INDEX);
+    }
+
+    public void testDelete() throws IOException {
+        File file = IO.getFile("checkpoint.properties");
+        PipelineCheckpoint checkpoint = new PipelineCheckpoint(file, Stage.SCORE);
+        checkpoint.save();
+        assertCondition(file.exists());
+
+        checkpoint.delete();
+        assertCondition(PipelineCheckpoint.load(file) == null);
+    }
+
+    public void testDamagedCheckpoint() throws IOException {
+        createTestFile("checkpoint.properties", "stage=SCORE\n".getBytes());
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        PipelineCheckpoint.load(IO.getFile("checkpoint.properties"));
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                },
+                IllegalArgumentException.class,
+                "Property 'generations' not found in checkpoint");
+    }
+
+    public void testStageFromString() {
+        assertCondition(Stage.fromString(" extract_survivors ") == Stage.EXTRACT_SURVIVORS);
+        assertExceptionThrown(
+                () -> Stage.fromString("breed"),
+                IllegalArgumentException.class,
+                "Unsupported pipeline stage 'breed'");
+    }
+}
@@ -0,0 +1,106 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.Network;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedNeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static sergey.lavrenyuk.test.base.TestUtils.allocatedBytes;
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestQuantizedNeuralNetwork {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestQuantizedNeuralNetwork.class);
+    }
+
+    public void testCloseToFloatNetwork() {
+        Random random = new Random();
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+        float[] quantizedOutput = new float[WeightMatrix.OUTPUT_NEURONS];
+
+        for (int attempt = 0; attempt < 100; attempt++) {
+            QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.INT8);
+            for (int i = 0; i < input.length; i++) {
+                input[i] = 3 * random.nextFloat() - 1.5f; // some values are out of [-1, 1] range on purpose
+            }
+            // the only difference from the float network of the same weights is the neuron values quantization
+            new NeuralNetwork(quantized.dequantize()).process(input, output);
+            new QuantizedNeuralNetwork(quantized).process(input, quantizedOutput);
+            for (int o = 0; o < output.length; o++) {
+                assertCondition(Math.abs(output[o] - quantizedOutput[o]) < 0.1f,
+                        String.format("output %d: %f != %f", o, output[o], quantizedOutput[o]));
+            }
+        }
+    }
+
+    public void testExactResult() {
+        // hidden neuron i is the input i, output neuron o is the hidden neuron o with the weight 0.5
+        float[] weights = new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER];
+        for (int i = 0; i < WeightMatrix.INPUT_NEURONS; i++) {
+            weights[WeightMatrix.inputToHiddenWeightIndex(i, i)] = 1;
+        }
+        for (int o = 0; o < WeightMatrix.OUTPUT_NEURONS; o++) {
+            weights[WeightMatrix.hiddenToOutputWeightIndex(o, o)] = 0.5f;
+        }
+        Network network = QuantizedNeuralNetwork.create(
+                QuantizedWeightMatrix.quantize(new WeightMatrix(weights), QuantizedWeightMatrix.Precision.INT8));
+
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+        network.process(new float[] {1, -1, 2, 0, 0, 0, 0, 0, 0, 0}, output);
+        assertCondition(Arrays.equals(new float[] {0.5f, -0.5f, 0.5f, 0}, output), Arrays.toString(output));
+    }
+
+    public void testFloat16NetworkUsesFloatArithmetic() {
+        QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.FLOAT16);
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        Arrays.fill(input, 0.3f);
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+
+        QuantizedNeuralNetwork.create(quantized).process(input, output);
+        assertCondition(Arrays.equals(new NeuralNetwork(quantized.dequantize()).process(input), output));
+    }
+
+    public void testFloat16MatrixIsNotEvaluatedWithIntegers() {
+        QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.FLOAT16);
+        assertExceptionThrown(
+                () -> new QuantizedNeuralNetwork(quantized),
+                IllegalStateException.class,
+                "FLOAT16 matrix doesn't have INT8 weights");
+    }
+
+    public void testInvalidInputSize() {
+        QuantizedNeuralNetwork network = new QuantizedNeuralNetwork(
+                QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.INT8));
+        assertExceptionThrown(
+                () -> network.process(new float[1], new float[WeightMatrix.OUTPUT_NEURONS]),
+                IllegalArgumentException.class,
+                "10 input neurons expected, but found 1");
+    }
+
+    public void testProcessDoesNotAllocate() {
+        final int calls = 100_000;
+        QuantizedNeuralNetwork network = new QuantizedNeuralNetwork(
+                QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.INT8));
+        float[] input = new float[WeightMatrix.INPUT_NEURONS];
+        Arrays.fill(input, 0.5f);
+        float[] output = new float[WeightMatrix.OUTPUT_NEURONS];
+
+        Runnable execution = () -> {
+            for (int i = 0; i < calls; i++) {
+                network.process(input, output);
+            }
+        };
+        allocatedBytes(execution); // warm up, so JIT compilation doesn't affect the measurement
+
+        long allocated = allocatedBytes(execution);
+        assertCondition(allocated < calls, String.format("%d bytes allocated during %d calls", allocated, calls));
+    }
+}
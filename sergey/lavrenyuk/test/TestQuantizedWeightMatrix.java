@@ -0,0 +1,135 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrix;
+
+import static sergey.lavrenyuk.nn.QuantizedWeightMatrix.fromFloat16;
+import static sergey.lavrenyuk.nn.QuantizedWeightMatrix.toFloat16;
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestQuantizedWeightMatrix {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestQuantizedWeightMatrix.class);
+    }
+
+    public void testFloat16Conversion() {
+        assertCondition(toFloat16(0f) == 0);
+        assertCondition(toFloat16(-0f) == (short) 0x8000);
+        assertCondition(toFloat16(1f) == 0x3C00);
+        assertCondition(toFloat16(-2f) == (short) 0xC000);
+        assertCondition(toFloat16(65504f) == 0x7BFF);
+        // too large and too small values
+        assertCondition(toFloat16(1e6f) == 0x7C00);
+        assertCondition(toFloat16(-1e6f) == (short) 0xFC00);
+        assertCondition(toFloat16(1e-10f) == 0);
+        // the smallest subnormal
+        assertCondition(toFloat16(0x1p-24f) == 1);
+        // ties are rounded to even
+        assertCondition(toFloat16(1 + 0x1p-11f) == 0x3C00);
+        assertCondition(toFloat16(1 + 3 * 0x1p-11f) == 0x3C02);
+        assertCondition(Float.isNaN(fromFloat16(toFloat16(Float.NaN))));
+        assertCondition(fromFloat16(toFloat16(Float.NEGATIVE_INFINITY)) == Float.NEGATIVE_INFINITY);
+    }
+
+    public void testEveryFloat16ValueIsConvertedBack() {
+        for (int bits = 0; bits <= 0xFFFF; bits++) {
+            float value = fromFloat16((short) bits);
+            if (!Float.isNaN(value)) {
+                assertCondition(toFloat16(value) == (short) bits, String.format("%04x: %s", bits, value));
+            }
+        }
+    }
+
+    public void testFloat16Precision() {
+        WeightMatrix weightMatrix = randomMatrix();
+        QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(weightMatrix, QuantizedWeightMatrix.Precision.FLOAT16);
+        assertCondition(quantized.getPrecision() == QuantizedWeightMatrix.Precision.FLOAT16);
+
+        float[] weights = weightMatrix.getWeights();
+        float[] dequantized = quantized.dequantize().getWeights();
+        for (int i = 0; i < weights.length; i++) {
+            // 11 significant bits, weights smaller than 2^-14 are subnormal and have an absolute error instead
+            assertCondition(Math.abs(weights[i] - dequantized[i]) <= Math.max(Math.abs(weights[i]) * 0x1p-11f, 0x1p-25f));
+        }
+    }
+
+    public void testInt8Precision() {
+        WeightMatrix weightMatrix = randomMatrix();
+        QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(weightMatrix, QuantizedWeightMatrix.Precision.INT8);
+        assertCondition(quantized.getPrecision() == QuantizedWeightMatrix.Precision.INT8);
+
+        float[] weights = weightMatrix.getWeights();
+        float[] dequantized = quantized.dequantize().getWeights();
+        for (int row = 0; row < QuantizedWeightMatrix.ROWS; row++) {
+            float scale = quantized.getRowScales()[row];
+            float maxAbsWeight = 0;
+            int from = QuantizedWeightMatrix.rowOffset(row);
+            for (int i = from; i < from + QuantizedWeightMatrix.rowLength(row); i++) {
+                maxAbsWeight = Math.max(maxAbsWeight, Math.abs(weights[i]));
+                assertCondition(Math.abs(quantized.getInt8Weights()[i]) <= QuantizedWeightMatrix.INT8_MAX_VALUE);
+                // half of the step and the float rounding of the multiplication
+                assertCondition(Math.abs(weights[i] - dequantized[i]) <= scale * 0.501f);
+            }
+            assertCondition(scale == maxAbsWeight / QuantizedWeightMatrix.INT8_MAX_VALUE);
+        }
+    }
+
+    public void testRowsCoverAllWeights() {
+        int weights = 0;
+        for (int row = 0; row < QuantizedWeightMatrix.ROWS; row++) {
+            assertCondition(QuantizedWeightMatrix.rowOffset(row) == weights);
+            weights += QuantizedWeightMatrix.rowLength(row);
+        }
+        assertCondition(weights == WeightMatrix.TOTAL_WEIGHTS_NUMBER);
+    }
+
+    public void testZeroRow() {
+        float[] weights = randomMatrix().getWeights().clone();
+        for (int i = 0; i < QuantizedWeightMatrix.rowLength(0); i++) {
+            weights[i] = 0;
+        }
+        QuantizedWeightMatrix quantized =
+                QuantizedWeightMatrix.quantize(new WeightMatrix(weights), QuantizedWeightMatrix.Precision.INT8);
+        assertCondition(quantized.getRowScales()[0] == 0);
+        for (int i = 0; i < QuantizedWeightMatrix.rowLength(0); i++) {
+            assertCondition(quantized.getInt8Weights()[i] == 0);
+            assertCondition(quantized.dequantize().getWeights()[i] == 0);
+        }
+    }
+
+    public void testWeightsOfOtherPrecision() {
+        QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(randomMatrix(), QuantizedWeightMatrix.Precision.INT8);
+        assertExceptionThrown(
+                quantized::getFloat16Weights,
+                IllegalStateException.class,
+                "INT8 matrix doesn't have FLOAT16 weights");
+    }
+
+    public void testInvalidWeightsNumber() {
+        assertExceptionThrown(
+                () -> new QuantizedWeightMatrix(new short[3]),
+                IllegalArgumentException.class,
+                String.format("%d weights expected, but found 3", WeightMatrix.TOTAL_WEIGHTS_NUMBER));
+        assertExceptionThrown(
+                () -> new QuantizedWeightMatrix(new byte[WeightMatrix.TOTAL_WEIGHTS_NUMBER], new float[1]),
+                IllegalArgumentException.class,
+                String.format("%d row scales expected, but found 1", QuantizedWeightMatrix.ROWS));
+    }
+
+    public void testMemoryFootprint() {
+        assertCondition(QuantizedWeightMatrix.Precision.FLOAT16.getSizeInBytes() * 2 == WeightMatrix.SIZE_IN_BYTES);
+        assertCondition(QuantizedWeightMatrix.Precision.INT8.getSizeInBytes() * 2.9 < WeightMatrix.SIZE_IN_BYTES);
+        assertCondition(QuantizedWeightMatrix.Precision.INT8.getSizeInBytes() % Integer.BYTES == 0);
+    }
+
+    public void testPrecisionFromString() {
+        assertCondition(QuantizedWeightMatrix.Precision.fromString(" Int8 ") == QuantizedWeightMatrix.Precision.INT8);
+        assertExceptionThrown(
+                () -> QuantizedWeightMatrix.Precision.fromString("int4"),
+                IllegalArgumentException.class,
+                "Unsupported precision 'int4'");
+    }
+}
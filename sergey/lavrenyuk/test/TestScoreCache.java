@@ -0,0 +1,201 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoreCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithDelta;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
+
+public class TestScoreCache {
+
+    private static final String CACHE_FILE_NAME = "score_cache.dat";
+
+    public static void main(String[] args) {
+        Runner.runTests(TestScoreCache.class);
+    }
+
+    public void testScoresArePersisted() throws IOException {
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            assertCondition(scoreCache.get(wm1) == null);
+            scoreCache.put(wm1, Score.builder(3, 10, -150f));
+            scoreCache.put(wm2, Score.builder(1, 10, -500f));
+            scoreCache.put(wm1, Score.builder(8, 20, 100f));
+        }
+        assertCondition(cacheFile.length() == 3 * ScoreCache.RECORD_SIZE_IN_BYTES);
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.REUSE)) {
+            assertCondition(scoreCache.size() == 2);
+            assertScore(scoreCache.get(wm1), 8, 20, 100f);
+            assertScore(scoreCache.get(wm2), 1, 10, -500f);
+            // the same weights in another instance
+            assertScore(scoreCache.get(new WeightMatrix(wm2.getWeights().clone())), 1, 10, -500f);
+            assertCondition(scoreCache.get(randomMatrix()) == null);
+        }
+        // duplicates are removed on load
+        assertCondition(cacheFile.length() == 2 * ScoreCache.RECORD_SIZE_IN_BYTES);
+    }
+
+    public void testPartialRecordIsCutOff() throws IOException {
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(wm1, Score.builder(3, 10, -150f));
+        }
+        // the process was killed while the second record was flushed
+        Files.write(cacheFile.toPath(), new byte[ScoreCache.RECORD_SIZE_IN_BYTES / 2], StandardOpenOption.APPEND);
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            assertCondition(scoreCache.size() == 1);
+            assertScore(scoreCache.get(wm1), 3, 10, -150f);
+            scoreCache.put(wm2, Score.builder(1, 10, -500f));
+        }
+        assertCondition(cacheFile.length() == 2 * ScoreCache.RECORD_SIZE_IN_BYTES);
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.REUSE)) {
+            assertScore(scoreCache.get(wm1), 3, 10, -150f);
+            assertScore(scoreCache.get(wm2), 1, 10, -500f);
+        }
+    }
+
+    public void testHashStartingWithHeaderMagicIsNotHeader() throws IOException {
+        WeightMatrix wm = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        // a record with a hash starting with the header magic number, in the big endian layout the cache writes
+        ByteBuffer record = ByteBuffer.allocate(ScoreCache.RECORD_SIZE_IN_BYTES);
+        record.putInt(FileHeader.MAGIC);
+        record.position(ScoreCache.RECORD_SIZE_IN_BYTES - 2 * Integer.BYTES - Float.BYTES);
+        record.putInt(3).putInt(10).putFloat(-150f);
+        Files.write(cacheFile.toPath(), record.array());
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            assertCondition(scoreCache.size() == 1);
+            scoreCache.put(wm, Score.builder(1, 10, -500f));
+        }
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.REUSE)) {
+            assertCondition(scoreCache.size() == 2);
+            assertScore(scoreCache.get(wm), 1, 10, -500f);
+        }
+    }
+
+    public void testCachedScoreIsNotModifiedByCaller() throws IOException {
+        WeightMatrix wm = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            Score.Builder score = Score.builder(1, 1, 10f);
+            scoreCache.put(wm, score);
+            score.addRoundResult(true, 10f);
+        }
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.get(wm).addRoundResult(true, 10f);
+            assertScore(scoreCache.get(wm), 1, 1, 10f);
+        }
+    }
+
+    public void testScoresAreReadFromSnapshot() throws IOException {
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(wm1, Score.builder(3, 10, -150f));
+        }
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(wm1, Score.builder(5, 20, -100f));
+            scoreCache.put(wm2, Score.builder(1, 10, -500f));
+            // scores put after loading are not read
+            assertScore(scoreCache.get(wm1), 3, 10, -150f);
+            assertCondition(scoreCache.get(wm2) == null);
+            assertCondition(scoreCache.size() == 2);
+        }
+
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            assertScore(scoreCache.get(wm1), 5, 20, -100f);
+            assertScore(scoreCache.get(wm2), 1, 10, -500f);
+        }
+    }
+
+    public void testStoredScoreDoesNotDependOnOrder() throws IOException {
+        WeightMatrix wm = randomMatrix();
+        Score.Builder[] scores = {Score.builder(3, 10, -150f), Score.builder(4, 10, -200f), Score.builder(4, 10, -100f)};
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        for (int[] order : new int[][] {{0, 1, 2}, {2, 1, 0}, {1, 2, 0}}) {
+            cacheFile.delete();
+            try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+                for (int i : order) {
+                    scoreCache.put(wm, scores[i]);
+                }
+            }
+            try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.REUSE)) {
+                assertScore(scoreCache.get(wm), 4, 10, -100f);
+            }
+        }
+    }
+
+    public void testOnlyRetainedMatricesAreKept() throws IOException {
+        WeightMatrix survivor = randomMatrix();
+        WeightMatrix notSurvivor = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(survivor, Score.builder(3, 10, -150f));
+            scoreCache.put(notSurvivor, Score.builder(1, 10, -500f));
+            scoreCache.put(survivor, Score.builder(5, 20, -100f));
+        }
+
+        ScoreCache.retain(cacheFile, Arrays.asList(survivor, randomMatrix()));
+        assertCondition(cacheFile.length() == ScoreCache.RECORD_SIZE_IN_BYTES);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.REUSE)) {
+            assertCondition(scoreCache.size() == 1);
+            assertScore(scoreCache.get(survivor), 5, 20, -100f);
+            assertCondition(scoreCache.get(notSurvivor) == null);
+        }
+
+        // nothing to retain from a cache that was never written
+        cacheFile.delete();
+        ScoreCache.retain(cacheFile, Collections.singletonList(survivor));
+        assertCondition(!cacheFile.exists());
+    }
+
+    public void testOffMode() throws IOException {
+        WeightMatrix wm = randomMatrix();
+        File cacheFile = IO.getFile(CACHE_FILE_NAME);
+        try (ScoreCache scoreCache = ScoreCache.load(cacheFile, ScoreCache.Mode.OFF)) {
+            scoreCache.put(wm, Score.builder(1, 1, 10f));
+            assertCondition(scoreCache.get(wm) == null);
+        }
+        assertCondition(!cacheFile.exists());
+    }
+
+    public void testModeFromString() {
+        assertCondition(ScoreCache.Mode.fromString("accumulate") == ScoreCache.Mode.ACCUMULATE);
+        assertCondition(ScoreCache.Mode.fromString(" Reuse ") == ScoreCache.Mode.REUSE);
+        assertExceptionThrown(
+                () -> ScoreCache.Mode.fromString("always"),
+                IllegalArgumentException.class,
+                "Unsupported score cache mode 'always'");
+    }
+
+    private static void assertScore(Score.Builder score, int wins, int rounds, float totalEnergyDiff) {
+        assertCondition(score.getWins() == wins, String.format("Expected %d wins, but was %d", wins, score.getWins()));
+        assertCondition(score.getRounds() == rounds, String.format("Expected %d rounds, but was %d", rounds, score.getRounds()));
+        assertEqualsWithDelta(score.getTotalEnergyDiff(), totalEnergyDiff);
+    }
+}
@@ -0,0 +1,45 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.Seeds;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+
+public class TestSeeds {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestSeeds.class);
+    }
+
+    public void testSamePathSameSeed() {
+        assertCondition(Seeds.derive(42, 3, 5) == Seeds.derive(42, 3, 5));
+        assertCondition(Seeds.derive(42, 3, 5) == Seeds.derive(Seeds.derive(42, 3), 5));
+        assertCondition(Seeds.derive(42) == 42);
+    }
+
+    public void testDifferentPathsDifferentSeeds() {
+        assertCondition(Seeds.derive(42, 3, 5) != Seeds.derive(42, 5, 3));
+        assertCondition(Seeds.derive(42, 3, 5) != Seeds.derive(43, 3, 5));
+        assertCondition(Seeds.derive(42, 0) != Seeds.derive(42, 0, 0));
+
+        Set<Long> seeds = new HashSet<>();
+        for (int generation = 0; generation < 100; generation++) {
+            for (int matrix = 0; matrix < 1000; matrix++) {
+                seeds.add(Seeds.derive(0, generation, matrix));
+            }
+        }
+        assertCondition(seeds.size() == 100 * 1000);
+    }
+
+    public void testAdjacentSeedsAreMixed() {
+        // derived seeds of adjacent indexes differ in about half of the bits
+        int differentBits = 0;
+        for (int index = 0; index < 1000; index++) {
+            differentBits += Long.bitCount(Seeds.derive(1, index) ^ Seeds.derive(1, index + 1));
+        }
+        assertCondition(differentBits > 1000 * 28 && differentBits < 1000 * 36,
+                String.format("%d bits differ", differentBits));
+    }
+}
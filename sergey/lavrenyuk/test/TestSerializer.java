@@ -1,15 +1,22 @@
 package sergey.lavrenyuk.test;
 
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
 import sergey.lavrenyuk.nn.scoring.Score;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
 import sergey.lavrenyuk.nn.WeightMatrix;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static sergey.lavrenyuk.io.Serializer.deserializeQuantizedWeightMatrix;
 import static sergey.lavrenyuk.io.Serializer.deserializeScoreFromScoredWeightMatrix;
 import static sergey.lavrenyuk.io.Serializer.deserializeScoredWeightMatrix;
 import static sergey.lavrenyuk.io.Serializer.deserializeWeightMatrixFromScoredWeightMatrix;
+import static sergey.lavrenyuk.io.Serializer.serializeQuantizedWeightMatrix;
 import static sergey.lavrenyuk.io.Serializer.serializeScoredWeightMatrix;
 import static sergey.lavrenyuk.io.Serializer.serializeWeightMatrix;
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
 import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
 import static sergey.lavrenyuk.io.Serializer.deserializeWeightMatrix;
@@ -51,6 +58,82 @@ public class TestSerializer {
                 deserializeWeightMatrixFromScoredWeightMatrix(serializeScoredWeightMatrix(scoredWeightMatrix))));
     }
 
+    public void testByteOrder() {
+        Score score = createTestScore();
+        WeightMatrix weightMatrix = randomMatrix();
+        ScoredWeightMatrix swm = new ScoredWeightMatrix(score, weightMatrix);
+
+        for (ByteOrder byteOrder : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ByteBuffer byteBuffer = ByteBuffer.wrap(serializeWeightMatrix(weightMatrix, byteOrder)).order(byteOrder);
+            assertCondition(weightMatrix.equals(deserializeWeightMatrix(byteBuffer)));
+
+            byteBuffer = ByteBuffer.wrap(serializeScoredWeightMatrix(swm, byteOrder)).order(byteOrder);
+            assertCondition(swm.equals(deserializeScoredWeightMatrix(byteBuffer)));
+            byteBuffer.rewind();
+            assertCondition(score.equals(deserializeScoreFromScoredWeightMatrix(byteBuffer)));
+        }
+        // byte arrays are always big-endian
+        assertCondition(swm.equals(deserializeScoredWeightMatrix(serializeScoredWeightMatrix(swm, ByteOrder.BIG_ENDIAN))));
+    }
+
+    public void testDeserializationFromByteBufferRegion() {
+        Score score = createTestScore();
+        WeightMatrix weightMatrix = randomMatrix();
+        byte[] item = serializeScoredWeightMatrix(new ScoredWeightMatrix(score, weightMatrix));
+
+        // item in the middle of a bigger buffer, as in a memory mapped file
+        ByteBuffer byteBuffer = ByteBuffer.allocate(3 * item.length);
+        byteBuffer.position(item.length);
+        byteBuffer.put(item);
+
+        byteBuffer.limit(2 * item.length).position(item.length);
+        assertCondition(score.equals(deserializeScoreFromScoredWeightMatrix(byteBuffer)));
+        byteBuffer.limit(2 * item.length).position(item.length);
+        assertCondition(weightMatrix.equals(deserializeWeightMatrixFromScoredWeightMatrix(byteBuffer)));
+        byteBuffer.limit(2 * item.length).position(item.length);
+        assertCondition(new ScoredWeightMatrix(score, weightMatrix).equals(deserializeScoredWeightMatrix(byteBuffer)));
+
+        byteBuffer.limit(3 * item.length).position(item.length);
+        assertExceptionThrown(
+                () -> deserializeScoredWeightMatrix(byteBuffer),
+                IllegalArgumentException.class,
+                String.format("Incorrect number of bytes. Got %d, expected %d.", 2 * item.length, item.length));
+    }
+
+    public void testQuantizedWeightMatrixSerialization() {
+        WeightMatrix weightMatrix = randomMatrix();
+        for (QuantizedWeightMatrix.Precision precision : QuantizedWeightMatrix.Precision.values()) {
+            QuantizedWeightMatrix quantized = QuantizedWeightMatrix.quantize(weightMatrix, precision);
+            byte[] bytes = serializeQuantizedWeightMatrix(quantized);
+            assertCondition(bytes.length == precision.getSizeInBytes());
+            assertCondition(quantized.equals(deserializeQuantizedWeightMatrix(bytes, precision)));
+
+            // item in the middle of a bigger buffer, as in a memory mapped file
+            ByteBuffer byteBuffer = ByteBuffer.allocate(3 * bytes.length);
+            byteBuffer.position(bytes.length);
+            byteBuffer.put(bytes);
+            byteBuffer.limit(2 * bytes.length).position(bytes.length);
+            assertCondition(quantized.equals(deserializeQuantizedWeightMatrix(byteBuffer, precision)));
+            assertCondition(byteBuffer.position() == 2 * bytes.length);
+
+            byte[] littleEndianBytes = serializeQuantizedWeightMatrix(quantized, ByteOrder.LITTLE_ENDIAN);
+            byteBuffer = ByteBuffer.wrap(littleEndianBytes).order(ByteOrder.LITTLE_ENDIAN);
+            assertCondition(quantized.equals(deserializeQuantizedWeightMatrix(byteBuffer, precision)));
+            // int8 weights are single bytes, they are the same in both byte orders
+            if (precision == QuantizedWeightMatrix.Precision.INT8) {
+                int weightsStart = QuantizedWeightMatrix.ROWS * Float.BYTES;
+                assertCondition(ByteBuffer.wrap(bytes, weightsStart, bytes.length - weightsStart)
+                        .equals(ByteBuffer.wrap(littleEndianBytes, weightsStart, bytes.length - weightsStart)));
+            }
+        }
+
+        assertExceptionThrown(
+                () -> deserializeQuantizedWeightMatrix(new byte[WeightMatrix.SIZE_IN_BYTES], QuantizedWeightMatrix.Precision.INT8),
+                IllegalArgumentException.class,
+                String.format("Incorrect number of bytes. Got %d, expected %d.",
+                        WeightMatrix.SIZE_IN_BYTES, QuantizedWeightMatrix.Precision.INT8.getSizeInBytes()));
+    }
+
     private static Score createTestScore() {
         return Score.builder()
                 .addRoundResult(true, 20.0f)
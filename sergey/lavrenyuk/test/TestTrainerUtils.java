@@ -2,6 +2,9 @@ package sergey.lavrenyuk.test;
 
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
+import sergey.lavrenyuk.nn.NeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedNeuralNetwork;
+import sergey.lavrenyuk.nn.QuantizedWeightMatrix;
 import sergey.lavrenyuk.nn.WeightMatrix;
 import sergey.lavrenyuk.nn.scoring.Score;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
@@ -116,7 +119,11 @@ public class TestTrainerUtils {
             if (!twoOriginalIterators.hasNext() || !mutatedIterator.hasNext()) {
                 fail("mutated collection must be exactly twice longer than original collection");
             }
-            assertEqualsWithMutationAndDelta(twoOriginalIterators.next(), mutatedIterator.next(), mutationPercentage);
+            WeightMatrix originalMatrix = twoOriginalIterators.next();
+            WeightMatrix mutatedMatrix = mutatedIterator.next();
+            // the first matrix of each copy is mutated as well
+            assertCondition(!originalMatrix.equals(mutatedMatrix));
+            assertEqualsWithMutationAndDelta(originalMatrix, mutatedMatrix, mutationPercentage);
         }
     }
 
@@ -140,23 +147,74 @@ public class TestTrainerUtils {
 
         assertCondition(crossingover.size() == 6);
 
-        assertCondition(Arrays.equals(crossingover.get(0).getInputToHiddenWeights(), wm1.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(0).getHiddenToOutputWeights(), wm2.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(0).getInputToHiddenWeights(), wm1.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(0).getHiddenToOutputWeights(), wm2.getHiddenToOutputWeights()));
 
-        assertCondition(Arrays.equals(crossingover.get(1).getInputToHiddenWeights(), wm2.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(1).getHiddenToOutputWeights(), wm1.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(1).getInputToHiddenWeights(), wm2.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(1).getHiddenToOutputWeights(), wm1.getHiddenToOutputWeights()));
 
-        assertCondition(Arrays.equals(crossingover.get(2).getInputToHiddenWeights(), wm1.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(2).getHiddenToOutputWeights(), wm3.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(2).getInputToHiddenWeights(), wm1.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(2).getHiddenToOutputWeights(), wm3.getHiddenToOutputWeights()));
 
-        assertCondition(Arrays.equals(crossingover.get(3).getInputToHiddenWeights(), wm3.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(3).getHiddenToOutputWeights(), wm1.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(3).getInputToHiddenWeights(), wm3.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(3).getHiddenToOutputWeights(), wm1.getHiddenToOutputWeights()));
 
-        assertCondition(Arrays.equals(crossingover.get(4).getInputToHiddenWeights(), wm2.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(4).getHiddenToOutputWeights(), wm3.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(4).getInputToHiddenWeights(), wm2.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(4).getHiddenToOutputWeights(), wm3.getHiddenToOutputWeights()));
 
-        assertCondition(Arrays.equals(crossingover.get(5).getInputToHiddenWeights(), wm3.getInputToHiddenWeights()));
-        assertCondition(Arrays.equals(crossingover.get(5).getHiddenToOutputWeights(), wm2.getHiddenToOutputWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(5).getInputToHiddenWeights(), wm3.getInputToHiddenWeights()));
+        assertCondition(Arrays.deepEquals(crossingover.get(5).getHiddenToOutputWeights(), wm2.getHiddenToOutputWeights()));
+    }
+
+    public void testSimulateWinRate() throws IOException {
+        List<ScoredWeightMatrix> survivors = TestBattleSimulator.readArchive("survivors_gen6.dat");
+        float winRateAverage = 0;
+        float int8WinRateAverage = 0;
+        for (int i = 0; i < survivors.size(); i++) {
+            WeightMatrix weightMatrix = survivors.get(i).getWeightMatrix();
+            float winRate = TrainerUtils.simulateWinRate(weightMatrix, NeuralNetwork::new, "VelociRobot", 50, i);
+            float int8WinRate = TrainerUtils.simulateWinRate(weightMatrix,
+                    wm -> QuantizedNeuralNetwork.create(QuantizedWeightMatrix.quantize(wm, QuantizedWeightMatrix.Precision.INT8)),
+                    "VelociRobot", 50, i);
+            winRateAverage += winRate / survivors.size();
+            int8WinRateAverage += int8WinRate / survivors.size();
+
+            // float16 network computes in floats, so its drift comes from rounding of the weights only
+            QuantizedWeightMatrix float16 = QuantizedWeightMatrix.quantize(weightMatrix, QuantizedWeightMatrix.Precision.FLOAT16);
+            float float16WinRate = TrainerUtils.simulateWinRate(weightMatrix,
+                    wm -> QuantizedNeuralNetwork.create(float16), "VelociRobot", 50, i);
+            assertCondition(float16WinRate == TrainerUtils.simulateWinRate(float16.dequantize(), NeuralNetwork::new,
+                    "VelociRobot", 50, i));
+        }
+
+        // survivors keep their strength in int8 on average, single matrices drift more
+        assertCondition(Math.abs(int8WinRateAverage - winRateAverage) < 0.05f,
+                String.format("Average win rate %f, int8 average win rate %f", winRateAverage, int8WinRateAverage));
+    }
+
+    public void testImmigrate() {
+        List<String> survivors = Arrays.asList("s1", "s2", "s3", "s4");
+        assertCondition(TrainerUtils.immigrate(survivors, Arrays.asList("i1", "i2", "i3"), 2)
+                .equals(Arrays.asList("s1", "s2", "i1", "i2")));
+        assertCondition(TrainerUtils.immigrate(survivors, Collections.singletonList("i1"), 2)
+                .equals(Arrays.asList("s1", "s2", "s3", "i1")));
+        assertCondition(TrainerUtils.immigrate(survivors, Arrays.asList("i1", "i2"), 0).equals(survivors));
+        assertExceptionThrown(
+                () -> TrainerUtils.immigrate(survivors, survivors, 5),
+                IllegalArgumentException.class,
+                "5 migrants expected to be less or equal to 4 survivors");
+    }
+
+    public void testIslandFileName() {
+        assertCondition(TrainerUtils.islandFileName("../data/survivors_gen{}.dat", 2).equals("../data/island2_survivors_gen{}.dat"));
+        assertCondition(TrainerUtils.islandFileName("weight_matrix_part{}.dat", 0).equals("island0_weight_matrix_part{}.dat"));
+    }
+
+    public void testQuantizedFileName() {
+        assertCondition(TrainerUtils.quantizedFileName("../data/survivors_gen6.dat", QuantizedWeightMatrix.Precision.INT8)
+                .equals("../data/survivors_gen6_int8.dat"));
+        assertCondition(TrainerUtils.quantizedFileName("../data/survivors", QuantizedWeightMatrix.Precision.FLOAT16)
+                .equals("../data/survivors_float16"));
     }
 
     public void testTraining() throws IOException {
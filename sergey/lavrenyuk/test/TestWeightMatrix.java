@@ -2,7 +2,11 @@ package sergey.lavrenyuk.test;
 
 import sergey.lavrenyuk.nn.WeightMatrix;
 
+import java.util.Arrays;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
+import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
 public class TestWeightMatrix {
 
@@ -17,4 +21,32 @@ public class TestWeightMatrix {
                         new float[WeightMatrix.OUTPUT_NEURONS][WeightMatrix.HIDDEN_NEURONS + 4]),
                 IllegalArgumentException.class, "15 hidden to output neuron weights expected, but found 18");
     }
+
+    public void testInvalidFlatArraySize() {
+        assertExceptionThrown(
+                () -> new WeightMatrix(new float[WeightMatrix.TOTAL_WEIGHTS_NUMBER - 1]),
+                IllegalArgumentException.class, "214 weights expected, but found 213");
+    }
+
+    public void testTwoDimensionalViews() {
+        WeightMatrix weightMatrix = randomMatrix();
+        float[][] inputToHiddenWeights = weightMatrix.getInputToHiddenWeights();
+        float[][] hiddenToOutputWeights = weightMatrix.getHiddenToOutputWeights();
+
+        for (int i = 0; i < WeightMatrix.HIDDEN_NEURONS; i++) {
+            for (int j = 0; j < WeightMatrix.INPUT_NEURONS + 1; j++) {
+                assertCondition(inputToHiddenWeights[i][j] == weightMatrix.getInputToHiddenWeight(i, j));
+            }
+        }
+        for (int i = 0; i < WeightMatrix.OUTPUT_NEURONS; i++) {
+            for (int j = 0; j < WeightMatrix.HIDDEN_NEURONS + 1; j++) {
+                assertCondition(hiddenToOutputWeights[i][j] == weightMatrix.getHiddenToOutputWeight(i, j));
+            }
+        }
+
+        WeightMatrix copy = new WeightMatrix(inputToHiddenWeights, hiddenToOutputWeights);
+        assertCondition(Arrays.equals(weightMatrix.getWeights(), copy.getWeights()));
+        assertCondition(weightMatrix.equals(copy));
+        assertCondition(weightMatrix.hashCode() == copy.hashCode());
+    }
 }
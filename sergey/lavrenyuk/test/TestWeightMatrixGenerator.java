@@ -0,0 +1,58 @@
+package sergey.lavrenyuk.test;
+
+import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.WeightMatrixGenerator;
+
+import java.util.SplittableRandom;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
+
+public class TestWeightMatrixGenerator {
+
+    public static void main(String[] args) {
+        Runner.runTests(TestWeightMatrixGenerator.class);
+    }
+
+    public void testGenerateFixed() {
+        for (float weight : new WeightMatrixGenerator().generateFixed(0.5f).getWeights()) {
+            assertCondition(weight == 0.5f);
+        }
+    }
+
+    public void testGenerateRandom() {
+        // seeded, so the range check below doesn't fail by chance
+        float[] weights = new WeightMatrixGenerator(1).generateRandom(3).getWeights();
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float weight : weights) {
+            assertCondition(Math.abs(weight) <= 3, String.format("weight %f is out of range", weight));
+            min = Math.min(min, weight);
+            max = Math.max(max, weight);
+        }
+        // hundreds of uniformly distributed weights cover most of the range
+        assertCondition(min < -2.5f && max > 2.5f, String.format("weights are from %f to %f", min, max));
+    }
+
+    public void testSameSeedSameMatrices() {
+        WeightMatrixGenerator generator = new WeightMatrixGenerator(42);
+        WeightMatrix weightMatrix = generator.generateRandom();
+        assertCondition(!weightMatrix.equals(generator.generateRandom()));
+        assertCondition(weightMatrix.equals(new WeightMatrixGenerator(42).generateRandom()));
+        assertCondition(!weightMatrix.equals(new WeightMatrixGenerator(43).generateRandom()));
+        assertCondition(weightMatrix.equals(new WeightMatrixGenerator(new SplittableRandom(42)).generateRandom()));
+    }
+
+    public void testFillOddNumberOfWeights() {
+        float[] weights = new float[5];
+        new WeightMatrixGenerator(1).fillRandom(weights, 2);
+        for (float weight : weights) {
+            assertCondition(weight != 0 && Math.abs(weight) <= 2);
+        }
+    }
+
+    public void testSignedBits() {
+        assertCondition(WeightMatrixGenerator.signedBits(0) == -0x800000);
+        assertCondition(WeightMatrixGenerator.signedBits(0xFFFFFF) == 0x7FFFFF);
+        assertCondition(WeightMatrixGenerator.signedBits(0xFF800000L) == 0);
+    }
+}
@@ -3,7 +3,11 @@ package sergey.lavrenyuk.test;
 import sergey.lavrenyuk.nn.WeightMatrix;
 import sergey.lavrenyuk.nn.training.utils.WeightMatrixMutator;
 
+import java.util.SplittableRandom;
+
+import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertEqualsWithMutationAndDelta;
+import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
 import static sergey.lavrenyuk.test.base.TestUtils.randomMatrix;
 
 public class TestWeightMatrixMutator {
@@ -19,4 +23,42 @@ public class TestWeightMatrixMutator {
         WeightMatrix mutatedWeightMatrix = mutator.mutate(weightMatrix);
         assertEqualsWithMutationAndDelta(weightMatrix, mutatedWeightMatrix, mutationPercentage);
     }
+
+    public void testSameSeedSameMutation() {
+        WeightMatrix weightMatrix = randomMatrix();
+        WeightMatrixMutator mutator = new WeightMatrixMutator(10, 42);
+        WeightMatrix mutated = mutator.mutate(weightMatrix);
+        assertCondition(!mutated.equals(mutator.mutate(weightMatrix)));
+        assertCondition(mutated.equals(new WeightMatrixMutator(10, 42).mutate(weightMatrix)));
+        assertCondition(!mutated.equals(new WeightMatrixMutator(10, 43).mutate(weightMatrix)));
+        assertCondition(mutated.equals(new WeightMatrixMutator(10, new SplittableRandom(42)).mutate(weightMatrix)));
+    }
+
+    public void testZeroPercentage() {
+        WeightMatrix weightMatrix = randomMatrix();
+        assertCondition(weightMatrix.equals(new WeightMatrixMutator(0).mutate(weightMatrix)));
+    }
+
+    public void testMutateArray() {
+        // odd number of weights takes a half of the last random long
+        float[] weights = {1, -2, 3, -4, 5};
+        float[] result = new float[weights.length];
+        new WeightMatrixMutator(20, 1).mutate(weights, result);
+        for (int i = 0; i < weights.length; i++) {
+            assertCondition(result[i] != weights[i]);
+            assertCondition(Math.abs(result[i] - weights[i]) <= Math.abs(weights[i]) * 0.2f,
+                    String.format("weight %f mutated to %f", weights[i], result[i]));
+        }
+    }
+
+    public void testInvalidParameters() {
+        assertExceptionThrown(
+                () -> new WeightMatrixMutator(101),
+                IllegalArgumentException.class,
+                "percentage must be greater or equal to 0 and less or equal to 100");
+        assertExceptionThrown(
+                () -> new WeightMatrixMutator(10).mutate(new float[3], new float[2]),
+                IllegalArgumentException.class,
+                "3 result weights expected, but found 2");
+    }
 }
@@ -1,13 +1,19 @@
 package sergey.lavrenyuk.test;
 
+import sergey.lavrenyuk.io.IO;
 import sergey.lavrenyuk.io.Serializer;
 import sergey.lavrenyuk.io.Reader;
 import sergey.lavrenyuk.io.Writer;
 import sergey.lavrenyuk.nn.WeightMatrix;
+import sergey.lavrenyuk.nn.scoring.EarlyStopping;
 import sergey.lavrenyuk.nn.scoring.Score;
+import sergey.lavrenyuk.nn.scoring.ScoreCache;
 import sergey.lavrenyuk.nn.scoring.ScoredWeightMatrix;
 import sergey.lavrenyuk.nn.scoring.WeightMatrixScorer;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
@@ -107,4 +113,145 @@ public class TestWeightMatrixScorer {
         // closed reader and writer
         assertCondition(closed.get() == 2);
     }
+
+    public void testEarlyStopping() {
+        WeightMatrix wm1 = randomMatrix();
+        WeightMatrix wm2 = randomMatrix();
+        List<ScoredWeightMatrix> output = new ArrayList<>();
+
+        // a matrix without wins is stopped after 3 rounds with such a cutoff
+        WeightMatrixScorer scorer = new WeightMatrixScorer(listReader(wm1, wm2), listWriter(output), 10,
+                new EarlyStopping(0.7f, 2.576));
+
+        for (int round = 0; round < 3; round++) {
+            assertCondition(scorer.get().equals(wm1));
+            scorer.accept(new Score.RoundResult(false, -100f));
+        }
+        assertCondition(output.size() == 1);
+        assertCondition(output.get(0).getWeightMatrix().equals(wm1));
+        assertEqualsWithDelta(output.get(0).getScore().getWinRate(), 0f);
+
+        // wins keep the matrix scored till the last round
+        for (int round = 0; round < 10; round++) {
+            assertCondition(scorer.get().equals(wm2));
+            scorer.accept(new Score.RoundResult(true, 50f));
+        }
+        assertCondition(output.size() == 2);
+        assertCondition(output.get(1).getWeightMatrix().equals(wm2));
+        assertEqualsWithDelta(output.get(1).getScore().getWinRate(), 1f);
+
+        assertCondition(scorer.get() == null);
+        assertCondition(scorer.getMatricesScored() == 2);
+        assertCondition(scorer.getRoundsPlayed() == 13);
+    }
+
+    public void testHasNextRound() {
+        WeightMatrix wm = randomMatrix();
+        List<ScoredWeightMatrix> output = new ArrayList<>();
+        WeightMatrixScorer scorer = new WeightMatrixScorer(listReader(wm), listWriter(output), 2);
+
+        for (int round = 0; round < 2; round++) {
+            assertCondition(scorer.hasNextRound());
+            assertCondition(scorer.get().equals(wm));
+            scorer.accept(new Score.RoundResult(true, 10f));
+        }
+        // the input ends without knowing its size in advance
+        assertCondition(!scorer.hasNextRound());
+        assertCondition(!scorer.hasNextRound());
+        assertCondition(scorer.get() == null);
+        assertCondition(output.size() == 1);
+        assertCondition(scorer.getMatricesScored() == 1);
+    }
+
+    public void testScoreCacheReuse() throws IOException {
+        WeightMatrix cached = randomMatrix();
+        WeightMatrix notCached = randomMatrix();
+        List<ScoredWeightMatrix> output = new ArrayList<>();
+
+        cacheScore(cached, Score.builder(1, 4, 40f));
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile("score_cache.dat"), ScoreCache.Mode.REUSE)) {
+            WeightMatrixScorer scorer = new WeightMatrixScorer(listReader(cached, notCached, cached), listWriter(output), 2,
+                    EarlyStopping.disabled(), scoreCache);
+
+            // cached matrix is written right away, without being played
+            assertCondition(output.size() == 1);
+            assertCondition(output.get(0).getWeightMatrix().equals(cached));
+            assertEqualsWithDelta(output.get(0).getScore().getWinRate(), 0.25f);
+
+            for (int round = 0; round < 2; round++) {
+                assertCondition(scorer.get().equals(notCached));
+                scorer.accept(new Score.RoundResult(true, 20f));
+            }
+            assertCondition(scorer.get() == null);
+            assertCondition(output.size() == 3);
+            assertCondition(output.get(1).getWeightMatrix().equals(notCached));
+            assertCondition(output.get(2).getWeightMatrix().equals(cached));
+            assertCondition(scorer.getMatricesScored() == 3);
+            assertCondition(scorer.getRoundsPlayed() == 2);
+        }
+
+        // newly scored matrix is cached
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile("score_cache.dat"), ScoreCache.Mode.REUSE)) {
+            assertCondition(scoreCache.get(notCached).getWins() == 2);
+        }
+    }
+
+    public void testScoreCacheAccumulate() throws IOException {
+        WeightMatrix cached = randomMatrix();
+        List<ScoredWeightMatrix> output = new ArrayList<>();
+
+        cacheScore(cached, Score.builder(0, 2, -200f));
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile("score_cache.dat"), ScoreCache.Mode.ACCUMULATE)) {
+            WeightMatrixScorer scorer = new WeightMatrixScorer(listReader(cached), listWriter(output), 2,
+                    EarlyStopping.disabled(), scoreCache);
+            for (int round = 0; round < 2; round++) {
+                assertCondition(scorer.get().equals(cached));
+                scorer.accept(new Score.RoundResult(true, 100f));
+            }
+
+            // 2 cached rounds plus 2 new rounds
+            assertCondition(output.size() == 1);
+            Score score = output.get(0).getScore();
+            assertEqualsWithDelta(score.getWinRate(), 0.5f);
+            assertEqualsWithDelta(score.getAverageEnergyDiff(), 0f);
+        }
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile("score_cache.dat"), ScoreCache.Mode.ACCUMULATE)) {
+            assertCondition(scoreCache.get(cached).getRounds() == 4);
+        }
+    }
+
+    // scores are read from the cache as it was loaded, so they are put by an earlier cache instance
+    private static void cacheScore(WeightMatrix weightMatrix, Score.Builder score) throws IOException {
+        try (ScoreCache scoreCache = ScoreCache.load(IO.getFile("score_cache.dat"), ScoreCache.Mode.ACCUMULATE)) {
+            scoreCache.put(weightMatrix, score);
+        }
+    }
+
+    private static Reader<byte[]> listReader(WeightMatrix... weightMatrices) {
+        List<byte[]> input = new ArrayList<>();
+        for (WeightMatrix weightMatrix : weightMatrices) {
+            input.add(Serializer.serializeWeightMatrix(weightMatrix));
+        }
+        return new Reader<byte[]>() {
+            @Override
+            public byte[] read() {
+                return input.isEmpty() ? null : input.remove(0);
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    private static Writer<byte[]> listWriter(List<ScoredWeightMatrix> output) {
+        return new Writer<byte[]>() {
+            @Override
+            public void write(byte[] data) {
+                output.add(Serializer.deserializeScoredWeightMatrix(data));
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
 }
@@ -1,14 +1,21 @@
 package sergey.lavrenyuk.test;
 
+import sergey.lavrenyuk.io.FileHeader;
+import sergey.lavrenyuk.io.FileReader;
 import sergey.lavrenyuk.io.IO;
+import sergey.lavrenyuk.io.PartitionManifest;
 import sergey.lavrenyuk.nn.scoring.WeightMatrixScorerRawDataIO;
 
 import java.io.IOException;
+import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static sergey.lavrenyuk.test.base.TestUtils.assertCondition;
 import static sergey.lavrenyuk.test.base.TestUtils.assertExceptionThrown;
 import static sergey.lavrenyuk.test.base.TestUtils.assertFileContents;
+import static sergey.lavrenyuk.test.base.TestUtils.concat;
 import static sergey.lavrenyuk.test.base.TestUtils.createTestFile;
 import static sergey.lavrenyuk.test.base.TestUtils.createTestFiles;
 
@@ -22,7 +29,150 @@ public class TestWeightMatrixScorerRawDataIO {
     }
 
     public void testHappyPath() throws IOException {
-        WeightMatrixScorerRawDataIO rawDataIO = setupAndCreateRawDataIO();
+        testHappyPath(0, 0);
+    }
+
+    public void testWriteBehindHappyPath() throws IOException {
+        // queue of one item makes the caller wait for the writer thread
+        testHappyPath(0, 1);
+        testHappyPath(0, 10);
+    }
+
+    public void testPrefetchHappyPath() throws IOException {
+        testHappyPath(1, 0);
+        testHappyPath(10, 0);
+        testHappyPath(1, 1);
+    }
+
+    public void testPrefetchWithInterruptedReaderThread() throws IOException {
+        WeightMatrixScorerRawDataIO rawDataIO = setupAndCreateRawDataIO(1, 0);
+
+        byte[] data;
+        while ((data = rawDataIO.read()).length != 0) {
+            // the same as Robocode does at the end of a round
+            interruptThreads("WeightMatrixScorer reader");
+            rawDataIO.write(process(data));
+        }
+        rawDataIO.close();
+
+        assertCondition(!IO.getFile("input_test_file_part0.dat").exists());
+        assertCondition(!IO.getFile("input_test_file_part1.dat").exists());
+        assertFileContents("output_test_file_part0.dat", new byte[] {1, -1, 4, -4});
+        assertFileContents("output_test_file_part1.dat", new byte[] {7, -7, 10, -10});
+    }
+
+    public void testPrefetchedInputIsNotRemovedIfNotScored() throws IOException {
+        WeightMatrixScorerRawDataIO rawDataIO = setupAndCreateRawDataIO(10, 0);
+
+        // the whole input is likely prefetched, but only the first item is scored
+        byte[] data = rawDataIO.read();
+        rawDataIO.write(process(data));
+        rawDataIO.close();
+
+        assertFileContents("input_test_file_part0.dat", new byte[] {0, 1, 2, 3, 4, 5});
+        assertFileContents("input_test_file_part1.dat", new byte[] {6, 7, 8, 9, 10, 11});
+        assertFileContents("output_test_file_part0.dat", new byte[] {1, -1});
+    }
+
+    public void testPrefetchOfBrokenInputFile() throws IOException {
+        createTestFile("input_test_file_part0.dat", new byte[] {0, 1, 2});
+        createTestFile("input_test_file_part1.dat", new byte[] {6, 7});
+        WeightMatrixScorerRawDataIO rawDataIO = new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat",
+                "output_test_file_part{}.dat", INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false, 10, 0);
+
+        byte[] data = rawDataIO.read();
+        rawDataIO.write(process(data));
+        // the failure is reported when the broken file is reached, the same way as without prefetching
+        for (int i = 0; i < 2; i++) {
+            assertExceptionThrown(
+                    () -> {
+                        try {
+                            rawDataIO.read();
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    },
+                    IllegalArgumentException.class,
+                    "input_test_file_part1.dat doesn't contain an integer number of input items");
+        }
+        rawDataIO.close();
+    }
+
+    public void testWriteBehindWithInterruptedWriterThread() throws IOException {
+        WeightMatrixScorerRawDataIO rawDataIO = setupAndCreateRawDataIO(0, 10);
+
+        byte[] data = rawDataIO.read();
+        rawDataIO.write(process(data));
+        // the same as Robocode does at the end of a round
+        interruptThreads("WeightMatrixScorer writer");
+
+        while ((data = rawDataIO.read()).length != 0) {
+            rawDataIO.write(process(data));
+            interruptThreads("WeightMatrixScorer writer");
+        }
+        rawDataIO.close();
+
+        assertCondition(!IO.getFile("input_test_file_part0.dat").exists());
+        assertCondition(!IO.getFile("input_test_file_part1.dat").exists());
+        assertFileContents("output_test_file_part0.dat", new byte[] {1, -1, 4, -4});
+        assertFileContents("output_test_file_part1.dat", new byte[] {7, -7, 10, -10});
+    }
+
+    public void testWriteBehindFailureWithFullQueue() throws Exception {
+        createTestFile("input_test_file_part0.dat", new byte[] {0, 1, 2});
+        byte[] input = new byte[20 * INPUT_ITEM_SIZE];
+        createTestFile("input_test_file_part1.dat", input);
+        // the writer thread fails to open the second output file
+        assertCondition(IO.getFile("output_test_file_part1.dat").mkdir());
+        WeightMatrixScorerRawDataIO rawDataIO = new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat",
+                "output_test_file_part{}.dat", INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false, 0, 1);
+
+        // the caller keeps writing to the full queue after the failure, until the failure is reported to it
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        Thread robotThread = new Thread(() -> {
+            try {
+                byte[] data;
+                while ((data = rawDataIO.read()).length != 0) {
+                    rawDataIO.write(process(data));
+                }
+            } catch (IOException ex) {
+                failure.set(ex);
+            }
+        });
+        // a blocked thread must not keep the test JVM alive
+        robotThread.setDaemon(true);
+        robotThread.start();
+        robotThread.join(TimeUnit.SECONDS.toMillis(10));
+        assertCondition(!robotThread.isAlive(), "Caller is blocked on the write queue");
+        assertCondition(failure.get() != null, "Write failure is not reported");
+
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        rawDataIO.close();
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                },
+                RuntimeException.class,
+                failure.get().toString());
+    }
+
+    public void testNegativeWriteBehindQueueSize() {
+        assertExceptionThrown(
+                () -> {
+                    try {
+                        setupAndCreateRawDataIO(0, -1);
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                },
+                IllegalArgumentException.class,
+                "Write behind queue size must not be negative, but was -1");
+    }
+
+    private void testHappyPath(int prefetchQueueSize, int writeBehindQueueSize) throws IOException {
+        WeightMatrixScorerRawDataIO rawDataIO = setupAndCreateRawDataIO(prefetchQueueSize, writeBehindQueueSize);
 
         byte[] data = rawDataIO.read();
         assertCondition(Arrays.equals(data, new byte[] {0, 1, 2}));
@@ -51,6 +201,67 @@ public class TestWeightMatrixScorerRawDataIO {
         assertFileContents("output_test_file_part1.dat", new byte[] {7, -7, 10, -10});
     }
 
+    public void testInputFileWithHeader() throws IOException {
+        createTestFile("input_test_file_part0.dat", concat(TestFileHeader.header(ByteOrder.LITTLE_ENDIAN),
+                new byte[] {1, 2, 3, 4, 5, 6, 7, 8}));
+        WeightMatrixScorerRawDataIO rawDataIO = new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat",
+                "output_test_file_part{}.dat", 4, OUTPUT_ITEM_SIZE, false);
+
+        // items are converted to big-endian
+        byte[] data = rawDataIO.read();
+        assertCondition(Arrays.equals(data, new byte[] {4, 3, 2, 1}));
+        rawDataIO.write(new byte[] {data[0], data[3]});
+        data = rawDataIO.read();
+        assertCondition(Arrays.equals(data, new byte[] {8, 7, 6, 5}));
+        rawDataIO.write(new byte[] {data[0], data[3]});
+        assertCondition(rawDataIO.read().length == 0);
+        rawDataIO.close();
+
+        // the header is not counted as an item, so the input file is completely scored
+        assertCondition(!IO.getFile("input_test_file_part0.dat").exists());
+        assertFileContents("output_test_file_part0.dat", new byte[] {4, 1, 8, 5});
+    }
+
+    public void testChecksummedOutput() throws IOException {
+        createTestFile("input_test_file_part0.dat", new byte[] {0, 1, 2, 3, 4, 5, 6, 7, 8});
+        WeightMatrixScorerRawDataIO rawDataIO = new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat",
+                "output_test_file_part{}.dat", INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false, 0, 0,
+                FileHeader.of(ByteOrder.BIG_ENDIAN, OUTPUT_ITEM_SIZE, 2));
+
+        byte[] data;
+        while ((data = rawDataIO.read()).length != 0) {
+            rawDataIO.write(process(data));
+        }
+        rawDataIO.close();
+
+        // blocks of 2 and 1 items, the number of items is unknown
+        FileHeader header = FileHeader.read(IO.getFile("output_test_file_part0.dat"));
+        assertCondition(header.getItems() == FileHeader.UNKNOWN_ITEMS);
+        assertCondition(IO.getFile("output_test_file_part0.dat").length() == FileHeader.SIZE_IN_BYTES
+                + 3 * OUTPUT_ITEM_SIZE + 2 * Integer.BYTES);
+        try (FileReader<byte[]> reader =
+                     new FileReader<>(IO.getFile("output_test_file_part0.dat"), OUTPUT_ITEM_SIZE,
+                             FileReader.bigEndianBytes(byte[]::clone))) {
+            assertCondition(Arrays.equals(reader.read(), new byte[] {1, -1}));
+            assertCondition(Arrays.equals(reader.read(), new byte[] {4, -4}));
+            assertCondition(Arrays.equals(reader.read(), new byte[] {7, -7}));
+            assertCondition(reader.read() == null);
+        }
+    }
+
+    public void testManifestsAreDeleted() throws IOException {
+        createTestFile("input_test_file_part0.dat", new byte[] {0, 1, 2, 3, 4, 5});
+        PartitionManifest.rebuild("input_test_file_part{}.dat", PartitionManifest.State.PENDING);
+        PartitionManifest.rebuild("output_test_file_part{}.dat", PartitionManifest.State.SCORED);
+
+        WeightMatrixScorerRawDataIO rawDataIO = new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat",
+                "output_test_file_part{}.dat", INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false);
+        rawDataIO.close();
+
+        assertCondition(!PartitionManifest.exists("input_test_file_part{}.dat"));
+        assertCondition(!PartitionManifest.exists("output_test_file_part{}.dat"));
+    }
+
     public void testNoInputFiles() {
         assertExceptionThrown(
                 () -> {
@@ -106,11 +317,23 @@ public class TestWeightMatrixScorerRawDataIO {
     }
 
     private WeightMatrixScorerRawDataIO setupAndCreateRawDataIO() throws IOException {
+        return setupAndCreateRawDataIO(0, 0);
+    }
+
+    private WeightMatrixScorerRawDataIO setupAndCreateRawDataIO(int prefetchQueueSize, int writeBehindQueueSize)
+            throws IOException {
         createTestFile("input_test_file_part0.dat", new byte[] {0, 1, 2, 3, 4, 5});
         createTestFile("input_test_file_part1.dat", new byte[] {6, 7, 8, 9, 10, 11});
         createTestFiles("output_test_file_part0.dat", "output_test_file_part1.dat");
         return new WeightMatrixScorerRawDataIO("input_test_file_part{}.dat", "output_test_file_part{}.dat",
-                INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false);
+                INPUT_ITEM_SIZE, OUTPUT_ITEM_SIZE, false, prefetchQueueSize, writeBehindQueueSize);
+    }
 
+    private static void interruptThreads(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(name)) {
+                thread.interrupt();
+            }
+        }
     }
 }
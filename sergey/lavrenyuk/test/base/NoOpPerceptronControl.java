@@ -0,0 +1,33 @@
+package sergey.lavrenyuk.test.base;
+
+import sergey.lavrenyuk.module.PerceptronControl;
+
+/**
+ * {@link PerceptronControl} that ignores all the commands, so tests and benchmarks exercise only the robot's logic.
+ */
+public class NoOpPerceptronControl implements PerceptronControl {
+
+    @Override
+    public void setAhead(double distance) { }
+
+    @Override
+    public void setFire(double power) { }
+
+    @Override
+    public void setTurnRightRadians(double radians) { }
+
+    @Override
+    public void setTurnGunRightRadians(double radians) { }
+
+    @Override
+    public void setTurnRadarRightRadians(double radians) { }
+
+    @Override
+    public void setAdjustGunForRobotTurn(boolean independent) { }
+
+    @Override
+    public void setAdjustRadarForGunTurn(boolean independent) { }
+
+    @Override
+    public void disable() { }
+}
@@ -8,6 +8,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
@@ -18,6 +19,7 @@ public class TestUtils {
     private static final WeightMatrixGenerator matrixGenerator = new WeightMatrixGenerator();
 
     private static final float FLOAT_DELTA = 0.000001f;
+    private static final double DOUBLE_DELTA = 0.000000001;
 
     public static WeightMatrix randomMatrix() {
         return matrixGenerator.generateRandom();
@@ -93,25 +95,24 @@ public class TestUtils {
         assertCondition(Math.abs(first - second) < delta, String.format("%f != %f with delta %f", first, second, delta));
     }
 
+    public static void assertEqualsWithDelta(double first, double second) {
+        assertEqualsWithDelta(first, second, DOUBLE_DELTA);
+    }
+
+    public static void assertEqualsWithDelta(double first, double second, double delta) {
+        assertCondition(Math.abs(first - second) < delta, String.format("%f != %f with delta %f", first, second, delta));
+    }
+
     public static void assertEqualsWithMutationAndDelta(WeightMatrix original, WeightMatrix mutated, int mutationPercentage) {
-        assertEqualsWithMutationAndDelta(
-                original.getInputToHiddenWeights(),
-                mutated.getInputToHiddenWeights(),
-                mutationPercentage);
-        assertEqualsWithMutationAndDelta(
-                original.getHiddenToOutputWeights(),
-                mutated.getHiddenToOutputWeights(),
-                mutationPercentage);
+        assertEqualsWithMutationAndDelta(original.getWeights(), mutated.getWeights(), mutationPercentage);
     }
 
-    public static void assertEqualsWithMutationAndDelta(float[][] original, float[][] mutated, int mutationPercentage) {
+    public static void assertEqualsWithMutationAndDelta(float[] original, float[] mutated, int mutationPercentage) {
         for (int i = 0; i < original.length; i++) {
-            for (int j= 0; j < original[i].length; j++) {
-                assertEqualsWithDelta(
-                        original[i][j],
-                        mutated[i][j],
-                        Math.abs(original[i][j] * (mutationPercentage / 100f + FLOAT_DELTA)));
-            }
+            assertEqualsWithDelta(
+                    original[i],
+                    mutated[i],
+                    Math.abs(original[i] * (mutationPercentage / 100f + FLOAT_DELTA)));
         }
     }
 
@@ -129,6 +130,18 @@ public class TestUtils {
         }
     }
 
+    /**
+     * Returns number of bytes allocated by the current thread while running the provided {@code execution}.
+     * Relies on {@link com.sun.management.ThreadMXBean}, which is available in HotSpot based JVMs.
+     */
+    public static long allocatedBytes(Runnable execution) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        execution.run();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
     public static void assertFileContents(String fileName, byte[] fileData) throws IOException {
         File file = IO.getFile(fileName);
         assertCondition(file.length() == fileData.length, String.format("Unexpected file %s size. Expected %d, actual %d",